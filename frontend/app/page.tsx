@@ -25,7 +25,7 @@ function HomeContent() {
     try {
       console.log('[Page] Initializing session...');
       // Try to get existing sessions first
-      const sessions = await getSessions();
+      const { items: sessions } = await getSessions();
       console.log('[Page] Got sessions:', sessions?.length || 0);
 
       if (sessions && sessions.length > 0) {
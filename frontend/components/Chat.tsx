@@ -18,17 +18,26 @@ export function Chat({ sessionId, sessionTitle, onToggleSidebar }: ChatProps) {
   const [input, setInput] = useState('');
   const [isLoading, setIsLoading] = useState(false);
   const [error, setError] = useState<string | null>(null);
+  const [olderCursor, setOlderCursor] = useState<string | undefined>();
+  const [isLoadingOlder, setIsLoadingOlder] = useState(false);
   const messagesEndRef = useRef<HTMLDivElement>(null);
+  // Set while prepending older messages, which should not scroll the chat to the bottom
+  const prependingRef = useRef(false);
 
   const scrollToBottom = () => {
     messagesEndRef.current?.scrollIntoView({ behavior: 'smooth' });
   };
 
   useEffect(() => {
+    if (prependingRef.current) {
+      prependingRef.current = false;
+      return;
+    }
     scrollToBottom();
   }, [messages]);
 
   useEffect(() => {
+    setOlderCursor(undefined);
     if (sessionId) {
       loadHistory();
     } else {
@@ -40,14 +49,32 @@ export function Chat({ sessionId, sessionTitle, onToggleSidebar }: ChatProps) {
     if (!sessionId) return;
 
     try {
-      const history = await getSessionHistory(sessionId);
-      setMessages(history);
+      const page = await getSessionHistory(sessionId);
+      setMessages(page.items);
+      setOlderCursor(page.before);
     } catch (err) {
       console.error('Error loading history:', err);
       setError('Failed to load chat history');
     }
   };
 
+  const loadOlderMessages = async () => {
+    if (!sessionId || !olderCursor) return;
+
+    try {
+      setIsLoadingOlder(true);
+      const page = await getSessionHistory(sessionId, olderCursor);
+      prependingRef.current = true;
+      setMessages((prev) => [...page.items, ...prev]);
+      setOlderCursor(page.before);
+    } catch (err) {
+      console.error('Error loading older messages:', err);
+      setError('Failed to load chat history');
+    } finally {
+      setIsLoadingOlder(false);
+    }
+  };
+
   const handleSendMessage = async (e: React.FormEvent) => {
     e.preventDefault();
     
@@ -130,6 +157,17 @@ export function Chat({ sessionId, sessionTitle, onToggleSidebar }: ChatProps) {
           </div>
         ) : (
           <>
+            {olderCursor && (
+              <div className="flex justify-center mb-4">
+                <button
+                  onClick={loadOlderMessages}
+                  disabled={isLoadingOlder}
+                  className="px-4 py-2 text-sm text-blue-600 dark:text-blue-400 hover:bg-gray-100 dark:hover:bg-gray-800 rounded-lg transition-colors disabled:opacity-50"
+                >
+                  {isLoadingOlder ? 'Loading...' : 'Load earlier messages'}
+                </button>
+              </div>
+            )}
             {messages.map((message) => (
               <ChatMessage key={message.id} message={message} />
             ))}
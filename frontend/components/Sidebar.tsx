@@ -18,6 +18,8 @@ export function Sidebar({ currentSessionId, onSessionSelect, onNewChat, isCollap
   const [isLoading, setIsLoading] = useState(true);
   const [editingSessionId, setEditingSessionId] = useState<string | null>(null);
   const [editingTitle, setEditingTitle] = useState('');
+  const [nextCursor, setNextCursor] = useState<string | undefined>();
+  const [isLoadingMore, setIsLoadingMore] = useState(false);
 
   useEffect(() => {
     loadSessions();
@@ -26,8 +28,9 @@ export function Sidebar({ currentSessionId, onSessionSelect, onNewChat, isCollap
   const loadSessions = async () => {
     try {
       setIsLoading(true);
-      const data = await getSessions();
-      setSessions(data);
+      const page = await getSessions();
+      setSessions(page.items);
+      setNextCursor(page.after);
     } catch (error) {
       console.error('Error loading sessions:', error);
       // Don't throw, just log - the error might be due to auth still processing
@@ -36,6 +39,25 @@ export function Sidebar({ currentSessionId, onSessionSelect, onNewChat, isCollap
     }
   };
 
+  const loadMoreSessions = async () => {
+    if (!nextCursor) return;
+
+    try {
+      setIsLoadingMore(true);
+      const page = await getSessions(nextCursor);
+      // Sessions updated since the previous page may show up on this one as well
+      setSessions((prev) => [
+        ...prev,
+        ...page.items.filter((session) => !prev.some((s) => s.id === session.id)),
+      ]);
+      setNextCursor(page.after);
+    } catch (error) {
+      console.error('Error loading more sessions:', error);
+    } finally {
+      setIsLoadingMore(false);
+    }
+  };
+
   const handleNewChat = async () => {
     try {
       const newSession = await createSession();
@@ -157,8 +179,14 @@ export function Sidebar({ currentSessionId, onSessionSelect, onNewChat, isCollap
                       ) : (
                         <>
                           <div className="text-sm font-medium truncate">{session.title}</div>
+                          {session.lastMessagePreview && (
+                            <div className="text-xs text-gray-600 dark:text-gray-300 truncate">
+                              {session.lastMessagePreview}
+                            </div>
+                          )}
                           <div className="text-xs text-gray-500 dark:text-gray-400">
                             {new Date(session.updatedAt).toLocaleDateString()}
+                            {session.messageCount !== undefined && ` · ${session.messageCount} messages`}
                           </div>
                         </>
                       )}
@@ -210,6 +238,15 @@ export function Sidebar({ currentSessionId, onSessionSelect, onNewChat, isCollap
                     </div>
                   </div>
                 ))}
+                {nextCursor && (
+                  <button
+                    onClick={loadMoreSessions}
+                    disabled={isLoadingMore}
+                    className="w-full py-2 text-sm text-blue-600 dark:text-blue-400 hover:bg-gray-100 dark:hover:bg-gray-700 rounded-lg transition-colors disabled:opacity-50"
+                  >
+                    {isLoadingMore ? 'Loading...' : 'Load more'}
+                  </button>
+                )}
               </div>
             )}
           </div>
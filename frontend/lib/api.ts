@@ -1,4 +1,4 @@
-import { ChatSession, CreateSessionRequest, Message, SendMessageRequest } from '@/types/chat';
+import { ChatSession, CreateSessionRequest, Message, Page, SendMessageRequest } from '@/types/chat';
 import { refreshAccessToken, redirectToLogin } from './auth';
 
 const API_BASE_URL = process.env.NEXT_PUBLIC_API_URL || 'http://localhost:7075';
@@ -52,6 +52,19 @@ async function fetchWithAuth(url: string, options: RequestInit = {}): Promise<Re
   return response;
 }
 
+/**
+ * Reads a page of a cursor-paged list from a response
+ * @param response The response with the items as body and the cursors as headers
+ * @returns The items and the cursors to the items before and after them
+ */
+async function toPage<T>(response: Response): Promise<Page<T>> {
+  return {
+    items: await response.json(),
+    before: response.headers.get('Before-Cursor') ?? undefined,
+    after: response.headers.get('After-Cursor') ?? undefined,
+  };
+}
+
 export async function createSession(title?: string): Promise<ChatSession> {
   const response = await fetchWithAuth(`${API_BASE_URL}/api/v1/sessions`, {
     method: 'POST',
@@ -65,14 +78,19 @@ export async function createSession(title?: string): Promise<ChatSession> {
   return response.json();
 }
 
-export async function getSessions(): Promise<ChatSession[]> {
-  const response = await fetchWithAuth(`${API_BASE_URL}/api/v1/sessions`);
+/**
+ * Gets a page of the user's sessions, most recently updated first
+ * @param after The After-Cursor of the previous page, to get the less recently updated sessions
+ */
+export async function getSessions(after?: string): Promise<Page<ChatSession>> {
+  const query = after ? `?after=${encodeURIComponent(after)}` : '';
+  const response = await fetchWithAuth(`${API_BASE_URL}/api/v1/sessions${query}`);
 
   if (!response.ok) {
     throw new Error(`Failed to get sessions: ${response.statusText}`);
   }
 
-  return response.json();
+  return toPage<ChatSession>(response);
 }
 
 export async function getSession(sessionId: string): Promise<ChatSession> {
@@ -85,14 +103,20 @@ export async function getSession(sessionId: string): Promise<ChatSession> {
   return response.json();
 }
 
-export async function getSessionHistory(sessionId: string): Promise<Message[]> {
-  const response = await fetchWithAuth(`${API_BASE_URL}/api/v1/sessions/${sessionId}/history`);
+/**
+ * Gets a page of the history of a session, oldest message first
+ * @param sessionId The ID of the session
+ * @param before The Before-Cursor of the previous page, to get the older messages
+ */
+export async function getSessionHistory(sessionId: string, before?: string): Promise<Page<Message>> {
+  const query = before ? `?before=${encodeURIComponent(before)}` : '';
+  const response = await fetchWithAuth(`${API_BASE_URL}/api/v1/sessions/${sessionId}/history${query}`);
 
   if (!response.ok) {
     throw new Error(`Failed to get session history: ${response.statusText}`);
   }
 
-  return response.json();
+  return toPage<Message>(response);
 }
 
 export async function sendMessage(sessionId: string, message: string): Promise<Message> {
@@ -18,9 +18,21 @@ export interface ChatSession {
   title: string;
   createdAt: string;
   updatedAt: string;
+  messageCount?: number;
+  lastMessagePreview?: string;
   messages?: Message[];
 }
 
+/**
+ * A page of a cursor-paged list. The cursors come from the Before-Cursor and After-Cursor response
+ * headers and are only set when items precede or follow the page.
+ */
+export interface Page<T> {
+  items: T[];
+  before?: string;
+  after?: string;
+}
+
 export interface CreateSessionRequest {
   title: string;
 }
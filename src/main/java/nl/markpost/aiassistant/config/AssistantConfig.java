@@ -1,17 +1,153 @@
 package nl.markpost.aiassistant.config;
 
-import dev.langchain4j.memory.ChatMemory;
-import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import nl.markpost.aiassistant.models.ModelRoute;
+import nl.markpost.aiassistant.service.AdaptiveConcurrencyLimiter;
 import nl.markpost.aiassistant.service.Assistant;
+import nl.markpost.aiassistant.service.ConcurrencyLimitedChatModel;
+import nl.markpost.aiassistant.service.ConcurrencyLimitedStreamingChatModel;
+import nl.markpost.aiassistant.service.FirstTokenTrackingStreamingChatModel;
+import nl.markpost.aiassistant.service.HedgingChatModel;
+import nl.markpost.aiassistant.service.HedgingPolicy;
+import nl.markpost.aiassistant.service.HedgingStreamingChatModel;
+import nl.markpost.aiassistant.service.ModelLatencyTracker;
+import nl.markpost.aiassistant.service.ModelRouter;
+import nl.markpost.aiassistant.service.ResilientChatModel;
+import nl.markpost.aiassistant.service.ResilientStreamingChatModel;
+import nl.markpost.aiassistant.service.SessionChatMemoryProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@EnableConfigurationProperties({
+  RoutingProperties.class,
+  HedgingProperties.class,
+  FailoverProperties.class,
+  ConcurrencyLimitProperties.class
+})
 public class AssistantConfig {
 
+  /** Name of the resilience4j circuit breaker and retry instances guarding the chat model. */
+  private static final String CHAT_MODEL = "chatModel";
+
   @Bean
-  public Assistant createAssistant(OpenAiChatModel model, ChatMemory memory) {
-    return AiServices.builder(Assistant.class).chatModel(model).chatMemory(memory).build();
+  public ModelRouter modelRouter(
+      ChatModel chatModel,
+      StreamingChatModel streamingChatModel,
+      @Qualifier("capableChatModel") ChatModel capableChatModel,
+      @Qualifier("capableStreamingChatModel") StreamingChatModel capableStreamingChatModel,
+      SessionChatMemoryProvider chatMemoryProvider,
+      ConcurrencyLimitProperties concurrencyLimitProperties,
+      CircuitBreakerRegistry circuitBreakerRegistry,
+      RetryRegistry retryRegistry,
+      RoutingProperties routingProperties,
+      HedgingProperties hedgingProperties,
+      ContextProperties contextProperties,
+      @Qualifier("modelCallExecutor") Executor modelCallExecutor,
+      @Qualifier("hedgeExecutor") Executor hedgeExecutor,
+      TokenCountEstimator tokenCountEstimator,
+      ModelLatencyTracker latencyTracker,
+      MeterRegistry meterRegistry,
+      @Value("${assistant.resilience.deadline:120s}") Duration deadline) {
+    // Both models are served by the same upstream, so they share its circuit breaker and retry
+    CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(CHAT_MODEL);
+    Retry retry = retryRegistry.retry(CHAT_MODEL);
+    String fastModelName = chatModel.defaultRequestParameters().modelName();
+    String capableModelName = capableChatModel.defaultRequestParameters().modelName();
+    Map<ModelRoute, ModelRouter.Route> routes =
+        Map.of(
+            ModelRoute.FAST,
+            new ModelRouter.Route(
+                fastModelName,
+                createAssistant(
+                    chatModel,
+                    streamingChatModel,
+                    chatMemoryProvider.forBudget(contextProperties.budgetFor(fastModelName)),
+                    new AdaptiveConcurrencyLimiter(
+                        ModelRoute.FAST, concurrencyLimitProperties, meterRegistry),
+                    circuitBreaker,
+                    retry,
+                    deadline,
+                    hedgingProperties,
+                    modelCallExecutor,
+                    hedgeExecutor,
+                    meterRegistry)),
+            ModelRoute.CAPABLE,
+            new ModelRouter.Route(
+                capableModelName,
+                createAssistant(
+                    capableChatModel,
+                    capableStreamingChatModel,
+                    chatMemoryProvider.forBudget(contextProperties.budgetFor(capableModelName)),
+                    new AdaptiveConcurrencyLimiter(
+                        ModelRoute.CAPABLE, concurrencyLimitProperties, meterRegistry),
+                    circuitBreaker,
+                    retry,
+                    deadline,
+                    hedgingProperties,
+                    modelCallExecutor,
+                    hedgeExecutor,
+                    meterRegistry)));
+    return new ModelRouter(
+        routes,
+        routingProperties,
+        chatMemoryProvider,
+        tokenCountEstimator,
+        latencyTracker,
+        meterRegistry);
+  }
+
+  private Assistant createAssistant(
+      ChatModel model,
+      StreamingChatModel streamingModel,
+      ChatMemoryProvider chatMemoryProvider,
+      AdaptiveConcurrencyLimiter concurrencyLimiter,
+      CircuitBreaker circuitBreaker,
+      Retry retry,
+      Duration deadline,
+      HedgingProperties hedgingProperties,
+      Executor modelCallExecutor,
+      Executor hedgeExecutor,
+      MeterRegistry meterRegistry) {
+    // Every attempt of a hedged call holds its own permit, so hedges count against the limit
+    ChatModel limitedModel = new ConcurrencyLimitedChatModel(model, concurrencyLimiter);
+    StreamingChatModel limitedStreamingModel =
+        new ConcurrencyLimitedStreamingChatModel(
+            new FirstTokenTrackingStreamingChatModel(streamingModel), concurrencyLimiter);
+    if (hedgingProperties.enabled()) {
+      String modelName = model.defaultRequestParameters().modelName();
+      limitedModel =
+          new HedgingChatModel(
+              limitedModel,
+              new HedgingPolicy(modelName, "blocking", hedgingProperties, meterRegistry),
+              hedgeExecutor);
+      limitedStreamingModel =
+          new HedgingStreamingChatModel(
+              limitedStreamingModel,
+              new HedgingPolicy(modelName, "streaming", hedgingProperties, meterRegistry),
+              hedgeExecutor);
+    }
+    return AiServices.builder(Assistant.class)
+        .chatModel(
+            new ResilientChatModel(
+                limitedModel, circuitBreaker, retry, deadline, modelCallExecutor))
+        .streamingChatModel(new ResilientStreamingChatModel(limitedStreamingModel, circuitBreaker))
+        .chatMemoryProvider(chatMemoryProvider)
+        .build();
   }
 }
@@ -1,19 +1,80 @@
 package nl.markpost.aiassistant.config;
 
-import dev.langchain4j.memory.ChatMemory;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
-import nl.markpost.aiassistant.service.CustomChatMemoryStore;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import nl.markpost.aiassistant.repository.ChatMessageRepository;
+import nl.markpost.aiassistant.repository.ChatSessionRepository;
+import nl.markpost.aiassistant.service.CachedChatMemoryStore;
+import nl.markpost.aiassistant.service.SessionChatMemoryProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+@Slf4j
 @Configuration
+@EnableConfigurationProperties(ContextProperties.class)
 public class ChatMemoryConfig {
 
+  /** Model whose tokenizer is used for models unknown to the tokenizer library. */
+  private static final String FALLBACK_TOKENIZER_MODEL = "gpt-4o";
+
+  @Value("${openai.model-name}")
+  private String modelName;
+
+  @Value("${openai.capable-model-name}")
+  private String capableModelName;
+
+  @Bean
+  public CachedChatMemoryStore chatMemoryStore(
+      ChatMessageRepository chatMessageRepository,
+      ChatSessionRepository chatSessionRepository,
+      MeterRegistry meterRegistry,
+      ContextProperties contextProperties,
+      @Value("${assistant.memory.max-messages:50}") int maxMessages,
+      @Value("${assistant.memory.max-sessions:1000}") long maxSessions,
+      @Value("${assistant.memory.idle-timeout:30m}") Duration idleTimeout) {
+    return new CachedChatMemoryStore(
+        chatMessageRepository,
+        chatSessionRepository,
+        meterRegistry,
+        maxMessages,
+        windowBudget(contextProperties),
+        maxSessions,
+        idleTimeout);
+  }
+
   @Bean
-  public ChatMemory chatMemory() {
-    return MessageWindowChatMemory.builder()
-        .maxMessages(10)
-        .chatMemoryStore(new CustomChatMemoryStore())
-        .build();
+  public TokenCountEstimator tokenCountEstimator() {
+    try {
+      return new OpenAiTokenCountEstimator(modelName);
+    } catch (IllegalArgumentException e) {
+      log.warn(
+          "No tokenizer known for model {}, estimating tokens as for {}",
+          modelName,
+          FALLBACK_TOKENIZER_MODEL);
+      return new OpenAiTokenCountEstimator(FALLBACK_TOKENIZER_MODEL);
+    }
+  }
+
+  @Bean
+  public SessionChatMemoryProvider chatMemoryProvider(
+      CachedChatMemoryStore chatMemoryStore,
+      TokenCountEstimator tokenCountEstimator,
+      ContextProperties contextProperties) {
+    return new SessionChatMemoryProvider(
+        chatMemoryStore, tokenCountEstimator, windowBudget(contextProperties));
+  }
+
+  /**
+   * Returns the token budget of the session windows: the largest budget of the fast and the capable
+   * model, so the capable model gets its full context while the fast model reads its part of it.
+   */
+  private int windowBudget(ContextProperties contextProperties) {
+    return Math.max(
+        contextProperties.budgetFor(modelName), contextProperties.budgetFor(capableModelName));
   }
 }
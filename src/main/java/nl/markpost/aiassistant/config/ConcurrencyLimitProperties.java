@@ -0,0 +1,22 @@
+package nl.markpost.aiassistant.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration of the adaptive limit on concurrent calls to the language model of each route.
+ *
+ * @param initialLimit the limit before any call has been made
+ * @param minLimit the lowest the limit shrinks to under overload
+ * @param maxLimit the highest the limit grows to
+ * @param backoffRatio the factor the limit is multiplied by on overload
+ * @param latencyTolerance how many times the baseline latency a call may take before it counts as
+ *     overload
+ */
+@ConfigurationProperties("assistant.concurrency-limit")
+public record ConcurrencyLimitProperties(
+    @DefaultValue("20") int initialLimit,
+    @DefaultValue("2") int minLimit,
+    @DefaultValue("200") int maxLimit,
+    @DefaultValue("0.9") double backoffRatio,
+    @DefaultValue("2.0") double latencyTolerance) {}
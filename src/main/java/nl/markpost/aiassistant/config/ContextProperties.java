@@ -0,0 +1,27 @@
+package nl.markpost.aiassistant.config;
+
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Token budgets of the context sent to the language model, per model name. Models without a budget
+ * of their own get the default budget.
+ *
+ * @param defaultBudget the token budget of models without a budget of their own
+ * @param budgets the token budget per model name
+ */
+@ConfigurationProperties("assistant.context")
+public record ContextProperties(
+    @DefaultValue("4000") int defaultBudget, @DefaultValue Map<String, Integer> budgets) {
+
+  /**
+   * Returns the token budget of the given model.
+   *
+   * @param modelName the name of the model
+   * @return the token budget of the context sent to the model
+   */
+  public int budgetFor(String modelName) {
+    return budgets.getOrDefault(modelName, defaultBudget);
+  }
+}
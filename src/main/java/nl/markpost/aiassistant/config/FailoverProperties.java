@@ -0,0 +1,43 @@
+package nl.markpost.aiassistant.config;
+
+import java.time.Duration;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration of the providers the assistant fails over to when OpenAI degrades. Providers are
+ * tried in order after OpenAI; without providers there is no failover.
+ *
+ * @param providers the OpenAI-compatible providers to fail over to, in order of preference
+ * @param failBack how long a recovered provider takes to get its full share of traffic back
+ */
+@ConfigurationProperties("assistant.failover")
+public record FailoverProperties(
+    @DefaultValue List<Provider> providers, @DefaultValue("5m") Duration failBack) {
+
+  /**
+   * An OpenAI-compatible provider, such as a locally hosted model server.
+   *
+   * @param name the name of the provider, used in metrics and for its circuit breaker
+   * @param baseUrl the base URL of the provider's OpenAI-compatible API
+   * @param apiKey the API key; servers without authentication accept any key
+   * @param modelName the model answering in place of the fast OpenAI model
+   * @param capableModelName the model answering in place of the capable OpenAI model; defaults to
+   *     the fast model
+   * @param timeout the timeout of a single request to the provider
+   */
+  public record Provider(
+      String name,
+      String baseUrl,
+      @DefaultValue("none") String apiKey,
+      String modelName,
+      String capableModelName,
+      @DefaultValue("60s") Duration timeout) {
+
+    @Override
+    public String capableModelName() {
+      return capableModelName != null ? capableModelName : modelName;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package nl.markpost.aiassistant.config;
+
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import java.util.List;
+import nl.markpost.aiassistant.service.FakeChatModel;
+import nl.markpost.aiassistant.service.FakeLanguageModel;
+import nl.markpost.aiassistant.service.FakeStreamingChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Fake models replacing the OpenAI models under the {@code fake-llm} profile, so the service can be
+ * load tested without calling, or paying for, a real provider. The models keep the configured model
+ * names, so routing, caching and metrics behave as in production.
+ */
+@Configuration
+@Profile("fake-llm")
+@EnableConfigurationProperties(FakeModelProperties.class)
+public class FakeModelConfig {
+
+  @Value("${openai.model-name}")
+  private String modelName;
+
+  @Value("${openai.capable-model-name}")
+  private String capableModelName;
+
+  @Bean
+  public FakeLanguageModel fakeLanguageModel(FakeModelProperties properties) {
+    return new FakeLanguageModel(properties);
+  }
+
+  @Bean
+  @Primary
+  public ChatModel chatModel(
+      FakeLanguageModel fakeLanguageModel, List<ChatModelListener> listeners) {
+    return new FakeChatModel(modelName, fakeLanguageModel, listeners);
+  }
+
+  @Bean
+  @Primary
+  public StreamingChatModel streamingChatModel(
+      FakeLanguageModel fakeLanguageModel, List<ChatModelListener> listeners) {
+    return new FakeStreamingChatModel(modelName, fakeLanguageModel, listeners);
+  }
+
+  @Bean
+  public ChatModel capableChatModel(
+      FakeLanguageModel fakeLanguageModel, List<ChatModelListener> listeners) {
+    return new FakeChatModel(capableModelName, fakeLanguageModel, listeners);
+  }
+
+  @Bean
+  public StreamingChatModel capableStreamingChatModel(
+      FakeLanguageModel fakeLanguageModel, List<ChatModelListener> listeners) {
+    return new FakeStreamingChatModel(capableModelName, fakeLanguageModel, listeners);
+  }
+}
@@ -0,0 +1,27 @@
+package nl.markpost.aiassistant.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Behavior of the fake language models used for load testing without a real provider.
+ *
+ * @param latencyMedian the median time to the first token
+ * @param latencyP99 the 99th percentile of the time to the first token; latencies follow a
+ *     log-normal distribution through the median and this percentile
+ * @param tokensPerSecond the rate at which response tokens are generated
+ * @param responseTokens the number of tokens in every response
+ * @param rateLimitRate the fraction of calls rejected as rate limited (HTTP 429)
+ * @param errorRate the fraction of calls failing with a server error (HTTP 500)
+ * @param seed the seed of the random latencies and failures, for reproducible runs
+ */
+@ConfigurationProperties("assistant.fake-model")
+public record FakeModelProperties(
+    @DefaultValue("800ms") Duration latencyMedian,
+    @DefaultValue("3s") Duration latencyP99,
+    @DefaultValue("50") double tokensPerSecond,
+    @DefaultValue("100") int responseTokens,
+    @DefaultValue("0") double rateLimitRate,
+    @DefaultValue("0") double errorRate,
+    @DefaultValue("42") long seed) {}
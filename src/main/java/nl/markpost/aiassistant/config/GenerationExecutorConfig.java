@@ -0,0 +1,85 @@
+package nl.markpost.aiassistant.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class GenerationExecutorConfig {
+
+  /**
+   * Executor generating responses for message jobs. Its pool and queue are bounded separately from
+   * the servlet threads, so slow generations cannot starve other requests. Work beyond the queue
+   * capacity is rejected instead of queued. With virtual threads enabled the pool still bounds the
+   * number of concurrent generations, but its workers are virtual threads.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor generationExecutor(
+      @Value("${assistant.generation.pool-size:8}") int poolSize,
+      @Value("${assistant.generation.queue-capacity:100}") int queueCapacity,
+      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(poolSize);
+    executor.setMaxPoolSize(poolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("generation-");
+    executor.setVirtualThreads(virtualThreads);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationSeconds(30);
+    return executor;
+  }
+
+  /**
+   * Executor summarizing long conversations in the background. Summaries are not urgent, so the
+   * pool is small; work beyond the queue capacity is rejected and retried after a later message.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor summaryExecutor(
+      @Value("${assistant.summary.pool-size:1}") int poolSize,
+      @Value("${assistant.summary.queue-capacity:100}") int queueCapacity,
+      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(poolSize);
+    executor.setMaxPoolSize(poolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("summary-");
+    executor.setVirtualThreads(virtualThreads);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    return executor;
+  }
+
+  /**
+   * Executor running the attempts of blocking calls to the language model, so they can be bounded
+   * by the deadline of the call. Attempts mostly wait on the provider; no more run at once than the
+   * concurrency limit of the language model can admit, and further attempts wait for a slot.
+   */
+  @Bean
+  public SimpleAsyncTaskExecutor modelCallExecutor(
+      @Value("${assistant.concurrency-limit.max-limit:200}") int concurrencyLimit,
+      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+    return modelExecutor("model-call-", concurrencyLimit, virtualThreads);
+  }
+
+  /**
+   * Executor running the attempts of hedged calls to the language model. Kept apart from the
+   * executor of the calls they are part of, so a call never waits for a slot held by itself.
+   */
+  @Bean
+  public SimpleAsyncTaskExecutor hedgeExecutor(
+      @Value("${assistant.concurrency-limit.max-limit:200}") int concurrencyLimit,
+      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+    return modelExecutor("hedge-", concurrencyLimit, virtualThreads);
+  }
+
+  private static SimpleAsyncTaskExecutor modelExecutor(
+      String threadNamePrefix, int concurrencyLimit, boolean virtualThreads) {
+    SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+    executor.setVirtualThreads(virtualThreads);
+    executor.setConcurrencyLimit(concurrencyLimit);
+    return executor;
+  }
+}
@@ -0,0 +1,27 @@
+package nl.markpost.aiassistant.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration of hedged calls to the language model: a call that has not answered, or streamed
+ * its first token, within a percentile of recent latencies is sent a second time, and the first
+ * attempt to answer wins.
+ *
+ * @param enabled whether calls are hedged
+ * @param percentile the percentile of recent latencies after which a call is hedged
+ * @param minDelay the minimum time before a call is hedged, however fast recent calls were
+ * @param maxExtraLoad the maximum fraction of calls that may be hedged, bounding the extra load on
+ *     the provider
+ * @param window the number of recent latencies the percentile is taken from
+ * @param minSamples the number of latencies needed before calls are hedged
+ */
+@ConfigurationProperties("assistant.hedging")
+public record HedgingProperties(
+    @DefaultValue("false") boolean enabled,
+    @DefaultValue("0.95") double percentile,
+    @DefaultValue("250ms") Duration minDelay,
+    @DefaultValue("0.1") double maxExtraLoad,
+    @DefaultValue("1000") int window,
+    @DefaultValue("50") int minSamples) {}
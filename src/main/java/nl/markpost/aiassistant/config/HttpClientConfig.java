@@ -0,0 +1,209 @@
+package nl.markpost.aiassistant.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The HTTP client shared by the language models of all providers, so calls reuse pooled, kept-alive
+ * connections instead of every model opening its own. Over HTTP/2 the calls to a provider are
+ * multiplexed over a single connection.
+ *
+ * <p>The idle timeout and size of the connection pool are system properties of the JDK client
+ * ({@code jdk.httpclient.keepalive.timeout}, {@code jdk.httpclient.keepalive.timeout.h2} and {@code
+ * jdk.httpclient.connectionPoolSize}), read once per JVM when the client is first used. They are
+ * therefore set as {@code -D} JVM options, as in the Dockerfile, not by the application.
+ *
+ * <p>The JDK client does not expose its connection pool, so the {@code chat.http.tls.handshakes}
+ * counter counts the TLS handshakes it starts, tagged by host. With the pool working it levels off
+ * while the number of calls keeps growing. Plain HTTP connections, such as to a local model server,
+ * are not counted.
+ */
+@Configuration
+@EnableConfigurationProperties(HttpClientProperties.class)
+public class HttpClientConfig {
+
+  private static final String TLS_HANDSHAKES_METRIC = "chat.http.tls.handshakes";
+
+  @Bean
+  public HttpClient languageModelHttpClient(
+      HttpClientProperties properties, MeterRegistry meterRegistry)
+      throws NoSuchAlgorithmException {
+    return HttpClient.newBuilder()
+        .version(properties.http2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+        .connectTimeout(properties.connectTimeout())
+        .sslContext(new HandshakeCountingSslContext(SSLContext.getDefault(), meterRegistry))
+        .build();
+  }
+
+  /**
+   * Builder handing out the shared client, for clients such as langchain4j's that build their own.
+   * The connect timeout of the shared client takes precedence over one set on the builder, which is
+   * ignored; read timeouts are set per request and stay per provider. Any other setting would apply
+   * to every provider and is rejected.
+   *
+   * @param languageModelHttpClient the shared HTTP client
+   * @return a builder whose {@link HttpClient.Builder#build()} returns the shared client
+   */
+  public static HttpClient.Builder sharing(HttpClient languageModelHttpClient) {
+    return new SharedHttpClientBuilder(languageModelHttpClient);
+  }
+
+  /** SSL context counting the engines it creates, i.e. every TLS handshake of the client. */
+  static final class HandshakeCountingSslContext extends SSLContext {
+
+    HandshakeCountingSslContext(SSLContext delegate, MeterRegistry meterRegistry) {
+      super(
+          new CountingSpi(delegate, meterRegistry), delegate.getProvider(), delegate.getProtocol());
+    }
+  }
+
+  private static final class CountingSpi extends SSLContextSpi {
+
+    private final SSLContext delegate;
+    private final MeterRegistry meterRegistry;
+
+    private CountingSpi(SSLContext delegate, MeterRegistry meterRegistry) {
+      this.delegate = delegate;
+      this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr)
+        throws KeyManagementException {
+      delegate.init(km, tm, sr);
+    }
+
+    @Override
+    protected SSLSocketFactory engineGetSocketFactory() {
+      return delegate.getSocketFactory();
+    }
+
+    @Override
+    protected SSLServerSocketFactory engineGetServerSocketFactory() {
+      return delegate.getServerSocketFactory();
+    }
+
+    @Override
+    protected SSLEngine engineCreateSSLEngine() {
+      return delegate.createSSLEngine();
+    }
+
+    @Override
+    protected SSLEngine engineCreateSSLEngine(String host, int port) {
+      Counter.builder(TLS_HANDSHAKES_METRIC)
+          .description("TLS handshakes started with language model providers")
+          .tag("host", String.valueOf(host))
+          .register(meterRegistry)
+          .increment();
+      return delegate.createSSLEngine(host, port);
+    }
+
+    @Override
+    protected SSLSessionContext engineGetServerSessionContext() {
+      return delegate.getServerSessionContext();
+    }
+
+    @Override
+    protected SSLSessionContext engineGetClientSessionContext() {
+      return delegate.getClientSessionContext();
+    }
+
+    @Override
+    protected SSLParameters engineGetDefaultSSLParameters() {
+      return delegate.getDefaultSSLParameters();
+    }
+
+    @Override
+    protected SSLParameters engineGetSupportedSSLParameters() {
+      return delegate.getSupportedSSLParameters();
+    }
+  }
+
+  private record SharedHttpClientBuilder(HttpClient client) implements HttpClient.Builder {
+
+    @Override
+    public HttpClient.Builder cookieHandler(CookieHandler cookieHandler) {
+      throw unsupported("cookie handler");
+    }
+
+    @Override
+    public HttpClient.Builder connectTimeout(Duration duration) {
+      // The connect timeout of the shared client applies to all providers
+      return this;
+    }
+
+    @Override
+    public HttpClient.Builder sslContext(SSLContext sslContext) {
+      throw unsupported("SSL context");
+    }
+
+    @Override
+    public HttpClient.Builder sslParameters(SSLParameters sslParameters) {
+      throw unsupported("SSL parameters");
+    }
+
+    @Override
+    public HttpClient.Builder executor(Executor executor) {
+      throw unsupported("executor");
+    }
+
+    @Override
+    public HttpClient.Builder followRedirects(HttpClient.Redirect policy) {
+      throw unsupported("redirect policy");
+    }
+
+    @Override
+    public HttpClient.Builder version(HttpClient.Version version) {
+      throw unsupported("HTTP version");
+    }
+
+    @Override
+    public HttpClient.Builder priority(int priority) {
+      throw unsupported("priority");
+    }
+
+    @Override
+    public HttpClient.Builder proxy(ProxySelector proxySelector) {
+      throw unsupported("proxy");
+    }
+
+    @Override
+    public HttpClient.Builder authenticator(Authenticator authenticator) {
+      throw unsupported("authenticator");
+    }
+
+    @Override
+    public HttpClient build() {
+      return client;
+    }
+
+    private static UnsupportedOperationException unsupported(String setting) {
+      return new UnsupportedOperationException(
+          "The "
+              + setting
+              + " of the shared language model HTTP client cannot be set per provider;"
+              + " configure it in HttpClientConfig");
+    }
+  }
+}
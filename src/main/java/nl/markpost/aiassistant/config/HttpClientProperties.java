@@ -0,0 +1,18 @@
+package nl.markpost.aiassistant.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration of the HTTP client shared by all language model providers. Read timeouts are set
+ * per provider, as they depend on the model. The keep-alive and pool size are JVM options of the
+ * JDK client, see {@link HttpClientConfig}.
+ *
+ * @param connectTimeout the maximum time to establish a connection, for all providers
+ * @param http2 whether HTTP/2 is negotiated, multiplexing calls over a single connection per
+ *     provider; providers without HTTP/2 support are served over HTTP/1.1 either way
+ */
+@ConfigurationProperties("assistant.http-client")
+public record HttpClientProperties(
+    @DefaultValue("10s") Duration connectTimeout, @DefaultValue("true") boolean http2) {}
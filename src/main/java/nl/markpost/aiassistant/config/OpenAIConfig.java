@@ -1,19 +1,211 @@
 package nl.markpost.aiassistant.config;
 
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import dev.langchain4j.http.client.jdk.JdkHttpClientBuilder;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.openai.OpenAiChatModel;
-import dev.langchain4j.model.openai.OpenAiChatModelName;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
+import nl.markpost.aiassistant.config.FailoverProperties.Provider;
+import nl.markpost.aiassistant.service.FailoverChatModel;
+import nl.markpost.aiassistant.service.FailoverStreamingChatModel;
+import nl.markpost.aiassistant.service.ProviderHealthRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
 
+/**
+ * OpenAI models. The primary models are the fast ones answering most messages; the capable models
+ * answer the demanding messages picked by the model router. With failover providers configured,
+ * every model fails over from OpenAI to the same kind of model of the other providers. Replaced by
+ * the fake models of {@link FakeModelConfig} under the {@code fake-llm} profile. All models share
+ * the pooled HTTP client of {@link HttpClientConfig}.
+ */
 @Configuration
+@Profile("!fake-llm")
+@RequiredArgsConstructor
 public class OpenAIConfig {
 
+  /** Name of OpenAI among the providers, for its health and metrics. */
+  private static final String OPENAI = "openai";
+
+  private final HttpClient languageModelHttpClient;
+
+  @Value("${openai.api-key}")
+  private String apiKey;
+
+  /** Base URL of the OpenAI API; pointed at a stand-in server for load tests. */
+  @Value("${openai.base-url:https://api.openai.com/v1}")
+  private String baseUrl;
+
+  @Value("${openai.model-name}")
+  private String modelName;
+
+  @Value("${openai.capable-model-name}")
+  private String capableModelName;
+
+  /** Timeout of a single request; retries are handled by the resilience layer, not the client. */
+  @Value("${openai.timeout:60s}")
+  private Duration timeout;
+
+  @Bean
+  @Primary
+  public ChatModel chatModel(
+      List<ChatModelListener> listeners,
+      FailoverProperties failoverProperties,
+      ProviderHealthRegistry providerHealthRegistry) {
+    return chatModel(
+        modelName, Provider::modelName, listeners, failoverProperties, providerHealthRegistry);
+  }
+
+  @Bean
+  @Primary
+  public StreamingChatModel streamingChatModel(
+      List<ChatModelListener> listeners,
+      FailoverProperties failoverProperties,
+      ProviderHealthRegistry providerHealthRegistry) {
+    return streamingChatModel(
+        modelName, Provider::modelName, listeners, failoverProperties, providerHealthRegistry);
+  }
+
+  @Bean
+  public ChatModel capableChatModel(
+      List<ChatModelListener> listeners,
+      FailoverProperties failoverProperties,
+      ProviderHealthRegistry providerHealthRegistry) {
+    return chatModel(
+        capableModelName,
+        Provider::capableModelName,
+        listeners,
+        failoverProperties,
+        providerHealthRegistry);
+  }
+
   @Bean
-  public OpenAiChatModel openAiChatModel(@Value("${openai.api-key}") String apiKey) {
+  public StreamingChatModel capableStreamingChatModel(
+      List<ChatModelListener> listeners,
+      FailoverProperties failoverProperties,
+      ProviderHealthRegistry providerHealthRegistry) {
+    return streamingChatModel(
+        capableModelName,
+        Provider::capableModelName,
+        listeners,
+        failoverProperties,
+        providerHealthRegistry);
+  }
+
+  /**
+   * Creates the OpenAI chat model with the given name, failing over to the model picked from every
+   * failover provider.
+   */
+  private ChatModel chatModel(
+      String openAiModelName,
+      Function<Provider, String> providerModelName,
+      List<ChatModelListener> listeners,
+      FailoverProperties failoverProperties,
+      ProviderHealthRegistry providerHealthRegistry) {
+    ChatModel openAiModel = openAiChatModel(baseUrl, apiKey, openAiModelName, timeout, listeners);
+    if (failoverProperties.providers().isEmpty()) {
+      return openAiModel;
+    }
+    List<FailoverChatModel.Provider> providers = new ArrayList<>();
+    providers.add(
+        new FailoverChatModel.Provider(providerHealthRegistry.health(OPENAI), openAiModel));
+    for (Provider provider : failoverProperties.providers()) {
+      providers.add(
+          new FailoverChatModel.Provider(
+              providerHealthRegistry.health(provider.name()),
+              openAiChatModel(
+                  provider.baseUrl(),
+                  provider.apiKey(),
+                  providerModelName.apply(provider),
+                  provider.timeout(),
+                  listeners)));
+    }
+    return new FailoverChatModel(providers);
+  }
+
+  /**
+   * Creates the OpenAI streaming chat model with the given name, failing over to the model picked
+   * from every failover provider.
+   */
+  private StreamingChatModel streamingChatModel(
+      String openAiModelName,
+      Function<Provider, String> providerModelName,
+      List<ChatModelListener> listeners,
+      FailoverProperties failoverProperties,
+      ProviderHealthRegistry providerHealthRegistry) {
+    StreamingChatModel openAiModel =
+        openAiStreamingChatModel(baseUrl, apiKey, openAiModelName, timeout, listeners);
+    if (failoverProperties.providers().isEmpty()) {
+      return openAiModel;
+    }
+    List<FailoverStreamingChatModel.Provider> providers = new ArrayList<>();
+    providers.add(
+        new FailoverStreamingChatModel.Provider(
+            providerHealthRegistry.health(OPENAI), openAiModel));
+    for (Provider provider : failoverProperties.providers()) {
+      providers.add(
+          new FailoverStreamingChatModel.Provider(
+              providerHealthRegistry.health(provider.name()),
+              openAiStreamingChatModel(
+                  provider.baseUrl(),
+                  provider.apiKey(),
+                  providerModelName.apply(provider),
+                  provider.timeout(),
+                  listeners)));
+    }
+    return new FailoverStreamingChatModel(providers);
+  }
+
+  private OpenAiChatModel openAiChatModel(
+      String baseUrl,
+      String apiKey,
+      String modelName,
+      Duration timeout,
+      List<ChatModelListener> listeners) {
     return OpenAiChatModel.builder()
+        .baseUrl(baseUrl)
         .apiKey(apiKey)
-        .modelName(OpenAiChatModelName.GPT_5_NANO)
+        .modelName(modelName)
+        .httpClientBuilder(httpClientBuilder())
+        .timeout(timeout)
+        .maxRetries(0)
+        .listeners(listeners)
         .build();
   }
+
+  private OpenAiStreamingChatModel openAiStreamingChatModel(
+      String baseUrl,
+      String apiKey,
+      String modelName,
+      Duration timeout,
+      List<ChatModelListener> listeners) {
+    return OpenAiStreamingChatModel.builder()
+        .baseUrl(baseUrl)
+        .apiKey(apiKey)
+        .modelName(modelName)
+        .httpClientBuilder(httpClientBuilder())
+        .timeout(timeout)
+        .listeners(listeners)
+        .build();
+  }
+
+  /**
+   * Client builder handing out the shared HTTP client; the read timeout stays per model, as it is
+   * applied per request.
+   */
+  private JdkHttpClientBuilder httpClientBuilder() {
+    return JdkHttpClient.builder()
+        .httpClientBuilder(HttpClientConfig.sharing(languageModelHttpClient));
+  }
 }
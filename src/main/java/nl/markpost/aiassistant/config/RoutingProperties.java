@@ -0,0 +1,26 @@
+package nl.markpost.aiassistant.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Thresholds for routing messages between the fast and the capable model. A message goes to the
+ * capable model when its prompt or conversation exceeds a threshold; otherwise it goes to the fast
+ * model, unless the fast model is currently much slower than the capable one.
+ *
+ * @param enabled whether messages are routed; when disabled every message goes to the fast model
+ * @param capablePromptTokens the prompt size, in tokens, above which the capable model is used
+ * @param capableDepth the number of messages in context from which the capable model is used
+ * @param latencyTolerance how many times slower per generated token than the capable model the fast
+ *     model may get before simple turns move to the capable model
+ * @param latencyMaxAge how long the latency of a model is used after its last response; once the
+ *     fast model's latency has aged out, simple turns go to the fast model again
+ */
+@ConfigurationProperties("assistant.routing")
+public record RoutingProperties(
+    @DefaultValue("false") boolean enabled,
+    @DefaultValue("2000") int capablePromptTokens,
+    @DefaultValue("20") int capableDepth,
+    @DefaultValue("2.0") double latencyTolerance,
+    @DefaultValue("60s") Duration latencyMaxAge) {}
@@ -1,5 +1,6 @@
 package nl.markpost.aiassistant.config;
 
+import jakarta.servlet.DispatcherType;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import nl.markpost.aiassistant.filter.JwtAuthenticationFilter;
@@ -42,6 +43,8 @@ public class SecurityConfig {
     config.setAllowedOriginPatterns(
         allowedOriginPatterns != null ? List.of(allowedOriginPatterns) : List.of());
     config.setAllowedHeaders(List.of("*"));
+    // Page cursors of the session list and message history
+    config.setExposedHeaders(List.of("Before-Cursor", "After-Cursor"));
     config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
     UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
     source.registerCorsConfiguration("/**", config);
@@ -72,6 +75,10 @@ public class SecurityConfig {
                 authz
                     .requestMatchers(HttpMethod.OPTIONS, "/**")
                     .permitAll()
+                    // Streamed responses complete on an async dispatch of an already
+                    // authenticated request
+                    .dispatcherTypeMatchers(DispatcherType.ASYNC)
+                    .permitAll()
                     .requestMatchers(excludedPaths)
                     .permitAll()
                     .anyRequest()
@@ -9,11 +9,15 @@ import org.springframework.http.HttpStatus;
 public enum GenericErrorCodes {
   BAD_REQUEST("BAD_REQUEST", "Bad request", HttpStatus.BAD_REQUEST),
   NOT_FOUND("NOT_FOUND", "Not found", HttpStatus.NOT_FOUND),
+  CONFLICT("CONFLICT", "Conflict", HttpStatus.CONFLICT),
+  UNPROCESSABLE_ENTITY(
+      "UNPROCESSABLE_ENTITY", "Unprocessable entity", HttpStatus.UNPROCESSABLE_CONTENT),
   FORBIDDEN("FORBIDDEN", "Forbidden", HttpStatus.FORBIDDEN),
   UNAUTHORIZED("UNAUTHORIZED", "Unauthorized", HttpStatus.UNAUTHORIZED),
   INTERNAL_SERVER_ERROR(
       "INTERNAL_SERVER_ERROR", "Internal server error", HttpStatus.INTERNAL_SERVER_ERROR),
-  SERVICE_UNAVAILABLE("SERVICE_UNAVAILABLE", "Service unavailable", HttpStatus.SERVICE_UNAVAILABLE);
+  SERVICE_UNAVAILABLE("SERVICE_UNAVAILABLE", "Service unavailable", HttpStatus.SERVICE_UNAVAILABLE),
+  GENERATION_CANCELLED("GENERATION_CANCELLED", "Generation cancelled", HttpStatus.CONFLICT);
 
   private final String code;
   private final String message;
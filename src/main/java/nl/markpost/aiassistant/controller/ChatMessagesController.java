@@ -1,60 +1,290 @@
 package nl.markpost.aiassistant.controller;
 
+import jakarta.validation.Valid;
 import java.util.List;
+import java.util.concurrent.Callable;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import nl.markpost.aiassistant.api.controller.MessagesApi;
 import nl.markpost.aiassistant.api.model.Message;
+import nl.markpost.aiassistant.api.model.MessageJob;
 import nl.markpost.aiassistant.api.model.SendMessageRequest;
+import nl.markpost.aiassistant.constant.GenericErrorCodes;
+import nl.markpost.aiassistant.exception.GenericException;
+import nl.markpost.aiassistant.mapper.ErrorMapper;
 import nl.markpost.aiassistant.mapper.SessionApiMapper;
+import nl.markpost.aiassistant.models.CursorPageDTO;
 import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.MessageJobDTO;
+import nl.markpost.aiassistant.models.ModelRoute;
+import nl.markpost.aiassistant.models.StreamEventDTO;
+import nl.markpost.aiassistant.service.ChatHistoryExporter;
 import nl.markpost.aiassistant.service.ChatMessagesService;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
 /**
  * Controller for managing chat sessions. Implements the generated SessionsApi interface from
  * OpenAPI specification.
  */
+@Slf4j
 @Controller
 @RequestMapping("/api/v1")
 @RequiredArgsConstructor
 public class ChatMessagesController implements MessagesApi {
 
   private final ChatMessagesService chatMessagesService;
+  private final ChatHistoryExporter chatHistoryExporter;
   private final SessionApiMapper sessionApiMapper;
+  private final ErrorMapper errorMapper;
 
   /**
-   * Retrieves the message history for a specific chat session.
+   * Retrieves a page of the message history for a specific chat session.
    *
    * @param sessionId the ID of the chat session
-   * @return a ResponseEntity containing a list of Messages
+   * @param limit the maximum number of messages of the page
+   * @param before the cursor to fetch the messages before, if any
+   * @param after the cursor to fetch the messages after, if any
+   * @return a ResponseEntity containing a list of Messages, with the cursors of the page as headers
    */
   @Override
-  public ResponseEntity<List<Message>> getSessionHistory(String sessionId) {
+  public ResponseEntity<List<Message>> getSessionHistory(
+      String sessionId, Integer limit, String before, String after) {
     String userId = getUserId();
-    List<MessageDTO> historyDTO = chatMessagesService.getSessionHistory(sessionId, userId);
-    List<Message> response = sessionApiMapper.toApiMessageList(historyDTO);
-    return ResponseEntity.ok(response);
+    CursorPageDTO<MessageDTO> historyDTO =
+        chatMessagesService.getSessionHistory(sessionId, userId, limit, before, after);
+    List<Message> response = sessionApiMapper.toApiMessageList(historyDTO.getItems());
+    return ResponseEntity.ok().headers(CursorHeaders.of(historyDTO)).body(response);
   }
 
   /**
-   * Sends a message in a chat session.
+   * Exports the full message history of a chat session as newline-delimited JSON. The session is
+   * checked up front, so a missing session still gets an error response; the messages are then
+   * streamed from the database to the client.
+   *
+   * <p>Mapped manually because the OpenAPI generator cannot produce a streaming signature; the
+   * operation is documented in the specification as internal.
+   *
+   * @param sessionId the ID of the chat session
+   * @return a ResponseEntity streaming the messages, one per line
+   */
+  @GetMapping(value = "/sessions/{sessionId}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportSessionHistory(
+      @PathVariable("sessionId") String sessionId) {
+    String userId = getUserId();
+    chatHistoryExporter.checkSession(sessionId, userId);
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment()
+                .filename("session-" + sessionId + ".ndjson")
+                .build()
+                .toString())
+        .body(output -> chatHistoryExporter.export(sessionId, output));
+  }
+
+  /**
+   * Sends a message in a chat session. The response is generated asynchronously, releasing the
+   * request thread: when the client disconnects or the request times out, the web container
+   * interrupts the generation, which cancels the call to the language model.
+   *
+   * @param sessionId the ID of the chat session
+   * @param sendMessageRequest the request body containing the message
+   * @param idempotencyKey the client's key for this message, if any
+   * @return a Callable producing a ResponseEntity containing the sent Message
+   */
+  @Override
+  public Callable<ResponseEntity<Message>> sendMessage(
+      String sessionId, SendMessageRequest sendMessageRequest, String idempotencyKey) {
+    String userId = getUserId();
+    String messageContent = sendMessageRequest.getMessage();
+    boolean bypassCache = Boolean.TRUE.equals(sendMessageRequest.getBypassCache());
+    ModelRoute modelHint = sessionApiMapper.toModelRoute(sendMessageRequest.getModel());
+    return () -> {
+      MessageDTO messageDTO =
+          chatMessagesService.sendMessage(
+              sessionId, userId, messageContent, bypassCache, modelHint, idempotencyKey);
+      Message response = sessionApiMapper.toApiModel(messageDTO);
+      return ResponseEntity.ok(response);
+    };
+  }
+
+  /**
+   * Stops the responses being generated in a chat session.
+   *
+   * @param sessionId the ID of the chat session
+   * @param persistPartial whether to store the partial response of a stream generated so far
+   * @return a ResponseEntity with no content
+   */
+  @Override
+  public ResponseEntity<Void> stopGeneration(String sessionId, Boolean persistPartial) {
+    String userId = getUserId();
+    chatMessagesService.stopGeneration(sessionId, userId, Boolean.TRUE.equals(persistPartial));
+    return ResponseEntity.noContent().build();
+  }
+
+  /**
+   * Sends a message in a chat session and streams the assistant's response as Server-Sent Events.
+   * Emits a {@code token} event per partial response, followed by a single {@code message} event
+   * containing the persisted Message. Failures after the stream has started are reported as an
+   * {@code error} event, since the response status has already been committed.
+   *
+   * <p>Mapped manually because the OpenAPI generator cannot produce a streaming signature; the
+   * operation is documented in the specification as internal.
+   *
+   * @param sessionId the ID of the chat session
+   * @param sendMessageRequest the request body containing the message
+   * @return a Flux of Server-Sent Events
+   */
+  @ResponseBody
+  @PostMapping(
+      value = "/sessions/{sessionId}/messages/stream",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<Object>> streamMessage(
+      @PathVariable("sessionId") String sessionId,
+      @Valid @RequestBody SendMessageRequest sendMessageRequest) {
+    String userId = getUserId();
+    String messageContent = sendMessageRequest.getMessage();
+    return chatMessagesService
+        .streamMessage(
+            sessionId,
+            userId,
+            messageContent,
+            sessionApiMapper.toModelRoute(sendMessageRequest.getModel()))
+        .map(this::toServerSentEvent)
+        .onErrorResume(
+            e -> {
+              log.error("An error occurred while streaming message", e);
+              GenericErrorCodes errorCode =
+                  e instanceof GenericException genericException
+                      ? genericException.getErrorCode()
+                      : GenericErrorCodes.INTERNAL_SERVER_ERROR;
+              return Flux.just(
+                  ServerSentEvent.builder()
+                      .event("error")
+                      .data(errorMapper.from(errorCode, errorCode.getHttpStatus()))
+                      .build());
+            });
+  }
+
+  /**
+   * Sends a message in a chat session and generates the response in the background.
    *
    * @param sessionId the ID of the chat session
    * @param sendMessageRequest the request body containing the message
-   * @return a ResponseEntity containing the sent Message
+   * @return a ResponseEntity containing the accepted MessageJob
    */
   @Override
-  public ResponseEntity<Message> sendMessage(
+  public ResponseEntity<MessageJob> submitMessage(
       String sessionId, SendMessageRequest sendMessageRequest) {
     String userId = getUserId();
     String messageContent = sendMessageRequest.getMessage();
-    MessageDTO messageDTO = chatMessagesService.sendMessage(sessionId, userId, messageContent);
-    Message response = sessionApiMapper.toApiModel(messageDTO);
-    return ResponseEntity.ok(response);
+    boolean bypassCache = Boolean.TRUE.equals(sendMessageRequest.getBypassCache());
+    MessageJobDTO jobDTO =
+        chatMessagesService.submitMessage(
+            sessionId,
+            userId,
+            messageContent,
+            bypassCache,
+            sessionApiMapper.toModelRoute(sendMessageRequest.getModel()));
+    return ResponseEntity.accepted().body(toApiModel(jobDTO));
+  }
+
+  /**
+   * Retrieves the status of a message job.
+   *
+   * @param sessionId the ID of the chat session
+   * @param jobId the ID of the message job
+   * @return a ResponseEntity containing the MessageJob
+   */
+  @Override
+  public ResponseEntity<MessageJob> getMessageJob(String sessionId, String jobId) {
+    String userId = getUserId();
+    MessageJobDTO jobDTO = chatMessagesService.getMessageJob(jobId, sessionId, userId);
+    return ResponseEntity.ok(toApiModel(jobDTO));
+  }
+
+  /**
+   * Subscribes to the result of a message job. Emits a single {@code message} event containing the
+   * generated Message, or an {@code error} event containing an Error, once the job is done.
+   *
+   * <p>Mapped manually like {@link #streamMessage}; the operation is documented in the
+   * specification as internal.
+   *
+   * @param sessionId the ID of the chat session
+   * @param jobId the ID of the message job
+   * @return a Flux of Server-Sent Events
+   */
+  @ResponseBody
+  @GetMapping(
+      value = "/sessions/{sessionId}/messages/jobs/{jobId}/events",
+      produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<Object>> subscribeMessageJob(
+      @PathVariable("sessionId") String sessionId, @PathVariable("jobId") String jobId) {
+    String userId = getUserId();
+    return chatMessagesService
+        .awaitMessageJob(jobId, sessionId, userId)
+        .map(
+            job ->
+                job.getStatus() == MessageJobDTO.Status.COMPLETED
+                    ? ServerSentEvent.builder()
+                        .event("message")
+                        .data(sessionApiMapper.toApiModel(job.getMessage()))
+                        .build()
+                    : ServerSentEvent.builder()
+                        .event("error")
+                        .data(
+                            errorMapper.from(
+                                job.getErrorCode(), job.getErrorCode().getHttpStatus()))
+                        .build())
+        .flux();
+  }
+
+  /**
+   * Helper method to convert a message job into its API model, including the error of a failed job.
+   *
+   * @param jobDTO the message job
+   * @return the MessageJob
+   */
+  private MessageJob toApiModel(MessageJobDTO jobDTO) {
+    MessageJob job = sessionApiMapper.toApiModel(jobDTO);
+    if (jobDTO.getErrorCode() != null) {
+      job.setError(errorMapper.from(jobDTO.getErrorCode(), jobDTO.getErrorCode().getHttpStatus()));
+    }
+    return job;
+  }
+
+  /**
+   * Helper method to convert a stream event into a Server-Sent Event.
+   *
+   * @param event the stream event
+   * @return the Server-Sent Event
+   */
+  private ServerSentEvent<Object> toServerSentEvent(StreamEventDTO event) {
+    return switch (event.getType()) {
+      case TOKEN -> ServerSentEvent.builder().event("token").data(event.getContent()).build();
+      case MESSAGE ->
+          ServerSentEvent.builder()
+              .event("message")
+              .data(sessionApiMapper.toApiModel(event.getMessage()))
+              .build();
+    };
   }
 
   /**
@@ -8,6 +8,7 @@ import nl.markpost.aiassistant.api.model.CreateSessionRequest;
 import nl.markpost.aiassistant.api.model.UpdateSessionRequest;
 import nl.markpost.aiassistant.mapper.SessionApiMapper;
 import nl.markpost.aiassistant.models.ChatSessionDTO;
+import nl.markpost.aiassistant.models.CursorPageDTO;
 import nl.markpost.aiassistant.service.ChatSessionService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -43,30 +44,41 @@ public class ChatSessionController implements SessionsApi {
   }
 
   /**
-   * Retrieves all chat sessions for the authenticated user.
+   * Retrieves a page of the chat sessions for the authenticated user.
    *
-   * @return a ResponseEntity containing a list of ChatSessions
+   * @param limit the maximum number of sessions of the page
+   * @param before the cursor to fetch the sessions before, if any
+   * @param after the cursor to fetch the sessions after, if any
+   * @return a ResponseEntity containing a list of ChatSessions, with the cursors of the page as
+   *     headers
    */
   @Override
-  public ResponseEntity<List<ChatSession>> getUserSessions() {
+  public ResponseEntity<List<ChatSession>> getUserSessions(
+      Integer limit, String before, String after) {
     String userId = getUserId();
-    List<ChatSessionDTO> sessionsDTO = chatSessionService.getUserSessions(userId);
-    List<ChatSession> response = sessionApiMapper.toApiModelList(sessionsDTO);
-    return ResponseEntity.ok(response);
+    CursorPageDTO<ChatSessionDTO> sessionsDTO =
+        chatSessionService.getUserSessions(userId, limit, before, after);
+    List<ChatSession> response = sessionApiMapper.toApiModelList(sessionsDTO.getItems());
+    return ResponseEntity.ok().headers(CursorHeaders.of(sessionsDTO)).body(response);
   }
 
   /**
-   * Retrieves a specific chat session by its ID for the authenticated user.
+   * Retrieves a specific chat session by its ID for the authenticated user, with its newest
+   * messages.
    *
    * @param sessionId the ID of the chat session
-   * @return a ResponseEntity containing the ChatSession
+   * @param limit the maximum number of messages of the session
+   * @return a ResponseEntity containing the ChatSession, with the cursor to its older messages as
+   *     header
    */
   @Override
-  public ResponseEntity<ChatSession> getSession(String sessionId) {
+  public ResponseEntity<ChatSession> getSession(String sessionId, Integer limit) {
     String userId = getUserId();
-    ChatSessionDTO sessionDTO = chatSessionService.getSession(sessionId, userId);
+    ChatSessionDTO sessionDTO = chatSessionService.getSession(sessionId, userId, limit);
     ChatSession response = sessionApiMapper.toApiModel(sessionDTO);
-    return ResponseEntity.ok(response);
+    return ResponseEntity.ok()
+        .headers(CursorHeaders.of(sessionDTO.getMessagesBefore(), null))
+        .body(response);
   }
 
   /**
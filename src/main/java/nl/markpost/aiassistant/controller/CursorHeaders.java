@@ -0,0 +1,41 @@
+package nl.markpost.aiassistant.controller;
+
+import nl.markpost.aiassistant.models.CursorPageDTO;
+import org.springframework.http.HttpHeaders;
+
+/** Response headers carrying the cursors of a page, so the body stays a plain list. */
+final class CursorHeaders {
+
+  static final String BEFORE_CURSOR = "Before-Cursor";
+  static final String AFTER_CURSOR = "After-Cursor";
+
+  private CursorHeaders() {}
+
+  /**
+   * Creates the headers with the cursors of the given page that are set.
+   *
+   * @param page the page
+   * @return the cursor headers
+   */
+  static HttpHeaders of(CursorPageDTO<?> page) {
+    return of(page.getBefore(), page.getAfter());
+  }
+
+  /**
+   * Creates the headers with the given cursors that are set.
+   *
+   * @param before the cursor to the items before, or null
+   * @param after the cursor to the items after, or null
+   * @return the cursor headers
+   */
+  static HttpHeaders of(String before, String after) {
+    HttpHeaders headers = new HttpHeaders();
+    if (before != null) {
+      headers.set(BEFORE_CURSOR, before);
+    }
+    if (after != null) {
+      headers.set(AFTER_CURSOR, after);
+    }
+    return headers;
+  }
+}
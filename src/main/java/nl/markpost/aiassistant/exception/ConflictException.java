@@ -0,0 +1,16 @@
+package nl.markpost.aiassistant.exception;
+
+import java.time.Duration;
+import lombok.Getter;
+import nl.markpost.aiassistant.constant.GenericErrorCodes;
+
+@Getter
+public class ConflictException extends GenericException {
+
+  private final Duration retryAfter;
+
+  public ConflictException(String message, Duration retryAfter) {
+    super(message, GenericErrorCodes.CONFLICT);
+    this.retryAfter = retryAfter;
+  }
+}
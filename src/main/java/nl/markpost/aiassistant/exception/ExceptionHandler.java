@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import nl.markpost.aiassistant.api.model.Error;
 import nl.markpost.aiassistant.constant.GenericErrorCodes;
 import nl.markpost.aiassistant.mapper.ErrorMapper;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -29,6 +30,55 @@ public class ExceptionHandler {
         .body(errorMapper.from(exception.getErrorCode(), exception.getHttpStatus()));
   }
 
+  /**
+   * Handles ServiceUnavailableException with a 503 response, so clients know to retry later. A
+   * Retry-After header is added when the exception suggests a delay.
+   *
+   * @param exception The ServiceUnavailableException to handle.
+   * @return A ResponseEntity containing the error details.
+   */
+  @org.springframework.web.bind.annotation.ExceptionHandler(ServiceUnavailableException.class)
+  public ResponseEntity<Error> handleServiceUnavailableException(
+      ServiceUnavailableException exception) {
+    log.warn("Service unavailable: {}", exception.getMessage());
+    ResponseEntity.BodyBuilder response = ResponseEntity.status(exception.getHttpStatus());
+    if (exception.getRetryAfter() != null) {
+      response.header(
+          HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfter().toSeconds()));
+    }
+    return response.body(errorMapper.from(exception.getErrorCode(), exception.getHttpStatus()));
+  }
+
+  /**
+   * Handles ConflictException with a 409 response and a Retry-After header, so clients retry once
+   * the conflicting request has finished.
+   *
+   * @param exception The ConflictException to handle.
+   * @return A ResponseEntity containing the error details.
+   */
+  @org.springframework.web.bind.annotation.ExceptionHandler(ConflictException.class)
+  public ResponseEntity<Error> handleConflictException(ConflictException exception) {
+    log.warn("Conflict: {}", exception.getMessage());
+    return ResponseEntity.status(exception.getHttpStatus())
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfter().toSeconds()))
+        .body(errorMapper.from(exception.getErrorCode(), exception.getHttpStatus()));
+  }
+
+  /**
+   * Handles UnprocessableEntityException with a 422 response, so clients can tell a rejected
+   * request from a failure worth retrying.
+   *
+   * @param exception The UnprocessableEntityException to handle.
+   * @return A ResponseEntity containing the error details.
+   */
+  @org.springframework.web.bind.annotation.ExceptionHandler(UnprocessableEntityException.class)
+  public ResponseEntity<Error> handleUnprocessableEntityException(
+      UnprocessableEntityException exception) {
+    log.warn("Unprocessable request: {}", exception.getMessage());
+    return ResponseEntity.status(exception.getHttpStatus())
+        .body(errorMapper.from(exception.getErrorCode(), exception.getHttpStatus()));
+  }
+
   /**
    * Handles all other exceptions and maps them to a generic internal server error response.
    *
@@ -0,0 +1,10 @@
+package nl.markpost.aiassistant.exception;
+
+import nl.markpost.aiassistant.constant.GenericErrorCodes;
+
+public class GenerationCancelledException extends GenericException {
+
+  public GenerationCancelledException(String message) {
+    super(message, GenericErrorCodes.GENERATION_CANCELLED);
+  }
+}
@@ -1,9 +1,14 @@
 package nl.markpost.aiassistant.exception;
 
+import java.time.Duration;
+import lombok.Getter;
 import nl.markpost.aiassistant.constant.GenericErrorCodes;
 
+@Getter
 public class ServiceUnavailableException extends GenericException {
 
+  private Duration retryAfter;
+
   public ServiceUnavailableException(String message) {
     super(message, GenericErrorCodes.SERVICE_UNAVAILABLE);
   }
@@ -11,4 +16,9 @@ public class ServiceUnavailableException extends GenericException {
   public ServiceUnavailableException(String message, Exception exception) {
     super(message, GenericErrorCodes.SERVICE_UNAVAILABLE, exception);
   }
+
+  public ServiceUnavailableException(String message, Duration retryAfter) {
+    super(message, GenericErrorCodes.SERVICE_UNAVAILABLE);
+    this.retryAfter = retryAfter;
+  }
 }
@@ -0,0 +1,10 @@
+package nl.markpost.aiassistant.exception;
+
+import nl.markpost.aiassistant.constant.GenericErrorCodes;
+
+public class UnprocessableEntityException extends GenericException {
+
+  public UnprocessableEntityException(String message) {
+    super(message, GenericErrorCodes.UNPROCESSABLE_ENTITY);
+  }
+}
@@ -1,6 +1,7 @@
 package nl.markpost.aiassistant.mapper;
 
 import nl.markpost.aiassistant.models.ChatSessionDTO;
+import nl.markpost.aiassistant.models.ChatSessionOverview;
 import nl.markpost.aiassistant.models.MessageDTO;
 import nl.markpost.aiassistant.models.entity.ChatMessage;
 import nl.markpost.aiassistant.models.entity.ChatSession;
@@ -15,10 +16,14 @@ import org.mapstruct.Mapping;
 public interface ChatSessionMapper {
 
   @Mapping(target = "messages", ignore = true)
+  @Mapping(target = "messagesBefore", ignore = true)
+  @Mapping(target = "messageCount", ignore = true)
+  @Mapping(target = "lastMessagePreview", ignore = true)
   ChatSessionDTO toDTOWithoutMessages(ChatSession session);
 
-  @Mapping(target = "messages", source = "messages")
-  ChatSessionDTO toDTOWithMessages(ChatSession session);
+  @Mapping(target = "messages", ignore = true)
+  @Mapping(target = "messagesBefore", ignore = true)
+  ChatSessionDTO toDTO(ChatSessionOverview overview);
 
   MessageDTO toMessageDTO(ChatMessage message);
 
@@ -26,9 +31,15 @@ public interface ChatSessionMapper {
   @Mapping(target = "messages", ignore = true)
   @Mapping(target = "createdAt", ignore = true)
   @Mapping(target = "updatedAt", ignore = true)
+  @Mapping(target = "summary", ignore = true)
+  @Mapping(target = "summarizedUntil", ignore = true)
   ChatSession toChatSession(String userId, String title);
 
   @Mapping(target = "id", ignore = true)
   @Mapping(target = "timestamp", ignore = true)
+  @Mapping(target = "idempotencyKey", ignore = true)
+  @Mapping(target = "requestHash", ignore = true)
+  @Mapping(target = "tokenCount", ignore = true)
+  @Mapping(target = "claimedUntil", ignore = true)
   ChatMessage toChatMessage(ChatSession chatSession, String role, String content);
 }
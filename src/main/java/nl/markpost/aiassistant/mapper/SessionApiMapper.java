@@ -6,8 +6,12 @@ import java.time.ZoneOffset;
 import java.util.List;
 import nl.markpost.aiassistant.api.model.ChatSession;
 import nl.markpost.aiassistant.api.model.Message;
+import nl.markpost.aiassistant.api.model.MessageJob;
+import nl.markpost.aiassistant.api.model.SendMessageRequest;
 import nl.markpost.aiassistant.models.ChatSessionDTO;
 import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.MessageJobDTO;
+import nl.markpost.aiassistant.models.ModelRoute;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 
@@ -30,6 +34,10 @@ public interface SessionApiMapper {
 
   List<Message> toApiMessageList(List<MessageDTO> dtos);
 
+  @Mapping(target = "status", expression = "java(mapStatus(dto.getStatus()))")
+  @Mapping(target = "error", ignore = true)
+  MessageJob toApiModel(MessageJobDTO dto);
+
   default OffsetDateTime toOffsetDateTime(LocalDateTime localDateTime) {
     return localDateTime != null ? localDateTime.atOffset(ZoneOffset.UTC) : null;
   }
@@ -41,4 +49,12 @@ public interface SessionApiMapper {
     // Use fromValue() which expects the lowercase string value
     return Message.RoleEnum.fromValue(role.toLowerCase());
   }
+
+  default MessageJob.StatusEnum mapStatus(MessageJobDTO.Status status) {
+    return status != null ? MessageJob.StatusEnum.fromValue(status.name().toLowerCase()) : null;
+  }
+
+  default ModelRoute toModelRoute(SendMessageRequest.ModelEnum model) {
+    return model != null ? ModelRoute.valueOf(model.getValue().toUpperCase()) : null;
+  }
 }
@@ -16,5 +16,8 @@ public class ChatSessionDTO {
   private String title;
   private LocalDateTime createdAt;
   private LocalDateTime updatedAt;
+  private Long messageCount;
+  private String lastMessagePreview;
   private List<MessageDTO> messages;
+  private String messagesBefore;
 }
@@ -0,0 +1,22 @@
+package nl.markpost.aiassistant.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * A chat session as listed in the sidebar, with the number of its messages and a preview of the
+ * latest one. Selected by a projection query, so no session or message entity is loaded.
+ *
+ * @param id the ID of the session
+ * @param title the title of the session
+ * @param createdAt when the session was created
+ * @param updatedAt when the session was last updated
+ * @param messageCount the number of messages of the session
+ * @param lastMessagePreview the start of the latest message, or null without messages
+ */
+public record ChatSessionOverview(
+    String id,
+    String title,
+    LocalDateTime createdAt,
+    LocalDateTime updatedAt,
+    long messageCount,
+    String lastMessagePreview) {}
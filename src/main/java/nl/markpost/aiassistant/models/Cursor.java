@@ -0,0 +1,51 @@
+package nl.markpost.aiassistant.models;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import nl.markpost.aiassistant.exception.BadRequestException;
+
+/**
+ * Position in a list ordered by timestamp and ID, such as the messages of a session or the sessions
+ * of a user. Clients get it as an opaque string and pass it back to page from that position.
+ *
+ * @param timestamp the timestamp of the row at the position
+ * @param id the ID of the row at the position, breaking ties between equal timestamps
+ */
+public record Cursor(LocalDateTime timestamp, String id) {
+
+  private static final String SEPARATOR = "|";
+
+  /**
+   * Encodes the cursor as an opaque, URL-safe string.
+   *
+   * @return the encoded cursor
+   */
+  public String encode() {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString((timestamp + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a cursor encoded by {@link #encode()}.
+   *
+   * @param value the encoded cursor
+   * @return the cursor
+   * @throws BadRequestException if the value is not a valid cursor
+   */
+  public static Cursor decode(String value) {
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+      int separator = decoded.indexOf(SEPARATOR);
+      if (separator < 0) {
+        throw new BadRequestException("Invalid cursor");
+      }
+      return new Cursor(
+          LocalDateTime.parse(decoded.substring(0, separator)), decoded.substring(separator + 1));
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      throw new BadRequestException("Invalid cursor", e);
+    }
+  }
+}
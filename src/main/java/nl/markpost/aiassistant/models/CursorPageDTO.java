@@ -0,0 +1,25 @@
+package nl.markpost.aiassistant.models;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A page of a list paged by {@link Cursor}. The cursors are only set when there are items before or
+ * after the page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+  private List<T> items;
+
+  /** Encoded cursor of the first item, to fetch the items before the page. */
+  private String before;
+
+  /** Encoded cursor of the last item, to fetch the items after the page. */
+  private String after;
+}
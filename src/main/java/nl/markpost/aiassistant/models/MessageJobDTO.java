@@ -0,0 +1,28 @@
+package nl.markpost.aiassistant.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import nl.markpost.aiassistant.constant.GenericErrorCodes;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageJobDTO {
+
+  public enum Status {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+  }
+
+  private String id;
+  private String sessionId;
+  private String userId;
+  private Status status;
+  private MessageDTO message;
+  private GenericErrorCodes errorCode;
+}
@@ -0,0 +1,9 @@
+package nl.markpost.aiassistant.models;
+
+/** The routes a message can be answered by, each backed by its own language model. */
+public enum ModelRoute {
+  /** The lowest-latency model, for short and simple turns. */
+  FAST,
+  /** The heavier model, for long prompts and deep conversations. */
+  CAPABLE
+}
@@ -0,0 +1,26 @@
+package nl.markpost.aiassistant.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A single event of a streamed assistant reply: either a partial token or the final, persisted
+ * message.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamEventDTO {
+
+  public enum Type {
+    TOKEN,
+    MESSAGE
+  }
+
+  private Type type;
+  private String content;
+  private MessageDTO message;
+}
@@ -41,6 +41,19 @@ public class ChatMessage {
   @Column(nullable = false, updatable = false)
   private LocalDateTime timestamp;
 
+  @Column(name = "idempotency_key")
+  private String idempotencyKey;
+
+  @Column(name = "request_hash", length = 64)
+  private String requestHash;
+
+  @Column(name = "token_count")
+  private Integer tokenCount;
+
+  /** Until when the node answering this keyed user message holds its idempotency key. */
+  @Column(name = "claimed_until")
+  private LocalDateTime claimedUntil;
+
   @PrePersist
   protected void onCreate() {
     timestamp = LocalDateTime.now();
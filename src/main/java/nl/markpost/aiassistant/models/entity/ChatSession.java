@@ -42,6 +42,12 @@ public class ChatSession {
   @Builder.Default
   private List<ChatMessage> messages = new ArrayList<>();
 
+  @Column(columnDefinition = "TEXT")
+  private String summary;
+
+  @Column(name = "summarized_until")
+  private LocalDateTime summarizedUntil;
+
   @Column(nullable = false, updatable = false)
   private LocalDateTime createdAt;
 
@@ -1,19 +1,162 @@
 package nl.markpost.aiassistant.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 import nl.markpost.aiassistant.models.entity.ChatMessage;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 /** Repository interface for managing ChatMessage entities. */
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, String> {
 
+  /**
+   * Finds the most recent messages of a session whose combined token count fits the given budget,
+   * newest first. Messages covered by the session's summary are left out. Messages without a stored
+   * token count are estimated at four characters per token. The running total is only computed over
+   * the newest {@code maxMessages} messages, which are read from the session's timestamp index.
+   *
+   * @param sessionId the ID of the chat session
+   * @param maxTokens the token budget of the messages
+   * @param maxMessages the maximum number of messages returned
+   * @return the messages within the budget, newest first
+   */
   @Query(
-      "SELECT m FROM ChatMessage m WHERE m.chatSession.id = :sessionId ORDER BY m.timestamp DESC")
-  List<ChatMessage> findLastMessagesBySessionId(String sessionId, Pageable pageable);
+      value =
+          """
+          SELECT m.* FROM chat_messages m
+          JOIN (
+            SELECT id, SUM(tokens)
+                OVER (ORDER BY timestamp DESC, id DESC ROWS UNBOUNDED PRECEDING) AS running_tokens
+            FROM (
+              SELECT id, timestamp, COALESCE(token_count, CHAR_LENGTH(content) / 4) AS tokens
+              FROM chat_messages
+              WHERE session_id = :sessionId
+                AND timestamp > COALESCE(
+                    (SELECT s.summarized_until FROM chat_sessions s WHERE s.id = :sessionId),
+                    TIMESTAMP '-infinity')
+              ORDER BY timestamp DESC, id DESC
+              LIMIT :maxMessages
+            ) newest
+          ) w ON w.id = m.id
+          WHERE w.running_tokens <= :maxTokens
+          ORDER BY m.timestamp DESC, m.id DESC
+          """,
+      nativeQuery = true)
+  List<ChatMessage> findLastMessagesWithinTokenBudget(
+      String sessionId, int maxTokens, int maxMessages);
 
-  List<ChatMessage> findByChatSessionIdOrderByTimestampAsc(String sessionId);
+  /**
+   * Finds the newest messages of a session, newest first. The messages are loaded read-only, as
+   * they are only read to be shown, so they are not dirty-checked.
+   *
+   * @param sessionId the ID of the chat session
+   * @param limit the maximum number of messages returned
+   * @return the newest messages
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+  List<ChatMessage> findByChatSessionIdOrderByTimestampDescIdDesc(String sessionId, Limit limit);
+
+  /**
+   * Finds the messages of a session older than the given position, newest first. The position is
+   * compared as a row value, so the query seeks straight to it in the session's timestamp index.
+   *
+   * @param sessionId the ID of the chat session
+   * @param timestamp the timestamp of the message at the position
+   * @param id the ID of the message at the position
+   * @param limit the maximum number of messages returned
+   * @return the messages before the position
+   */
+  @Query(
+      "SELECT m FROM ChatMessage m WHERE m.chatSession.id = :sessionId"
+          + " AND (m.timestamp, m.id) < (:timestamp, :id) ORDER BY m.timestamp DESC, m.id DESC")
+  List<ChatMessage> findMessagesBefore(
+      String sessionId, LocalDateTime timestamp, String id, Limit limit);
+
+  /**
+   * Finds the messages of a session newer than the given position, oldest first.
+   *
+   * @param sessionId the ID of the chat session
+   * @param timestamp the timestamp of the message at the position
+   * @param id the ID of the message at the position
+   * @param limit the maximum number of messages returned
+   * @return the messages after the position
+   */
+  @Query(
+      "SELECT m FROM ChatMessage m WHERE m.chatSession.id = :sessionId"
+          + " AND (m.timestamp, m.id) > (:timestamp, :id) ORDER BY m.timestamp ASC, m.id ASC")
+  List<ChatMessage> findMessagesAfter(
+      String sessionId, LocalDateTime timestamp, String id, Limit limit);
+
+  /**
+   * Streams all messages of a session, oldest first, from a forward-only database cursor fetching
+   * rows in batches. The messages are read-only; must be consumed within a transaction and closed.
+   *
+   * @param sessionId the ID of the chat session
+   * @return the messages of the session
+   */
+  @QueryHints({
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+    @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query(
+      "SELECT m FROM ChatMessage m WHERE m.chatSession.id = :sessionId"
+          + " ORDER BY m.timestamp ASC, m.id ASC")
+  Stream<ChatMessage> streamBySessionId(String sessionId);
+
+  /**
+   * Finds messages without a stored token count after the given ID, in ID order. Paging by ID keeps
+   * every batch a short range scan of the primary key, however many messages were already filled.
+   *
+   * @param id the ID of the last message of the previous batch
+   * @param limit the maximum number of messages returned
+   * @return the messages without a token count
+   */
+  List<ChatMessage> findByTokenCountIsNullAndIdGreaterThanOrderByIdAsc(String id, Limit limit);
+
+  long countByChatSessionIdAndTimestampAfter(String sessionId, LocalDateTime after);
+
+  List<ChatMessage> findByChatSessionIdAndTimestampAfterOrderByTimestampAsc(
+      String sessionId, LocalDateTime after, Pageable pageable);
+
+  Optional<ChatMessage> findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+      String sessionId, String idempotencyKey, String role);
+
+  /**
+   * Finds the message stored under an idempotency key and locks it until the end of the
+   * transaction, so only one request at a time can claim the key.
+   *
+   * @param sessionId the ID of the chat session
+   * @param idempotencyKey the client's key for the message
+   * @param role the role of the message
+   * @return the locked message, if any
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  Optional<ChatMessage> findWithLockByChatSessionIdAndIdempotencyKeyAndRole(
+      String sessionId, String idempotencyKey, String role);
+
+  /**
+   * Releases the claim on the user message stored under an idempotency key, so a retry does not
+   * have to wait for the claim to expire.
+   *
+   * @param sessionId the ID of the chat session
+   * @param idempotencyKey the client's key for the message
+   * @return the number of messages released
+   */
+  @Modifying
+  @Query(
+      "UPDATE ChatMessage m SET m.claimedUntil = null WHERE m.chatSession.id = :sessionId"
+          + " AND m.idempotencyKey = :idempotencyKey AND m.role = 'user'")
+  int releaseClaim(String sessionId, String idempotencyKey);
 }
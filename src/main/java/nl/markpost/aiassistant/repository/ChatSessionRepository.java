@@ -1,8 +1,11 @@
 package nl.markpost.aiassistant.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import nl.markpost.aiassistant.models.ChatSessionOverview;
 import nl.markpost.aiassistant.models.entity.ChatSession;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -13,10 +16,93 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface ChatSessionRepository extends JpaRepository<ChatSession, String> {
 
-  List<ChatSession> findByUserIdOrderByUpdatedAtDesc(String userId);
+  /** Maximum length of the preview of the latest message of a session. */
+  int PREVIEW_LENGTH = 200;
+
+  /**
+   * Selects the overviews of a user's sessions. The message count and the preview of the latest
+   * message are correlated subqueries served by the session's message index, so a page of overviews
+   * is a single statement.
+   */
+  String SELECT_OVERVIEWS =
+      "SELECT new nl.markpost.aiassistant.models.ChatSessionOverview(cs.id, cs.title,"
+          + " cs.createdAt, cs.updatedAt,"
+          + " (SELECT count(m) FROM ChatMessage m WHERE m.chatSession = cs),"
+          + " (SELECT substring(m.content, 1, "
+          + PREVIEW_LENGTH
+          + ") FROM ChatMessage m WHERE m.chatSession = cs"
+          + " ORDER BY m.timestamp DESC, m.id DESC LIMIT 1))"
+          + " FROM ChatSession cs WHERE cs.userId = :userId";
+
+  /**
+   * Finds the overviews of the most recently updated sessions of a user, most recent first.
+   *
+   * @param userId the ID of the user
+   * @param limit the maximum number of sessions returned
+   * @return the overviews of the most recently updated sessions
+   */
+  @Query(SELECT_OVERVIEWS + " ORDER BY cs.updatedAt DESC, cs.id DESC")
+  List<ChatSessionOverview> findOverviews(@Param("userId") String userId, Limit limit);
+
+  /**
+   * Finds the overviews of the sessions of a user updated less recently than the given position,
+   * most recent first. The position is compared as a row value, so the query seeks straight to it
+   * in the user's index.
+   *
+   * @param userId the ID of the user
+   * @param updatedAt the update timestamp of the session at the position
+   * @param id the ID of the session at the position
+   * @param limit the maximum number of sessions returned
+   * @return the overviews of the sessions after the position
+   */
+  @Query(
+      SELECT_OVERVIEWS
+          + " AND (cs.updatedAt, cs.id) < (:updatedAt, :id) ORDER BY cs.updatedAt DESC, cs.id DESC")
+  List<ChatSessionOverview> findOverviewsAfter(
+      @Param("userId") String userId,
+      @Param("updatedAt") LocalDateTime updatedAt,
+      @Param("id") String id,
+      Limit limit);
+
+  /**
+   * Finds the overviews of the sessions of a user updated more recently than the given position,
+   * least recent first.
+   *
+   * @param userId the ID of the user
+   * @param updatedAt the update timestamp of the session at the position
+   * @param id the ID of the session at the position
+   * @param limit the maximum number of sessions returned
+   * @return the overviews of the sessions before the position
+   */
+  @Query(
+      SELECT_OVERVIEWS
+          + " AND (cs.updatedAt, cs.id) > (:updatedAt, :id) ORDER BY cs.updatedAt ASC, cs.id ASC")
+  List<ChatSessionOverview> findOverviewsBefore(
+      @Param("userId") String userId,
+      @Param("updatedAt") LocalDateTime updatedAt,
+      @Param("id") String id,
+      Limit limit);
 
   Optional<ChatSession> findByIdAndUserId(String id, String userId);
 
+  boolean existsByIdAndUserId(String id, String userId);
+
+  @Query("SELECT cs.summary FROM ChatSession cs WHERE cs.id = :id")
+  Optional<String> findSummaryById(@Param("id") String id);
+
+  /**
+   * Stores the summary of a chat session without touching its update timestamp, so summarizing does
+   * not reorder the user's sessions.
+   */
+  @Modifying
+  @Query(
+      "UPDATE ChatSession cs SET cs.summary = :summary, cs.summarizedUntil = :summarizedUntil"
+          + " WHERE cs.id = :id")
+  int updateSummary(
+      @Param("id") String id,
+      @Param("summary") String summary,
+      @Param("summarizedUntil") LocalDateTime summarizedUntil);
+
   @Modifying
   @Query("DELETE FROM ChatSession cs WHERE cs.id = :id AND cs.userId = :userId")
   void deleteByIdAndUserId(@Param("id") String id, @Param("userId") String userId);
@@ -0,0 +1,201 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.exception.TimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import nl.markpost.aiassistant.config.ConcurrencyLimitProperties;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+import nl.markpost.aiassistant.models.ModelRoute;
+
+/**
+ * Adaptive limit on the number of concurrent calls to the language model, adjusted with additive
+ * increase and multiplicative decrease (AIMD). The limit shrinks when the provider signals overload
+ * (rate limiting, timeouts, server errors) or when a call takes much longer than the smoothed
+ * baseline latency, and grows slowly while calls succeed with the limit in use. Calls beyond the
+ * limit are rejected right away instead of queueing on a slow provider.
+ *
+ * <p>Every route has its own limiter, as its model has its own latency and capacity. The current
+ * limit, the number of calls in flight and the number of rejected calls are published as {@code
+ * chat.model.concurrency.*} metrics, tagged with the route.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+  private static final double BASELINE_SMOOTHING = 0.05;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final double latencyTolerance;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Counter rejectedCounter;
+
+  private volatile double limit;
+  private double baselineNanos;
+
+  /**
+   * Creates a new AdaptiveConcurrencyLimiter.
+   *
+   * @param route the route whose model calls are limited
+   * @param properties the configuration of the limit
+   * @param meterRegistry the registry of the limit metrics
+   */
+  public AdaptiveConcurrencyLimiter(
+      ModelRoute route, ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+    this.limit = properties.initialLimit();
+    this.minLimit = properties.minLimit();
+    this.maxLimit = properties.maxLimit();
+    this.backoffRatio = properties.backoffRatio();
+    this.latencyTolerance = properties.latencyTolerance();
+    String routeTag = route.name().toLowerCase();
+    Gauge.builder("chat.model.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+        .description("Current limit on concurrent calls to the language model")
+        .tag("route", routeTag)
+        .register(meterRegistry);
+    Gauge.builder("chat.model.concurrency.in-flight", inFlight, AtomicInteger::get)
+        .description("Calls to the language model in flight")
+        .tag("route", routeTag)
+        .register(meterRegistry);
+    this.rejectedCounter =
+        Counter.builder("chat.model.concurrency.rejected")
+            .description("Calls to the language model rejected by the concurrency limit")
+            .tag("route", routeTag)
+            .register(meterRegistry);
+  }
+
+  /**
+   * Acquires a permit for a call to the language model. The permit must be released through one of
+   * its methods once the call finishes.
+   *
+   * @return the permit
+   * @throws ServiceUnavailableException if the limit is reached
+   */
+  public Permit acquire() {
+    int current;
+    do {
+      current = inFlight.get();
+      if (current >= getLimit()) {
+        rejectedCounter.increment();
+        throw new ServiceUnavailableException(
+            "Too many concurrent requests to the language model", retryAfter());
+      }
+    } while (!inFlight.compareAndSet(current, current + 1));
+    return new Permit(current + 1);
+  }
+
+  /**
+   * Returns the current limit.
+   *
+   * @return the number of concurrent calls allowed
+   */
+  public int getLimit() {
+    return (int) limit;
+  }
+
+  /**
+   * Estimates when a rejected call could be retried: roughly when a call in flight completes.
+   *
+   * @return the suggested delay, at least one second
+   */
+  private synchronized Duration retryAfter() {
+    return Duration.ofSeconds(Math.max(1, (long) Math.ceil(baselineNanos / 1_000_000_000)));
+  }
+
+  /**
+   * Adjusts the limit after a successful call.
+   *
+   * @param latencyNanos the latency of the call
+   * @param inFlightAtStart the number of calls in flight when the call started
+   */
+  private synchronized void onSuccess(long latencyNanos, int inFlightAtStart) {
+    if (baselineNanos > 0 && latencyNanos > baselineNanos * latencyTolerance) {
+      decrease();
+    } else if (inFlightAtStart * 2 >= limit) {
+      limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+    baselineNanos =
+        baselineNanos == 0
+            ? latencyNanos
+            : baselineNanos * (1 - BASELINE_SMOOTHING) + latencyNanos * BASELINE_SMOOTHING;
+  }
+
+  private synchronized void decrease() {
+    limit = Math.max(minLimit, limit * backoffRatio);
+    log.debug("Decreased language model concurrency limit to {}", getLimit());
+  }
+
+  /**
+   * Returns the current time of the clock measuring call latency.
+   *
+   * @return the current time in nanoseconds
+   */
+  long nanoTime() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Whether a failure signals that the provider is overloaded.
+   *
+   * @param error the failure of a call
+   * @return true for rate limiting, timeouts and server errors
+   */
+  static boolean isOverload(Throwable error) {
+    return error instanceof RateLimitException
+        || error instanceof TimeoutException
+        || error instanceof InternalServerException;
+  }
+
+  /** Permit for a single call to the language model. */
+  public final class Permit {
+
+    private final long startNanos = nanoTime();
+    private final int inFlightAtStart;
+    private boolean released;
+
+    private Permit(int inFlightAtStart) {
+      this.inFlightAtStart = inFlightAtStart;
+    }
+
+    /** Releases the permit after a successful call. */
+    public void success() {
+      if (release()) {
+        onSuccess(nanoTime() - startNanos, inFlightAtStart);
+      }
+    }
+
+    /**
+     * Releases the permit after a failed call, decreasing the limit if the failure signals
+     * overload.
+     *
+     * @param error the failure of the call
+     */
+    public void failure(Throwable error) {
+      if (release() && isOverload(error)) {
+        decrease();
+      }
+    }
+
+    /**
+     * Releases the permit of a call cancelled by the caller, which says nothing about the load of
+     * the provider.
+     */
+    public void cancel() {
+      release();
+    }
+
+    private synchronized boolean release() {
+      if (released) {
+        return false;
+      }
+      released = true;
+      inFlight.decrementAndGet();
+      return true;
+    }
+  }
+}
@@ -1,6 +1,12 @@
 package nl.markpost.aiassistant.service;
 
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
+
 public interface Assistant {
 
-  String chat(String message);
+  String chat(@MemoryId String sessionId, @UserMessage String message);
+
+  TokenStream chatStream(@MemoryId String sessionId, @UserMessage String message);
 }
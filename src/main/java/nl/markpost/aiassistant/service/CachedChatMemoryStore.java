@@ -0,0 +1,155 @@
+package nl.markpost.aiassistant.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import nl.markpost.aiassistant.repository.ChatMessageRepository;
+import nl.markpost.aiassistant.repository.ChatSessionRepository;
+
+/**
+ * A ChatMemoryStore that keeps the recent message window of each active chat session in a bounded
+ * in-memory cache. Every message added to a session's memory is written through to the cache, so a
+ * hot conversation does not query its history again; windows are loaded from the database only
+ * after they have been evicted for size or idle time. A loaded window starts with the session's
+ * summary of its older messages, if it has one, as a system message. Cache statistics are published
+ * as {@code cache.*} metrics tagged {@code cache=chat.window}.
+ */
+public class CachedChatMemoryStore implements ChatMemoryStore {
+
+  private final ChatMessageRepository chatMessageRepository;
+  private final ChatSessionRepository chatSessionRepository;
+  private final int maxMessages;
+  private final int maxTokens;
+  private final Cache<String, List<ChatMessage>> cache;
+
+  /**
+   * Creates a new CachedChatMemoryStore.
+   *
+   * @param chatMessageRepository the repository to load evicted windows from
+   * @param chatSessionRepository the repository to load session summaries from
+   * @param meterRegistry the registry to publish cache metrics to
+   * @param maxMessages the maximum number of messages loaded per session window
+   * @param maxTokens the token budget of the messages loaded per session window
+   * @param maxSessions the maximum number of session windows kept in the cache
+   * @param idleTimeout the time after which an unused session window is evicted
+   */
+  public CachedChatMemoryStore(
+      ChatMessageRepository chatMessageRepository,
+      ChatSessionRepository chatSessionRepository,
+      MeterRegistry meterRegistry,
+      int maxMessages,
+      int maxTokens,
+      long maxSessions,
+      Duration idleTimeout) {
+    this.chatMessageRepository = chatMessageRepository;
+    this.chatSessionRepository = chatSessionRepository;
+    this.maxMessages = maxMessages;
+    this.maxTokens = maxTokens;
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumSize(maxSessions)
+            .expireAfterAccess(idleTimeout)
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "chat.window");
+  }
+
+  /**
+   * Retrieves the message window of the given session, loading it from the database if it is not
+   * cached.
+   *
+   * @param memoryId the memory ID (expected to be the session ID as a String)
+   * @return a list of ChatMessage objects
+   * @throws IllegalArgumentException if the memory ID is null or of an unsupported type
+   */
+  @Override
+  public List<ChatMessage> getMessages(Object memoryId) {
+    var id = toSessionId(memoryId);
+    List<ChatMessage> messages = cache.getIfPresent(id);
+    if (messages != null) {
+      return messages;
+    }
+    // Load outside the cache's lock so a slow query does not block other sessions
+    List<ChatMessage> loaded = load(id);
+    List<ChatMessage> existing = cache.asMap().putIfAbsent(id, loaded);
+    return existing != null ? existing : loaded;
+  }
+
+  /**
+   * Updates the message window of the given session.
+   *
+   * @param memoryId the memory ID (expected to be the session ID as a String)
+   * @param messages the list of ChatMessage objects to store
+   * @throws IllegalArgumentException if the memory ID is null or of an unsupported type
+   */
+  @Override
+  public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+    cache.put(toSessionId(memoryId), List.copyOf(messages));
+  }
+
+  /**
+   * Drops the message window of the given session from the cache.
+   *
+   * @param memoryId the memory ID (expected to be the session ID as a String)
+   * @throws IllegalArgumentException if the memory ID is null or of an unsupported type
+   */
+  @Override
+  public void deleteMessages(Object memoryId) {
+    cache.invalidate(toSessionId(memoryId));
+  }
+
+  /**
+   * Loads the most recent messages of the given session that fit the token budget, using the token
+   * counts stored with the messages and preceded by the session's summary. A trailing unanswered
+   * user message is skipped, because it is the message currently being answered (which the
+   * assistant adds itself) or one whose answer failed.
+   *
+   * @param sessionId the ID of the chat session
+   * @return the messages in chronological order
+   */
+  private List<ChatMessage> load(String sessionId) {
+    List<nl.markpost.aiassistant.models.entity.ChatMessage> recentMessages =
+        new ArrayList<>(
+            chatMessageRepository.findLastMessagesWithinTokenBudget(
+                sessionId, maxTokens, maxMessages));
+    if (!recentMessages.isEmpty() && "user".equals(recentMessages.getFirst().getRole())) {
+      recentMessages.removeFirst();
+    }
+    Collections.reverse(recentMessages);
+
+    List<ChatMessage> messages = new ArrayList<>(recentMessages.size() + 1);
+    chatSessionRepository
+        .findSummaryById(sessionId)
+        .ifPresent(
+            summary ->
+                messages.add(
+                    SystemMessage.from("Summary of the earlier conversation:\n" + summary)));
+    for (nl.markpost.aiassistant.models.entity.ChatMessage msg : recentMessages) {
+      if ("user".equals(msg.getRole())) {
+        messages.add(UserMessage.from(msg.getContent()));
+      } else {
+        messages.add(AiMessage.from(msg.getContent()));
+      }
+    }
+    return List.copyOf(messages);
+  }
+
+  private String toSessionId(Object memoryId) {
+    return switch (memoryId) {
+      case String s -> s;
+      case null -> throw new IllegalArgumentException("Memory ID cannot be null");
+      default ->
+          throw new IllegalArgumentException("Unsupported memory ID type: " + memoryId.getClass());
+    };
+  }
+}
@@ -0,0 +1,117 @@
+package nl.markpost.aiassistant.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.markpost.aiassistant.exception.BadRequestException;
+import nl.markpost.aiassistant.models.entity.ChatMessage;
+import nl.markpost.aiassistant.repository.ChatMessageRepository;
+import nl.markpost.aiassistant.repository.ChatSessionRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Exports the full message history of a chat session as newline-delimited JSON, one Message per
+ * line. Messages are read from a database cursor and written straight to the output, each detached
+ * once written, so memory use stays constant however long the session is.
+ *
+ * <p>Records the exported messages in {@code chat.export.rows} and the rows per second of every
+ * export in {@code chat.export.throughput}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatHistoryExporter {
+
+  static final String ROWS_METRIC = "chat.export.rows";
+  static final String THROUGHPUT_METRIC = "chat.export.throughput";
+
+  private final ChatSessionRepository chatSessionRepository;
+  private final ChatMessageRepository chatMessageRepository;
+  private final EntityManager entityManager;
+  private final ObjectMapper objectMapper;
+  private final MeterRegistry meterRegistry;
+
+  /**
+   * Checks that the specified chat session exists and belongs to the user, before the export starts
+   * writing.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param userId The ID of the user.
+   * @throws BadRequestException if the session is not found.
+   */
+  @Transactional(readOnly = true)
+  public void checkSession(String sessionId, String userId) {
+    if (!chatSessionRepository.existsByIdAndUserId(sessionId, userId)) {
+      throw new BadRequestException("Session not found");
+    }
+  }
+
+  /**
+   * Writes all messages of the specified chat session to the output, oldest first. The output is
+   * flushed but not closed.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param output The output to write to.
+   * @return The number of exported messages.
+   * @throws IOException if writing to the output fails.
+   */
+  @Transactional(readOnly = true)
+  public long export(String sessionId, OutputStream output) throws IOException {
+    long start = System.nanoTime();
+    long rows = 0;
+    try (Stream<ChatMessage> messages = chatMessageRepository.streamBySessionId(sessionId);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      for (Iterator<ChatMessage> iterator = messages.iterator(); iterator.hasNext(); ) {
+        ChatMessage message = iterator.next();
+        write(generator, message);
+        entityManager.detach(message);
+        rows++;
+      }
+    }
+    record(rows, System.nanoTime() - start);
+    return rows;
+  }
+
+  /** Writes a message as a line holding the JSON of its API model. */
+  private static void write(JsonGenerator generator, ChatMessage message) throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("id", message.getId());
+    generator.writeStringField("role", message.getRole().toLowerCase());
+    generator.writeStringField("content", message.getContent());
+    generator.writeStringField(
+        "timestamp",
+        message.getTimestamp().atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_DATE_TIME));
+    generator.writeEndObject();
+    generator.writeRaw('\n');
+  }
+
+  private void record(long rows, long nanos) {
+    Counter.builder(ROWS_METRIC)
+        .description("Messages exported from chat sessions")
+        .baseUnit("rows")
+        .register(meterRegistry)
+        .increment(rows);
+    if (rows > 0 && nanos > 0) {
+      double rowsPerSecond = rows * 1_000_000_000.0 / nanos;
+      DistributionSummary.builder(THROUGHPUT_METRIC)
+          .description("Throughput of chat session exports")
+          .baseUnit("rows/s")
+          .register(meterRegistry)
+          .record(rowsPerSecond);
+      log.debug("Exported {} messages at {} rows/s", rows, Math.round(rowsPerSecond));
+    }
+  }
+}
@@ -1,23 +1,51 @@
 package nl.markpost.aiassistant.service;
 
 import dev.langchain4j.data.message.AiMessage;
-import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.ChatMemory;
-import java.util.Collections;
+import dev.langchain4j.model.TokenCountEstimator;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.markpost.aiassistant.constant.GenericErrorCodes;
 import nl.markpost.aiassistant.exception.BadRequestException;
+import nl.markpost.aiassistant.exception.ConflictException;
+import nl.markpost.aiassistant.exception.GenerationCancelledException;
+import nl.markpost.aiassistant.exception.GenericException;
+import nl.markpost.aiassistant.exception.NotFoundException;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+import nl.markpost.aiassistant.exception.UnprocessableEntityException;
 import nl.markpost.aiassistant.mapper.ChatSessionMapper;
+import nl.markpost.aiassistant.models.Cursor;
+import nl.markpost.aiassistant.models.CursorPageDTO;
 import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.MessageJobDTO;
+import nl.markpost.aiassistant.models.ModelRoute;
+import nl.markpost.aiassistant.models.StreamEventDTO;
 import nl.markpost.aiassistant.models.entity.ChatMessage;
 import nl.markpost.aiassistant.models.entity.ChatSession;
 import nl.markpost.aiassistant.repository.ChatMessageRepository;
 import nl.markpost.aiassistant.repository.ChatSessionRepository;
-import org.springframework.data.domain.PageRequest;
+import nl.markpost.aiassistant.service.GenerationRegistry.Generation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
 
 /** Service for managing chat sessions and messages. */
 @Service
@@ -25,62 +53,671 @@ import org.springframework.transaction.annotation.Transactional;
 @Slf4j
 public class ChatMessagesService {
 
+  private static final String SEND_PHASE_METRIC = "chat.send.phase";
+  private static final String PHASE_ACCEPT = "accept";
+  private static final String PHASE_GENERATE = "generate";
+  private static final String PHASE_COMMIT = "commit";
+  private static final String IDEMPOTENCY_METRIC = "chat.idempotency.requests";
+
+  /** Delay suggested to a duplicate request arriving while the original is being answered. */
+  private static final Duration PENDING_RETRY_AFTER = Duration.ofSeconds(2);
+
   private final ChatSessionRepository chatSessionRepository;
   private final ChatMessageRepository chatMessageRepository;
-  private final Assistant assistant;
-  private final ChatMemory chatMemory;
+  private final ModelRouter modelRouter;
+  private final SessionChatMemoryProvider chatMemoryProvider;
+  private final ChatResponseCache chatResponseCache;
+  private final InFlightRequestRegistry inFlightRequestRegistry;
+  private final MessageJobRegistry messageJobRegistry;
+  private final GenerationRegistry generationRegistry;
+  private final TaskExecutor generationExecutor;
+  private final TokenCountEstimator tokenCountEstimator;
+  private final ConversationSummarizer conversationSummarizer;
   private final ChatSessionMapper chatSessionMapper;
+  private final TransactionTemplate transactionTemplate;
+  private final MeterRegistry meterRegistry;
+
+  /**
+   * How long the node answering a keyed message holds its key. Outlasts the deadline of a
+   * generation, so a key is only taken over from a node that has failed.
+   */
+  @Value("${assistant.idempotency.claim-timeout:150s}")
+  private Duration claimTimeout;
 
   /**
    * Sends a message in the specified chat session and gets a response from the assistant.
    *
+   * <p>When an idempotency key is given, the message is answered only once: a duplicate request
+   * arriving while the original is in flight on this node waits for its response, one arriving on
+   * another node is told to retry, and a later duplicate gets the stored response. A request
+   * reusing the key with a different message, model or cache setting is rejected.
+   *
    * @param sessionId The ID of the chat session.
    * @param userId The ID of the user.
    * @param messageContent The content of the user's message.
+   * @param bypassCache Whether to generate a new response even if a cached one exists.
+   * @param modelHint The model route requested by the client, or null to let the router pick.
+   * @param idempotencyKey The client's key for this message, or null.
    * @return The assistant's response as a MessageDTO.
+   * @throws UnprocessableEntityException if the idempotency key was used for a different request.
+   * @throws ConflictException if the message is being answered by another node.
    */
-  @Transactional
-  public MessageDTO sendMessage(String sessionId, String userId, String messageContent) {
-    ChatSession session = getSessionEntity(sessionId, userId);
+  public MessageDTO sendMessage(
+      String sessionId,
+      String userId,
+      String messageContent,
+      boolean bypassCache,
+      ModelRoute modelHint,
+      String idempotencyKey) {
+    if (idempotencyKey == null) {
+      return exchange(sessionId, userId, messageContent, bypassCache, modelHint, null, null);
+    }
+    String requestHash = requestHash(messageContent, bypassCache, modelHint);
+    return inFlightRequestRegistry.execute(
+        userId + ":" + sessionId + ":" + idempotencyKey,
+        requestHash,
+        () ->
+            exchange(
+                sessionId,
+                userId,
+                messageContent,
+                bypassCache,
+                modelHint,
+                idempotencyKey,
+                requestHash));
+  }
 
-    ChatMessage userMessage = chatSessionMapper.toChatMessage(session, "user", messageContent);
-    chatMessageRepository.save(userMessage);
-
-    chatMemory.clear();
-    List<ChatMessage> recentMessages =
-        chatMessageRepository.findLastMessagesBySessionId(sessionId, PageRequest.of(0, 9));
-    Collections.reverse(recentMessages);
-
-    for (ChatMessage msg : recentMessages) {
-      if ("user".equals(msg.getRole())) {
-        chatMemory.add(UserMessage.from(msg.getContent()));
-      } else {
-        chatMemory.add(AiMessage.from(msg.getContent()));
-      }
+  /**
+   * Sends a message in the specified chat session and streams the assistant's response token by
+   * token. The complete response is persisted once the stream completes and emitted as the final
+   * event. Like {@link #sendMessage}, no database connection is held while streaming.
+   *
+   * <p>When the subscriber cancels, for instance because the client disconnected, the call to the
+   * language model is cancelled as well. When the generation is stopped with {@link
+   * #stopGeneration}, the stream ends with the partial response if it is kept, or with a {@link
+   * GenerationCancelledException} otherwise.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param userId The ID of the user.
+   * @param messageContent The content of the user's message.
+   * @param modelHint The model route requested by the client, or null to let the router pick.
+   * @return A Flux of token events followed by a single message event.
+   */
+  public Flux<StreamEventDTO> streamMessage(
+      String sessionId, String userId, String messageContent, ModelRoute modelHint) {
+    ChatSession session =
+        timed(
+            PHASE_ACCEPT,
+            () ->
+                transactionTemplate.execute(
+                    status -> prepareConversation(sessionId, userId, messageContent, null, null)));
+
+    ModelRoute route = modelRouter.route(sessionId, messageContent, modelHint);
+    return Flux.create(
+        sink -> {
+          Generation generation = generationRegistry.start(sessionId, userId);
+          sink.onCancel(generation::disconnect);
+          sink.onDispose(generation::close);
+          generation.onCancel(() -> endCancelledStream(sink, session, generation));
+          AtomicBoolean handleRegistered = new AtomicBoolean();
+          modelRouter
+              .chatStream(route, sessionId, messageContent)
+              .onPartialResponseWithContext(
+                  (partialResponse, context) -> {
+                    if (handleRegistered.compareAndSet(false, true)) {
+                      generation.onCancel(context.streamingHandle()::cancel);
+                    }
+                    if (generation.append(partialResponse.text())) {
+                      sink.next(
+                          StreamEventDTO.builder()
+                              .type(StreamEventDTO.Type.TOKEN)
+                              .content(partialResponse.text())
+                              .build());
+                    }
+                  })
+              .onCompleteResponse(
+                  response -> {
+                    if (!generation.complete()) {
+                      return;
+                    }
+                    MessageDTO message = commitReply(session, response.aiMessage().text(), null);
+                    sink.next(
+                        StreamEventDTO.builder()
+                            .type(StreamEventDTO.Type.MESSAGE)
+                            .message(message)
+                            .build());
+                    sink.complete();
+                  })
+              .onError(
+                  error -> {
+                    if (generation.complete()) {
+                      sink.error(error);
+                    }
+                  })
+              .start();
+        });
+  }
+
+  /**
+   * Ends a stream whose generation has been cancelled. The partial response is committed and
+   * emitted as the final event if it is to be kept; otherwise the stream fails. Nothing is emitted
+   * when the subscriber has gone.
+   *
+   * <p>A kept partial response is also appended to the session's chat memory, which the assistant
+   * only updates when a response completes, so the next turn sees what the user saw.
+   *
+   * @param sink The sink of the stream.
+   * @param session The ChatSession entity.
+   * @param generation The cancelled generation.
+   */
+  private void endCancelledStream(
+      FluxSink<StreamEventDTO> sink, ChatSession session, Generation generation) {
+    if (sink.isCancelled()) {
+      return;
     }
+    String partial = generation.getPartial();
+    if (!generation.isPersistPartial() || partial.isBlank()) {
+      sink.error(new GenerationCancelledException("Generation was cancelled"));
+      return;
+    }
+    MessageDTO message = commitReply(session, partial, null);
+    chatMemoryProvider.get(session.getId()).add(AiMessage.from(partial));
+    sink.next(StreamEventDTO.builder().type(StreamEventDTO.Type.MESSAGE).message(message).build());
+    sink.complete();
+  }
 
-    String assistantResponse = assistant.chat(messageContent);
+  /**
+   * Sends a message in the specified chat session and generates the response in the background.
+   * Returns as soon as the user's message is stored; the returned job tracks the generation.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param userId The ID of the user.
+   * @param messageContent The content of the user's message.
+   * @param bypassCache Whether to generate a new response even if a cached one exists.
+   * @param modelHint The model route requested by the client, or null to let the router pick.
+   * @return The pending job generating the response.
+   * @throws ServiceUnavailableException if the generation queue is full.
+   */
+  public MessageJobDTO submitMessage(
+      String sessionId,
+      String userId,
+      String messageContent,
+      boolean bypassCache,
+      ModelRoute modelHint) {
+    ChatMessage userMessage =
+        timed(
+            PHASE_ACCEPT,
+            () ->
+                transactionTemplate.execute(
+                    status ->
+                        saveUserMessage(
+                            getSessionEntity(sessionId, userId), messageContent, null, null)));
+    ChatSession session = userMessage.getChatSession();
+    String jobId = userMessage.getId();
 
-    ChatMessage assistantMessage =
-        chatSessionMapper.toChatMessage(session, "assistant", assistantResponse);
-    assistantMessage = chatMessageRepository.save(assistantMessage);
+    MessageJobDTO job = messageJobRegistry.create(jobId, sessionId, userId);
+    Generation generation = generationRegistry.start(sessionId, userId);
+    try {
+      generationExecutor.execute(
+          () -> runMessageJob(jobId, session, messageContent, bypassCache, modelHint, generation));
+    } catch (TaskRejectedException e) {
+      generation.close();
+      messageJobRegistry.remove(jobId);
+      transactionTemplate.executeWithoutResult(
+          status -> chatMessageRepository.deleteById(userMessage.getId()));
+      throw new ServiceUnavailableException("Generation queue is full", e);
+    }
+    return job;
+  }
 
-    return chatSessionMapper.toMessageDTO(assistantMessage);
+  /**
+   * Stops the responses being generated in the specified chat session, whether requested by a
+   * blocking call, a stream or a message job. Only a streamed response has a partial response to
+   * keep; the others are discarded.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param userId The ID of the user.
+   * @param persistPartial Whether to store the partial response generated so far.
+   * @throws NotFoundException if no response is being generated in the session.
+   */
+  public void stopGeneration(String sessionId, String userId, boolean persistPartial) {
+    if (!generationRegistry.cancel(sessionId, userId, persistPartial)) {
+      throw new NotFoundException("No response is being generated");
+    }
+    log.info("Stopped generation in session {}", sessionId);
   }
 
   /**
-   * Retrieves the message history for the specified chat session.
+   * Retrieves the current state of a message job.
    *
+   * @param jobId The ID of the message job.
    * @param sessionId The ID of the chat session.
    * @param userId The ID of the user.
-   * @return A list of MessageDTOs representing the session history.
+   * @return The message job.
+   * @throws NotFoundException if the job is not found.
+   */
+  public MessageJobDTO getMessageJob(String jobId, String sessionId, String userId) {
+    return messageJobRegistry.get(jobId, sessionId, userId);
+  }
+
+  /**
+   * Waits for a message job to finish.
+   *
+   * @param jobId The ID of the message job.
+   * @param sessionId The ID of the chat session.
+   * @param userId The ID of the user.
+   * @return A Mono emitting the finished job.
+   * @throws NotFoundException if the job is not found.
+   */
+  public Mono<MessageJobDTO> awaitMessageJob(String jobId, String sessionId, String userId) {
+    return Mono.fromFuture(messageJobRegistry.await(jobId, sessionId, userId), true);
+  }
+
+  /**
+   * Retrieves a page of the message history of the specified chat session, oldest message first.
+   * Without a cursor the page holds the newest messages; {@code before} pages back to older
+   * messages and {@code after} forward to newer ones.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param userId The ID of the user.
+   * @param limit The maximum number of messages of the page.
+   * @param before The cursor to fetch the messages before, or null.
+   * @param after The cursor to fetch the messages after, or null.
+   * @return The page of MessageDTOs.
+   * @throws BadRequestException if the session is not found for the user, both cursors are given or
+   *     a cursor is invalid.
    */
   @Transactional(readOnly = true)
-  public List<MessageDTO> getSessionHistory(String sessionId, String userId) {
+  public CursorPageDTO<MessageDTO> getSessionHistory(
+      String sessionId, String userId, int limit, String before, String after) {
+    if (before != null && after != null) {
+      throw new BadRequestException("Only one of before and after can be given");
+    }
+    Cursor beforeCursor = CursorPages.decode(before);
+    Cursor afterCursor = CursorPages.decode(after);
+    if (!chatSessionRepository.existsByIdAndUserId(sessionId, userId)) {
+      throw new BadRequestException("Session not found");
+    }
+    Limit rows = Limit.of(limit + 1);
+    if (afterCursor != null) {
+      return CursorPages.forward(
+          chatMessageRepository.findMessagesAfter(
+              sessionId, afterCursor.timestamp(), afterCursor.id(), rows),
+          limit,
+          true,
+          ChatMessagesService::cursor,
+          chatSessionMapper::toMessageDTO);
+    }
     List<ChatMessage> messages =
-        chatMessageRepository.findByChatSessionIdOrderByTimestampAsc(sessionId);
+        beforeCursor != null
+            ? chatMessageRepository.findMessagesBefore(
+                sessionId, beforeCursor.timestamp(), beforeCursor.id(), rows)
+            : chatMessageRepository.findByChatSessionIdOrderByTimestampDescIdDesc(sessionId, rows);
+    return CursorPages.backward(
+        messages,
+        limit,
+        beforeCursor != null,
+        ChatMessagesService::cursor,
+        chatSessionMapper::toMessageDTO);
+  }
+
+  private static Cursor cursor(ChatMessage message) {
+    return new Cursor(message.getTimestamp(), message.getId());
+  }
+
+  /**
+   * Performs the exchange for a message. The exchange is split into three phases so no database
+   * connection is held while waiting on the language model: a short transaction accepting the
+   * user's message, the assistant call without a transaction, and a short transaction committing
+   * the reply. The assistant call is registered as a generation, so it can be stopped.
+   *
+   * <p>A keyed message is claimed when it is accepted, so no other node answers it at the same
+   * time. The claim is released when the generation fails, so a retry can answer it right away.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param userId The ID of the user.
+   * @param messageContent The content of the user's message.
+   * @param bypassCache Whether to generate a new response even if a cached one exists.
+   * @param modelHint The model route requested by the client, or null to let the router pick.
+   * @param idempotencyKey The client's key for this message, or null.
+   * @param requestHash The hash of the request, or null without idempotency key.
+   * @return The assistant's response as a MessageDTO.
+   */
+  private MessageDTO exchange(
+      String sessionId,
+      String userId,
+      String messageContent,
+      boolean bypassCache,
+      ModelRoute modelHint,
+      String idempotencyKey,
+      String requestHash) {
+    if (idempotencyKey != null) {
+      Optional<MessageDTO> storedReply =
+          transactionTemplate.execute(
+              status -> findStoredReply(sessionId, userId, idempotencyKey, requestHash));
+      if (storedReply != null && storedReply.isPresent()) {
+        log.info("Replaying stored response for idempotency key");
+        meterRegistry.counter(IDEMPOTENCY_METRIC, "outcome", "replayed").increment();
+        return storedReply.get();
+      }
+    }
+
+    ChatSession session;
+    try {
+      session =
+          timed(
+              PHASE_ACCEPT,
+              () ->
+                  transactionTemplate.execute(
+                      status ->
+                          prepareConversation(
+                              sessionId, userId, messageContent, idempotencyKey, requestHash)));
+    } catch (DataIntegrityViolationException e) {
+      // Another node stored the keyed message between the lookup and the insert
+      throw answerPending();
+    }
+
+    String assistantResponse;
+    try (Generation generation = generationRegistry.start(sessionId, userId)) {
+      assistantResponse =
+          timed(
+              PHASE_GENERATE,
+              () ->
+                  generation.run(
+                      () -> generate(sessionId, messageContent, bypassCache, modelHint)));
+    } catch (RuntimeException e) {
+      if (idempotencyKey != null) {
+        releaseClaim(sessionId, idempotencyKey);
+      }
+      throw e;
+    }
+
+    return commitReply(session, assistantResponse, idempotencyKey);
+  }
+
+  /**
+   * Looks up the assistant's reply stored earlier for the given idempotency key. Messages stored
+   * before request hashes were recorded have none and are taken to match.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param userId The ID of the user.
+   * @param idempotencyKey The client's key for the message.
+   * @param requestHash The hash of the request.
+   * @return The stored reply as a MessageDTO, if any.
+   * @throws BadRequestException if the session is not found.
+   * @throws UnprocessableEntityException if the key was used for a different request.
+   */
+  private Optional<MessageDTO> findStoredReply(
+      String sessionId, String userId, String idempotencyKey, String requestHash) {
+    getSessionEntity(sessionId, userId);
+    Optional<String> storedHash =
+        chatMessageRepository
+            .findFirstByChatSessionIdAndIdempotencyKeyAndRole(sessionId, idempotencyKey, "user")
+            .map(ChatMessage::getRequestHash);
+    if (storedHash.isPresent() && !storedHash.get().equals(requestHash)) {
+      meterRegistry.counter(IDEMPOTENCY_METRIC, "outcome", "rejected").increment();
+      throw new UnprocessableEntityException("Idempotency key reused for a different request");
+    }
+    return chatMessageRepository
+        .findFirstByChatSessionIdAndIdempotencyKeyAndRole(sessionId, idempotencyKey, "assistant")
+        .map(chatSessionMapper::toMessageDTO);
+  }
+
+  /**
+   * Stores the user's message in the specified chat session and claims its idempotency key. A
+   * message already stored under the same key by an earlier, failed attempt is not stored again,
+   * but claimed anew.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param userId The ID of the user.
+   * @param messageContent The content of the user's message.
+   * @param idempotencyKey The client's key for this message, or null.
+   * @param requestHash The hash of the request, or null without idempotency key.
+   * @return The ChatSession entity.
+   * @throws ConflictException if the message is being answered by another request.
+   */
+  private ChatSession prepareConversation(
+      String sessionId,
+      String userId,
+      String messageContent,
+      String idempotencyKey,
+      String requestHash) {
+    ChatSession session = getSessionEntity(sessionId, userId);
+
+    if (idempotencyKey != null) {
+      Optional<ChatMessage> keyedMessage =
+          chatMessageRepository.findWithLockByChatSessionIdAndIdempotencyKeyAndRole(
+              sessionId, idempotencyKey, "user");
+      if (keyedMessage.isPresent()) {
+        claim(keyedMessage.get());
+        return session;
+      }
+    }
+
+    ChatMessage userMessage = saveUserMessage(session, messageContent, idempotencyKey, requestHash);
+    if (idempotencyKey != null) {
+      claim(userMessage);
+    }
+    return session;
+  }
+
+  /**
+   * Claims the idempotency key of a user message for this request, unless another request holds an
+   * unexpired claim on it.
+   *
+   * @param userMessage The keyed user message, locked or just stored.
+   * @throws ConflictException if another request holds the claim.
+   */
+  private void claim(ChatMessage userMessage) {
+    LocalDateTime now = LocalDateTime.now();
+    if (userMessage.getClaimedUntil() != null && userMessage.getClaimedUntil().isAfter(now)) {
+      throw answerPending();
+    }
+    userMessage.setClaimedUntil(now.plus(claimTimeout));
+  }
+
+  /**
+   * Releases the claim on a keyed message whose generation failed. A failure to release is only
+   * logged: the claim then expires on its own.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param idempotencyKey The client's key for the message.
+   */
+  private void releaseClaim(String sessionId, String idempotencyKey) {
+    try {
+      transactionTemplate.execute(
+          status -> chatMessageRepository.releaseClaim(sessionId, idempotencyKey));
+    } catch (RuntimeException e) {
+      log.warn("Could not release claim on idempotency key", e);
+    }
+  }
+
+  private ConflictException answerPending() {
+    log.info("Message with idempotency key is being answered by another request");
+    meterRegistry.counter(IDEMPOTENCY_METRIC, "outcome", "pending").increment();
+    return new ConflictException("Message is already being answered", PENDING_RETRY_AFTER);
+  }
+
+  /**
+   * Persists the user's message in the given chat session.
+   *
+   * @param session The ChatSession entity.
+   * @param messageContent The content of the user's message.
+   * @param idempotencyKey The client's key for this message, or null.
+   * @param requestHash The hash of the request, or null without idempotency key.
+   * @return The persisted ChatMessage entity.
+   */
+  private ChatMessage saveUserMessage(
+      ChatSession session, String messageContent, String idempotencyKey, String requestHash) {
+    ChatMessage userMessage = chatSessionMapper.toChatMessage(session, "user", messageContent);
+    userMessage.setIdempotencyKey(idempotencyKey);
+    userMessage.setRequestHash(requestHash);
+    userMessage.setTokenCount(tokenCountEstimator.estimateTokenCountInText(messageContent));
+    return chatMessageRepository.save(userMessage);
+  }
+
+  /**
+   * Generates and stores the response of a message job, recording the outcome in the job.
+   *
+   * @param jobId The ID of the message job.
+   * @param session The ChatSession entity.
+   * @param messageContent The content of the user's message.
+   * @param bypassCache Whether to generate a new response even if a cached one exists.
+   * @param modelHint The model route requested by the client, or null to let the router pick.
+   * @param generation The registered generation of the job.
+   */
+  private void runMessageJob(
+      String jobId,
+      ChatSession session,
+      String messageContent,
+      boolean bypassCache,
+      ModelRoute modelHint,
+      Generation generation) {
+    messageJobRegistry.markRunning(jobId);
+    try (generation) {
+      String assistantResponse =
+          timed(
+              PHASE_GENERATE,
+              () ->
+                  generation.run(
+                      () -> generate(session.getId(), messageContent, bypassCache, modelHint)));
+      MessageDTO message = commitReply(session, assistantResponse, null);
+      messageJobRegistry.complete(jobId, message);
+    } catch (GenerationCancelledException e) {
+      log.info("Generation of job {} was cancelled", jobId);
+      messageJobRegistry.fail(jobId, e.getErrorCode());
+    } catch (GenericException e) {
+      log.error("An error occurred while generating response for job {}", jobId, e);
+      messageJobRegistry.fail(jobId, e.getErrorCode());
+    } catch (RuntimeException e) {
+      log.error("An error occurred while generating response for job {}", jobId, e);
+      messageJobRegistry.fail(jobId, GenericErrorCodes.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Gets a response from the assistant on the route picked by the model router, served from the
+   * response cache when possible.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param messageContent The content of the user's message.
+   * @param bypassCache Whether to generate a new response even if a cached one exists.
+   * @param modelHint The model route requested by the client, or null to let the router pick.
+   * @return The assistant's response.
+   */
+  private String generate(
+      String sessionId, String messageContent, boolean bypassCache, ModelRoute modelHint) {
+    ModelRoute route = modelRouter.route(sessionId, messageContent, modelHint);
+    if (bypassCache) {
+      return modelRouter.chat(route, sessionId, messageContent);
+    }
+    return chatResponseCache.get(
+        modelRouter.modelName(route),
+        chatMemoryProvider.get(sessionId),
+        messageContent,
+        () -> modelRouter.chat(route, sessionId, messageContent));
+  }
 
-    return messages.stream().map(chatSessionMapper::toMessageDTO).collect(Collectors.toList());
+  /**
+   * Commits the assistant's response in a short transaction, then lets the summarizer catch up with
+   * the conversation in the background. When a reply to the same idempotency key was committed
+   * first, that reply is returned instead.
+   *
+   * @param session The ChatSession entity.
+   * @param content The content of the assistant's response.
+   * @param idempotencyKey The client's key for the message answered, or null.
+   * @return The persisted message as a MessageDTO.
+   */
+  private MessageDTO commitReply(ChatSession session, String content, String idempotencyKey) {
+    MessageDTO message;
+    try {
+      message =
+          timed(
+              PHASE_COMMIT,
+              () ->
+                  transactionTemplate.execute(
+                      status -> saveAssistantMessage(session, content, idempotencyKey)));
+    } catch (DataIntegrityViolationException e) {
+      if (idempotencyKey == null) {
+        throw e;
+      }
+      return replayCommittedReply(session.getId(), idempotencyKey, e);
+    }
+    conversationSummarizer.summarizeInBackground(session.getId());
+    return message;
+  }
+
+  /**
+   * Returns the reply committed first for an idempotency key, after this request's reply to the
+   * same key was rejected by the unique index, for instance because its claim had expired.
+   *
+   * @param sessionId The ID of the chat session.
+   * @param idempotencyKey The client's key for the message answered.
+   * @param violation The rejection of this request's reply.
+   * @return The reply committed first as a MessageDTO.
+   */
+  private MessageDTO replayCommittedReply(
+      String sessionId, String idempotencyKey, DataIntegrityViolationException violation) {
+    MessageDTO reply =
+        transactionTemplate.execute(
+            status ->
+                chatMessageRepository
+                    .findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+                        sessionId, idempotencyKey, "assistant")
+                    .map(chatSessionMapper::toMessageDTO)
+                    .orElseThrow(() -> violation));
+    log.info("Reply to idempotency key was committed by another request, replaying it");
+    meterRegistry.counter(IDEMPOTENCY_METRIC, "outcome", "replayed").increment();
+    return reply;
+  }
+
+  /**
+   * Persists the assistant's response in the given chat session.
+   *
+   * @param session The ChatSession entity.
+   * @param content The content of the assistant's response.
+   * @param idempotencyKey The client's key for the message answered, or null.
+   * @return The persisted message as a MessageDTO.
+   */
+  private MessageDTO saveAssistantMessage(
+      ChatSession session, String content, String idempotencyKey) {
+    ChatMessage assistantMessage = chatSessionMapper.toChatMessage(session, "assistant", content);
+    assistantMessage.setIdempotencyKey(idempotencyKey);
+    assistantMessage.setTokenCount(tokenCountEstimator.estimateTokenCountInText(content));
+    assistantMessage = chatMessageRepository.save(assistantMessage);
+    return chatSessionMapper.toMessageDTO(assistantMessage);
+  }
+
+  /**
+   * Hashes the parts of a send request that decide what is stored and answered, so a retry can be
+   * told from a different request with the same idempotency key.
+   *
+   * @param messageContent The content of the user's message.
+   * @param bypassCache Whether to generate a new response even if a cached one exists.
+   * @param modelHint The model route requested by the client, or null.
+   * @return The hex encoded SHA-256 hash of the request.
+   */
+  static String requestHash(String messageContent, boolean bypassCache, ModelRoute modelHint) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(String.valueOf(modelHint).getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) (bypassCache ? 1 : 0));
+      digest.update(messageContent.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /**
+   * Records the duration of a phase of the send pipeline.
+   *
+   * @param phase The name of the phase.
+   * @param supplier The work performed in the phase.
+   * @return The result of the supplier.
+   */
+  private <T> T timed(String phase, Supplier<T> supplier) {
+    return meterRegistry.timer(SEND_PHASE_METRIC, "phase", phase).record(supplier);
   }
 
   /**
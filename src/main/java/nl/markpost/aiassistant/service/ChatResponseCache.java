@@ -0,0 +1,98 @@
+package nl.markpost.aiassistant.service;
+
+import static dev.langchain4j.data.message.ChatMessageSerializer.messagesToJson;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * An exact-match cache of assistant responses. Responses are keyed by a hash of the model name and
+ * the exact context sent to the model: the session's message window (including any system message)
+ * followed by the new user message. Cache statistics are published as {@code cache.*} metrics
+ * tagged {@code cache=chat.response}.
+ */
+@Slf4j
+@Component
+public class ChatResponseCache {
+
+  private final boolean enabled;
+  private final Cache<String, String> cache;
+
+  public ChatResponseCache(
+      MeterRegistry meterRegistry,
+      @Value("${assistant.response-cache.enabled:false}") boolean enabled,
+      @Value("${assistant.response-cache.max-size:10000}") long maxSize,
+      @Value("${assistant.response-cache.ttl:1h}") Duration ttl) {
+    this.enabled = enabled;
+    this.cache =
+        Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "chat.response");
+  }
+
+  /**
+   * Returns the cached response for the given context, or generates and caches it. On a hit the
+   * user message and cached response are added to the memory, as the assistant would have done.
+   *
+   * @param modelName the name of the model answering the message
+   * @param memory the chat memory of the session, before the user message is added
+   * @param userMessage the content of the user's message
+   * @param generator generates the response on a miss
+   * @return the assistant's response
+   */
+  public String get(
+      String modelName, ChatMemory memory, String userMessage, Supplier<String> generator) {
+    if (!enabled) {
+      return generator.get();
+    }
+    String key = key(modelName, memory.messages(), userMessage);
+    String cached = cache.getIfPresent(key);
+    if (cached != null) {
+      log.debug("Serving cached response for session {}", memory.id());
+      memory.add(UserMessage.from(userMessage));
+      memory.add(AiMessage.from(cached));
+      return cached;
+    }
+    String response = generator.get();
+    cache.put(key, response);
+    return response;
+  }
+
+  /**
+   * Computes the cache key of a context.
+   *
+   * @param modelName the name of the model answering the message
+   * @param window the message window of the session
+   * @param userMessage the content of the user's message
+   * @return the hex encoded SHA-256 hash of the model name and messages
+   */
+  private String key(String modelName, List<ChatMessage> window, String userMessage) {
+    List<ChatMessage> messages = new ArrayList<>(window);
+    messages.add(UserMessage.from(userMessage));
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(modelName.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      digest.update(messagesToJson(messages).getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
@@ -1,16 +1,20 @@
 package nl.markpost.aiassistant.service;
 
-import dev.langchain4j.memory.ChatMemory;
 import java.util.List;
-import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.markpost.aiassistant.exception.BadRequestException;
 import nl.markpost.aiassistant.mapper.ChatSessionMapper;
 import nl.markpost.aiassistant.models.ChatSessionDTO;
+import nl.markpost.aiassistant.models.ChatSessionOverview;
+import nl.markpost.aiassistant.models.Cursor;
+import nl.markpost.aiassistant.models.CursorPageDTO;
+import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.entity.ChatMessage;
 import nl.markpost.aiassistant.models.entity.ChatSession;
 import nl.markpost.aiassistant.repository.ChatMessageRepository;
 import nl.markpost.aiassistant.repository.ChatSessionRepository;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,8 +26,7 @@ public class ChatSessionService {
 
   private final ChatSessionRepository chatSessionRepository;
   private final ChatMessageRepository chatMessageRepository;
-  private final Assistant assistant;
-  private final ChatMemory chatMemory;
+  private final SessionChatMemoryProvider chatMemoryProvider;
   private final ChatSessionMapper chatSessionMapper;
 
   /**
@@ -42,30 +45,72 @@ public class ChatSessionService {
   }
 
   /**
-   * Retrieves all chat sessions for the specified user.
+   * Retrieves a page of the chat sessions of the specified user, most recently updated first, with
+   * the number of messages and a preview of the latest message of each session. Without a cursor
+   * the page holds the most recently updated sessions; {@code after} pages on to less recently
+   * updated sessions and {@code before} back to more recently updated ones.
    *
    * @param userId The ID of the user.
-   * @return A list of ChatSessionDTOs.
+   * @param limit The maximum number of sessions of the page.
+   * @param before The cursor to fetch the sessions before, or null.
+   * @param after The cursor to fetch the sessions after, or null.
+   * @return The page of ChatSessionDTOs.
+   * @throws BadRequestException if both cursors are given or a cursor is invalid.
    */
   @Transactional(readOnly = true)
-  public List<ChatSessionDTO> getUserSessions(String userId) {
-    List<ChatSession> sessions = chatSessionRepository.findByUserIdOrderByUpdatedAtDesc(userId);
-    return sessions.stream()
-        .map(chatSessionMapper::toDTOWithoutMessages)
-        .collect(Collectors.toList());
+  public CursorPageDTO<ChatSessionDTO> getUserSessions(
+      String userId, int limit, String before, String after) {
+    if (before != null && after != null) {
+      throw new BadRequestException("Only one of before and after can be given");
+    }
+    Cursor beforeCursor = CursorPages.decode(before);
+    Cursor afterCursor = CursorPages.decode(after);
+    Limit rows = Limit.of(limit + 1);
+    if (beforeCursor != null) {
+      return CursorPages.backward(
+          chatSessionRepository.findOverviewsBefore(
+              userId, beforeCursor.timestamp(), beforeCursor.id(), rows),
+          limit,
+          true,
+          ChatSessionService::cursor,
+          chatSessionMapper::toDTO);
+    }
+    List<ChatSessionOverview> sessions =
+        afterCursor != null
+            ? chatSessionRepository.findOverviewsAfter(
+                userId, afterCursor.timestamp(), afterCursor.id(), rows)
+            : chatSessionRepository.findOverviews(userId, rows);
+    return CursorPages.forward(
+        sessions, limit, afterCursor != null, ChatSessionService::cursor, chatSessionMapper::toDTO);
   }
 
   /**
-   * Retrieves a specific chat session by ID for the specified user.
+   * Retrieves a specific chat session by ID for the specified user, with its newest messages,
+   * oldest first. The messages are fetched by a bounded query instead of through the session's
+   * message collection, so a long session is never loaded in full. Older messages are paged with
+   * the history of the session, from the cursor returned with the session.
    *
    * @param sessionId The ID of the chat session.
    * @param userId The ID of the user.
-   * @return The ChatSessionDTO with messages.
+   * @param limit The maximum number of messages of the session.
+   * @return The ChatSessionDTO with its newest messages and the cursor to the older messages.
+   * @throws BadRequestException if the session is not found.
    */
   @Transactional(readOnly = true)
-  public ChatSessionDTO getSession(String sessionId, String userId) {
+  public ChatSessionDTO getSession(String sessionId, String userId, int limit) {
     ChatSession session = getSessionEntity(sessionId, userId);
-    return chatSessionMapper.toDTOWithMessages(session);
+    CursorPageDTO<MessageDTO> messages =
+        CursorPages.backward(
+            chatMessageRepository.findByChatSessionIdOrderByTimestampDescIdDesc(
+                sessionId, Limit.of(limit + 1)),
+            limit,
+            false,
+            ChatSessionService::messageCursor,
+            chatSessionMapper::toMessageDTO);
+    ChatSessionDTO sessionDTO = chatSessionMapper.toDTOWithoutMessages(session);
+    sessionDTO.setMessages(messages.getItems());
+    sessionDTO.setMessagesBefore(messages.getBefore());
+    return sessionDTO;
   }
 
   /**
@@ -96,6 +141,15 @@ public class ChatSessionService {
   public void deleteSession(String sessionId, String userId) {
     ChatSession session = getSessionEntity(sessionId, userId);
     chatSessionRepository.delete(session);
+    chatMemoryProvider.evict(sessionId);
+  }
+
+  private static Cursor cursor(ChatSessionOverview session) {
+    return new Cursor(session.updatedAt(), session.id());
+  }
+
+  private static Cursor messageCursor(ChatMessage message) {
+    return new Cursor(message.getTimestamp(), message.getId());
   }
 
   /**
@@ -0,0 +1,31 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import nl.markpost.aiassistant.service.AdaptiveConcurrencyLimiter.Permit;
+
+/** Chat model holding a permit of the {@link AdaptiveConcurrencyLimiter} for every call. */
+public class ConcurrencyLimitedChatModel extends DelegatingChatModel {
+
+  private final AdaptiveConcurrencyLimiter limiter;
+
+  public ConcurrencyLimitedChatModel(ChatModel delegate, AdaptiveConcurrencyLimiter limiter) {
+    super(delegate);
+    this.limiter = limiter;
+  }
+
+  @Override
+  public ChatResponse chat(ChatRequest chatRequest, ChatRequestOptions options) {
+    Permit permit = limiter.acquire();
+    try {
+      ChatResponse response = delegate.chat(chatRequest, options);
+      permit.success();
+      return response;
+    } catch (RuntimeException e) {
+      permit.failure(e);
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import nl.markpost.aiassistant.service.AdaptiveConcurrencyLimiter.Permit;
+
+/**
+ * Streaming chat model holding a permit of the {@link AdaptiveConcurrencyLimiter} until the
+ * response stream completes, fails or is cancelled through its streaming handle.
+ */
+public class ConcurrencyLimitedStreamingChatModel extends DelegatingStreamingChatModel {
+
+  private final AdaptiveConcurrencyLimiter limiter;
+
+  public ConcurrencyLimitedStreamingChatModel(
+      StreamingChatModel delegate, AdaptiveConcurrencyLimiter limiter) {
+    super(delegate);
+    this.limiter = limiter;
+  }
+
+  @Override
+  public void chat(
+      ChatRequest chatRequest, ChatRequestOptions options, StreamingChatResponseHandler handler) {
+    Permit permit = limiter.acquire();
+    try {
+      delegate.chat(
+          chatRequest,
+          options,
+          new DelegatingStreamingChatResponseHandler(handler) {
+            @Override
+            public void onPartialResponse(
+                PartialResponse partialResponse, PartialResponseContext context) {
+              super.onPartialResponse(
+                  partialResponse,
+                  new PartialResponseContext(releasing(context.streamingHandle(), permit)));
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+              permit.success();
+              super.onCompleteResponse(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+              permit.failure(error);
+              super.onError(error);
+            }
+          });
+    } catch (RuntimeException e) {
+      permit.failure(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Wraps a streaming handle so cancelling the stream releases its permit, as a cancelled stream
+   * neither completes nor fails.
+   */
+  private static StreamingHandle releasing(StreamingHandle streamingHandle, Permit permit) {
+    return new StreamingHandle() {
+      @Override
+      public void cancel() {
+        permit.cancel();
+        streamingHandle.cancel();
+      }
+
+      @Override
+      public boolean isCancelled() {
+        return streamingHandle.isCancelled();
+      }
+    };
+  }
+}
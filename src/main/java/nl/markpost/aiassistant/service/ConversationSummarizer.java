@@ -0,0 +1,180 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import nl.markpost.aiassistant.models.entity.ChatMessage;
+import nl.markpost.aiassistant.models.entity.ChatSession;
+import nl.markpost.aiassistant.repository.ChatMessageRepository;
+import nl.markpost.aiassistant.repository.ChatSessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Condenses the older messages of long conversations into a summary stored on the chat session.
+ * Once more than the trigger number of messages are not covered by the summary, all but the most
+ * recent ones are folded into it, so the summary grows incrementally. The chat memory puts the
+ * summary in front of the recent messages, keeping the context size constant however long the
+ * conversation gets.
+ *
+ * <p>Summaries are made in the background on the summary executor, at most one at a time per
+ * session, and never delay a response. Outcomes are counted as the {@code chat.summaries} metric.
+ */
+@Slf4j
+@Component
+public class ConversationSummarizer {
+
+  /** Cursor of sessions that have not been summarized yet; older than any message. */
+  static final LocalDateTime NOT_SUMMARIZED = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+  private static final String SUMMARIES_METRIC = "chat.summaries";
+
+  private static final String INSTRUCTIONS =
+      """
+      You maintain a running summary of a conversation between a user and an assistant. Update \
+      the existing summary with the new messages. Keep facts, decisions, names, preferences and \
+      open questions that later messages may refer to; leave out pleasantries. Write at most a few \
+      short paragraphs and reply with the summary only.""";
+
+  private final ChatModel chatModel;
+  private final ChatSessionRepository chatSessionRepository;
+  private final ChatMessageRepository chatMessageRepository;
+  private final SessionChatMemoryProvider chatMemoryProvider;
+  private final TransactionTemplate transactionTemplate;
+  private final TaskExecutor summaryExecutor;
+  private final MeterRegistry meterRegistry;
+  private final boolean enabled;
+  private final int triggerMessages;
+  private final int keepRecent;
+  private final int maxBatch;
+  private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+  public ConversationSummarizer(
+      ChatModel chatModel,
+      ChatSessionRepository chatSessionRepository,
+      ChatMessageRepository chatMessageRepository,
+      SessionChatMemoryProvider chatMemoryProvider,
+      TransactionTemplate transactionTemplate,
+      TaskExecutor summaryExecutor,
+      MeterRegistry meterRegistry,
+      @Value("${assistant.summary.enabled:true}") boolean enabled,
+      @Value("${assistant.summary.trigger-messages:40}") int triggerMessages,
+      @Value("${assistant.summary.keep-recent:20}") int keepRecent,
+      @Value("${assistant.summary.max-batch:100}") int maxBatch) {
+    this.chatModel = chatModel;
+    this.chatSessionRepository = chatSessionRepository;
+    this.chatMessageRepository = chatMessageRepository;
+    this.chatMemoryProvider = chatMemoryProvider;
+    this.transactionTemplate = transactionTemplate;
+    this.summaryExecutor = summaryExecutor;
+    this.meterRegistry = meterRegistry;
+    this.enabled = enabled;
+    this.triggerMessages = triggerMessages;
+    this.keepRecent = keepRecent;
+    this.maxBatch = maxBatch;
+  }
+
+  /**
+   * Schedules a summary update of the given session, unless one is already running. Returns right
+   * away; when the summary executor is busy the update is skipped, and retried after the next
+   * message.
+   *
+   * @param sessionId the ID of the chat session
+   */
+  public void summarizeInBackground(String sessionId) {
+    if (!enabled || !running.add(sessionId)) {
+      return;
+    }
+    try {
+      summaryExecutor.execute(
+          () -> {
+            try {
+              summarize(sessionId);
+            } finally {
+              running.remove(sessionId);
+            }
+          });
+    } catch (TaskRejectedException e) {
+      running.remove(sessionId);
+      log.debug("Summary queue is full, skipping summary of session {}", sessionId);
+      meterRegistry.counter(SUMMARIES_METRIC, "outcome", "skipped").increment();
+    }
+  }
+
+  /**
+   * Folds the older messages of the given session into its summary, if enough messages are not
+   * covered by it yet. The language model is called outside of a transaction.
+   *
+   * @param sessionId the ID of the chat session
+   */
+  void summarize(String sessionId) {
+    try {
+      Batch batch = transactionTemplate.execute(status -> nextBatch(sessionId));
+      if (batch == null) {
+        return;
+      }
+      String summary =
+          chatModel
+              .chat(SystemMessage.from(INSTRUCTIONS), UserMessage.from(prompt(batch)))
+              .aiMessage()
+              .text();
+      LocalDateTime summarizedUntil = batch.messages().getLast().getTimestamp();
+      transactionTemplate.executeWithoutResult(
+          status -> chatSessionRepository.updateSummary(sessionId, summary, summarizedUntil));
+      chatMemoryProvider.evict(sessionId);
+      meterRegistry.counter(SUMMARIES_METRIC, "outcome", "success").increment();
+      log.debug("Summarized {} messages of session {}", batch.messages().size(), sessionId);
+    } catch (RuntimeException e) {
+      log.warn("Failed to summarize session {}", sessionId, e);
+      meterRegistry.counter(SUMMARIES_METRIC, "outcome", "failure").increment();
+    }
+  }
+
+  /**
+   * Determines the messages to fold into the summary: the oldest messages not covered by it,
+   * leaving the most recent ones out.
+   *
+   * @param sessionId the ID of the chat session
+   * @return the current summary and the messages to add to it, or null if none are due
+   */
+  private Batch nextBatch(String sessionId) {
+    ChatSession session = chatSessionRepository.findById(sessionId).orElse(null);
+    if (session == null) {
+      return null;
+    }
+    LocalDateTime after =
+        session.getSummarizedUntil() != null ? session.getSummarizedUntil() : NOT_SUMMARIZED;
+    long unsummarized =
+        chatMessageRepository.countByChatSessionIdAndTimestampAfter(sessionId, after);
+    if (unsummarized <= triggerMessages) {
+      return null;
+    }
+    int size = (int) Math.min(unsummarized - keepRecent, maxBatch);
+    List<ChatMessage> messages =
+        chatMessageRepository.findByChatSessionIdAndTimestampAfterOrderByTimestampAsc(
+            sessionId, after, PageRequest.of(0, size));
+    return messages.isEmpty() ? null : new Batch(session.getSummary(), messages);
+  }
+
+  private String prompt(Batch batch) {
+    StringBuilder prompt = new StringBuilder("Existing summary:\n");
+    prompt.append(batch.summary() != null ? batch.summary() : "(none)");
+    prompt.append("\n\nNew messages:\n");
+    for (ChatMessage message : batch.messages()) {
+      prompt.append(message.getRole()).append(": ").append(message.getContent()).append('\n');
+    }
+    return prompt.toString();
+  }
+
+  private record Batch(String summary, List<ChatMessage> messages) {}
+}
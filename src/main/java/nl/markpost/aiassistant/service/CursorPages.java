@@ -0,0 +1,78 @@
+package nl.markpost.aiassistant.service;
+
+import java.util.List;
+import java.util.function.Function;
+import nl.markpost.aiassistant.models.Cursor;
+import nl.markpost.aiassistant.models.CursorPageDTO;
+
+/**
+ * Builds cursor pages from keyset queries. A query fetches one row more than the limit, from the
+ * cursor in the direction being paged, so whether more rows follow is known without counting.
+ */
+final class CursorPages {
+
+  private CursorPages() {}
+
+  /**
+   * Builds the page following a position in the list.
+   *
+   * @param rows up to limit + 1 rows after the position, in list order
+   * @param limit the maximum number of items of the page
+   * @param hasBefore whether there are items before the position
+   * @param cursor the cursor of a row
+   * @param mapper maps a row to an item
+   * @return the page
+   */
+  static <E, T> CursorPageDTO<T> forward(
+      List<E> rows,
+      int limit,
+      boolean hasBefore,
+      Function<E, Cursor> cursor,
+      Function<E, T> mapper) {
+    List<E> page = rows.subList(0, Math.min(rows.size(), limit));
+    return page(page, hasBefore, rows.size() > limit, cursor, mapper);
+  }
+
+  /**
+   * Builds the page preceding a position in the list.
+   *
+   * @param rows up to limit + 1 rows before the position, in reverse list order
+   * @param limit the maximum number of items of the page
+   * @param hasAfter whether there are items after the position
+   * @param cursor the cursor of a row
+   * @param mapper maps a row to an item
+   * @return the page
+   */
+  static <E, T> CursorPageDTO<T> backward(
+      List<E> rows,
+      int limit,
+      boolean hasAfter,
+      Function<E, Cursor> cursor,
+      Function<E, T> mapper) {
+    List<E> page = rows.subList(0, Math.min(rows.size(), limit)).reversed();
+    return page(page, rows.size() > limit, hasAfter, cursor, mapper);
+  }
+
+  /**
+   * Decodes a cursor, if given.
+   *
+   * @param value the encoded cursor, or null
+   * @return the cursor, or null
+   */
+  static Cursor decode(String value) {
+    return value != null ? Cursor.decode(value) : null;
+  }
+
+  private static <E, T> CursorPageDTO<T> page(
+      List<E> page,
+      boolean hasBefore,
+      boolean hasAfter,
+      Function<E, Cursor> cursor,
+      Function<E, T> mapper) {
+    return CursorPageDTO.<T>builder()
+        .items(page.stream().map(mapper).toList())
+        .before(hasBefore && !page.isEmpty() ? cursor.apply(page.getFirst()).encode() : null)
+        .after(hasAfter && !page.isEmpty() ? cursor.apply(page.getLast()).encode() : null)
+        .build();
+  }
+}
@@ -0,0 +1,44 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import java.util.Set;
+
+/**
+ * Base class for chat models decorating another chat model. Forwards every call to the delegate,
+ * which applies its own default parameters and listeners; subclasses override {@link
+ * #chat(ChatRequest, ChatRequestOptions)} to add behaviour around the call.
+ */
+public abstract class DelegatingChatModel implements ChatModel {
+
+  protected final ChatModel delegate;
+
+  protected DelegatingChatModel(ChatModel delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public ChatResponse chat(ChatRequest chatRequest, ChatRequestOptions options) {
+    return delegate.chat(chatRequest, options);
+  }
+
+  @Override
+  public ChatRequestParameters defaultRequestParameters() {
+    return delegate.defaultRequestParameters();
+  }
+
+  @Override
+  public ModelProvider provider() {
+    return delegate.provider();
+  }
+
+  @Override
+  public Set<Capability> supportedCapabilities() {
+    return delegate.supportedCapabilities();
+  }
+}
@@ -0,0 +1,45 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import java.util.Set;
+
+/**
+ * Base class for streaming chat models decorating another streaming chat model. Forwards every call
+ * to the delegate; subclasses override {@link #chat(ChatRequest, ChatRequestOptions,
+ * StreamingChatResponseHandler)} to add behaviour around the call.
+ */
+public abstract class DelegatingStreamingChatModel implements StreamingChatModel {
+
+  protected final StreamingChatModel delegate;
+
+  protected DelegatingStreamingChatModel(StreamingChatModel delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void chat(
+      ChatRequest chatRequest, ChatRequestOptions options, StreamingChatResponseHandler handler) {
+    delegate.chat(chatRequest, options, handler);
+  }
+
+  @Override
+  public ChatRequestParameters defaultRequestParameters() {
+    return delegate.defaultRequestParameters();
+  }
+
+  @Override
+  public ModelProvider provider() {
+    return delegate.provider();
+  }
+
+  @Override
+  public Set<Capability> supportedCapabilities() {
+    return delegate.supportedCapabilities();
+  }
+}
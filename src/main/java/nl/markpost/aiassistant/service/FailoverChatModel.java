@@ -0,0 +1,110 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import java.util.ArrayList;
+import java.util.List;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+
+/**
+ * Chat model failing over between providers. Providers are tried in order of preference, skipping
+ * the ones whose {@link ProviderHealth} is down and, in part, the ones still recovering. A call
+ * that fails, other than for an invalid request, is retried on the next provider. A call failing
+ * with no provider left is recorded on the last provider tried, or on the primary provider when
+ * none was available. The first provider determines the default parameters, so callers see a single
+ * model.
+ */
+public class FailoverChatModel extends DelegatingChatModel {
+
+  private final List<Provider> providers;
+
+  /**
+   * Creates a new FailoverChatModel.
+   *
+   * @param providers the providers in order of preference; the first one is the primary
+   */
+  public FailoverChatModel(List<Provider> providers) {
+    super(providers.getFirst().model());
+    this.providers = List.copyOf(providers);
+  }
+
+  @Override
+  public ChatResponse chat(ChatRequest chatRequest, ChatRequestOptions options) {
+    List<Provider> tried = new ArrayList<>(providers.size());
+    RuntimeException lastFailure = null;
+    // The first pass limits the traffic to recovering providers, the second only skips the ones
+    // that are down
+    for (boolean honourTrafficShare : new boolean[] {true, false}) {
+      for (Provider provider : providers) {
+        if (tried.contains(provider) || !provider.health().tryAcquire(honourTrafficShare)) {
+          continue;
+        }
+        if (!tried.isEmpty()) {
+          tried.getLast().health().recordFailover(lastFailure);
+        }
+        tried.add(provider);
+        long start = System.nanoTime();
+        try {
+          ChatResponse response =
+              provider
+                  .model()
+                  .chat(
+                      forProvider(
+                          chatRequest, provider.model().defaultRequestParameters().modelName()),
+                      options);
+          provider.health().onSuccess(start);
+          return response;
+        } catch (RuntimeException e) {
+          if (Thread.currentThread().isInterrupted()) {
+            // Cancelled by the caller, which says nothing about the provider
+            provider.health().release();
+            throw e;
+          }
+          provider.health().onError(start, e);
+          if (e instanceof InvalidRequestException) {
+            throw e;
+          }
+          lastFailure = e;
+        }
+      }
+    }
+    if (lastFailure != null) {
+      tried.getLast().health().recordExhausted(lastFailure);
+      throw lastFailure;
+    }
+    ServiceUnavailableException unavailable =
+        new ServiceUnavailableException("No language model provider is available");
+    providers.getFirst().health().recordExhausted(unavailable);
+    throw unavailable;
+  }
+
+  /**
+   * Points a request at the model of the given provider, as the requested model, if any, is the
+   * model of the primary provider.
+   */
+  static ChatRequest forProvider(ChatRequest chatRequest, String modelName) {
+    if (chatRequest.modelName() == null
+        || modelName == null
+        || modelName.equals(chatRequest.modelName())) {
+      return chatRequest;
+    }
+    return chatRequest.toBuilder()
+        .parameters(
+            chatRequest
+                .parameters()
+                .overrideWith(ChatRequestParameters.builder().modelName(modelName).build()))
+        .build();
+  }
+
+  /**
+   * A provider of the model.
+   *
+   * @param health the health of the provider
+   * @param model the model of the provider
+   */
+  public record Provider(ProviderHealth health, ChatModel model) {}
+}
@@ -0,0 +1,205 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialThinkingContext;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCallContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import java.util.ArrayList;
+import java.util.List;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+
+/**
+ * Streaming chat model failing over between providers, like {@link FailoverChatModel}. A stream can
+ * only fail over until it has produced something: tokens already sent to the client cannot be taken
+ * back. The health of a provider is judged by the time to its first token.
+ */
+public class FailoverStreamingChatModel extends DelegatingStreamingChatModel {
+
+  private final List<Provider> providers;
+
+  /**
+   * Creates a new FailoverStreamingChatModel.
+   *
+   * @param providers the providers in order of preference; the first one is the primary
+   */
+  public FailoverStreamingChatModel(List<Provider> providers) {
+    super(providers.getFirst().model());
+    this.providers = List.copyOf(providers);
+  }
+
+  @Override
+  public void chat(
+      ChatRequest chatRequest, ChatRequestOptions options, StreamingChatResponseHandler handler) {
+    new Failover(chatRequest, options, handler).next(null);
+  }
+
+  /** The attempts of a single call, each on the next available provider. */
+  private final class Failover {
+
+    private final ChatRequest chatRequest;
+    private final ChatRequestOptions options;
+    private final StreamingChatResponseHandler handler;
+    private final List<Provider> tried = new ArrayList<>(providers.size());
+
+    private Failover(
+        ChatRequest chatRequest, ChatRequestOptions options, StreamingChatResponseHandler handler) {
+      this.chatRequest = chatRequest;
+      this.options = options;
+      this.handler = handler;
+    }
+
+    /**
+     * Starts a stream on the next available provider, or reports the failure of the last one.
+     *
+     * @param lastFailure the failure of the last provider tried, or null if none was tried
+     */
+    private void next(RuntimeException lastFailure) {
+      Provider provider = nextProvider();
+      if (provider == null) {
+        if (lastFailure == null) {
+          ServiceUnavailableException unavailable =
+              new ServiceUnavailableException("No language model provider is available");
+          providers.getFirst().health().recordExhausted(unavailable);
+          throw unavailable;
+        }
+        tried.getLast().health().recordExhausted(lastFailure);
+        handler.onError(lastFailure);
+        return;
+      }
+      if (!tried.isEmpty()) {
+        tried.getLast().health().recordFailover(lastFailure);
+      }
+      tried.add(provider);
+      Attempt attempt = new Attempt(provider);
+      try {
+        provider
+            .model()
+            .chat(
+                FailoverChatModel.forProvider(
+                    chatRequest, provider.model().defaultRequestParameters().modelName()),
+                options,
+                attempt);
+      } catch (RuntimeException e) {
+        attempt.onError(e);
+      }
+    }
+
+    /**
+     * Picks the next provider to try. The first pass limits the traffic to recovering providers,
+     * the second only skips the ones that are down.
+     */
+    private Provider nextProvider() {
+      for (boolean honourTrafficShare : new boolean[] {true, false}) {
+        for (Provider provider : providers) {
+          if (!tried.contains(provider) && provider.health().tryAcquire(honourTrafficShare)) {
+            return provider;
+          }
+        }
+      }
+      return null;
+    }
+
+    /** Handler of the stream of a single provider. */
+    private final class Attempt extends DelegatingStreamingChatResponseHandler {
+
+      private final Provider provider;
+      private final long start = System.nanoTime();
+      private boolean started;
+
+      private Attempt(Provider provider) {
+        super(handler);
+        this.provider = provider;
+      }
+
+      /** Marks the stream as started once it produces something, which judges the provider. */
+      private void start() {
+        if (!started) {
+          started = true;
+          provider.health().onSuccess(start);
+        }
+      }
+
+      @Override
+      public void onPartialResponse(String partialResponse) {
+        start();
+        super.onPartialResponse(partialResponse);
+      }
+
+      @Override
+      public void onPartialResponse(
+          PartialResponse partialResponse, PartialResponseContext context) {
+        start();
+        super.onPartialResponse(partialResponse, context);
+      }
+
+      @Override
+      public void onPartialThinking(PartialThinking partialThinking) {
+        start();
+        super.onPartialThinking(partialThinking);
+      }
+
+      @Override
+      public void onPartialThinking(
+          PartialThinking partialThinking, PartialThinkingContext context) {
+        start();
+        super.onPartialThinking(partialThinking, context);
+      }
+
+      @Override
+      public void onPartialToolCall(PartialToolCall partialToolCall) {
+        start();
+        super.onPartialToolCall(partialToolCall);
+      }
+
+      @Override
+      public void onPartialToolCall(
+          PartialToolCall partialToolCall, PartialToolCallContext context) {
+        start();
+        super.onPartialToolCall(partialToolCall, context);
+      }
+
+      @Override
+      public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+        start();
+        super.onCompleteToolCall(completeToolCall);
+      }
+
+      @Override
+      public void onCompleteResponse(ChatResponse completeResponse) {
+        start();
+        super.onCompleteResponse(completeResponse);
+      }
+
+      @Override
+      public void onError(Throwable error) {
+        if (started) {
+          super.onError(error);
+          return;
+        }
+        provider.health().onError(start, error);
+        if (error instanceof InvalidRequestException || !(error instanceof RuntimeException e)) {
+          super.onError(error);
+          return;
+        }
+        next(e);
+      }
+    }
+  }
+
+  /**
+   * A provider of the streaming model.
+   *
+   * @param health the health of the provider
+   * @param model the streaming model of the provider
+   */
+  public record Provider(ProviderHealth health, StreamingChatModel model) {}
+}
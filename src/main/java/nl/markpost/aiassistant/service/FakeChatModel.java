@@ -0,0 +1,66 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+import java.util.List;
+
+/**
+ * Chat model standing in for a remote model during load tests. Blocks for the simulated time to the
+ * first token plus the generation time of the response, then answers with output derived from the
+ * prompt. Injected failures are thrown as the exceptions of a real provider.
+ */
+public class FakeChatModel implements ChatModel {
+
+  private final String modelName;
+  private final FakeLanguageModel languageModel;
+  private final List<ChatModelListener> listeners;
+
+  public FakeChatModel(
+      String modelName, FakeLanguageModel languageModel, List<ChatModelListener> listeners) {
+    this.modelName = modelName;
+    this.languageModel = languageModel;
+    this.listeners = List.copyOf(listeners);
+  }
+
+  @Override
+  public ChatResponse doChat(ChatRequest chatRequest) {
+    RuntimeException failure = languageModel.failure();
+    if (failure != null) {
+      throw failure;
+    }
+    String prompt = FakeLanguageModel.prompt(chatRequest.messages());
+    List<String> tokens = languageModel.tokens(prompt);
+    FakeLanguageModel.sleep(
+        languageModel
+            .firstTokenLatency()
+            .plus(languageModel.tokenInterval().multipliedBy(tokens.size())));
+    return ChatResponse.builder()
+        .aiMessage(AiMessage.from(String.join("", tokens)))
+        .modelName(modelName)
+        .tokenUsage(new TokenUsage(FakeLanguageModel.estimateTokens(prompt), tokens.size()))
+        .finishReason(FinishReason.STOP)
+        .build();
+  }
+
+  @Override
+  public ChatRequestParameters defaultRequestParameters() {
+    return ChatRequestParameters.builder().modelName(modelName).build();
+  }
+
+  @Override
+  public List<ChatModelListener> listeners() {
+    return listeners;
+  }
+
+  @Override
+  public ModelProvider provider() {
+    return ModelProvider.OTHER;
+  }
+}
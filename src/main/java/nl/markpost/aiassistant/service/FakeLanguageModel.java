@@ -0,0 +1,162 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.RateLimitException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import nl.markpost.aiassistant.config.FakeModelProperties;
+
+/**
+ * Simulated behavior of a remote language model, shared by the fake chat models and the fake OpenAI
+ * server: random latencies and injected failures drawn from a seeded generator, and output that
+ * depends only on the prompt, so identical prompts always get identical responses.
+ */
+public class FakeLanguageModel {
+
+  /** The z-score of the 99th percentile of the standard normal distribution. */
+  private static final double Z_P99 = 2.326;
+
+  private static final String[] WORDS = {
+    "the",
+    "model",
+    "answers",
+    "quickly",
+    "with",
+    "a",
+    "short",
+    "and",
+    "helpful",
+    "reply",
+    "about",
+    "your",
+    "question",
+    "while",
+    "load",
+    "testing",
+    "this",
+    "service",
+    "offline",
+    "today"
+  };
+
+  private final FakeModelProperties properties;
+  private final Random random;
+  private final double mu;
+  private final double sigma;
+
+  public FakeLanguageModel(FakeModelProperties properties) {
+    this.properties = properties;
+    this.random = new Random(properties.seed());
+    this.mu = Math.log(Math.max(1, properties.latencyMedian().toNanos()));
+    this.sigma =
+        Math.max(
+            0,
+            Math.log(
+                    (double) Math.max(1, properties.latencyP99().toNanos())
+                        / Math.max(1, properties.latencyMedian().toNanos()))
+                / Z_P99);
+  }
+
+  /**
+   * Draws the time to the first token of a call.
+   *
+   * @return the latency of the call
+   */
+  public Duration firstTokenLatency() {
+    double gaussian;
+    synchronized (random) {
+      gaussian = random.nextGaussian();
+    }
+    return Duration.ofNanos((long) Math.exp(mu + sigma * gaussian));
+  }
+
+  /**
+   * Returns the time between two generated tokens.
+   *
+   * @return the delay per token
+   */
+  public Duration tokenInterval() {
+    return properties.tokensPerSecond() > 0
+        ? Duration.ofNanos((long) (1_000_000_000L / properties.tokensPerSecond()))
+        : Duration.ZERO;
+  }
+
+  /**
+   * Draws whether a call fails.
+   *
+   * @return the failure of the call, or null if it succeeds
+   */
+  public RuntimeException failure() {
+    double draw;
+    synchronized (random) {
+      draw = random.nextDouble();
+    }
+    if (draw < properties.rateLimitRate()) {
+      return new RateLimitException("Rate limit reached (injected by the fake model)");
+    }
+    if (draw < properties.rateLimitRate() + properties.errorRate()) {
+      return new InternalServerException("Server error (injected by the fake model)");
+    }
+    return null;
+  }
+
+  /**
+   * Generates the response tokens for a prompt. Every token but the last ends with a space, so the
+   * tokens concatenate into the response text.
+   *
+   * @param prompt the text of the prompt
+   * @return the response tokens
+   */
+  public List<String> tokens(String prompt) {
+    Random output = new Random(prompt.hashCode());
+    List<String> tokens = new ArrayList<>(properties.responseTokens());
+    for (int i = 0; i < properties.responseTokens(); i++) {
+      String word = WORDS[output.nextInt(WORDS.length)];
+      tokens.add(i < properties.responseTokens() - 1 ? word + " " : word);
+    }
+    return tokens;
+  }
+
+  /**
+   * Estimates the number of tokens of a text, at four characters per token.
+   *
+   * @param text the text
+   * @return the estimated number of tokens
+   */
+  public static int estimateTokens(String text) {
+    return Math.max(1, text.length() / 4);
+  }
+
+  /**
+   * Returns the text of the last user message, which the output is derived from.
+   *
+   * @param messages the messages of a request
+   * @return the text of the last user message, or an empty string
+   */
+  static String prompt(List<ChatMessage> messages) {
+    for (int i = messages.size() - 1; i >= 0; i--) {
+      if (messages.get(i) instanceof UserMessage userMessage && userMessage.hasSingleText()) {
+        return userMessage.singleText();
+      }
+    }
+    return "";
+  }
+
+  /**
+   * Sleeps for the given duration.
+   *
+   * @param duration the time to sleep
+   */
+  static void sleep(Duration duration) {
+    try {
+      Thread.sleep(duration);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while generating response", e);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+import java.util.List;
+
+/**
+ * Streaming chat model standing in for a remote model during load tests. Streams the response on a
+ * virtual thread at the configured token rate after the simulated time to the first token, so the
+ * calling thread is released right away as with a real provider. Like a real provider, a stream
+ * cancelled through its streaming handle stops without completing.
+ */
+public class FakeStreamingChatModel implements StreamingChatModel {
+
+  private final String modelName;
+  private final FakeLanguageModel languageModel;
+  private final List<ChatModelListener> listeners;
+
+  public FakeStreamingChatModel(
+      String modelName, FakeLanguageModel languageModel, List<ChatModelListener> listeners) {
+    this.modelName = modelName;
+    this.languageModel = languageModel;
+    this.listeners = List.copyOf(listeners);
+  }
+
+  @Override
+  public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+    Thread.ofVirtual().name("fake-stream").start(() -> stream(chatRequest, handler));
+  }
+
+  private void stream(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+    try {
+      FakeLanguageModel.sleep(languageModel.firstTokenLatency());
+      RuntimeException failure = languageModel.failure();
+      if (failure != null) {
+        handler.onError(failure);
+        return;
+      }
+      String prompt = FakeLanguageModel.prompt(chatRequest.messages());
+      List<String> tokens = languageModel.tokens(prompt);
+      Handle streamingHandle = new Handle();
+      for (String token : tokens) {
+        handler.onPartialResponse(
+            new PartialResponse(token), new PartialResponseContext(streamingHandle));
+        if (streamingHandle.isCancelled()) {
+          return;
+        }
+        FakeLanguageModel.sleep(languageModel.tokenInterval());
+      }
+      handler.onCompleteResponse(
+          ChatResponse.builder()
+              .aiMessage(AiMessage.from(String.join("", tokens)))
+              .modelName(modelName)
+              .tokenUsage(new TokenUsage(FakeLanguageModel.estimateTokens(prompt), tokens.size()))
+              .finishReason(FinishReason.STOP)
+              .build());
+    } catch (RuntimeException e) {
+      handler.onError(e);
+    }
+  }
+
+  @Override
+  public ChatRequestParameters defaultRequestParameters() {
+    return ChatRequestParameters.builder().modelName(modelName).build();
+  }
+
+  @Override
+  public List<ChatModelListener> listeners() {
+    return listeners;
+  }
+
+  @Override
+  public ModelProvider provider() {
+    return ModelProvider.OTHER;
+  }
+
+  /** Handle of a single stream, checked before every token. */
+  private static final class Handle implements StreamingHandle {
+
+    private volatile boolean cancelled;
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return cancelled;
+    }
+  }
+}
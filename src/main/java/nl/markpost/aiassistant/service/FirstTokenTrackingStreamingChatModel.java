@@ -0,0 +1,61 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialThinkingContext;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCallContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming chat model noting when the first partial response of a stream arrives, so {@link
+ * LanguageModelMetrics} can record the time to first token. Chat model listeners do not see partial
+ * responses, so the moment is passed to them through a listener attribute.
+ */
+public class FirstTokenTrackingStreamingChatModel extends DelegatingStreamingChatModel {
+
+  public FirstTokenTrackingStreamingChatModel(StreamingChatModel delegate) {
+    super(delegate);
+  }
+
+  @Override
+  public void chat(
+      ChatRequest chatRequest, ChatRequestOptions options, StreamingChatResponseHandler handler) {
+    AtomicLong firstToken = new AtomicLong();
+    Map<Object, Object> attributes =
+        new HashMap<>(options == null ? Map.of() : options.listenerAttributes());
+    attributes.put(LanguageModelMetrics.FIRST_TOKEN_ATTRIBUTE, firstToken);
+    delegate.chat(
+        chatRequest,
+        ChatRequestOptions.builder().listenerAttributes(attributes).build(),
+        new DelegatingStreamingChatResponseHandler(handler) {
+          @Override
+          public void onPartialResponse(
+              PartialResponse partialResponse, PartialResponseContext context) {
+            firstToken.compareAndSet(0, System.nanoTime());
+            super.onPartialResponse(partialResponse, context);
+          }
+
+          @Override
+          public void onPartialThinking(
+              PartialThinking partialThinking, PartialThinkingContext context) {
+            firstToken.compareAndSet(0, System.nanoTime());
+            super.onPartialThinking(partialThinking, context);
+          }
+
+          @Override
+          public void onPartialToolCall(
+              PartialToolCall partialToolCall, PartialToolCallContext context) {
+            firstToken.compareAndSet(0, System.nanoTime());
+            super.onPartialToolCall(partialToolCall, context);
+          }
+        });
+  }
+}
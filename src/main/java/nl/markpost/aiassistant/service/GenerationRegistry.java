@@ -0,0 +1,253 @@
+package nl.markpost.aiassistant.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import nl.markpost.aiassistant.exception.GenerationCancelledException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of the responses being generated per chat session, so a generation can be stopped when
+ * the client disconnects or asks to stop it. A cancelled generation stops its call to the language
+ * model: a blocking call by interrupting its thread, a streaming call through its streaming handle.
+ *
+ * <p>Cancelling and completing a generation are mutually exclusive: once a generation has
+ * completed, its response is committed and cancelling it has no effect; once it has been cancelled,
+ * its response is discarded.
+ */
+@Slf4j
+@Component
+public class GenerationRegistry {
+
+  static final String CANCELLED_METRIC = "chat.generation.cancelled";
+  static final String REASON_STOPPED = "stopped";
+  static final String REASON_DISCONNECTED = "disconnected";
+
+  private final Map<String, Set<Generation>> generations = new ConcurrentHashMap<>();
+  private final MeterRegistry meterRegistry;
+
+  public GenerationRegistry(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Registers a new generation in the given chat session. The generation is removed from the
+   * registry once closed.
+   *
+   * @param sessionId the ID of the chat session
+   * @param userId the ID of the user
+   * @return the registered generation
+   */
+  public Generation start(String sessionId, String userId) {
+    Generation generation = new Generation(key(sessionId, userId));
+    generations.computeIfAbsent(generation.key, k -> ConcurrentHashMap.newKeySet()).add(generation);
+    return generation;
+  }
+
+  /**
+   * Stops the generations in flight in the given chat session.
+   *
+   * @param sessionId the ID of the chat session
+   * @param userId the ID of the user
+   * @param persistPartial whether the partial response generated so far is kept
+   * @return whether a generation was stopped
+   */
+  public boolean cancel(String sessionId, String userId, boolean persistPartial) {
+    Set<Generation> inFlight = generations.get(key(sessionId, userId));
+    boolean cancelled = false;
+    if (inFlight != null) {
+      for (Generation generation : List.copyOf(inFlight)) {
+        cancelled |= generation.cancel(REASON_STOPPED, persistPartial);
+      }
+    }
+    return cancelled;
+  }
+
+  private static String key(String sessionId, String userId) {
+    return userId + ":" + sessionId;
+  }
+
+  /**
+   * A response being generated. Cancel hooks registered with {@link #onCancel} stop the work when
+   * the generation is cancelled; they run in reverse order of registration, so the call to the
+   * language model is stopped before the response is finished off.
+   */
+  public class Generation implements AutoCloseable {
+
+    private final String key;
+    private final List<Runnable> cancelHooks = new ArrayList<>();
+    private final StringBuilder partial = new StringBuilder();
+    private boolean cancelled;
+    private boolean persistPartial;
+    private boolean done;
+
+    private Generation(String key) {
+      this.key = key;
+    }
+
+    /**
+     * Registers a hook stopping the work of this generation. The hook runs right away when the
+     * generation has already been cancelled.
+     *
+     * @param hook the hook to run when the generation is cancelled
+     */
+    public void onCancel(Runnable hook) {
+      synchronized (this) {
+        if (done) {
+          return;
+        }
+        if (!cancelled) {
+          cancelHooks.add(hook);
+          return;
+        }
+      }
+      hook.run();
+    }
+
+    /**
+     * Runs the blocking work of this generation on the current thread, interrupting the thread when
+     * the generation is cancelled. An interrupt from elsewhere, such as the web container giving up
+     * on a disconnected client, cancels the generation as well.
+     *
+     * @param work the work generating the response
+     * @return the result of the work
+     * @throws GenerationCancelledException if the generation was cancelled
+     */
+    public <T> T run(Supplier<T> work) {
+      Thread thread = Thread.currentThread();
+      onCancel(() -> interruptUnlessDone(thread));
+      if (isCancelled()) {
+        Thread.interrupted();
+        throw new GenerationCancelledException("Generation was cancelled");
+      }
+      T result;
+      try {
+        result = work.get();
+      } catch (RuntimeException e) {
+        if (complete()) {
+          throw e;
+        }
+        Thread.interrupted();
+        throw new GenerationCancelledException("Generation was cancelled");
+      }
+      if (!complete()) {
+        Thread.interrupted();
+        throw new GenerationCancelledException("Generation was cancelled");
+      }
+      return result;
+    }
+
+    /**
+     * Interrupts the thread running the work of this generation, unless the work has finished. The
+     * cancel hooks run outside the lock, so without this check a late hook could interrupt the
+     * thread after it moved on to other work.
+     */
+    private synchronized void interruptUnlessDone(Thread thread) {
+      if (!done) {
+        thread.interrupt();
+      }
+    }
+
+    /**
+     * Appends a partial response to the text generated so far.
+     *
+     * @param text the partial response
+     * @return whether the generation is still running, so the partial response should be passed on
+     */
+    public synchronized boolean append(String text) {
+      if (done || cancelled) {
+        return false;
+      }
+      partial.append(text);
+      return true;
+    }
+
+    /**
+     * Marks the generation as complete, so cancelling it has no further effect. A generation whose
+     * thread has been interrupted counts as cancelled by a disconnected client.
+     *
+     * @return whether the response should be committed, i.e. the generation was not cancelled
+     */
+    public synchronized boolean complete() {
+      if (!cancelled && !done && Thread.currentThread().isInterrupted()) {
+        cancelled = true;
+        record(REASON_DISCONNECTED);
+      }
+      done = true;
+      cancelHooks.clear();
+      return !cancelled;
+    }
+
+    /**
+     * Cancels the generation, running its cancel hooks. The hooks run after the state of the
+     * generation is updated, outside its lock, so a slow hook such as committing the partial
+     * response does not hold up appending to or completing the generation.
+     *
+     * @param reason the reason of the cancellation, for metrics
+     * @param persistPartial whether the partial response generated so far is kept
+     * @return whether the generation was running and is now cancelled
+     */
+    public boolean cancel(String reason, boolean persistPartial) {
+      List<Runnable> hooks;
+      synchronized (this) {
+        if (done || cancelled) {
+          return false;
+        }
+        cancelled = true;
+        this.persistPartial = persistPartial;
+        hooks = List.copyOf(cancelHooks);
+        cancelHooks.clear();
+      }
+      record(reason);
+      for (Runnable hook : hooks.reversed()) {
+        try {
+          hook.run();
+        } catch (RuntimeException e) {
+          log.warn("Cancel hook of generation failed", e);
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Cancels the generation because its client has disconnected. Nothing is kept.
+     *
+     * @return whether the generation was running and is now cancelled
+     */
+    public boolean disconnect() {
+      return cancel(REASON_DISCONNECTED, false);
+    }
+
+    public synchronized boolean isCancelled() {
+      return cancelled;
+    }
+
+    public synchronized boolean isPersistPartial() {
+      return persistPartial;
+    }
+
+    public synchronized String getPartial() {
+      return partial.toString();
+    }
+
+    /** Removes the generation from the registry. */
+    @Override
+    public void close() {
+      generations.computeIfPresent(
+          key,
+          (k, inFlight) -> {
+            inFlight.remove(this);
+            return inFlight.isEmpty() ? null : inFlight;
+          });
+    }
+
+    private void record(String reason) {
+      meterRegistry.counter(CANCELLED_METRIC, "reason", reason).increment();
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.MDC;
+
+/**
+ * Chat model hedging slow calls to cut tail latency. A call that has not answered within the delay
+ * of the {@link HedgingPolicy} is sent a second time; the first attempt to answer wins and the
+ * other is cancelled by interrupting its thread. A failed attempt only fails the call once no other
+ * attempt is left. Until the policy knows enough latencies, calls run on the caller's thread.
+ */
+public class HedgingChatModel extends DelegatingChatModel {
+
+  private final HedgingPolicy policy;
+  private final Executor executor;
+
+  public HedgingChatModel(ChatModel delegate, HedgingPolicy policy, Executor executor) {
+    super(delegate);
+    this.policy = policy;
+    this.executor = executor;
+  }
+
+  @Override
+  public ChatResponse chat(ChatRequest chatRequest, ChatRequestOptions options) {
+    long start = System.nanoTime();
+    Optional<Duration> hedgeDelay = policy.hedgeDelay();
+    if (hedgeDelay.isEmpty()) {
+      ChatResponse response = delegate.chat(chatRequest, options);
+      policy.recordLatency(Duration.ofNanos(System.nanoTime() - start));
+      policy.recordOutcome(false, false);
+      return response;
+    }
+
+    CompletionService<ChatResponse> attempts = new ExecutorCompletionService<>(executor);
+    Future<ChatResponse> primary = attempts.submit(attempt(chatRequest, options));
+    Future<ChatResponse> hedge = null;
+    boolean budgetExhausted = false;
+    try {
+      Future<ChatResponse> done = attempts.poll(hedgeDelay.get().toNanos(), TimeUnit.NANOSECONDS);
+      if (done == null) {
+        if (policy.tryAcquireHedge()) {
+          hedge = attempts.submit(attempt(chatRequest, options));
+        } else {
+          budgetExhausted = true;
+        }
+        done = attempts.take();
+      }
+      policy.recordOutcome(hedge != null, budgetExhausted);
+      try {
+        return answer(done, done == hedge, start, hedge != null);
+      } catch (RuntimeException e) {
+        if (hedge == null) {
+          throw e;
+        }
+        // The other attempt may still succeed
+        Future<ChatResponse> other = attempts.take();
+        return answer(other, other == hedge, start, true);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the language model", e);
+    } finally {
+      primary.cancel(true);
+      if (hedge != null) {
+        hedge.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Returns the response of a finished attempt, recording its latency and, for a hedged call, the
+   * winning attempt.
+   */
+  private ChatResponse answer(
+      Future<ChatResponse> attempt, boolean isHedge, long start, boolean hedged) {
+    ChatResponse response;
+    try {
+      response = attempt.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the language model", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw new IllegalStateException("Language model call failed", e.getCause());
+    }
+    policy.recordLatency(Duration.ofNanos(System.nanoTime() - start));
+    if (hedged) {
+      policy.recordWinner(isHedge);
+    }
+    return response;
+  }
+
+  /** Creates an attempt running with the logging context of the caller. */
+  private Callable<ChatResponse> attempt(ChatRequest chatRequest, ChatRequestOptions options) {
+    Map<String, String> context = MDC.getCopyOfContextMap();
+    return () -> {
+      if (context != null) {
+        MDC.setContextMap(context);
+      }
+      try {
+        return delegate.chat(chatRequest, options);
+      } finally {
+        MDC.clear();
+      }
+    };
+  }
+}
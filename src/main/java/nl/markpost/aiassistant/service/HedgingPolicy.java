@@ -0,0 +1,144 @@
+package nl.markpost.aiassistant.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import nl.markpost.aiassistant.config.HedgingProperties;
+
+/**
+ * Decides when calls to a single model are hedged. Tracks the latencies of recent calls in a
+ * sliding window and hedges a call once it has taken longer than the configured percentile of them.
+ * Hedges are paid from a budget that every call adds a fraction of a hedge to, so the extra load on
+ * the provider stays below the configured fraction of calls, even while the provider is slow for
+ * everyone.
+ *
+ * <p>Publishes the outcome of every call as {@code chat.hedge.calls} (not_hedged, hedged or
+ * budget_exhausted) and the winning attempt of every hedged call as {@code chat.hedge.wins}
+ * (primary or hedge), both tagged with the model and the mode of the call.
+ */
+public class HedgingPolicy {
+
+  /** Number of hedges the budget can save up, bounding bursts of hedges after a quiet period. */
+  private static final double MAX_BUDGET = 10;
+
+  private final HedgingProperties properties;
+  private final long[] latencies;
+  private final Counter notHedgedCounter;
+  private final Counter hedgedCounter;
+  private final Counter budgetExhaustedCounter;
+  private final Counter primaryWinsCounter;
+  private final Counter hedgeWinsCounter;
+
+  private int samples;
+  private int next;
+  private double budget;
+
+  /**
+   * Creates a new HedgingPolicy.
+   *
+   * @param modelName the name of the model whose calls are hedged
+   * @param mode the mode of the calls, blocking or streaming, as their latencies differ
+   * @param properties the hedging configuration
+   * @param meterRegistry the registry of the hedging metrics
+   */
+  public HedgingPolicy(
+      String modelName, String mode, HedgingProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.latencies = new long[properties.window()];
+    this.notHedgedCounter = callsCounter(meterRegistry, modelName, mode, "not_hedged");
+    this.hedgedCounter = callsCounter(meterRegistry, modelName, mode, "hedged");
+    this.budgetExhaustedCounter = callsCounter(meterRegistry, modelName, mode, "budget_exhausted");
+    this.primaryWinsCounter = winsCounter(meterRegistry, modelName, mode, "primary");
+    this.hedgeWinsCounter = winsCounter(meterRegistry, modelName, mode, "hedge");
+  }
+
+  /**
+   * Returns how long a call may take before it is hedged, and adds the call's share to the hedge
+   * budget.
+   *
+   * @return the hedge delay, or empty while too few latencies are known
+   */
+  public synchronized Optional<Duration> hedgeDelay() {
+    budget = Math.min(MAX_BUDGET, budget + properties.maxExtraLoad());
+    if (samples == 0 || samples < properties.minSamples()) {
+      return Optional.empty();
+    }
+    long[] sorted = Arrays.copyOf(latencies, samples);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(properties.percentile() * samples) - 1;
+    Duration delay = Duration.ofNanos(sorted[Math.max(index, 0)]);
+    return Optional.of(delay.compareTo(properties.minDelay()) < 0 ? properties.minDelay() : delay);
+  }
+
+  /**
+   * Takes a hedge from the budget.
+   *
+   * @return whether the call may be hedged
+   */
+  public synchronized boolean tryAcquireHedge() {
+    if (budget < 1) {
+      return false;
+    }
+    budget--;
+    return true;
+  }
+
+  /**
+   * Records the latency of a call. For a call won by its hedge this is a lower bound of the latency
+   * of the first attempt, which keeps the window from forgetting slow calls.
+   *
+   * @param latency the latency of the call
+   */
+  public synchronized void recordLatency(Duration latency) {
+    latencies[next] = latency.toNanos();
+    next = (next + 1) % latencies.length;
+    samples = Math.min(samples + 1, latencies.length);
+  }
+
+  /**
+   * Records the outcome of a call.
+   *
+   * @param hedged whether a hedge was sent
+   * @param budgetExhausted whether a hedge was due but the budget was exhausted
+   */
+  public void recordOutcome(boolean hedged, boolean budgetExhausted) {
+    if (hedged) {
+      hedgedCounter.increment();
+    } else if (budgetExhausted) {
+      budgetExhaustedCounter.increment();
+    } else {
+      notHedgedCounter.increment();
+    }
+  }
+
+  /**
+   * Records which attempt answered a hedged call.
+   *
+   * @param hedge whether the hedge, rather than the first attempt, answered the call
+   */
+  public void recordWinner(boolean hedge) {
+    (hedge ? hedgeWinsCounter : primaryWinsCounter).increment();
+  }
+
+  private static Counter callsCounter(
+      MeterRegistry meterRegistry, String modelName, String mode, String outcome) {
+    return Counter.builder("chat.hedge.calls")
+        .description("Calls to the language model by hedging outcome")
+        .tag("model", modelName)
+        .tag("mode", mode)
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+
+  private static Counter winsCounter(
+      MeterRegistry meterRegistry, String modelName, String mode, String winner) {
+    return Counter.builder("chat.hedge.wins")
+        .description("Hedged calls to the language model by winning attempt")
+        .tag("model", modelName)
+        .tag("mode", mode)
+        .tag("winner", winner)
+        .register(meterRegistry);
+  }
+}
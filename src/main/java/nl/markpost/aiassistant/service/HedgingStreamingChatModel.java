@@ -0,0 +1,231 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialThinkingContext;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCallContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming chat model hedging slow streams to cut the tail latency of the first token. A stream
+ * that has not produced anything within the delay of the {@link HedgingPolicy} is started a second
+ * time. The first stream to produce a token wins and is forwarded to the handler; the other is
+ * cancelled through its streaming handle as soon as it produces something, and never reaches the
+ * handler. A failed stream only fails the call once no other stream is left.
+ */
+public class HedgingStreamingChatModel extends DelegatingStreamingChatModel {
+
+  private final HedgingPolicy policy;
+  private final Executor executor;
+
+  public HedgingStreamingChatModel(
+      StreamingChatModel delegate, HedgingPolicy policy, Executor executor) {
+    super(delegate);
+    this.policy = policy;
+    this.executor = executor;
+  }
+
+  @Override
+  public void chat(
+      ChatRequest chatRequest, ChatRequestOptions options, StreamingChatResponseHandler handler) {
+    Race race = new Race(chatRequest, options, handler);
+    Optional<Duration> hedgeDelay = policy.hedgeDelay();
+    delegate.chat(chatRequest, options, race.primary);
+    hedgeDelay.ifPresent(
+        delay ->
+            CompletableFuture.runAsync(
+                race::hedge,
+                CompletableFuture.delayedExecutor(
+                    delay.toNanos(), TimeUnit.NANOSECONDS, executor)));
+  }
+
+  /** The attempts of a single call racing to produce the first token. */
+  private final class Race {
+
+    private final ChatRequest chatRequest;
+    private final ChatRequestOptions options;
+    private final StreamingChatResponseHandler handler;
+    private final long start = System.nanoTime();
+    private final Attempt primary = new Attempt(false);
+
+    private volatile Attempt winner;
+    private int running = 1;
+    private boolean hedged;
+    private boolean budgetExhausted;
+
+    private Race(
+        ChatRequest chatRequest, ChatRequestOptions options, StreamingChatResponseHandler handler) {
+      this.chatRequest = chatRequest;
+      this.options = options;
+      this.handler = handler;
+    }
+
+    /** Starts the hedge, unless an attempt has already won or failed, or the budget is spent. */
+    private void hedge() {
+      synchronized (this) {
+        if (winner != null || running == 0) {
+          return;
+        }
+        if (!policy.tryAcquireHedge()) {
+          budgetExhausted = true;
+          return;
+        }
+        hedged = true;
+        running++;
+      }
+      Attempt hedge = new Attempt(true);
+      try {
+        delegate.chat(chatRequest, options, hedge);
+      } catch (RuntimeException e) {
+        hedge.onError(e);
+      }
+    }
+
+    /**
+     * Lets an attempt claim the call.
+     *
+     * @return whether the attempt is the winner, and its events should reach the handler
+     */
+    private boolean claim(Attempt attempt) {
+      if (winner == attempt) {
+        return true;
+      }
+      synchronized (this) {
+        if (winner != null) {
+          return false;
+        }
+        winner = attempt;
+        policy.recordOutcome(hedged, budgetExhausted);
+        if (hedged) {
+          policy.recordWinner(attempt.hedge);
+        }
+      }
+      policy.recordLatency(Duration.ofNanos(System.nanoTime() - start));
+      return true;
+    }
+
+    /**
+     * Records the failure of an attempt.
+     *
+     * @return whether the failure fails the call, as no other attempt is left
+     */
+    private boolean fail(Attempt attempt) {
+      if (winner == attempt) {
+        return true;
+      }
+      synchronized (this) {
+        if (winner != null) {
+          return false;
+        }
+        running--;
+        if (running > 0) {
+          return false;
+        }
+        winner = attempt;
+        policy.recordOutcome(hedged, budgetExhausted);
+        return true;
+      }
+    }
+
+    /** Handler of a single attempt, forwarding its events only if it wins the race. */
+    private final class Attempt implements StreamingChatResponseHandler {
+
+      private final boolean hedge;
+
+      private Attempt(boolean hedge) {
+        this.hedge = hedge;
+      }
+
+      @Override
+      public void onPartialResponse(String partialResponse) {
+        if (claim(this)) {
+          handler.onPartialResponse(partialResponse);
+        }
+      }
+
+      @Override
+      public void onPartialResponse(
+          PartialResponse partialResponse, PartialResponseContext context) {
+        if (claim(this)) {
+          handler.onPartialResponse(partialResponse, context);
+        } else {
+          cancel(context.streamingHandle());
+        }
+      }
+
+      @Override
+      public void onPartialThinking(PartialThinking partialThinking) {
+        if (claim(this)) {
+          handler.onPartialThinking(partialThinking);
+        }
+      }
+
+      @Override
+      public void onPartialThinking(
+          PartialThinking partialThinking, PartialThinkingContext context) {
+        if (claim(this)) {
+          handler.onPartialThinking(partialThinking, context);
+        } else {
+          cancel(context.streamingHandle());
+        }
+      }
+
+      @Override
+      public void onPartialToolCall(PartialToolCall partialToolCall) {
+        if (claim(this)) {
+          handler.onPartialToolCall(partialToolCall);
+        }
+      }
+
+      @Override
+      public void onPartialToolCall(
+          PartialToolCall partialToolCall, PartialToolCallContext context) {
+        if (claim(this)) {
+          handler.onPartialToolCall(partialToolCall, context);
+        } else {
+          cancel(context.streamingHandle());
+        }
+      }
+
+      @Override
+      public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+        if (claim(this)) {
+          handler.onCompleteToolCall(completeToolCall);
+        }
+      }
+
+      @Override
+      public void onCompleteResponse(ChatResponse completeResponse) {
+        if (claim(this)) {
+          handler.onCompleteResponse(completeResponse);
+        }
+      }
+
+      @Override
+      public void onError(Throwable error) {
+        if (fail(this)) {
+          handler.onError(error);
+        }
+      }
+
+      private static void cancel(StreamingHandle streamingHandle) {
+        if (streamingHandle != null && !streamingHandle.isCancelled()) {
+          streamingHandle.cancel();
+        }
+      }
+    }
+  }
+}
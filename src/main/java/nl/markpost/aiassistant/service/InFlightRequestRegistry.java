@@ -0,0 +1,86 @@
+package nl.markpost.aiassistant.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import nl.markpost.aiassistant.exception.UnprocessableEntityException;
+import nl.markpost.aiassistant.models.MessageDTO;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of in-flight message requests, keyed by idempotency key. Concurrent requests with the
+ * same key attach to the first request's generation instead of starting their own, provided they
+ * are the same request.
+ */
+@Slf4j
+@Component
+public class InFlightRequestRegistry {
+
+  private final Map<String, InFlightRequest> inFlight = new ConcurrentHashMap<>();
+  private final Counter coalescedCounter;
+
+  public InFlightRequestRegistry(MeterRegistry meterRegistry) {
+    this.coalescedCounter =
+        Counter.builder("chat.idempotency.requests")
+            .description("Requests answered without a generation of their own")
+            .tag("outcome", "coalesced")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Executes the request identified by the given key, or waits for the result of an identical
+   * request that is already in flight.
+   *
+   * @param key the key identifying the request
+   * @param requestHash the hash of the request, telling a retry from a different request
+   * @param request the request to execute if none is in flight
+   * @return the response of the request
+   * @throws UnprocessableEntityException if a different request with the same key is in flight
+   */
+  public MessageDTO execute(String key, String requestHash, Supplier<MessageDTO> request) {
+    InFlightRequest current = new InFlightRequest(requestHash, new CompletableFuture<>());
+    InFlightRequest existing = inFlight.putIfAbsent(key, current);
+    if (existing != null) {
+      if (!existing.requestHash().equals(requestHash)) {
+        throw new UnprocessableEntityException("Idempotency key reused for a different request");
+      }
+      log.info("Attaching duplicate request to in-flight request");
+      coalescedCounter.increment();
+      return await(existing.future());
+    }
+    try {
+      MessageDTO response = request.get();
+      current.future().complete(response);
+      return response;
+    } catch (RuntimeException e) {
+      current.future().completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, current);
+    }
+  }
+
+  /**
+   * Waits for an in-flight request, rethrowing its failure as is.
+   *
+   * @param future the future of the in-flight request
+   * @return the response of the request
+   */
+  private MessageDTO await(CompletableFuture<MessageDTO> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private record InFlightRequest(String requestHash, CompletableFuture<MessageDTO> future) {}
+}
@@ -0,0 +1,169 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.exception.AuthenticationException;
+import dev.langchain4j.exception.ContentFilteredException;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.exception.ModelNotFoundException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.exception.TimeoutException;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the latency, time to first token, token usage and errors of every call to a language
+ * model, tagged by model and endpoint. The endpoint is {@code streaming} for calls made through a
+ * {@link FirstTokenTrackingStreamingChatModel} and {@code blocking} otherwise:
+ *
+ * <ul>
+ *   <li>{@code chat.model.latency}: time until the complete response or the error, tagged by
+ *       outcome
+ *   <li>{@code chat.model.time-to-first-token}: time until the first partial response of a stream
+ *   <li>{@code chat.model.tokens}: prompt, completion and cached prompt tokens, tagged by type
+ *   <li>{@code chat.model.errors}: failed calls, tagged by cause
+ * </ul>
+ *
+ * <p>Percentile histograms of the timers are enabled in the configuration, so objectives can be set
+ * on any percentile.
+ */
+@Component
+@RequiredArgsConstructor
+public class LanguageModelMetrics implements ChatModelListener {
+
+  static final String LATENCY_METRIC = "chat.model.latency";
+  static final String TIME_TO_FIRST_TOKEN_METRIC = "chat.model.time-to-first-token";
+  static final String TOKENS_METRIC = "chat.model.tokens";
+  static final String ERRORS_METRIC = "chat.model.errors";
+
+  /**
+   * Listener attribute holding the {@link System#nanoTime()} of the first partial response of a
+   * stream, or zero until it arrives. Its presence marks the call as streaming.
+   */
+  static final String FIRST_TOKEN_ATTRIBUTE = LanguageModelMetrics.class.getName() + ".firstToken";
+
+  private static final String START_ATTRIBUTE = LanguageModelMetrics.class.getName() + ".start";
+  private static final String BLOCKING = "blocking";
+  private static final String STREAMING = "streaming";
+
+  private final MeterRegistry meterRegistry;
+
+  @Override
+  public void onRequest(ChatModelRequestContext requestContext) {
+    requestContext.attributes().put(START_ATTRIBUTE, nanoTime());
+  }
+
+  @Override
+  public void onResponse(ChatModelResponseContext responseContext) {
+    Map<Object, Object> attributes = responseContext.attributes();
+    String model = String.valueOf(responseContext.chatRequest().modelName());
+    String endpoint = endpoint(attributes);
+    if (attributes.get(START_ATTRIBUTE) instanceof Long start) {
+      timer(LATENCY_METRIC, "Latency of calls to the language model", model, endpoint)
+          .tag("outcome", "success")
+          .register(meterRegistry)
+          .record(Duration.ofNanos(nanoTime() - start));
+      if (attributes.get(FIRST_TOKEN_ATTRIBUTE) instanceof AtomicLong firstToken
+          && firstToken.get() != 0) {
+        timer(
+                TIME_TO_FIRST_TOKEN_METRIC,
+                "Time to the first partial response of streamed calls to the language model",
+                model,
+                endpoint)
+            .register(meterRegistry)
+            .record(Duration.ofNanos(firstToken.get() - start));
+      }
+    }
+
+    TokenUsage tokenUsage = responseContext.chatResponse().tokenUsage();
+    if (tokenUsage == null) {
+      return;
+    }
+    countTokens(model, endpoint, "prompt", tokenUsage.inputTokenCount());
+    countTokens(model, endpoint, "completion", tokenUsage.outputTokenCount());
+    if (tokenUsage instanceof OpenAiTokenUsage openAiTokenUsage
+        && openAiTokenUsage.inputTokensDetails() != null) {
+      countTokens(model, endpoint, "cached", openAiTokenUsage.inputTokensDetails().cachedTokens());
+    }
+  }
+
+  @Override
+  public void onError(ChatModelErrorContext errorContext) {
+    Map<Object, Object> attributes = errorContext.attributes();
+    String model = String.valueOf(errorContext.chatRequest().modelName());
+    String endpoint = endpoint(attributes);
+    if (attributes.get(START_ATTRIBUTE) instanceof Long start) {
+      timer(LATENCY_METRIC, "Latency of calls to the language model", model, endpoint)
+          .tag("outcome", "error")
+          .register(meterRegistry)
+          .record(Duration.ofNanos(nanoTime() - start));
+    }
+    Counter.builder(ERRORS_METRIC)
+        .description("Failed calls to the language model")
+        .tag("model", model)
+        .tag("endpoint", endpoint)
+        .tag("cause", cause(errorContext.error()))
+        .register(meterRegistry)
+        .increment();
+  }
+
+  /**
+   * Classifies the failure of a call, most specific cause first.
+   *
+   * @param error the failure
+   * @return the cause of the failure
+   */
+  static String cause(Throwable error) {
+    return switch (error) {
+      case RateLimitException e -> "rate_limit";
+      case TimeoutException e -> "timeout";
+      case InternalServerException e -> "server_error";
+      case AuthenticationException e -> "authentication";
+      case ContentFilteredException e -> "content_filtered";
+      case InvalidRequestException e -> "invalid_request";
+      case ModelNotFoundException e -> "model_not_found";
+      default -> "other";
+    };
+  }
+
+  private static String endpoint(Map<Object, Object> attributes) {
+    return attributes.containsKey(FIRST_TOKEN_ATTRIBUTE) ? STREAMING : BLOCKING;
+  }
+
+  private static Timer.Builder timer(
+      String name, String description, String model, String endpoint) {
+    return Timer.builder(name)
+        .description(description)
+        .tag("model", model)
+        .tag("endpoint", endpoint);
+  }
+
+  private void countTokens(String model, String endpoint, String type, Integer tokens) {
+    if (tokens == null) {
+      return;
+    }
+    Counter.builder(TOKENS_METRIC)
+        .description("Tokens processed by the language model")
+        .baseUnit("tokens")
+        .tag("model", model)
+        .tag("endpoint", endpoint)
+        .tag("type", type)
+        .register(meterRegistry)
+        .increment(tokens);
+  }
+
+  long nanoTime() {
+    return System.nanoTime();
+  }
+}
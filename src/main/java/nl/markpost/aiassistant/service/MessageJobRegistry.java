@@ -0,0 +1,144 @@
+package nl.markpost.aiassistant.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+import nl.markpost.aiassistant.constant.GenericErrorCodes;
+import nl.markpost.aiassistant.exception.NotFoundException;
+import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.MessageJobDTO;
+import nl.markpost.aiassistant.models.MessageJobDTO.Status;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps track of message jobs generating a response in the background. Jobs are kept in memory for
+ * a limited time after their last update, so clients have time to collect the result.
+ */
+@Component
+public class MessageJobRegistry {
+
+  private record Entry(MessageJobDTO job, CompletableFuture<MessageJobDTO> completion) {}
+
+  private final Cache<String, Entry> jobs;
+
+  public MessageJobRegistry(
+      MeterRegistry meterRegistry,
+      @Value("${assistant.jobs.max-size:10000}") long maxSize,
+      @Value("${assistant.jobs.ttl:15m}") Duration ttl) {
+    this.jobs =
+        Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+    CaffeineCacheMetrics.monitor(meterRegistry, jobs, "chat.jobs");
+  }
+
+  /**
+   * Registers a new pending job.
+   *
+   * @param jobId the ID of the job
+   * @param sessionId the ID of the chat session
+   * @param userId the ID of the user
+   * @return the registered job
+   */
+  public MessageJobDTO create(String jobId, String sessionId, String userId) {
+    MessageJobDTO job =
+        MessageJobDTO.builder()
+            .id(jobId)
+            .sessionId(sessionId)
+            .userId(userId)
+            .status(Status.PENDING)
+            .build();
+    jobs.put(jobId, new Entry(job, new CompletableFuture<>()));
+    return job;
+  }
+
+  /**
+   * Marks the job as running.
+   *
+   * @param jobId the ID of the job
+   */
+  public void markRunning(String jobId) {
+    update(jobId, job -> job.toBuilder().status(Status.RUNNING).build());
+  }
+
+  /**
+   * Marks the job as completed with the given response.
+   *
+   * @param jobId the ID of the job
+   * @param message the generated response
+   */
+  public void complete(String jobId, MessageDTO message) {
+    finish(jobId, job -> job.toBuilder().status(Status.COMPLETED).message(message).build());
+  }
+
+  /**
+   * Marks the job as failed.
+   *
+   * @param jobId the ID of the job
+   * @param errorCode the error code describing the failure
+   */
+  public void fail(String jobId, GenericErrorCodes errorCode) {
+    finish(jobId, job -> job.toBuilder().status(Status.FAILED).errorCode(errorCode).build());
+  }
+
+  /**
+   * Removes the job.
+   *
+   * @param jobId the ID of the job
+   */
+  public void remove(String jobId) {
+    jobs.invalidate(jobId);
+  }
+
+  /**
+   * Retrieves the current state of a job of the given user and session.
+   *
+   * @param jobId the ID of the job
+   * @param sessionId the ID of the chat session
+   * @param userId the ID of the user
+   * @return the job
+   * @throws NotFoundException if the job is not found
+   */
+  public MessageJobDTO get(String jobId, String sessionId, String userId) {
+    return getEntry(jobId, sessionId, userId).job();
+  }
+
+  /**
+   * Returns a future completing with the final state of a job of the given user and session.
+   *
+   * @param jobId the ID of the job
+   * @param sessionId the ID of the chat session
+   * @param userId the ID of the user
+   * @return the future of the finished job
+   * @throws NotFoundException if the job is not found
+   */
+  public CompletableFuture<MessageJobDTO> await(String jobId, String sessionId, String userId) {
+    return getEntry(jobId, sessionId, userId).completion();
+  }
+
+  private Entry getEntry(String jobId, String sessionId, String userId) {
+    Entry entry = jobs.getIfPresent(jobId);
+    if (entry == null
+        || !entry.job().getSessionId().equals(sessionId)
+        || !entry.job().getUserId().equals(userId)) {
+      throw new NotFoundException("Job not found");
+    }
+    return entry;
+  }
+
+  private Entry update(String jobId, UnaryOperator<MessageJobDTO> change) {
+    return jobs.asMap()
+        .computeIfPresent(
+            jobId, (id, entry) -> new Entry(change.apply(entry.job()), entry.completion()));
+  }
+
+  private void finish(String jobId, UnaryOperator<MessageJobDTO> change) {
+    Entry entry = update(jobId, change);
+    if (entry != null) {
+      entry.completion().complete(entry.job());
+    }
+  }
+}
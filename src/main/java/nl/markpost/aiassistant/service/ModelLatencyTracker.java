@@ -0,0 +1,96 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.output.TokenUsage;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks the current latency per generated token of every language model, as an exponentially
+ * weighted moving average over its successful responses, for streaming and blocking calls alike.
+ * Dividing by the generated tokens makes models answering different kinds of turns comparable: a
+ * model given the long answers is not slower for it. Responses without token usage are ignored.
+ */
+@Component
+public class ModelLatencyTracker implements ChatModelListener {
+
+  private static final String START_ATTRIBUTE = ModelLatencyTracker.class.getName() + ".start";
+
+  /** Weight of a new observation; recent calls dominate after about ten responses. */
+  private static final double SMOOTHING = 0.2;
+
+  /**
+   * The average latency of a model and when it was last updated.
+   *
+   * @param averageNanos the average latency per token, in nanoseconds
+   * @param updatedNanos when the average was last updated, in {@link #nanoTime()}
+   */
+  private record Average(double averageNanos, long updatedNanos) {}
+
+  private final Map<String, Average> averages = new ConcurrentHashMap<>();
+
+  @Override
+  public void onRequest(ChatModelRequestContext requestContext) {
+    requestContext.attributes().put(START_ATTRIBUTE, nanoTime());
+  }
+
+  @Override
+  public void onResponse(ChatModelResponseContext responseContext) {
+    if (!(responseContext.attributes().get(START_ATTRIBUTE) instanceof Long start)) {
+      return;
+    }
+    String modelName = responseContext.chatRequest().modelName();
+    TokenUsage tokenUsage = responseContext.chatResponse().tokenUsage();
+    if (modelName == null
+        || tokenUsage == null
+        || tokenUsage.outputTokenCount() == null
+        || tokenUsage.outputTokenCount() <= 0) {
+      return;
+    }
+    record(modelName, Duration.ofNanos(nanoTime() - start), tokenUsage.outputTokenCount());
+  }
+
+  /**
+   * Records the latency of a response of the given model.
+   *
+   * @param modelName the name of the model
+   * @param latency the latency of the response
+   * @param outputTokens the number of tokens generated in the response
+   */
+  void record(String modelName, Duration latency, int outputTokens) {
+    double nanos = (double) latency.toNanos() / outputTokens;
+    long now = nanoTime();
+    averages.merge(
+        modelName,
+        new Average(nanos, now),
+        (average, latest) ->
+            new Average(
+                average.averageNanos() + SMOOTHING * (nanos - average.averageNanos()), now));
+  }
+
+  /**
+   * Returns the current latency per generated token of the given model. An average not updated
+   * within the maximum age is no longer current, as the model may have recovered since, and is left
+   * out.
+   *
+   * @param modelName the name of the model
+   * @param maxAge how long after its last update the average is still used
+   * @return the average latency per token, or empty without a recent response of the model
+   */
+  public Optional<Duration> latencyPerToken(String modelName, Duration maxAge) {
+    Average average = averages.get(modelName);
+    if (average == null || nanoTime() - average.updatedNanos() > maxAge.toNanos()) {
+      return Optional.empty();
+    }
+    return Optional.of(Duration.ofNanos((long) average.averageNanos()));
+  }
+
+  long nanoTime() {
+    return System.nanoTime();
+  }
+}
@@ -0,0 +1,183 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.service.TokenStream;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import nl.markpost.aiassistant.config.RoutingProperties;
+import nl.markpost.aiassistant.models.ModelRoute;
+
+/**
+ * Routes every message to one of several assistants, each backed by its own language model. The
+ * route is picked from cheap signals: an explicit hint of the client, the size of the prompt, the
+ * depth of the conversation, and the current latency of the models. Simple turns go to the fast
+ * model; only demanding ones pay for the capable model.
+ *
+ * <p>Decisions are counted as {@code chat.route.requests}, tagged by route and reason. The
+ * estimated prompt tokens per route are recorded as {@code chat.route.prompt.tokens}, and the
+ * duration of blocking calls as {@code chat.route.latency}.
+ */
+@Slf4j
+public class ModelRouter {
+
+  private static final String REQUESTS_METRIC = "chat.route.requests";
+  private static final String PROMPT_TOKENS_METRIC = "chat.route.prompt.tokens";
+  private static final String LATENCY_METRIC = "chat.route.latency";
+
+  /**
+   * An assistant and the name of the model behind it.
+   *
+   * @param modelName the name of the language model
+   * @param assistant the assistant answering with the model
+   */
+  public record Route(String modelName, Assistant assistant) {}
+
+  private final Map<ModelRoute, Route> routes;
+  private final RoutingProperties properties;
+  private final SessionChatMemoryProvider chatMemoryProvider;
+  private final TokenCountEstimator tokenCountEstimator;
+  private final ModelLatencyTracker latencyTracker;
+  private final MeterRegistry meterRegistry;
+
+  public ModelRouter(
+      Map<ModelRoute, Route> routes,
+      RoutingProperties properties,
+      SessionChatMemoryProvider chatMemoryProvider,
+      TokenCountEstimator tokenCountEstimator,
+      ModelLatencyTracker latencyTracker,
+      MeterRegistry meterRegistry) {
+    this.routes = new EnumMap<>(routes);
+    this.properties = properties;
+    this.chatMemoryProvider = chatMemoryProvider;
+    this.tokenCountEstimator = tokenCountEstimator;
+    this.latencyTracker = latencyTracker;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Picks the route answering the next message of a session.
+   *
+   * @param sessionId the ID of the chat session
+   * @param message the content of the user's message
+   * @param hint the route requested by the client, or null
+   * @return the route to answer the message with
+   */
+  public ModelRoute route(String sessionId, String message, ModelRoute hint) {
+    if (!properties.enabled()) {
+      return ModelRoute.FAST;
+    }
+    List<ChatMessage> context = chatMemoryProvider.get(sessionId).messages();
+    int promptTokens =
+        tokenCountEstimator.estimateTokenCountInMessages(context)
+            + tokenCountEstimator.estimateTokenCountInText(message);
+
+    ModelRoute route;
+    String reason;
+    if (hint != null) {
+      route = hint;
+      reason = "hint";
+    } else if (promptTokens > properties.capablePromptTokens()) {
+      route = ModelRoute.CAPABLE;
+      reason = "prompt-length";
+    } else if (context.size() >= properties.capableDepth()) {
+      route = ModelRoute.CAPABLE;
+      reason = "depth";
+    } else if (isFastModelDegraded()) {
+      route = ModelRoute.CAPABLE;
+      reason = "latency";
+    } else {
+      route = ModelRoute.FAST;
+      reason = "default";
+    }
+
+    log.debug("Routing message of session {} to {} ({})", sessionId, route, reason);
+    meterRegistry.counter(REQUESTS_METRIC, "route", tag(route), "reason", reason).increment();
+    DistributionSummary.builder(PROMPT_TOKENS_METRIC)
+        .description("Estimated prompt tokens sent per route")
+        .baseUnit("tokens")
+        .tag("route", tag(route))
+        .register(meterRegistry)
+        .record(promptTokens);
+    return route;
+  }
+
+  /**
+   * Answers a message over the given route.
+   *
+   * @param route the route to answer with
+   * @param sessionId the ID of the chat session
+   * @param message the content of the user's message
+   * @return the assistant's response
+   */
+  public String chat(ModelRoute route, String sessionId, String message) {
+    Route target = routes.get(route);
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String outcome = "error";
+    try {
+      String response = target.assistant().chat(sessionId, message);
+      outcome = "success";
+      return response;
+    } finally {
+      sample.stop(
+          meterRegistry.timer(
+              LATENCY_METRIC,
+              "route",
+              tag(route),
+              "model",
+              target.modelName(),
+              "outcome",
+              outcome));
+    }
+  }
+
+  /**
+   * Answers a message over the given route, streaming the response.
+   *
+   * @param route the route to answer with
+   * @param sessionId the ID of the chat session
+   * @param message the content of the user's message
+   * @return the stream of the assistant's response, not yet started
+   */
+  public TokenStream chatStream(ModelRoute route, String sessionId, String message) {
+    return routes.get(route).assistant().chatStream(sessionId, message);
+  }
+
+  /**
+   * Returns the name of the model behind the given route.
+   *
+   * @param route the route
+   * @return the name of the language model
+   */
+  public String modelName(ModelRoute route) {
+    return routes.get(route).modelName();
+  }
+
+  /**
+   * Checks whether the fast model currently generates tokens so slowly that the capable model
+   * answers simple turns sooner. Without recent latencies of both models the fast model is assumed
+   * to be fine. While simple turns go to the capable model the latency of the fast model ages out,
+   * so the next simple turn probes the fast model again.
+   */
+  private boolean isFastModelDegraded() {
+    Duration maxAge = properties.latencyMaxAge();
+    Optional<Duration> fast = latencyTracker.latencyPerToken(modelName(ModelRoute.FAST), maxAge);
+    Optional<Duration> capable =
+        latencyTracker.latencyPerToken(modelName(ModelRoute.CAPABLE), maxAge);
+    if (fast.isEmpty() || capable.isEmpty()) {
+      return false;
+    }
+    return fast.get().toNanos() > capable.get().toNanos() * properties.latencyTolerance();
+  }
+
+  private static String tag(ModelRoute route) {
+    return route.name().toLowerCase();
+  }
+}
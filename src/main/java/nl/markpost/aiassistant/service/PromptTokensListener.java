@@ -0,0 +1,36 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the estimated number of prompt tokens of every request sent to the language model as the
+ * {@code chat.prompt.tokens} distribution, tagged by model.
+ */
+@Component
+@RequiredArgsConstructor
+public class PromptTokensListener implements ChatModelListener {
+
+  private static final String PROMPT_TOKENS_METRIC = "chat.prompt.tokens";
+
+  private final TokenCountEstimator tokenCountEstimator;
+  private final MeterRegistry meterRegistry;
+
+  @Override
+  public void onRequest(ChatModelRequestContext requestContext) {
+    ChatRequest chatRequest = requestContext.chatRequest();
+    int tokens = tokenCountEstimator.estimateTokenCountInMessages(chatRequest.messages());
+    DistributionSummary.builder(PROMPT_TOKENS_METRIC)
+        .description("Estimated prompt tokens sent to the language model per request")
+        .baseUnit("tokens")
+        .tag("model", String.valueOf(chatRequest.modelName()))
+        .register(meterRegistry)
+        .record(tokens);
+  }
+}
@@ -0,0 +1,158 @@
+package nl.markpost.aiassistant.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker.State;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Health of a single language model provider, tracked by its circuit breaker. The breaker opens
+ * when too many calls fail or breach the latency objective, and probes the provider again after a
+ * while. Once the probes succeed, the provider gets its traffic back gradually: its share grows
+ * linearly over the fail-back period, so a provider that is barely back is not flooded at once.
+ *
+ * <p>Publishes the share as the {@code chat.provider.traffic-share} gauge, every call failed over
+ * to the next provider as the {@code chat.provider.failovers} counter and every call failing with
+ * no provider left as the {@code chat.provider.exhausted} counter, all tagged with the provider.
+ */
+public class ProviderHealth {
+
+  private final String name;
+  private final CircuitBreaker circuitBreaker;
+  private final Duration failBack;
+  private final MeterRegistry meterRegistry;
+
+  /** When the provider recovered, or null if it has not failed since startup. */
+  private volatile Long recoveredAtNanos;
+
+  /**
+   * Creates a new ProviderHealth.
+   *
+   * @param name the name of the provider
+   * @param circuitBreaker the circuit breaker of the provider
+   * @param failBack how long a recovered provider takes to get its full share of traffic back
+   * @param meterRegistry the registry of the provider metrics
+   */
+  public ProviderHealth(
+      String name, CircuitBreaker circuitBreaker, Duration failBack, MeterRegistry meterRegistry) {
+    this.name = name;
+    this.circuitBreaker = circuitBreaker;
+    this.failBack = failBack;
+    this.meterRegistry = meterRegistry;
+    Gauge.builder("chat.provider.traffic-share", this, ProviderHealth::trafficShare)
+        .description("Share of traffic a language model provider currently gets")
+        .tag("provider", name)
+        .register(meterRegistry);
+    circuitBreaker
+        .getEventPublisher()
+        .onStateTransition(
+            event -> {
+              if (event.getStateTransition().getToState() == State.CLOSED) {
+                recoveredAtNanos = nanoTime();
+              }
+            });
+  }
+
+  public String name() {
+    return name;
+  }
+
+  /**
+   * Returns the share of traffic the provider currently gets: none while its circuit breaker is
+   * open, growing from none to all over the fail-back period after it recovered, and all while it
+   * is healthy. Probes of a half-open breaker are not limited by the share.
+   *
+   * @return the share of traffic, between 0 and 1
+   */
+  public double trafficShare() {
+    return switch (circuitBreaker.getState()) {
+      case CLOSED, DISABLED, METRICS_ONLY -> {
+        Long recoveredAt = recoveredAtNanos;
+        if (recoveredAt == null || failBack.isZero()) {
+          yield 1;
+        }
+        yield Math.min(1, (double) (nanoTime() - recoveredAt) / failBack.toNanos());
+      }
+      default -> 0;
+    };
+  }
+
+  /**
+   * Asks permission to call the provider. A call that is permitted must be reported with {@link
+   * #onSuccess} or {@link #onError}.
+   *
+   * @param honourTrafficShare whether a recovering provider may be skipped to limit its share of
+   *     traffic; when no other provider is left it is called anyway
+   * @return whether the provider may be called
+   */
+  public boolean tryAcquire(boolean honourTrafficShare) {
+    if (honourTrafficShare
+        && circuitBreaker.getState() == State.CLOSED
+        && ThreadLocalRandom.current().nextDouble() >= trafficShare()) {
+      return false;
+    }
+    return circuitBreaker.tryAcquirePermission();
+  }
+
+  /**
+   * Reports a successful call. Calls slower than the latency objective of the circuit breaker count
+   * against the provider.
+   *
+   * @param startNanos when the call started, in {@link System#nanoTime()}
+   */
+  public void onSuccess(long startNanos) {
+    circuitBreaker.onSuccess(nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Reports a failed call. Failures the circuit breaker ignores, such as invalid requests, do not
+   * count against the provider.
+   *
+   * @param startNanos when the call started, in {@link System#nanoTime()}
+   * @param error the failure of the call
+   */
+  public void onError(long startNanos, Throwable error) {
+    circuitBreaker.onError(nanoTime() - startNanos, TimeUnit.NANOSECONDS, error);
+  }
+
+  /**
+   * Records a call failed over from this provider to the next one.
+   *
+   * @param error the failure of the call, or null if the provider was skipped as unavailable
+   */
+  public void recordFailover(Throwable error) {
+    Counter.builder("chat.provider.failovers")
+        .description("Calls failed over from a language model provider to the next one")
+        .tag("provider", name)
+        .tag("reason", error != null ? error.getClass().getSimpleName() : "unavailable")
+        .register(meterRegistry)
+        .increment();
+  }
+
+  /**
+   * Records a call that failed on this provider with no provider left to fail over to.
+   *
+   * @param error the failure the call ends with
+   */
+  public void recordExhausted(Throwable error) {
+    Counter.builder("chat.provider.exhausted")
+        .description("Calls failing with no language model provider left to fail over to")
+        .tag("provider", name)
+        .tag("reason", error.getClass().getSimpleName())
+        .register(meterRegistry)
+        .increment();
+  }
+
+  /** Reports a call that was cancelled before the provider answered. */
+  public void release() {
+    circuitBreaker.releasePermission();
+  }
+
+  long nanoTime() {
+    return System.nanoTime();
+  }
+}
@@ -0,0 +1,57 @@
+package nl.markpost.aiassistant.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import nl.markpost.aiassistant.config.FailoverProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of the health of every language model provider. The fast and capable models, blocking
+ * and streaming, of a provider share its health, as they are served by the same endpoint.
+ */
+@Component
+public class ProviderHealthRegistry {
+
+  /** Name of the resilience4j circuit breaker configuration of the providers. */
+  static final String PROVIDER_CONFIG = "provider";
+
+  private final CircuitBreakerRegistry circuitBreakerRegistry;
+  private final FailoverProperties failoverProperties;
+  private final MeterRegistry meterRegistry;
+  private final Map<String, ProviderHealth> healths = new ConcurrentHashMap<>();
+
+  public ProviderHealthRegistry(
+      CircuitBreakerRegistry circuitBreakerRegistry,
+      FailoverProperties failoverProperties,
+      MeterRegistry meterRegistry) {
+    this.circuitBreakerRegistry = circuitBreakerRegistry;
+    this.failoverProperties = failoverProperties;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Returns the health of the given provider, tracked by the circuit breaker {@code
+   * provider-<name>}.
+   *
+   * @param name the name of the provider
+   * @return the health of the provider
+   */
+  public ProviderHealth health(String name) {
+    return healths.computeIfAbsent(
+        name,
+        key -> {
+          CircuitBreakerConfig config =
+              circuitBreakerRegistry
+                  .getConfiguration(PROVIDER_CONFIG)
+                  .orElseGet(circuitBreakerRegistry::getDefaultConfig);
+          return new ProviderHealth(
+              key,
+              circuitBreakerRegistry.circuitBreaker("provider-" + key, config),
+              failoverProperties.failBack(),
+              meterRegistry);
+        });
+  }
+}
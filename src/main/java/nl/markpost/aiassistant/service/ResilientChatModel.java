@@ -0,0 +1,133 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.exception.RetriableException;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+import org.slf4j.MDC;
+
+/**
+ * Chat model retrying transient failures and failing fast while the provider is down. Each attempt
+ * passes the circuit breaker, and transient failures are retried with the backoff of the retry
+ * configuration, as long as the overall deadline of the call has not passed. Attempts run on the
+ * executor, so the caller stops waiting for an attempt still running at the deadline; the attempt
+ * is then cancelled by interrupting its thread.
+ *
+ * <p>Calls rejected by the open circuit breaker, calls that still fail after the last attempt and
+ * calls running out of time fail with a {@link ServiceUnavailableException}.
+ */
+@Slf4j
+public class ResilientChatModel extends DelegatingChatModel {
+
+  private final CircuitBreaker circuitBreaker;
+  private final Retry retry;
+  private final Duration deadline;
+  private final Executor executor;
+
+  public ResilientChatModel(
+      ChatModel delegate,
+      CircuitBreaker circuitBreaker,
+      Retry retry,
+      Duration deadline,
+      Executor executor) {
+    super(delegate);
+    this.circuitBreaker = circuitBreaker;
+    this.retry = retry;
+    this.deadline = deadline;
+    this.executor = executor;
+  }
+
+  @Override
+  public ChatResponse chat(ChatRequest chatRequest, ChatRequestOptions options) {
+    long deadlineNanos = System.nanoTime() + deadline.toNanos();
+    Supplier<ChatResponse> attempt =
+        CircuitBreaker.decorateSupplier(circuitBreaker, () -> delegate.chat(chatRequest, options));
+    try {
+      return retry.executeSupplier(() -> runUntil(attempt, deadlineNanos));
+    } catch (CallNotPermittedException e) {
+      throw unavailable(circuitBreaker);
+    } catch (RetriableException e) {
+      log.warn("Language model call failed after retries: {}", e.getMessage());
+      throw new ServiceUnavailableException("The language model is unavailable", e);
+    }
+  }
+
+  /**
+   * Runs an attempt on the executor, waiting for it no longer than the deadline of the call. An
+   * attempt still running at the deadline is cancelled.
+   *
+   * @param attempt the attempt
+   * @param deadlineNanos the deadline of the call, in {@link System#nanoTime()}
+   * @return the response of the attempt
+   */
+  private ChatResponse runUntil(Supplier<ChatResponse> attempt, long deadlineNanos) {
+    long remainingNanos = deadlineNanos - System.nanoTime();
+    if (remainingNanos <= 0) {
+      throw timedOut();
+    }
+    Map<String, String> context = MDC.getCopyOfContextMap();
+    FutureTask<ChatResponse> task =
+        new FutureTask<>(
+            () -> {
+              if (context != null) {
+                MDC.setContextMap(context);
+              }
+              try {
+                return attempt.get();
+              } finally {
+                MDC.clear();
+              }
+            });
+    executor.execute(task);
+    try {
+      return task.get(remainingNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      throw timedOut();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the language model", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw new IllegalStateException("Language model call failed", e.getCause());
+    } finally {
+      task.cancel(true);
+    }
+  }
+
+  private static ServiceUnavailableException timedOut() {
+    return new ServiceUnavailableException("The language model did not respond in time");
+  }
+
+  /**
+   * Creates the exception for a call rejected by the open circuit breaker, suggesting a retry once
+   * the breaker allows calls again.
+   *
+   * @param circuitBreaker the circuit breaker rejecting the call
+   * @return the exception
+   */
+  static ServiceUnavailableException unavailable(CircuitBreaker circuitBreaker) {
+    long waitMillis =
+        circuitBreaker.getCircuitBreakerConfig().getWaitIntervalFunctionInOpenState().apply(1);
+    return new ServiceUnavailableException(
+        "The language model is unavailable", Duration.ofMillis(waitMillis));
+  }
+}
@@ -0,0 +1,111 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.exception.RetriableException;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import java.util.concurrent.atomic.AtomicBoolean;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+
+/**
+ * Streaming chat model failing fast while the provider is down. Every stream passes the circuit
+ * breaker, and its outcome is recorded once the stream completes or fails. A stream cancelled
+ * through its streaming handle releases its permission without an outcome, so a half-open breaker
+ * is not left waiting for it. Streams are not retried: tokens already sent to the client cannot be
+ * taken back. Transient failures are reported as a {@link ServiceUnavailableException}.
+ */
+public class ResilientStreamingChatModel extends DelegatingStreamingChatModel {
+
+  private final CircuitBreaker circuitBreaker;
+
+  public ResilientStreamingChatModel(StreamingChatModel delegate, CircuitBreaker circuitBreaker) {
+    super(delegate);
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  @Override
+  public void chat(
+      ChatRequest chatRequest, ChatRequestOptions options, StreamingChatResponseHandler handler) {
+    try {
+      circuitBreaker.acquirePermission();
+    } catch (CallNotPermittedException e) {
+      throw ResilientChatModel.unavailable(circuitBreaker);
+    }
+    long start = circuitBreaker.getCurrentTimestamp();
+    // Set by the first of completion, failure and cancellation, which alone settles the permission
+    AtomicBoolean finished = new AtomicBoolean();
+    try {
+      delegate.chat(
+          chatRequest,
+          options,
+          new DelegatingStreamingChatResponseHandler(handler) {
+            @Override
+            public void onPartialResponse(
+                PartialResponse partialResponse, PartialResponseContext context) {
+              super.onPartialResponse(
+                  partialResponse,
+                  new PartialResponseContext(releasing(context.streamingHandle(), finished)));
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+              if (finished.compareAndSet(false, true)) {
+                circuitBreaker.onResult(
+                    circuitBreaker.getCurrentTimestamp() - start,
+                    circuitBreaker.getTimestampUnit(),
+                    completeResponse);
+              }
+              super.onCompleteResponse(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+              if (finished.compareAndSet(false, true)) {
+                circuitBreaker.onError(
+                    circuitBreaker.getCurrentTimestamp() - start,
+                    circuitBreaker.getTimestampUnit(),
+                    error);
+              }
+              super.onError(
+                  error instanceof RetriableException retriable
+                      ? new ServiceUnavailableException(
+                          "The language model is unavailable", retriable)
+                      : error);
+            }
+          });
+    } catch (RuntimeException e) {
+      if (finished.compareAndSet(false, true)) {
+        circuitBreaker.releasePermission();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Wraps a streaming handle so cancelling the stream releases its permission, as a cancelled
+   * stream neither completes nor fails.
+   */
+  private StreamingHandle releasing(StreamingHandle streamingHandle, AtomicBoolean finished) {
+    return new StreamingHandle() {
+      @Override
+      public void cancel() {
+        if (finished.compareAndSet(false, true)) {
+          circuitBreaker.releasePermission();
+        }
+        streamingHandle.cancel();
+      }
+
+      @Override
+      public boolean isCancelled() {
+        return streamingHandle.isCancelled();
+      }
+    };
+  }
+}
@@ -0,0 +1,117 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.memory.chat.TokenWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import java.util.List;
+
+/**
+ * A ChatMemoryProvider that gives every chat session its own chat memory. The memories are thin
+ * windows over a shared ChatMemoryStore, which holds the messages of each session. A window keeps
+ * the most recent messages that fit the token budget, so the size of the context sent to the model
+ * is bounded by tokens rather than by the number of messages. Models with a smaller budget than the
+ * window see the most recent part of it through {@link #forBudget(int)}.
+ */
+public class SessionChatMemoryProvider implements ChatMemoryProvider {
+
+  private final ChatMemoryStore chatMemoryStore;
+  private final TokenCountEstimator tokenCountEstimator;
+  private final int maxTokens;
+
+  /**
+   * Creates a new SessionChatMemoryProvider.
+   *
+   * @param chatMemoryStore the store holding the messages of each session
+   * @param tokenCountEstimator the estimator of the token count of messages
+   * @param maxTokens the token budget of the messages kept per session, the largest budget of the
+   *     models reading them
+   */
+  public SessionChatMemoryProvider(
+      ChatMemoryStore chatMemoryStore, TokenCountEstimator tokenCountEstimator, int maxTokens) {
+    this.chatMemoryStore = chatMemoryStore;
+    this.tokenCountEstimator = tokenCountEstimator;
+    this.maxTokens = maxTokens;
+  }
+
+  /**
+   * Retrieves the chat memory of the given session.
+   *
+   * @param memoryId the memory ID (expected to be the session ID as a String)
+   * @return the chat memory of the session
+   * @throws IllegalArgumentException if the memory ID is null
+   */
+  @Override
+  public ChatMemory get(Object memoryId) {
+    if (memoryId == null) {
+      throw new IllegalArgumentException("Memory ID cannot be null");
+    }
+    return window(memoryId, maxTokens);
+  }
+
+  /**
+   * Returns a provider of chat memories for a model with the given token budget. The memories show
+   * the model the most recent messages within its budget, but keep the whole window in the store,
+   * so a model with a smaller budget does not trim the context of a model with a larger one.
+   *
+   * @param budget the token budget of the model
+   * @return the provider of the model's chat memories
+   */
+  public ChatMemoryProvider forBudget(int budget) {
+    if (budget >= maxTokens) {
+      return this;
+    }
+    return memoryId -> new BudgetedChatMemory(get(memoryId), window(memoryId, budget));
+  }
+
+  /**
+   * Evicts the chat memory of the given session.
+   *
+   * @param sessionId the ID of the chat session
+   */
+  public void evict(String sessionId) {
+    chatMemoryStore.deleteMessages(sessionId);
+  }
+
+  private ChatMemory window(Object memoryId, int tokens) {
+    return TokenWindowChatMemory.builder()
+        .id(memoryId)
+        .maxTokens(tokens, tokenCountEstimator)
+        .chatMemoryStore(chatMemoryStore)
+        .build();
+  }
+
+  /**
+   * A chat memory that reads through a window of a model's budget and writes through the window of
+   * the whole store budget.
+   */
+  private record BudgetedChatMemory(ChatMemory window, ChatMemory budgeted) implements ChatMemory {
+
+    @Override
+    public Object id() {
+      return window.id();
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+      window.add(message);
+    }
+
+    @Override
+    public void set(Iterable<ChatMessage> messages) {
+      window.set(messages);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+      return budgeted.messages();
+    }
+
+    @Override
+    public void clear() {
+      window.clear();
+    }
+  }
+}
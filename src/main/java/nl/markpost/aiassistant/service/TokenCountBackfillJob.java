@@ -0,0 +1,82 @@
+package nl.markpost.aiassistant.service;
+
+import dev.langchain4j.model.TokenCountEstimator;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import nl.markpost.aiassistant.models.entity.ChatMessage;
+import nl.markpost.aiassistant.repository.ChatMessageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Stores the token count of messages saved before token counts were recorded at write time. Runs
+ * once after startup when enabled, in batches that each commit in their own transaction, so it can
+ * be interrupted and resumed safely.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "assistant.token-count-backfill.enabled", havingValue = "true")
+public class TokenCountBackfillJob {
+
+  private final ChatMessageRepository chatMessageRepository;
+  private final TokenCountEstimator tokenCountEstimator;
+  private final TransactionTemplate transactionTemplate;
+  private final int batchSize;
+
+  public TokenCountBackfillJob(
+      ChatMessageRepository chatMessageRepository,
+      TokenCountEstimator tokenCountEstimator,
+      TransactionTemplate transactionTemplate,
+      @Value("${assistant.token-count-backfill.batch-size:500}") int batchSize) {
+    this.chatMessageRepository = chatMessageRepository;
+    this.tokenCountEstimator = tokenCountEstimator;
+    this.transactionTemplate = transactionTemplate;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Backfills the token count of all messages without one.
+   *
+   * @return the number of messages updated
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public long run() {
+    log.info("Backfilling token counts of chat messages");
+    long total = 0;
+    String lastId = "";
+    List<ChatMessage> updated;
+    do {
+      String afterId = lastId;
+      updated = transactionTemplate.execute(status -> backfillBatch(afterId));
+      total += updated.size();
+      if (!updated.isEmpty()) {
+        lastId = updated.getLast().getId();
+      }
+    } while (updated.size() == batchSize);
+    log.info("Backfilled token counts of {} chat messages", total);
+    return total;
+  }
+
+  /**
+   * Stores the token count of the next batch of messages without one, continuing after the last
+   * message of the previous batch.
+   *
+   * @param afterId the ID of the last message of the previous batch, or empty for the first batch
+   * @return the messages updated, in ID order
+   */
+  private List<ChatMessage> backfillBatch(String afterId) {
+    List<ChatMessage> messages =
+        chatMessageRepository.findByTokenCountIsNullAndIdGreaterThanOrderByIdAsc(
+            afterId, Limit.of(batchSize));
+    for (ChatMessage message : messages) {
+      message.setTokenCount(tokenCountEstimator.estimateTokenCountInText(message.getContent()));
+    }
+    chatMessageRepository.saveAll(messages);
+    return messages;
+  }
+}
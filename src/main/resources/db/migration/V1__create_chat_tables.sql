@@ -0,0 +1,22 @@
+-- Chat sessions and their messages, as Hibernate created them before the schema was migrated.
+-- Databases created by Hibernate are baselined at this version, so this only runs on new databases;
+-- columns added since are added by the later migrations, which run on both.
+
+CREATE TABLE chat_sessions (
+    id         VARCHAR(255) NOT NULL,
+    user_id    VARCHAR(255) NOT NULL,
+    title      VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT pk_chat_sessions PRIMARY KEY (id)
+);
+
+CREATE TABLE chat_messages (
+    id         VARCHAR(255) NOT NULL,
+    session_id VARCHAR(255) NOT NULL,
+    role       VARCHAR(255) NOT NULL,
+    content    TEXT         NOT NULL,
+    timestamp  TIMESTAMP(6) NOT NULL,
+    CONSTRAINT pk_chat_messages PRIMARY KEY (id),
+    CONSTRAINT fk_chat_messages_session FOREIGN KEY (session_id) REFERENCES chat_sessions (id)
+);
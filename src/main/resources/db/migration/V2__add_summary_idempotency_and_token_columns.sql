@@ -0,0 +1,12 @@
+-- Columns added after the baseline. Databases whose schema Hibernate updated may already have
+-- them, so they are only added when missing.
+
+-- Rolling summary of the messages that no longer fit the context window
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS summary TEXT;
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS summarized_until TIMESTAMP(6);
+
+-- Idempotency key of the send that created a message
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS idempotency_key VARCHAR(255);
+
+-- Token count of a message, backfilled for messages stored before it was recorded
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS token_count INTEGER;
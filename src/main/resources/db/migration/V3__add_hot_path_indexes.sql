@@ -0,0 +1,11 @@
+-- Indexes of the hot queries, matching their sort order so the newest rows are read straight from
+-- the index without sorting.
+
+-- Recent messages of a session (context window, history, idempotency lookup), newest first; the id
+-- breaks ties between messages with the same timestamp
+CREATE INDEX IF NOT EXISTS idx_chat_messages_session_timestamp
+    ON chat_messages (session_id, timestamp DESC, id DESC);
+
+-- Sessions of a user, most recently updated first
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_user_updated
+    ON chat_sessions (user_id, updated_at DESC, id DESC);
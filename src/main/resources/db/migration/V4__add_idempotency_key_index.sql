@@ -0,0 +1,9 @@
+-- Lookup of the messages stored for an idempotency key, which is done for every keyed send. A key
+-- identifies one message and its reply within a session, so each role is stored once per key.
+CREATE UNIQUE INDEX IF NOT EXISTS uq_chat_messages_session_idempotency_key
+    ON chat_messages (session_id, idempotency_key, role)
+    WHERE idempotency_key IS NOT NULL;
+
+-- Hash of the request that stored a message under an idempotency key, so a key reused for a
+-- different request is rejected instead of answered with the earlier reply
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS request_hash VARCHAR(64);
@@ -0,0 +1,3 @@
+-- Until when the node answering a keyed message holds its key. A retry arriving on another node
+-- before then is told the message is still being answered; after then, it takes the key over.
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS claimed_until TIMESTAMP(6);
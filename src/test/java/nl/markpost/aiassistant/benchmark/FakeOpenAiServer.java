@@ -0,0 +1,196 @@
+package nl.markpost.aiassistant.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.exception.RateLimitException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import nl.markpost.aiassistant.config.FakeModelProperties;
+import nl.markpost.aiassistant.service.FakeLanguageModel;
+
+/**
+ * HTTP server speaking the OpenAI chat completions protocol, standing in for OpenAI during load
+ * tests of the real client. Serves {@code POST /v1/chat/completions}, both as a single JSON
+ * response and as a stream of server-sent events, with the latencies, token rate and injected
+ * failures of a {@link FakeLanguageModel}. Rate limits are answered with HTTP 429 and server errors
+ * with HTTP 500. Every request is handled on its own virtual thread.
+ *
+ * <p>Not part of the test suite. Run with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=nl.markpost.aiassistant.benchmark.FakeOpenAiServer
+ * </pre>
+ *
+ * <p>Settings are read from system properties: {@code fake.port} (default 8089), {@code
+ * fake.latency-median-ms} (default 800), {@code fake.latency-p99-ms} (default 3000), {@code
+ * fake.tokens-per-second} (default 50), {@code fake.response-tokens} (default 100), {@code
+ * fake.rate-limit-rate} and {@code fake.error-rate} (default 0) and {@code fake.seed} (default 42).
+ */
+public class FakeOpenAiServer {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final FakeLanguageModel languageModel;
+
+  FakeOpenAiServer(FakeLanguageModel languageModel) {
+    this.languageModel = languageModel;
+  }
+
+  public static void main(String[] args) throws IOException {
+    FakeModelProperties properties =
+        new FakeModelProperties(
+            Duration.ofMillis(Long.getLong("fake.latency-median-ms", 800)),
+            Duration.ofMillis(Long.getLong("fake.latency-p99-ms", 3000)),
+            Double.parseDouble(System.getProperty("fake.tokens-per-second", "50")),
+            Integer.getInteger("fake.response-tokens", 100),
+            Double.parseDouble(System.getProperty("fake.rate-limit-rate", "0")),
+            Double.parseDouble(System.getProperty("fake.error-rate", "0")),
+            Long.getLong("fake.seed", 42));
+    int port = Integer.getInteger("fake.port", 8089);
+    new FakeOpenAiServer(new FakeLanguageModel(properties)).start(port);
+    System.out.printf("Fake OpenAI server listening on http://localhost:%d/v1%n", port);
+  }
+
+  /**
+   * Starts serving on the given port.
+   *
+   * @param port the port to listen on, or 0 for any free port
+   * @return the running server
+   */
+  HttpServer start(int port) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.createContext("/v1/chat/completions", this::handle);
+    server.start();
+    return server;
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        sendError(exchange, 405, "Method not allowed", "invalid_request_error");
+        return;
+      }
+      JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+      String model = request.path("model").asText("fake");
+      String prompt = prompt(request.path("messages"));
+      List<String> tokens = languageModel.tokens(prompt);
+      int promptTokens = FakeLanguageModel.estimateTokens(prompt);
+
+      Thread.sleep(languageModel.firstTokenLatency());
+      RuntimeException failure = languageModel.failure();
+      if (failure instanceof RateLimitException) {
+        sendError(exchange, 429, failure.getMessage(), "rate_limit_exceeded");
+      } else if (failure != null) {
+        sendError(exchange, 500, failure.getMessage(), "server_error");
+      } else if (request.path("stream").asBoolean(false)) {
+        stream(exchange, model, tokens, promptTokens);
+      } else {
+        Thread.sleep(languageModel.tokenInterval().multipliedBy(tokens.size()));
+        ObjectNode completion = completion("chat.completion", model);
+        ObjectNode choice = completion.putArray("choices").addObject().put("index", 0);
+        choice
+            .putObject("message")
+            .put("role", "assistant")
+            .put("content", String.join("", tokens));
+        choice.put("finish_reason", "stop");
+        completion.set("usage", usage(promptTokens, tokens.size()));
+        send(exchange, 200, "application/json", MAPPER.writeValueAsBytes(completion));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Streams the tokens as chat completion chunks, ending with the usage and a done event. */
+  private void stream(HttpExchange exchange, String model, List<String> tokens, int promptTokens)
+      throws IOException, InterruptedException {
+    exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+    exchange.sendResponseHeaders(200, 0);
+    String id = "chatcmpl-" + UUID.randomUUID();
+    OutputStream body = exchange.getResponseBody();
+    for (int i = 0; i < tokens.size(); i++) {
+      ObjectNode delta = MAPPER.createObjectNode().put("content", tokens.get(i));
+      if (i == 0) {
+        delta.put("role", "assistant");
+      }
+      writeEvent(body, chunk(id, model, delta, null));
+      Thread.sleep(languageModel.tokenInterval());
+    }
+    ObjectNode last = chunk(id, model, MAPPER.createObjectNode(), "stop");
+    last.set("usage", usage(promptTokens, tokens.size()));
+    writeEvent(body, last);
+    body.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+    body.flush();
+  }
+
+  private static ObjectNode chunk(String id, String model, ObjectNode delta, String finishReason) {
+    ObjectNode chunk = completion("chat.completion.chunk", model).put("id", id);
+    ObjectNode choice = chunk.putArray("choices").addObject().put("index", 0);
+    choice.set("delta", delta);
+    choice.put("finish_reason", finishReason);
+    return chunk;
+  }
+
+  private static ObjectNode completion(String object, String model) {
+    return MAPPER
+        .createObjectNode()
+        .put("id", "chatcmpl-" + UUID.randomUUID())
+        .put("object", object)
+        .put("created", Instant.now().getEpochSecond())
+        .put("model", model);
+  }
+
+  private static ObjectNode usage(int promptTokens, int completionTokens) {
+    return MAPPER
+        .createObjectNode()
+        .put("prompt_tokens", promptTokens)
+        .put("completion_tokens", completionTokens)
+        .put("total_tokens", promptTokens + completionTokens);
+  }
+
+  /** Returns the content of the last user message, which the output is derived from. */
+  private static String prompt(JsonNode messages) {
+    if (messages instanceof ArrayNode array) {
+      for (int i = array.size() - 1; i >= 0; i--) {
+        if ("user".equals(array.get(i).path("role").asText())) {
+          JsonNode content = array.get(i).path("content");
+          return content.isTextual() ? content.asText() : content.toString();
+        }
+      }
+    }
+    return "";
+  }
+
+  private static void writeEvent(OutputStream body, JsonNode event) throws IOException {
+    body.write(
+        ("data: " + MAPPER.writeValueAsString(event) + "\n\n").getBytes(StandardCharsets.UTF_8));
+    body.flush();
+  }
+
+  private static void sendError(HttpExchange exchange, int status, String message, String type)
+      throws IOException {
+    ObjectNode error = MAPPER.createObjectNode();
+    error.putObject("error").put("message", message).put("type", type).put("code", type);
+    send(exchange, status, "application/json", MAPPER.writeValueAsBytes(error));
+  }
+
+  private static void send(HttpExchange exchange, int status, String contentType, byte[] body)
+      throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, body.length);
+    exchange.getResponseBody().write(body);
+  }
+}
@@ -0,0 +1,168 @@
+package nl.markpost.aiassistant.benchmark;
+
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import nl.markpost.aiassistant.config.FakeModelProperties;
+import nl.markpost.aiassistant.service.Assistant;
+import nl.markpost.aiassistant.service.FakeChatModel;
+import nl.markpost.aiassistant.service.FakeLanguageModel;
+import nl.markpost.aiassistant.service.SessionChatMemoryProvider;
+
+/**
+ * Compares platform and virtual threads serving blocking assistant calls. Every session is a client
+ * sending its messages one after another; each message is handled on the server executor by the
+ * {@link Assistant}, backed by a {@link FakeChatModel} with a fixed latency.
+ *
+ * <p>The platform executor is a fixed pool sized like Tomcat's default of 200 request threads. The
+ * virtual executor starts a virtual thread per request, like Tomcat with {@code
+ * spring.threads.virtual.enabled}. Reports throughput and latency percentiles per mode and
+ * concurrency level.
+ *
+ * <p>Not part of the test suite. Run with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=nl.markpost.aiassistant.benchmark.ThreadModelBenchmark
+ * </pre>
+ *
+ * <p>Settings are read from system properties: {@code benchmark.sessions} (default {@code
+ * 100,1000,5000}), {@code benchmark.messages-per-session} (default 3), {@code benchmark.latency-ms}
+ * (model latency, default 500) and {@code benchmark.platform-threads} (default 200).
+ */
+public class ThreadModelBenchmark {
+
+  private final Assistant assistant;
+  private final int messagesPerSession;
+  private final int platformThreads;
+
+  ThreadModelBenchmark(Duration latency, int messagesPerSession, int platformThreads) {
+    this.assistant =
+        AiServices.builder(Assistant.class)
+            .chatModel(
+                new FakeChatModel(
+                    "fake",
+                    new FakeLanguageModel(
+                        new FakeModelProperties(latency, latency, 0, 1, 0, 0, 42)),
+                    List.of()))
+            .chatMemoryProvider(
+                new SessionChatMemoryProvider(
+                    new InMemoryChatMemoryStore(), new OpenAiTokenCountEstimator("gpt-4o"), 4000))
+            .build();
+    this.messagesPerSession = messagesPerSession;
+    this.platformThreads = platformThreads;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int[] sessionCounts =
+        Arrays.stream(System.getProperty("benchmark.sessions", "100,1000,5000").split(","))
+            .map(String::trim)
+            .mapToInt(Integer::parseInt)
+            .toArray();
+    int messagesPerSession = Integer.getInteger("benchmark.messages-per-session", 3);
+    Duration latency = Duration.ofMillis(Integer.getInteger("benchmark.latency-ms", 500));
+    int platformThreads = Integer.getInteger("benchmark.platform-threads", 200);
+
+    ThreadModelBenchmark benchmark =
+        new ThreadModelBenchmark(latency, messagesPerSession, platformThreads);
+    benchmark.run("warmup", true, 50);
+
+    System.out.printf(
+        "Model latency %d ms, %d messages per session, %d platform threads%n",
+        latency.toMillis(), messagesPerSession, platformThreads);
+    System.out.printf(
+        "%-9s %9s %9s %11s %10s %10s %10s%n",
+        "mode", "sessions", "requests", "duration s", "req/s", "p50 ms", "p99 ms");
+    for (int sessions : sessionCounts) {
+      for (boolean virtual : new boolean[] {false, true}) {
+        Result result = benchmark.run(virtual ? "virtual" : "platform", virtual, sessions);
+        System.out.printf(
+            "%-9s %9d %9d %11.2f %10.1f %10d %10d%n",
+            result.mode(),
+            sessions,
+            result.requests(),
+            result.duration().toMillis() / 1000.0,
+            result.throughput(),
+            result.percentile(0.50),
+            result.percentile(0.99));
+      }
+    }
+  }
+
+  /**
+   * Runs one round with the given number of concurrent sessions.
+   *
+   * @param mode the name of the round
+   * @param virtual whether the server executor uses virtual threads
+   * @param sessions the number of concurrent sessions
+   * @return the measurements of the round
+   */
+  Result run(String mode, boolean virtual, int sessions) throws Exception {
+    List<Future<long[]>> clients = new ArrayList<>(sessions);
+    long start = System.nanoTime();
+    try (ExecutorService server =
+            virtual
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(platformThreads);
+        ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < sessions; i++) {
+        String sessionId = mode + "-" + i;
+        clients.add(clientThreads.submit(() -> runSession(server, sessionId)));
+      }
+      long[] latencies =
+          clients.stream().map(ThreadModelBenchmark::join).flatMapToLong(Arrays::stream).toArray();
+      Arrays.sort(latencies);
+      return new Result(mode, latencies, Duration.ofNanos(System.nanoTime() - start));
+    }
+  }
+
+  /**
+   * Sends the messages of a single session one after another, measuring the latency of each.
+   *
+   * @param server the executor handling the messages
+   * @param sessionId the ID of the session
+   * @return the latency of each message in milliseconds
+   */
+  private long[] runSession(ExecutorService server, String sessionId) throws Exception {
+    long[] latencies = new long[messagesPerSession];
+    for (int i = 0; i < messagesPerSession; i++) {
+      String message = "Message " + i;
+      long sent = System.nanoTime();
+      server.submit(() -> assistant.chat(sessionId, message)).get();
+      latencies[i] = Duration.ofNanos(System.nanoTime() - sent).toMillis();
+    }
+    return latencies;
+  }
+
+  private static long[] join(Future<long[]> future) {
+    try {
+      return future.get();
+    } catch (Exception e) {
+      throw new IllegalStateException("Session failed", e);
+    }
+  }
+
+  /** Measurements of a single round, with latencies sorted in ascending order. */
+  record Result(String mode, long[] latencies, Duration duration) {
+
+    int requests() {
+      return latencies.length;
+    }
+
+    double throughput() {
+      return latencies.length / (duration.toNanos() / 1_000_000_000.0);
+    }
+
+    long percentile(double percentile) {
+      int index = (int) Math.ceil(percentile * latencies.length) - 1;
+      return latencies[Math.max(index, 0)];
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package nl.markpost.aiassistant.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HttpClientConfigTest {
+
+  private HttpClient sharedClient;
+
+  @BeforeEach
+  void setUp() throws NoSuchAlgorithmException {
+    sharedClient =
+        new HttpClientConfig()
+            .languageModelHttpClient(
+                new HttpClientProperties(Duration.ofSeconds(10), true), new SimpleMeterRegistry());
+  }
+
+  @Test
+  void sharing_shouldKeepConnectTimeoutOfSharedClient() {
+    HttpClient client =
+        HttpClientConfig.sharing(sharedClient).connectTimeout(Duration.ofSeconds(1)).build();
+
+    assertThat(client).isSameAs(sharedClient);
+    assertThat(client.connectTimeout()).contains(Duration.ofSeconds(10));
+  }
+
+  @Test
+  void sharing_shouldRejectSettingsApplyingToAllProviders() {
+    HttpClient.Builder builder = HttpClientConfig.sharing(sharedClient);
+
+    assertThatThrownBy(() -> builder.proxy(ProxySelector.getDefault()))
+        .isInstanceOf(UnsupportedOperationException.class)
+        .hasMessageContaining("proxy");
+    assertThatThrownBy(() -> builder.version(HttpClient.Version.HTTP_1_1))
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
+}
@@ -1,17 +1,33 @@
 package nl.markpost.aiassistant.controller;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
+import java.util.concurrent.Callable;
+import nl.markpost.aiassistant.api.model.Error;
 import nl.markpost.aiassistant.api.model.Message;
+import nl.markpost.aiassistant.api.model.MessageJob;
 import nl.markpost.aiassistant.api.model.SendMessageRequest;
+import nl.markpost.aiassistant.constant.GenericErrorCodes;
+import nl.markpost.aiassistant.exception.BadRequestException;
+import nl.markpost.aiassistant.mapper.ErrorMapper;
 import nl.markpost.aiassistant.mapper.SessionApiMapper;
+import nl.markpost.aiassistant.models.CursorPageDTO;
 import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.MessageJobDTO;
+import nl.markpost.aiassistant.models.StreamEventDTO;
+import nl.markpost.aiassistant.service.ChatHistoryExporter;
 import nl.markpost.aiassistant.service.ChatMessagesService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,18 +36,27 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 @ExtendWith(MockitoExtension.class)
 class ChatMessagesControllerTest {
 
   @Mock private ChatMessagesService chatMessagesService;
 
+  @Mock private ChatHistoryExporter chatHistoryExporter;
+
   @Mock private SessionApiMapper sessionApiMapper;
 
+  @Mock private ErrorMapper errorMapper;
+
   @Mock private SecurityContext securityContext;
 
   @InjectMocks private ChatMessagesController chatMessagesController;
@@ -86,20 +111,54 @@ class ChatMessagesControllerTest {
 
     List<Message> apiMessages = List.of(apiMessage1, apiMessage2);
 
-    when(chatMessagesService.getSessionHistory(SESSION_ID, USER_ID)).thenReturn(messagesDTO);
+    when(chatMessagesService.getSessionHistory(SESSION_ID, USER_ID, 50, null, null))
+        .thenReturn(
+            CursorPageDTO.<MessageDTO>builder().items(messagesDTO).before("cursor-1").build());
     when(sessionApiMapper.toApiMessageList(messagesDTO)).thenReturn(apiMessages);
 
-    ResponseEntity<List<Message>> response = chatMessagesController.getSessionHistory(SESSION_ID);
+    ResponseEntity<List<Message>> response =
+        chatMessagesController.getSessionHistory(SESSION_ID, 50, null, null);
 
     assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     assertThat(response.getBody()).isNotNull();
     assertThat(response.getBody()).hasSize(2);
-    verify(chatMessagesService).getSessionHistory(SESSION_ID, USER_ID);
+    assertThat(response.getHeaders().getFirst("Before-Cursor")).isEqualTo("cursor-1");
+    assertThat(response.getHeaders().containsHeader("After-Cursor")).isFalse();
+    verify(chatMessagesService).getSessionHistory(SESSION_ID, USER_ID, 50, null, null);
     verify(sessionApiMapper).toApiMessageList(messagesDTO);
   }
 
   @Test
-  void sendMessage_shouldReturnAssistantResponse() {
+  void exportSessionHistory_shouldStreamMessagesAsNdjson() throws Exception {
+    ResponseEntity<StreamingResponseBody> response =
+        chatMessagesController.exportSessionHistory(SESSION_ID);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+    assertThat(response.getHeaders().getContentDisposition().getFilename())
+        .isEqualTo("session-" + SESSION_ID + ".ndjson");
+    verify(chatHistoryExporter).checkSession(SESSION_ID, USER_ID);
+    verify(chatHistoryExporter, never()).export(any(), any());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    response.getBody().writeTo(output);
+
+    verify(chatHistoryExporter).export(SESSION_ID, output);
+  }
+
+  @Test
+  void exportSessionHistory_shouldFailBeforeStreamingWhenSessionNotFound() throws Exception {
+    doThrow(new BadRequestException("Session not found"))
+        .when(chatHistoryExporter)
+        .checkSession(SESSION_ID, USER_ID);
+
+    assertThatThrownBy(() -> chatMessagesController.exportSessionHistory(SESSION_ID))
+        .isInstanceOf(BadRequestException.class);
+    verify(chatHistoryExporter, never()).export(any(), any());
+  }
+
+  @Test
+  void sendMessage_shouldReturnAssistantResponse() throws Exception {
     SendMessageRequest request = new SendMessageRequest();
     request.setMessage(MESSAGE_CONTENT);
 
@@ -119,18 +178,169 @@ class ChatMessagesControllerTest {
             .timestamp(OffsetDateTime.now(ZoneOffset.UTC))
             .build();
 
-    when(chatMessagesService.sendMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT))
+    when(chatMessagesService.sendMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, null))
         .thenReturn(responseDTO);
     when(sessionApiMapper.toApiModel(responseDTO)).thenReturn(apiMessage);
 
-    ResponseEntity<Message> response = chatMessagesController.sendMessage(SESSION_ID, request);
+    Callable<ResponseEntity<Message>> task =
+        chatMessagesController.sendMessage(SESSION_ID, request, null);
+    verify(chatMessagesService, never())
+        .sendMessage(any(), any(), any(), anyBoolean(), any(), any());
+
+    ResponseEntity<Message> response = task.call();
 
     assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     assertThat(response.getBody()).isNotNull();
     assertThat(response.getBody().getId()).isEqualTo("msg-123");
     assertThat(response.getBody().getRole()).isEqualTo(Message.RoleEnum.ASSISTANT);
     assertThat(response.getBody().getContent()).isEqualTo("Response from AI");
-    verify(chatMessagesService).sendMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT);
+    verify(chatMessagesService)
+        .sendMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, null);
     verify(sessionApiMapper).toApiModel(responseDTO);
   }
+
+  @Test
+  void streamMessage_shouldEmitTokenAndMessageEvents() {
+    SendMessageRequest request = new SendMessageRequest();
+    request.setMessage(MESSAGE_CONTENT);
+
+    MessageDTO responseDTO =
+        MessageDTO.builder()
+            .id("msg-123")
+            .role("assistant")
+            .content("Response from AI")
+            .timestamp(LocalDateTime.now())
+            .build();
+
+    Message apiMessage =
+        Message.builder()
+            .id("msg-123")
+            .role(Message.RoleEnum.ASSISTANT)
+            .content("Response from AI")
+            .timestamp(OffsetDateTime.now(ZoneOffset.UTC))
+            .build();
+
+    when(chatMessagesService.streamMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, null))
+        .thenReturn(
+            Flux.just(
+                StreamEventDTO.builder()
+                    .type(StreamEventDTO.Type.TOKEN)
+                    .content("Response ")
+                    .build(),
+                StreamEventDTO.builder()
+                    .type(StreamEventDTO.Type.MESSAGE)
+                    .message(responseDTO)
+                    .build()));
+    when(sessionApiMapper.toApiModel(responseDTO)).thenReturn(apiMessage);
+
+    StepVerifier.create(chatMessagesController.streamMessage(SESSION_ID, request))
+        .assertNext(
+            event -> {
+              assertThat(event.event()).isEqualTo("token");
+              assertThat(event.data()).isEqualTo("Response ");
+            })
+        .assertNext(
+            event -> {
+              assertThat(event.event()).isEqualTo("message");
+              assertThat(event.data()).isEqualTo(apiMessage);
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void streamMessage_shouldEmitErrorEventWhenStreamFails() {
+    SendMessageRequest request = new SendMessageRequest();
+    request.setMessage(MESSAGE_CONTENT);
+
+    Error error = new Error();
+    error.setCode("INTERNAL_SERVER_ERROR");
+
+    when(chatMessagesService.streamMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, null))
+        .thenReturn(Flux.error(new RuntimeException("Stream failed")));
+    when(errorMapper.from(
+            GenericErrorCodes.INTERNAL_SERVER_ERROR,
+            GenericErrorCodes.INTERNAL_SERVER_ERROR.getHttpStatus()))
+        .thenReturn(error);
+
+    StepVerifier.create(chatMessagesController.streamMessage(SESSION_ID, request))
+        .assertNext(
+            event -> {
+              assertThat(event.event()).isEqualTo("error");
+              assertThat(event.data()).isEqualTo(error);
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void stopGeneration_shouldStopGenerationAndReturnNoContent() {
+    ResponseEntity<Void> response = chatMessagesController.stopGeneration(SESSION_ID, true);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+    verify(chatMessagesService).stopGeneration(SESSION_ID, USER_ID, true);
+  }
+
+  @Test
+  void submitMessage_shouldReturnAcceptedJob() {
+    SendMessageRequest request = new SendMessageRequest();
+    request.setMessage(MESSAGE_CONTENT);
+    MessageJobDTO jobDTO =
+        MessageJobDTO.builder().id("msg-1").status(MessageJobDTO.Status.PENDING).build();
+    MessageJob job = MessageJob.builder().id("msg-1").status(MessageJob.StatusEnum.PENDING).build();
+
+    when(chatMessagesService.submitMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null))
+        .thenReturn(jobDTO);
+    when(sessionApiMapper.toApiModel(jobDTO)).thenReturn(job);
+
+    ResponseEntity<MessageJob> response = chatMessagesController.submitMessage(SESSION_ID, request);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+    assertThat(response.getBody()).isEqualTo(job);
+  }
+
+  @Test
+  void getMessageJob_shouldIncludeErrorOfFailedJob() {
+    MessageJobDTO jobDTO =
+        MessageJobDTO.builder()
+            .id("msg-1")
+            .status(MessageJobDTO.Status.FAILED)
+            .errorCode(GenericErrorCodes.INTERNAL_SERVER_ERROR)
+            .build();
+    MessageJob job = MessageJob.builder().id("msg-1").status(MessageJob.StatusEnum.FAILED).build();
+    Error error = new Error();
+
+    when(chatMessagesService.getMessageJob("msg-1", SESSION_ID, USER_ID)).thenReturn(jobDTO);
+    when(sessionApiMapper.toApiModel(jobDTO)).thenReturn(job);
+    when(errorMapper.from(
+            GenericErrorCodes.INTERNAL_SERVER_ERROR, HttpStatus.INTERNAL_SERVER_ERROR))
+        .thenReturn(error);
+
+    ResponseEntity<MessageJob> response = chatMessagesController.getMessageJob(SESSION_ID, "msg-1");
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody().getError()).isEqualTo(error);
+  }
+
+  @Test
+  void subscribeMessageJob_shouldEmitMessageEventWhenJobCompletes() {
+    MessageDTO messageDTO = MessageDTO.builder().id("msg-2").build();
+    MessageJobDTO jobDTO =
+        MessageJobDTO.builder()
+            .id("msg-1")
+            .status(MessageJobDTO.Status.COMPLETED)
+            .message(messageDTO)
+            .build();
+    Message apiMessage = Message.builder().id("msg-2").build();
+
+    when(chatMessagesService.awaitMessageJob("msg-1", SESSION_ID, USER_ID))
+        .thenReturn(Mono.just(jobDTO));
+    when(sessionApiMapper.toApiModel(messageDTO)).thenReturn(apiMessage);
+
+    StepVerifier.create(chatMessagesController.subscribeMessageJob(SESSION_ID, "msg-1"))
+        .assertNext(
+            event -> {
+              assertThat(event.event()).isEqualTo("message");
+              assertThat(event.data()).isEqualTo(apiMessage);
+            })
+        .verifyComplete();
+  }
 }
@@ -13,6 +13,7 @@ import nl.markpost.aiassistant.api.model.CreateSessionRequest;
 import nl.markpost.aiassistant.api.model.UpdateSessionRequest;
 import nl.markpost.aiassistant.mapper.SessionApiMapper;
 import nl.markpost.aiassistant.models.ChatSessionDTO;
+import nl.markpost.aiassistant.models.CursorPageDTO;
 import nl.markpost.aiassistant.service.ChatSessionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -99,35 +100,47 @@ class ChatSessionControllerTest {
 
     List<ChatSession> apiSessions = List.of(apiSession1, apiSession2);
 
-    when(chatSessionService.getUserSessions(USER_ID)).thenReturn(sessionsDTO);
+    when(chatSessionService.getUserSessions(USER_ID, 2, null, "cursor-0"))
+        .thenReturn(
+            CursorPageDTO.<ChatSessionDTO>builder()
+                .items(sessionsDTO)
+                .before("cursor-1")
+                .after("cursor-2")
+                .build());
     when(sessionApiMapper.toApiModelList(sessionsDTO)).thenReturn(apiSessions);
 
-    ResponseEntity<List<ChatSession>> response = chatSessionController.getUserSessions();
+    ResponseEntity<List<ChatSession>> response =
+        chatSessionController.getUserSessions(2, null, "cursor-0");
 
     assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     assertThat(response.getBody()).isNotNull();
     assertThat(response.getBody()).hasSize(2);
-    verify(chatSessionService).getUserSessions(USER_ID);
+    assertThat(response.getHeaders().getFirst("Before-Cursor")).isEqualTo("cursor-1");
+    assertThat(response.getHeaders().getFirst("After-Cursor")).isEqualTo("cursor-2");
+    verify(chatSessionService).getUserSessions(USER_ID, 2, null, "cursor-0");
     verify(sessionApiMapper).toApiModelList(sessionsDTO);
   }
 
   @Test
   void getSession_shouldReturnSessionById() {
-    ChatSessionDTO sessionDTO = ChatSessionDTO.builder().id(SESSION_ID).title(TITLE).build();
+    ChatSessionDTO sessionDTO =
+        ChatSessionDTO.builder().id(SESSION_ID).title(TITLE).messagesBefore("cursor-0").build();
 
     ChatSession chatSession = new ChatSession();
     chatSession.setId(SESSION_ID);
     chatSession.setTitle(TITLE);
 
-    when(chatSessionService.getSession(SESSION_ID, USER_ID)).thenReturn(sessionDTO);
+    when(chatSessionService.getSession(SESSION_ID, USER_ID, 50)).thenReturn(sessionDTO);
     when(sessionApiMapper.toApiModel(sessionDTO)).thenReturn(chatSession);
 
-    ResponseEntity<ChatSession> response = chatSessionController.getSession(SESSION_ID);
+    ResponseEntity<ChatSession> response = chatSessionController.getSession(SESSION_ID, 50);
 
     assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     assertThat(response.getBody()).isNotNull();
     assertThat(response.getBody().getId()).isEqualTo(SESSION_ID);
-    verify(chatSessionService).getSession(SESSION_ID, USER_ID);
+    assertThat(response.getHeaders().getFirst("Before-Cursor")).isEqualTo("cursor-0");
+    assertThat(response.getHeaders().containsHeader("After-Cursor")).isFalse();
+    verify(chatSessionService).getSession(SESSION_ID, USER_ID, 50);
     verify(sessionApiMapper).toApiModel(sessionDTO);
   }
 
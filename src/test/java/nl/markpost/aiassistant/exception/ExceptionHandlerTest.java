@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Duration;
 import nl.markpost.aiassistant.api.model.Error;
 import nl.markpost.aiassistant.constant.GenericErrorCodes;
 import nl.markpost.aiassistant.mapper.ErrorMapper;
@@ -12,6 +13,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -72,6 +74,24 @@ class ExceptionHandlerTest {
     verify(errorMapper).from(GenericErrorCodes.BAD_REQUEST, HttpStatus.BAD_REQUEST);
   }
 
+  @Test
+  void handleUnprocessableEntityException_shouldReturnUnprocessableContent() {
+    UnprocessableEntityException exception =
+        new UnprocessableEntityException("Idempotency key reused for a different request");
+
+    Error error = new Error();
+    error.setStatus(422);
+    error.setCode(GenericErrorCodes.UNPROCESSABLE_ENTITY.getCode());
+
+    when(errorMapper.from(GenericErrorCodes.UNPROCESSABLE_ENTITY, HttpStatus.UNPROCESSABLE_CONTENT))
+        .thenReturn(error);
+
+    ResponseEntity<Error> response = exceptionHandler.handleUnprocessableEntityException(exception);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_CONTENT);
+    assertThat(response.getBody()).isSameAs(error);
+  }
+
   @Test
   void handleGenericExceptionException_shouldReturnUnauthorized() {
     GenericException exception =
@@ -162,4 +182,36 @@ class ExceptionHandlerTest {
     verify(errorMapper)
         .from(GenericErrorCodes.INTERNAL_SERVER_ERROR, HttpStatus.INTERNAL_SERVER_ERROR);
   }
+
+  @Test
+  void handleServiceUnavailableException_shouldReturnServiceUnavailable() {
+    ServiceUnavailableException exception =
+        new ServiceUnavailableException("Generation queue is full");
+
+    Error error = new Error();
+    error.setStatus(503);
+    error.setCode(GenericErrorCodes.SERVICE_UNAVAILABLE.getCode());
+
+    when(errorMapper.from(GenericErrorCodes.SERVICE_UNAVAILABLE, HttpStatus.SERVICE_UNAVAILABLE))
+        .thenReturn(error);
+
+    ResponseEntity<Error> response = exceptionHandler.handleServiceUnavailableException(exception);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(response.getBody()).isEqualTo(error);
+  }
+
+  @Test
+  void handleServiceUnavailableException_shouldAddRetryAfterHeader() {
+    ServiceUnavailableException exception =
+        new ServiceUnavailableException("Limit reached", Duration.ofSeconds(3));
+
+    when(errorMapper.from(GenericErrorCodes.SERVICE_UNAVAILABLE, HttpStatus.SERVICE_UNAVAILABLE))
+        .thenReturn(new Error());
+
+    ResponseEntity<Error> response = exceptionHandler.handleServiceUnavailableException(exception);
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+  }
 }
@@ -4,8 +4,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.List;
 import nl.markpost.aiassistant.models.ChatSessionDTO;
+import nl.markpost.aiassistant.models.ChatSessionOverview;
 import nl.markpost.aiassistant.models.MessageDTO;
 import nl.markpost.aiassistant.models.entity.ChatMessage;
 import nl.markpost.aiassistant.models.entity.ChatSession;
@@ -37,40 +37,21 @@ class ChatSessionMapperTest {
   }
 
   @Test
-  void toDTOWithMessages_shouldMapChatSessionWithMessages() {
-    ChatSession session = new ChatSession();
-    session.setId("session-123");
-    session.setUserId("user-123");
-    session.setTitle("Test Chat");
-    session.setCreatedAt(LocalDateTime.now());
-    session.setUpdatedAt(LocalDateTime.now());
+  void toDTO_shouldMapOverviewWithCountAndPreview() {
+    LocalDateTime createdAt = LocalDateTime.of(2025, 1, 1, 12, 0);
+    LocalDateTime updatedAt = createdAt.plusHours(1);
+    ChatSessionOverview overview =
+        new ChatSessionOverview("session-123", "Test Chat", createdAt, updatedAt, 4, "Hi there!");
 
-    ChatMessage message1 = new ChatMessage();
-    message1.setId("msg-1");
-    message1.setChatSession(session);
-    message1.setRole("user");
-    message1.setContent("Hello");
-    message1.setTimestamp(LocalDateTime.now());
+    ChatSessionDTO result = chatSessionMapper.toDTO(overview);
 
-    ChatMessage message2 = new ChatMessage();
-    message2.setId("msg-2");
-    message2.setChatSession(session);
-    message2.setRole("assistant");
-    message2.setContent("Hi there!");
-    message2.setTimestamp(LocalDateTime.now());
-
-    List<ChatMessage> messages = List.of(message1, message2);
-    session.setMessages(messages);
-
-    ChatSessionDTO result = chatSessionMapper.toDTOWithMessages(session);
-
-    assertThat(result).isNotNull();
     assertThat(result.getId()).isEqualTo("session-123");
     assertThat(result.getTitle()).isEqualTo("Test Chat");
-    assertThat(result.getMessages()).isNotNull();
-    assertThat(result.getMessages()).hasSize(2);
-    assertThat(result.getMessages().get(0).getId()).isEqualTo("msg-1");
-    assertThat(result.getMessages().get(1).getId()).isEqualTo("msg-2");
+    assertThat(result.getCreatedAt()).isEqualTo(createdAt);
+    assertThat(result.getUpdatedAt()).isEqualTo(updatedAt);
+    assertThat(result.getMessageCount()).isEqualTo(4);
+    assertThat(result.getLastMessagePreview()).isEqualTo("Hi there!");
+    assertThat(result.getMessages()).isNull();
   }
 
   @Test
@@ -8,8 +8,12 @@ import java.time.ZoneOffset;
 import java.util.List;
 import nl.markpost.aiassistant.api.model.ChatSession;
 import nl.markpost.aiassistant.api.model.Message;
+import nl.markpost.aiassistant.api.model.MessageJob;
+import nl.markpost.aiassistant.api.model.SendMessageRequest;
 import nl.markpost.aiassistant.models.ChatSessionDTO;
 import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.MessageJobDTO;
+import nl.markpost.aiassistant.models.ModelRoute;
 import org.junit.jupiter.api.Test;
 import org.mapstruct.factory.Mappers;
 
@@ -203,4 +207,30 @@ class SessionApiMapperTest {
 
     assertThat(result).isNull();
   }
+
+  @Test
+  void toApiModel_shouldMapMessageJobDTO() {
+    MessageJobDTO dto =
+        MessageJobDTO.builder()
+            .id("msg-1")
+            .status(MessageJobDTO.Status.COMPLETED)
+            .message(MessageDTO.builder().id("msg-2").role("assistant").content("Hi").build())
+            .build();
+
+    MessageJob result = sessionApiMapper.toApiModel(dto);
+
+    assertThat(result.getId()).isEqualTo("msg-1");
+    assertThat(result.getStatus()).isEqualTo(MessageJob.StatusEnum.COMPLETED);
+    assertThat(result.getMessage().getId()).isEqualTo("msg-2");
+    assertThat(result.getError()).isNull();
+  }
+
+  @Test
+  void toModelRoute_shouldMapModelHint() {
+    assertThat(sessionApiMapper.toModelRoute(SendMessageRequest.ModelEnum.FAST))
+        .isEqualTo(ModelRoute.FAST);
+    assertThat(sessionApiMapper.toModelRoute(SendMessageRequest.ModelEnum.CAPABLE))
+        .isEqualTo(ModelRoute.CAPABLE);
+    assertThat(sessionApiMapper.toModelRoute(null)).isNull();
+  }
 }
@@ -0,0 +1,117 @@
+package nl.markpost.aiassistant.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jakarta.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+import nl.markpost.aiassistant.models.ChatSessionOverview;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.Limit;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+/** Runs the session overview queries against PostgreSQL. Skipped without Docker. */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class ChatSessionRepositoryTest {
+
+  private static final String USER_ID = "user-1";
+  private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+  @Container @ServiceConnection
+  static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:17-alpine");
+
+  @Autowired private EntityManager entityManager;
+
+  @Autowired private ChatSessionRepository chatSessionRepository;
+
+  private Statistics statistics;
+
+  @BeforeEach
+  void insertSessionsAndMessages() {
+    insertSession("session-1", USER_ID, NOW);
+    insertSession("session-2", USER_ID, NOW.minusMinutes(1));
+    insertSession("session-3", USER_ID, NOW.minusMinutes(2));
+    insertSession("session-other", "user-2", NOW);
+    insertMessage("message-1", "session-1", "user", "Hello", NOW.minusMinutes(5));
+    insertMessage("message-2", "session-1", "assistant", "x".repeat(500), NOW.minusMinutes(4));
+    insertMessage("message-3", "session-2", "user", "First", NOW.minusMinutes(3));
+    insertMessage("message-4", "session-2", "assistant", "Second", NOW.minusMinutes(3));
+    insertMessage("message-5", "session-other", "user", "Other", NOW);
+    statistics =
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @Test
+  void findOverviews_shouldCountAndPreviewMessagesInOneStatement() {
+    List<ChatSessionOverview> overviews =
+        chatSessionRepository.findOverviews(USER_ID, Limit.of(10));
+
+    assertThat(overviews)
+        .extracting(ChatSessionOverview::id)
+        .containsExactly("session-1", "session-2", "session-3");
+    assertThat(overviews).extracting(ChatSessionOverview::messageCount).containsExactly(2L, 2L, 0L);
+    assertThat(overviews.get(0).lastMessagePreview()).hasSize(ChatSessionRepository.PREVIEW_LENGTH);
+    // Equal timestamps are ordered by ID, like the history of a session
+    assertThat(overviews.get(1).lastMessagePreview()).isEqualTo("Second");
+    assertThat(overviews.get(2).lastMessagePreview()).isNull();
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    assertThat(statistics.getEntityLoadCount()).isZero();
+  }
+
+  @Test
+  void findOverviewsAfter_shouldReturnLessRecentlyUpdatedSessions() {
+    List<ChatSessionOverview> overviews =
+        chatSessionRepository.findOverviewsAfter(
+            USER_ID, NOW.minusMinutes(1), "session-2", Limit.of(10));
+
+    assertThat(overviews).extracting(ChatSessionOverview::id).containsExactly("session-3");
+  }
+
+  @Test
+  void findOverviewsBefore_shouldReturnMoreRecentlyUpdatedSessionsLeastRecentFirst() {
+    List<ChatSessionOverview> overviews =
+        chatSessionRepository.findOverviewsBefore(
+            USER_ID, NOW.minusMinutes(2), "session-3", Limit.of(10));
+
+    assertThat(overviews)
+        .extracting(ChatSessionOverview::id)
+        .containsExactly("session-2", "session-1");
+  }
+
+  private void insertSession(String id, String userId, LocalDateTime updatedAt) {
+    entityManager
+        .createNativeQuery(
+            "INSERT INTO chat_sessions (id, user_id, title, created_at, updated_at)"
+                + " VALUES (?1, ?2, ?1, ?3, ?3)")
+        .setParameter(1, id)
+        .setParameter(2, userId)
+        .setParameter(3, updatedAt)
+        .executeUpdate();
+  }
+
+  private void insertMessage(
+      String id, String sessionId, String role, String content, LocalDateTime timestamp) {
+    entityManager
+        .createNativeQuery(
+            "INSERT INTO chat_messages (id, session_id, role, content, timestamp)"
+                + " VALUES (?1, ?2, ?3, ?4, ?5)")
+        .setParameter(1, id)
+        .setParameter(2, sessionId)
+        .setParameter(3, role)
+        .setParameter(4, content)
+        .setParameter(5, timestamp)
+        .executeUpdate();
+  }
+}
@@ -0,0 +1,220 @@
+package nl.markpost.aiassistant.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jakarta.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.Limit;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+/**
+ * Migrates a PostgreSQL database, validates the entities against it and checks with {@code EXPLAIN}
+ * that the hot queries are served by an index. Skipped without Docker.
+ */
+@DataJpaTest(
+    properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+            + "nl.markpost.aiassistant.repository.HotPathIndexTest$RecordingStatementInspector")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class HotPathIndexTest {
+
+  private static final String USER_ID = "user-42";
+  private static final String SESSION_ID = "session-42";
+
+  @Container @ServiceConnection
+  static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:17-alpine");
+
+  @Autowired private EntityManager entityManager;
+
+  @Autowired private ChatMessageRepository chatMessageRepository;
+
+  @Autowired private ChatSessionRepository chatSessionRepository;
+
+  @BeforeEach
+  void insertSessionsAndMessages() {
+    // 2500 users with 20 sessions each, the first 200 sessions with 300 messages each, so a
+    // session holds more messages than fit a page or a context window
+    entityManager
+        .createNativeQuery(
+            """
+            INSERT INTO chat_sessions (id, user_id, title, created_at, updated_at)
+            SELECT 'session-' || i, 'user-' || (i % 2500), 'Session ' || i,
+                   now() - i * INTERVAL '1 second', now() - i * INTERVAL '1 second'
+            FROM generate_series(1, 50000) AS i
+            """)
+        .executeUpdate();
+    entityManager
+        .createNativeQuery(
+            """
+            INSERT INTO chat_messages (id, session_id, role, content, timestamp)
+            SELECT 'message-' || s || '-' || m, 'session-' || s,
+                   CASE WHEN m % 2 = 0 THEN 'user' ELSE 'assistant' END, 'Message ' || m,
+                   now() - (s * 1000 + m) * INTERVAL '1 second'
+            FROM generate_series(1, 200) AS s, generate_series(1, 300) AS m
+            """)
+        .executeUpdate();
+    entityManager.createNativeQuery("ANALYZE chat_sessions").executeUpdate();
+    entityManager.createNativeQuery("ANALYZE chat_messages").executeUpdate();
+  }
+
+  @Test
+  void findByChatSessionIdOrderByTimestampDescIdDesc_shouldScanSessionTimestampIndex() {
+    chatMessageRepository.findByChatSessionIdOrderByTimestampDescIdDesc(SESSION_ID, Limit.of(50));
+
+    String plan = explainLastStatement(SESSION_ID, 50);
+
+    assertThat(plan)
+        .contains("Index Scan using idx_chat_messages_session_timestamp")
+        .doesNotContain("Seq Scan")
+        .doesNotContain("Sort");
+  }
+
+  @Test
+  void findLastMessagesWithinTokenBudget_shouldOnlySumNewestMessages() {
+    chatMessageRepository.findLastMessagesWithinTokenBudget(SESSION_ID, 4000, 50);
+
+    String plan = explainLastStatement(SESSION_ID, SESSION_ID, 50, 4000);
+
+    // The window runs over the limited rows, read in order from the index below the summary cutoff
+    assertThat(plan)
+        .contains("Limit")
+        .contains("Index Scan using idx_chat_messages_session_timestamp")
+        .contains("Index Scan using pk_chat_sessions")
+        .doesNotContain("Seq Scan");
+    assertThat(plan.substring(plan.indexOf("WindowAgg"))).doesNotContain("Sort");
+  }
+
+  @Test
+  void findMessagesBefore_shouldSeekSessionTimestampIndex() {
+    // The newest message, the position of the first page of history
+    LocalDateTime timestamp = messageTimestamp("message-42-1");
+    chatMessageRepository.findMessagesBefore(SESSION_ID, timestamp, "message-42-1", Limit.of(50));
+
+    String plan = explainLastStatement(SESSION_ID, timestamp, "message-42-1", 50);
+
+    assertThat(plan)
+        .contains("Index Scan using idx_chat_messages_session_timestamp")
+        .doesNotContain("Seq Scan")
+        .doesNotContain("Sort");
+  }
+
+  @Test
+  void findMessagesAfter_shouldSeekSessionTimestampIndexBackward() {
+    LocalDateTime timestamp = messageTimestamp("message-42-300");
+    chatMessageRepository.findMessagesAfter(SESSION_ID, timestamp, "message-42-300", Limit.of(50));
+
+    String plan = explainLastStatement(SESSION_ID, timestamp, "message-42-300", 50);
+
+    assertThat(plan)
+        .contains("Index Scan Backward using idx_chat_messages_session_timestamp")
+        .doesNotContain("Seq Scan")
+        .doesNotContain("Sort");
+  }
+
+  @Test
+  void findOverviews_shouldScanUserUpdatedAndSessionTimestampIndexes() {
+    chatSessionRepository.findOverviews(USER_ID, Limit.of(50));
+
+    assertOverviewPlan(explainLastStatement(USER_ID, 50));
+  }
+
+  @Test
+  void findOverviewsAfter_shouldScanUserUpdatedAndSessionTimestampIndexes() {
+    LocalDateTime updatedAt = sessionUpdatedAt("session-2542");
+    chatSessionRepository.findOverviewsAfter(USER_ID, updatedAt, "session-2542", Limit.of(50));
+
+    assertOverviewPlan(explainLastStatement(USER_ID, updatedAt, "session-2542", 50));
+  }
+
+  @Test
+  void findOverviewsBefore_shouldScanUserUpdatedAndSessionTimestampIndexes() {
+    LocalDateTime updatedAt = sessionUpdatedAt("session-47542");
+    chatSessionRepository.findOverviewsBefore(USER_ID, updatedAt, "session-47542", Limit.of(50));
+
+    assertOverviewPlan(explainLastStatement(USER_ID, updatedAt, "session-47542", 50));
+  }
+
+  private void assertOverviewPlan(String plan) {
+    // A user's sessions are spread over the table, so a bitmap scan of the index may be chosen
+    assertThat(plan).contains("idx_chat_sessions_user_updated").doesNotContain("Seq Scan");
+    // The message count and the preview of the latest message are subplans run per session, both
+    // served by the index of the session's messages
+    String[] subPlans = plan.split("SubPlan");
+    assertThat(subPlans).hasSize(3);
+    assertThat(subPlans[1]).contains("idx_chat_messages_session_timestamp");
+    assertThat(subPlans[2])
+        .contains("Index Scan using idx_chat_messages_session_timestamp")
+        .doesNotContain("Sort");
+  }
+
+  private LocalDateTime messageTimestamp(String id) {
+    return (LocalDateTime)
+        entityManager
+            .createNativeQuery(
+                "SELECT timestamp FROM chat_messages WHERE id = ?1", LocalDateTime.class)
+            .setParameter(1, id)
+            .getSingleResult();
+  }
+
+  private LocalDateTime sessionUpdatedAt(String id) {
+    return (LocalDateTime)
+        entityManager
+            .createNativeQuery(
+                "SELECT updated_at FROM chat_sessions WHERE id = ?1", LocalDateTime.class)
+            .setParameter(1, id)
+            .getSingleResult();
+  }
+
+  /**
+   * Explains the last statement Hibernate generated, binding its JDBC parameters in order, so the
+   * plan is that of the repository's own query.
+   */
+  private String explainLastStatement(Object... parameters) {
+    String sql = RecordingStatementInspector.STATEMENTS.getLast();
+    return entityManager
+        .unwrap(Session.class)
+        .doReturningWork(
+            connection -> {
+              try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (int i = 0; i < parameters.length; i++) {
+                  statement.setObject(i + 1, parameters[i]);
+                }
+                List<String> rows = new ArrayList<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                  while (resultSet.next()) {
+                    rows.add(resultSet.getString(1));
+                  }
+                }
+                return String.join("\n", rows);
+              }
+            });
+  }
+
+  /** Records the SQL Hibernate generates, so the plan of a repository query can be explained. */
+  public static class RecordingStatementInspector implements StatementInspector {
+
+    static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+      STATEMENTS.add(sql);
+      return sql;
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.exception.RateLimitException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import nl.markpost.aiassistant.config.ConcurrencyLimitProperties;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+import nl.markpost.aiassistant.models.ModelRoute;
+import nl.markpost.aiassistant.service.AdaptiveConcurrencyLimiter.Permit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+  private static final ConcurrencyLimitProperties PROPERTIES =
+      new ConcurrencyLimitProperties(4, 2, 10, 0.5, 2.0);
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private SimpleMeterRegistry meterRegistry;
+  private AdaptiveConcurrencyLimiter limiter;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    limiter =
+        new AdaptiveConcurrencyLimiter(ModelRoute.FAST, PROPERTIES, meterRegistry) {
+          @Override
+          long nanoTime() {
+            return clock.get();
+          }
+        };
+  }
+
+  @Test
+  void acquire_shouldSuggestRetryAfterBaselineLatency() {
+    Permit permit = limiter.acquire();
+    clock.addAndGet(Duration.ofMillis(2500).toNanos());
+    permit.success();
+    for (int i = 0; i < 4; i++) {
+      limiter.acquire();
+    }
+
+    assertThatThrownBy(limiter::acquire)
+        .isInstanceOfSatisfying(
+            ServiceUnavailableException.class,
+            e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(3)));
+  }
+
+  @Test
+  void acquire_shouldRejectWithRetryAfterWhenLimitReached() {
+    for (int i = 0; i < 4; i++) {
+      limiter.acquire();
+    }
+
+    assertThatThrownBy(limiter::acquire)
+        .isInstanceOfSatisfying(
+            ServiceUnavailableException.class,
+            e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(1)));
+    assertThat(meterRegistry.get("chat.model.concurrency.rejected").counter().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("chat.model.concurrency.in-flight").gauge().value()).isEqualTo(4);
+  }
+
+  @Test
+  void permit_shouldFreeCapacityWhenReleased() {
+    List<Permit> permits = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      permits.add(limiter.acquire());
+    }
+
+    permits.getFirst().failure(new InvalidRequestException("Bad request"));
+    permits.getFirst().failure(new InvalidRequestException("Bad request"));
+
+    assertThat(limiter.acquire()).isNotNull();
+    assertThatThrownBy(limiter::acquire).isInstanceOf(ServiceUnavailableException.class);
+  }
+
+  @Test
+  void failure_shouldDecreaseLimitOnOverloadButNotBelowMinimum() {
+    limiter.acquire().failure(new RateLimitException("Too many requests"));
+    assertThat(limiter.getLimit()).isEqualTo(2);
+
+    limiter.acquire().failure(new RateLimitException("Too many requests"));
+    assertThat(limiter.getLimit()).isEqualTo(2);
+    assertThat(meterRegistry.get("chat.model.concurrency.limit").gauge().value()).isEqualTo(2);
+  }
+
+  @Test
+  void failure_shouldKeepLimitOnOtherErrors() {
+    limiter.acquire().failure(new InvalidRequestException("Bad request"));
+
+    assertThat(limiter.getLimit()).isEqualTo(4);
+  }
+
+  @Test
+  void success_shouldIncreaseLimitWhileLimitIsInUse() {
+    for (int round = 0; round < 20; round++) {
+      List<Permit> permits = new ArrayList<>();
+      for (int i = 0; i < limiter.getLimit(); i++) {
+        permits.add(limiter.acquire());
+      }
+      permits.forEach(Permit::success);
+    }
+
+    assertThat(limiter.getLimit()).isGreaterThan(4).isLessThanOrEqualTo(10);
+  }
+
+  @Test
+  void success_shouldNotIncreaseLimitWhileMostlyIdle() {
+    for (int i = 0; i < 50; i++) {
+      limiter.acquire().success();
+    }
+
+    assertThat(limiter.getLimit()).isEqualTo(4);
+  }
+
+  @Test
+  void success_shouldDecreaseLimitWhenLatencyExceedsBaseline() {
+    for (int i = 0; i < 5; i++) {
+      Permit permit = limiter.acquire();
+      clock.addAndGet(Duration.ofMillis(100).toNanos());
+      permit.success();
+    }
+    Permit slow = limiter.acquire();
+    clock.addAndGet(Duration.ofMillis(500).toNanos());
+
+    slow.success();
+
+    assertThat(limiter.getLimit()).isEqualTo(2);
+  }
+
+  @Test
+  void failure_shouldOnlyDecreaseLimitOfItsOwnRoute() {
+    AdaptiveConcurrencyLimiter capableLimiter =
+        new AdaptiveConcurrencyLimiter(ModelRoute.CAPABLE, PROPERTIES, meterRegistry);
+
+    capableLimiter.acquire().failure(new RateLimitException("Too many requests"));
+
+    assertThat(capableLimiter.getLimit()).isEqualTo(2);
+    assertThat(limiter.getLimit()).isEqualTo(4);
+    assertThat(
+            meterRegistry
+                .get("chat.model.concurrency.limit")
+                .tag("route", "capable")
+                .gauge()
+                .value())
+        .isEqualTo(2);
+    assertThat(
+            meterRegistry.get("chat.model.concurrency.limit").tag("route", "fast").gauge().value())
+        .isEqualTo(4);
+  }
+}
@@ -0,0 +1,157 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import nl.markpost.aiassistant.models.entity.ChatMessage;
+import nl.markpost.aiassistant.repository.ChatMessageRepository;
+import nl.markpost.aiassistant.repository.ChatSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CachedChatMemoryStoreTest {
+
+  @Mock private ChatMessageRepository chatMessageRepository;
+
+  @Mock private ChatSessionRepository chatSessionRepository;
+
+  private MeterRegistry meterRegistry;
+
+  private CachedChatMemoryStore chatMemoryStore;
+
+  private static final String SESSION_ID = "session-123";
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    chatMemoryStore =
+        new CachedChatMemoryStore(
+            chatMessageRepository,
+            chatSessionRepository,
+            meterRegistry,
+            10,
+            4000,
+            100,
+            Duration.ofMinutes(30));
+  }
+
+  @Test
+  void getMessages_shouldLoadWindowInChronologicalOrder() {
+    when(chatMessageRepository.findLastMessagesWithinTokenBudget(SESSION_ID, 4000, 10))
+        .thenReturn(
+            new ArrayList<>(List.of(message("assistant", "Second"), message("user", "First"))));
+
+    var messages = chatMemoryStore.getMessages(SESSION_ID);
+
+    assertThat(messages).containsExactly(UserMessage.from("First"), AiMessage.from("Second"));
+  }
+
+  @Test
+  void getMessages_shouldSkipTrailingUnansweredUserMessage() {
+    when(chatMessageRepository.findLastMessagesWithinTokenBudget(SESSION_ID, 4000, 10))
+        .thenReturn(
+            new ArrayList<>(
+                List.of(
+                    message("user", "Pending"),
+                    message("assistant", "Answer"),
+                    message("user", "Question"))));
+
+    var messages = chatMemoryStore.getMessages(SESSION_ID);
+
+    assertThat(messages).containsExactly(UserMessage.from("Question"), AiMessage.from("Answer"));
+  }
+
+  @Test
+  void getMessages_shouldStartWindowWithSessionSummary() {
+    when(chatMessageRepository.findLastMessagesWithinTokenBudget(SESSION_ID, 4000, 10))
+        .thenReturn(new ArrayList<>(List.of(message("assistant", "Answer"))));
+    when(chatSessionRepository.findSummaryById(SESSION_ID))
+        .thenReturn(Optional.of("The user is planning a trip."));
+
+    var messages = chatMemoryStore.getMessages(SESSION_ID);
+
+    assertThat(messages)
+        .containsExactly(
+            SystemMessage.from(
+                "Summary of the earlier conversation:\nThe user is planning a trip."),
+            AiMessage.from("Answer"));
+  }
+
+  @Test
+  void getMessages_shouldServeCachedWindowWithoutQuery() {
+    when(chatMessageRepository.findLastMessagesWithinTokenBudget(
+            eq(SESSION_ID), anyInt(), anyInt()))
+        .thenReturn(new ArrayList<>());
+
+    chatMemoryStore.getMessages(SESSION_ID);
+    chatMemoryStore.getMessages(SESSION_ID);
+
+    verify(chatMessageRepository, times(1))
+        .findLastMessagesWithinTokenBudget(eq(SESSION_ID), anyInt(), anyInt());
+    assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void updateMessages_shouldWriteThroughWithoutQuery() {
+    var messages = List.of(UserMessage.from("Hello"), AiMessage.from("Hi"));
+
+    chatMemoryStore.updateMessages(SESSION_ID, messages);
+
+    assertThat(chatMemoryStore.getMessages(SESSION_ID)).isEqualTo(messages);
+    verify(chatMessageRepository, never())
+        .findLastMessagesWithinTokenBudget(any(), anyInt(), anyInt());
+  }
+
+  @Test
+  void deleteMessages_shouldReloadWindowOnNextUse() {
+    when(chatMessageRepository.findLastMessagesWithinTokenBudget(
+            eq(SESSION_ID), anyInt(), anyInt()))
+        .thenReturn(new ArrayList<>());
+    chatMemoryStore.updateMessages(SESSION_ID, List.of(UserMessage.from("Hello")));
+
+    chatMemoryStore.deleteMessages(SESSION_ID);
+
+    assertThat(chatMemoryStore.getMessages(SESSION_ID)).isEmpty();
+    verify(chatMessageRepository)
+        .findLastMessagesWithinTokenBudget(eq(SESSION_ID), anyInt(), anyInt());
+  }
+
+  @Test
+  void getMessages_shouldRejectUnsupportedMemoryIds() {
+    assertThatThrownBy(() -> chatMemoryStore.getMessages(null))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Memory ID cannot be null");
+    assertThatThrownBy(() -> chatMemoryStore.getMessages(42))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private ChatMessage message(String role, String content) {
+    ChatMessage message = new ChatMessage();
+    message.setRole(role);
+    message.setContent(content);
+    return message;
+  }
+}
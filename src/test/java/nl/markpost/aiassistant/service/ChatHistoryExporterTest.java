@@ -0,0 +1,111 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import nl.markpost.aiassistant.exception.BadRequestException;
+import nl.markpost.aiassistant.models.entity.ChatMessage;
+import nl.markpost.aiassistant.repository.ChatMessageRepository;
+import nl.markpost.aiassistant.repository.ChatSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ChatHistoryExporterTest {
+
+  private static final String SESSION_ID = "session-123";
+  private static final String USER_ID = "user-123";
+
+  @Mock private ChatSessionRepository chatSessionRepository;
+
+  @Mock private ChatMessageRepository chatMessageRepository;
+
+  @Mock private EntityManager entityManager;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private ChatHistoryExporter exporter;
+
+  @BeforeEach
+  void setUp() {
+    exporter =
+        new ChatHistoryExporter(
+            chatSessionRepository,
+            chatMessageRepository,
+            entityManager,
+            objectMapper,
+            meterRegistry);
+  }
+
+  @Test
+  void export_shouldWriteOneMessagePerLineAndDetachEach() throws Exception {
+    ChatMessage question = message("msg-1", "user", "Hello\nthere", 0);
+    ChatMessage answer = message("msg-2", "assistant", "Hi \"you\"", 1);
+    AtomicBoolean closed = new AtomicBoolean();
+    when(chatMessageRepository.streamBySessionId(SESSION_ID))
+        .thenReturn(Stream.of(question, answer).onClose(() -> closed.set(true)));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    long rows = exporter.export(SESSION_ID, output);
+
+    assertThat(rows).isEqualTo(2);
+    List<String> lines = output.toString(StandardCharsets.UTF_8).lines().toList();
+    assertThat(lines).hasSize(2);
+    JsonNode first = objectMapper.readTree(lines.get(0));
+    assertThat(first.get("id").asText()).isEqualTo("msg-1");
+    assertThat(first.get("role").asText()).isEqualTo("user");
+    assertThat(first.get("content").asText()).isEqualTo("Hello\nthere");
+    assertThat(first.get("timestamp").asText()).isEqualTo("2025-01-01T12:00:00Z");
+    assertThat(objectMapper.readTree(lines.get(1)).get("content").asText()).isEqualTo("Hi \"you\"");
+    assertThat(closed).isTrue();
+    verify(entityManager).detach(question);
+    verify(entityManager).detach(answer);
+    assertThat(meterRegistry.counter(ChatHistoryExporter.ROWS_METRIC).count()).isEqualTo(2);
+    assertThat(meterRegistry.summary(ChatHistoryExporter.THROUGHPUT_METRIC).count()).isEqualTo(1);
+  }
+
+  @Test
+  void export_shouldWriteNothingForEmptySession() throws Exception {
+    when(chatMessageRepository.streamBySessionId(SESSION_ID)).thenReturn(Stream.empty());
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    long rows = exporter.export(SESSION_ID, output);
+
+    assertThat(rows).isZero();
+    assertThat(output.size()).isZero();
+    assertThat(meterRegistry.summary(ChatHistoryExporter.THROUGHPUT_METRIC).count()).isZero();
+  }
+
+  @Test
+  void checkSession_shouldRejectSessionOfOtherUser() {
+    when(chatSessionRepository.existsByIdAndUserId(SESSION_ID, USER_ID)).thenReturn(false);
+
+    assertThatThrownBy(() -> exporter.checkSession(SESSION_ID, USER_ID))
+        .isInstanceOf(BadRequestException.class)
+        .hasMessage("Session not found");
+  }
+
+  private static ChatMessage message(String id, String role, String content, int minutes) {
+    return ChatMessage.builder()
+        .id(id)
+        .role(role)
+        .content(content)
+        .timestamp(LocalDateTime.of(2025, 1, 1, 12, minutes))
+        .build();
+  }
+}
@@ -0,0 +1,165 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.model.TokenCountEstimator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import nl.markpost.aiassistant.exception.ConflictException;
+import nl.markpost.aiassistant.mapper.ChatSessionMapperImpl;
+import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.entity.ChatSession;
+import nl.markpost.aiassistant.repository.ChatMessageRepository;
+import nl.markpost.aiassistant.repository.ChatSessionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+/**
+ * Sends the same keyed message twice at once, as two nodes would: the in-memory registry of
+ * in-flight requests is bypassed, so only the claim in the database keeps the message from being
+ * answered twice. Skipped without Docker.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({
+  ChatMessagesService.class,
+  ChatSessionMapperImpl.class,
+  GenerationRegistry.class,
+  ChatMessagesServiceIdempotencyTest.MetricsConfig.class
+})
+class ChatMessagesServiceIdempotencyTest {
+
+  private static final String USER_ID = "user-1";
+  private static final String MESSAGE_CONTENT = "Hello";
+  private static final String IDEMPOTENCY_KEY = "key-1";
+  private static final Duration CLAIM_TIMEOUT = Duration.ofSeconds(150);
+
+  @Container @ServiceConnection
+  static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:17-alpine");
+
+  @MockitoBean private ModelRouter modelRouter;
+  @MockitoBean private SessionChatMemoryProvider chatMemoryProvider;
+  @MockitoBean private ChatResponseCache chatResponseCache;
+  @MockitoBean private InFlightRequestRegistry inFlightRequestRegistry;
+  @MockitoBean private MessageJobRegistry messageJobRegistry;
+  @MockitoBean private TaskExecutor generationExecutor;
+  @MockitoBean private TokenCountEstimator tokenCountEstimator;
+  @MockitoBean private ConversationSummarizer conversationSummarizer;
+
+  @Autowired private ChatMessagesService chatMessagesService;
+
+  @Autowired private ChatSessionRepository chatSessionRepository;
+
+  @Autowired private ChatMessageRepository chatMessageRepository;
+
+  private final CountDownLatch firstGenerationStarted = new CountDownLatch(1);
+  private final CountDownLatch releaseFirstGeneration = new CountDownLatch(1);
+
+  private String sessionId;
+
+  @BeforeEach
+  void setUp() {
+    ChatSession session = new ChatSession();
+    session.setUserId(USER_ID);
+    session.setTitle("Chat");
+    sessionId = chatSessionRepository.save(session).getId();
+    ReflectionTestUtils.setField(chatMessagesService, "claimTimeout", CLAIM_TIMEOUT);
+    // Every request runs as if it were the only one on its node
+    when(inFlightRequestRegistry.execute(any(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<MessageDTO>>getArgument(2).get());
+  }
+
+  @AfterEach
+  void tearDown() {
+    chatMessageRepository.deleteAll();
+    chatSessionRepository.deleteAll();
+  }
+
+  @Test
+  void sendMessage_shouldAskConcurrentDuplicateToRetryAndAnswerOnce() throws Exception {
+    when(modelRouter.chat(any(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              firstGenerationStarted.countDown();
+              releaseFirstGeneration.await(10, TimeUnit.SECONDS);
+              return "First reply";
+            });
+
+    CompletableFuture<MessageDTO> first = CompletableFuture.supplyAsync(this::send);
+    assertThat(firstGenerationStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    assertThatThrownBy(this::send).isInstanceOf(ConflictException.class);
+
+    releaseFirstGeneration.countDown();
+    MessageDTO reply = first.get(10, TimeUnit.SECONDS);
+    assertThat(reply.getContent()).isEqualTo("First reply");
+    assertThat(send().getId()).isEqualTo(reply.getId());
+    verify(modelRouter, times(1)).chat(any(), any(), any());
+    assertThat(chatMessageRepository.count()).isEqualTo(2);
+  }
+
+  @Test
+  void sendMessage_shouldReplayReplyCommittedFirstAfterClaimExpired() throws Exception {
+    // Claims expire at once, so the duplicate takes the key over while the first is generating
+    ReflectionTestUtils.setField(chatMessagesService, "claimTimeout", Duration.ZERO);
+    when(modelRouter.chat(any(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              firstGenerationStarted.countDown();
+              releaseFirstGeneration.await(10, TimeUnit.SECONDS);
+              return "First reply";
+            })
+        .thenReturn("Second reply");
+
+    CompletableFuture<MessageDTO> first = CompletableFuture.supplyAsync(this::send);
+    assertThat(firstGenerationStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    MessageDTO second = send();
+    releaseFirstGeneration.countDown();
+
+    assertThat(first.get(10, TimeUnit.SECONDS).getId()).isEqualTo(second.getId());
+    assertThat(second.getContent()).isEqualTo("Second reply");
+    assertThat(chatMessageRepository.count()).isEqualTo(2);
+  }
+
+  private MessageDTO send() {
+    return chatMessagesService.sendMessage(
+        sessionId, USER_ID, MESSAGE_CONTENT, true, null, IDEMPOTENCY_KEY);
+  }
+
+  @TestConfiguration
+  static class MetricsConfig {
+
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+}
@@ -4,28 +4,71 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import dev.langchain4j.service.TokenStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import nl.markpost.aiassistant.constant.GenericErrorCodes;
 import nl.markpost.aiassistant.exception.BadRequestException;
+import nl.markpost.aiassistant.exception.ConflictException;
+import nl.markpost.aiassistant.exception.GenerationCancelledException;
+import nl.markpost.aiassistant.exception.NotFoundException;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+import nl.markpost.aiassistant.exception.UnprocessableEntityException;
 import nl.markpost.aiassistant.mapper.ChatSessionMapper;
+import nl.markpost.aiassistant.models.Cursor;
+import nl.markpost.aiassistant.models.CursorPageDTO;
 import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.MessageJobDTO;
+import nl.markpost.aiassistant.models.ModelRoute;
+import nl.markpost.aiassistant.models.StreamEventDTO;
 import nl.markpost.aiassistant.models.entity.ChatMessage;
 import nl.markpost.aiassistant.models.entity.ChatSession;
 import nl.markpost.aiassistant.repository.ChatMessageRepository;
 import nl.markpost.aiassistant.repository.ChatSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.test.StepVerifier;
 
 @ExtendWith(MockitoExtension.class)
 class ChatMessagesServiceTest {
@@ -34,18 +77,59 @@ class ChatMessagesServiceTest {
 
   @Mock private ChatMessageRepository chatMessageRepository;
 
-  @Mock private Assistant assistant;
-
-  @Mock private ChatMemory chatMemory;
+  @Mock private ModelRouter modelRouter;
 
   @Mock private ChatSessionMapper chatSessionMapper;
 
+  @Mock private SessionChatMemoryProvider chatMemoryProvider;
+
+  @Mock private ChatResponseCache chatResponseCache;
+
+  @Mock private InFlightRequestRegistry inFlightRequestRegistry;
+
+  @Mock private MessageJobRegistry messageJobRegistry;
+
+  @Mock private TaskExecutor generationExecutor;
+
+  @Mock private TokenCountEstimator tokenCountEstimator;
+
+  @Mock private ConversationSummarizer conversationSummarizer;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @Spy private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Spy private GenerationRegistry generationRegistry = new GenerationRegistry(meterRegistry);
+
   @InjectMocks private ChatMessagesService chatMessagesService;
 
+  private final AtomicBoolean inTransaction = new AtomicBoolean();
+
   private static final String USER_ID = "user-123";
   private static final String SESSION_ID = "session-123";
   private static final String MESSAGE_CONTENT = "Hello, AI!";
   private static final String ASSISTANT_RESPONSE = "Hello! How can I help you?";
+  private static final String IDEMPOTENCY_KEY = "key-123";
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(chatMessagesService, "claimTimeout", Duration.ofSeconds(150));
+    lenient()
+        .when(transactionTemplate.execute(any()))
+        .thenAnswer(
+            invocation -> {
+              inTransaction.set(true);
+              try {
+                return invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+              } finally {
+                inTransaction.set(false);
+              }
+            });
+    lenient()
+        .when(chatResponseCache.get(any(), any(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<String>>getArgument(3).get());
+    lenient().when(modelRouter.route(any(), any(), any())).thenReturn(ModelRoute.FAST);
+  }
 
   @Test
   void sendMessage_shouldSaveUserMessageAndReturnAssistantResponse() {
@@ -79,48 +163,474 @@ class ChatMessagesServiceTest {
         .thenReturn(Optional.of(session));
     when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
     when(chatMessageRepository.save(userMessage)).thenReturn(userMessage);
-    when(chatMessageRepository.findLastMessagesBySessionId(eq(SESSION_ID), any(PageRequest.class)))
-        .thenReturn(List.of());
-    when(assistant.chat(MESSAGE_CONTENT)).thenReturn(ASSISTANT_RESPONSE);
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenReturn(ASSISTANT_RESPONSE);
     when(chatSessionMapper.toChatMessage(session, "assistant", ASSISTANT_RESPONSE))
         .thenReturn(assistantMessage);
     when(chatMessageRepository.save(assistantMessage)).thenReturn(assistantMessage);
     when(chatSessionMapper.toMessageDTO(assistantMessage)).thenReturn(messageDTO);
+    when(tokenCountEstimator.estimateTokenCountInText(MESSAGE_CONTENT)).thenReturn(3);
+    when(tokenCountEstimator.estimateTokenCountInText(ASSISTANT_RESPONSE)).thenReturn(7);
 
-    MessageDTO result = chatMessagesService.sendMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT);
+    MessageDTO result =
+        chatMessagesService.sendMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, null);
 
     assertThat(result).isNotNull();
     assertThat(result.getId()).isEqualTo("assistant-msg-1");
     assertThat(result.getRole()).isEqualTo("assistant");
     assertThat(result.getContent()).isEqualTo(ASSISTANT_RESPONSE);
-    verify(chatMemory).clear();
+    assertThat(userMessage.getTokenCount()).isEqualTo(3);
+    assertThat(assistantMessage.getTokenCount()).isEqualTo(7);
+    verify(conversationSummarizer).summarizeInBackground(SESSION_ID);
     verify(chatMessageRepository).save(userMessage);
     verify(chatMessageRepository).save(assistantMessage);
-    verify(assistant).chat(MESSAGE_CONTENT);
+    verify(modelRouter).chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT);
   }
 
   @Test
-  void sendMessage_shouldLoadRecentMessagesIntoChatMemory() {
+  void sendMessage_shouldNotHoldTransactionWhileWaitingOnAssistant() {
     ChatSession session = new ChatSession();
     session.setId(SESSION_ID);
     session.setUserId(USER_ID);
 
     ChatMessage userMessage = new ChatMessage();
-    userMessage.setChatSession(session);
-    userMessage.setRole("user");
-    userMessage.setContent(MESSAGE_CONTENT);
+    ChatMessage assistantMessage = new ChatMessage();
+    MessageDTO messageDTO = MessageDTO.builder().id("assistant-msg-1").build();
+
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenAnswer(
+            invocation -> {
+              assertThat(inTransaction).isFalse();
+              return ASSISTANT_RESPONSE;
+            });
+    when(chatSessionMapper.toChatMessage(session, "assistant", ASSISTANT_RESPONSE))
+        .thenReturn(assistantMessage);
+    when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(assistantMessage);
+    when(chatSessionMapper.toMessageDTO(assistantMessage)).thenReturn(messageDTO);
+
+    MessageDTO result =
+        chatMessagesService.sendMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, null);
+
+    assertThat(result).isEqualTo(messageDTO);
+    verify(transactionTemplate, times(2)).execute(any());
+    assertThat(meterRegistry.get("chat.send.phase").tag("phase", "accept").timer().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("chat.send.phase").tag("phase", "generate").timer().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("chat.send.phase").tag("phase", "commit").timer().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void sendMessage_shouldBypassResponseCacheWhenRequested() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    session.setUserId(USER_ID);
+
+    ChatMessage userMessage = new ChatMessage();
+    ChatMessage assistantMessage = new ChatMessage();
+    MessageDTO messageDTO = MessageDTO.builder().id("assistant-msg-1").build();
+
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenReturn(ASSISTANT_RESPONSE);
+    when(chatSessionMapper.toChatMessage(session, "assistant", ASSISTANT_RESPONSE))
+        .thenReturn(assistantMessage);
+    when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(assistantMessage);
+    when(chatSessionMapper.toMessageDTO(assistantMessage)).thenReturn(messageDTO);
 
-    ChatMessage previousUserMsg = new ChatMessage();
-    previousUserMsg.setRole("user");
-    previousUserMsg.setContent("Previous user message");
+    MessageDTO result =
+        chatMessagesService.sendMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, true, null, null);
 
-    ChatMessage previousAiMsg = new ChatMessage();
-    previousAiMsg.setRole("assistant");
-    previousAiMsg.setContent("Previous AI message");
+    assertThat(result).isEqualTo(messageDTO);
+    verify(chatResponseCache, never()).get(any(), any(), any(), any());
+  }
 
-    // Use ArrayList for mutable list
-    List<ChatMessage> recentMessages =
-        new java.util.ArrayList<>(List.of(previousUserMsg, previousAiMsg));
+  @Test
+  void sendMessage_shouldAnswerOnRoutePickedByRouterAndCachePerModel() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    session.setUserId(USER_ID);
+
+    ChatMessage userMessage = new ChatMessage();
+    ChatMessage assistantMessage = new ChatMessage();
+    MessageDTO messageDTO = MessageDTO.builder().id("assistant-msg-1").build();
+
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(modelRouter.route(SESSION_ID, MESSAGE_CONTENT, ModelRoute.CAPABLE))
+        .thenReturn(ModelRoute.CAPABLE);
+    when(modelRouter.modelName(ModelRoute.CAPABLE)).thenReturn("gpt-5-mini");
+    when(modelRouter.chat(ModelRoute.CAPABLE, SESSION_ID, MESSAGE_CONTENT))
+        .thenReturn(ASSISTANT_RESPONSE);
+    when(chatSessionMapper.toChatMessage(session, "assistant", ASSISTANT_RESPONSE))
+        .thenReturn(assistantMessage);
+    when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(assistantMessage);
+    when(chatSessionMapper.toMessageDTO(assistantMessage)).thenReturn(messageDTO);
+
+    MessageDTO result =
+        chatMessagesService.sendMessage(
+            SESSION_ID, USER_ID, MESSAGE_CONTENT, false, ModelRoute.CAPABLE, null);
+
+    assertThat(result).isEqualTo(messageDTO);
+    verify(chatResponseCache).get(eq("gpt-5-mini"), any(), eq(MESSAGE_CONTENT), any());
+  }
+
+  @Test
+  void sendMessage_shouldStoreIdempotencyKeyAndRunThroughRegistry() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    ChatMessage userMessage = new ChatMessage();
+    ChatMessage assistantMessage = new ChatMessage();
+    MessageDTO messageDTO = MessageDTO.builder().id("assistant-msg-1").build();
+
+    when(inFlightRequestRegistry.execute(any(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<MessageDTO>>getArgument(2).get());
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatMessageRepository.findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "assistant"))
+        .thenReturn(Optional.empty());
+    when(chatMessageRepository.findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "user"))
+        .thenReturn(Optional.empty());
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenReturn(ASSISTANT_RESPONSE);
+    when(chatSessionMapper.toChatMessage(session, "assistant", ASSISTANT_RESPONSE))
+        .thenReturn(assistantMessage);
+    when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(assistantMessage);
+    when(chatSessionMapper.toMessageDTO(assistantMessage)).thenReturn(messageDTO);
+
+    MessageDTO result =
+        chatMessagesService.sendMessage(
+            SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, IDEMPOTENCY_KEY);
+
+    assertThat(result).isEqualTo(messageDTO);
+    assertThat(userMessage.getIdempotencyKey()).isEqualTo(IDEMPOTENCY_KEY);
+    assertThat(userMessage.getRequestHash())
+        .isEqualTo(ChatMessagesService.requestHash(MESSAGE_CONTENT, false, null));
+    assertThat(assistantMessage.getIdempotencyKey()).isEqualTo(IDEMPOTENCY_KEY);
+    verify(inFlightRequestRegistry).execute(any(), any(), any());
+  }
+
+  @Test
+  void sendMessage_shouldReplayStoredResponseForKnownIdempotencyKey() {
+    ChatSession session = new ChatSession();
+    ChatMessage storedReply = new ChatMessage();
+    MessageDTO messageDTO = MessageDTO.builder().id("assistant-msg-1").build();
+
+    when(inFlightRequestRegistry.execute(any(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<MessageDTO>>getArgument(2).get());
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    ChatMessage storedMessage = new ChatMessage();
+    storedMessage.setRequestHash(ChatMessagesService.requestHash(MESSAGE_CONTENT, false, null));
+    when(chatMessageRepository.findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "user"))
+        .thenReturn(Optional.of(storedMessage));
+    when(chatMessageRepository.findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "assistant"))
+        .thenReturn(Optional.of(storedReply));
+    when(chatSessionMapper.toMessageDTO(storedReply)).thenReturn(messageDTO);
+
+    MessageDTO result =
+        chatMessagesService.sendMessage(
+            SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, IDEMPOTENCY_KEY);
+
+    assertThat(result).isEqualTo(messageDTO);
+    verify(modelRouter, never()).chat(any(), any(), any());
+    verify(chatMessageRepository, never()).save(any());
+    assertThat(
+            meterRegistry
+                .get("chat.idempotency.requests")
+                .tag("outcome", "replayed")
+                .counter()
+                .count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void sendMessage_shouldRejectIdempotencyKeyReusedForDifferentMessage() {
+    ChatMessage storedMessage = new ChatMessage();
+    storedMessage.setRequestHash(ChatMessagesService.requestHash("Another message", false, null));
+
+    when(inFlightRequestRegistry.execute(any(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<MessageDTO>>getArgument(2).get());
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(new ChatSession()));
+    when(chatMessageRepository.findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "user"))
+        .thenReturn(Optional.of(storedMessage));
+
+    assertThatThrownBy(
+            () ->
+                chatMessagesService.sendMessage(
+                    SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, IDEMPOTENCY_KEY))
+        .isInstanceOf(UnprocessableEntityException.class);
+    verify(chatMessageRepository, never())
+        .findFirstByChatSessionIdAndIdempotencyKeyAndRole(SESSION_ID, IDEMPOTENCY_KEY, "assistant");
+    verify(modelRouter, never()).chat(any(), any(), any());
+  }
+
+  @Test
+  void requestHash_shouldDifferByMessageModelAndCacheSetting() {
+    String hash = ChatMessagesService.requestHash(MESSAGE_CONTENT, false, null);
+
+    assertThat(ChatMessagesService.requestHash(MESSAGE_CONTENT, false, null)).isEqualTo(hash);
+    assertThat(ChatMessagesService.requestHash("Another message", false, null)).isNotEqualTo(hash);
+    assertThat(ChatMessagesService.requestHash(MESSAGE_CONTENT, true, null)).isNotEqualTo(hash);
+    assertThat(ChatMessagesService.requestHash(MESSAGE_CONTENT, false, ModelRoute.CAPABLE))
+        .isNotEqualTo(hash);
+  }
+
+  @Test
+  void sendMessage_shouldNotStoreUserMessageTwiceForRetriedIdempotencyKey() {
+    ChatSession session = new ChatSession();
+    ChatMessage assistantMessage = new ChatMessage();
+    MessageDTO messageDTO = MessageDTO.builder().id("assistant-msg-1").build();
+
+    when(inFlightRequestRegistry.execute(any(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<MessageDTO>>getArgument(2).get());
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatMessageRepository.findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "assistant"))
+        .thenReturn(Optional.empty());
+    ChatMessage storedMessage = new ChatMessage();
+    storedMessage.setRequestHash(ChatMessagesService.requestHash(MESSAGE_CONTENT, false, null));
+    // Claimed by an earlier attempt that failed without releasing it
+    storedMessage.setClaimedUntil(LocalDateTime.now().minusSeconds(1));
+    when(chatMessageRepository.findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "user"))
+        .thenReturn(Optional.of(storedMessage));
+    when(chatMessageRepository.findWithLockByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "user"))
+        .thenReturn(Optional.of(storedMessage));
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenReturn(ASSISTANT_RESPONSE);
+    when(chatSessionMapper.toChatMessage(session, "assistant", ASSISTANT_RESPONSE))
+        .thenReturn(assistantMessage);
+    when(chatMessageRepository.save(assistantMessage)).thenReturn(assistantMessage);
+    when(chatSessionMapper.toMessageDTO(assistantMessage)).thenReturn(messageDTO);
+
+    chatMessagesService.sendMessage(
+        SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, IDEMPOTENCY_KEY);
+
+    verify(chatSessionMapper, never()).toChatMessage(session, "user", MESSAGE_CONTENT);
+    verify(chatMessageRepository, times(1)).save(any());
+    assertThat(storedMessage.getClaimedUntil()).isAfter(LocalDateTime.now());
+  }
+
+  @Test
+  void sendMessage_shouldAskToRetryWhileAnotherRequestHoldsIdempotencyKey() {
+    ChatMessage storedMessage = new ChatMessage();
+    storedMessage.setRequestHash(ChatMessagesService.requestHash(MESSAGE_CONTENT, false, null));
+    storedMessage.setClaimedUntil(LocalDateTime.now().plusSeconds(60));
+
+    when(inFlightRequestRegistry.execute(any(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<MessageDTO>>getArgument(2).get());
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(new ChatSession()));
+    when(chatMessageRepository.findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "user"))
+        .thenReturn(Optional.of(storedMessage));
+    when(chatMessageRepository.findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "assistant"))
+        .thenReturn(Optional.empty());
+    when(chatMessageRepository.findWithLockByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "user"))
+        .thenReturn(Optional.of(storedMessage));
+
+    assertThatThrownBy(
+            () ->
+                chatMessagesService.sendMessage(
+                    SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, IDEMPOTENCY_KEY))
+        .isInstanceOfSatisfying(
+            ConflictException.class, e -> assertThat(e.getRetryAfter()).isPositive());
+    verify(modelRouter, never()).chat(any(), any(), any());
+    assertThat(
+            meterRegistry
+                .get("chat.idempotency.requests")
+                .tag("outcome", "pending")
+                .counter()
+                .count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void sendMessage_shouldAskToRetryWhenAnotherRequestStoredIdempotencyKeyFirst() {
+    ChatSession session = new ChatSession();
+    ChatMessage userMessage = new ChatMessage();
+
+    when(inFlightRequestRegistry.execute(any(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<MessageDTO>>getArgument(2).get());
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(chatMessageRepository.save(userMessage))
+        .thenThrow(new DataIntegrityViolationException("uq_chat_messages_session_idempotency_key"));
+
+    assertThatThrownBy(
+            () ->
+                chatMessagesService.sendMessage(
+                    SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, IDEMPOTENCY_KEY))
+        .isInstanceOf(ConflictException.class);
+    verify(modelRouter, never()).chat(any(), any(), any());
+  }
+
+  @Test
+  void sendMessage_shouldReplayReplyCommittedFirstForIdempotencyKey() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    ChatMessage userMessage = new ChatMessage();
+    ChatMessage assistantMessage = new ChatMessage();
+    ChatMessage committedReply = new ChatMessage();
+    MessageDTO messageDTO = MessageDTO.builder().id("assistant-msg-1").build();
+
+    when(inFlightRequestRegistry.execute(any(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<MessageDTO>>getArgument(2).get());
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatMessageRepository.findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "assistant"))
+        .thenReturn(Optional.empty(), Optional.of(committedReply));
+    when(chatMessageRepository.findFirstByChatSessionIdAndIdempotencyKeyAndRole(
+            SESSION_ID, IDEMPOTENCY_KEY, "user"))
+        .thenReturn(Optional.empty());
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(chatMessageRepository.save(userMessage)).thenReturn(userMessage);
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenReturn(ASSISTANT_RESPONSE);
+    when(chatSessionMapper.toChatMessage(session, "assistant", ASSISTANT_RESPONSE))
+        .thenReturn(assistantMessage);
+    when(chatMessageRepository.save(assistantMessage))
+        .thenThrow(new DataIntegrityViolationException("uq_chat_messages_session_idempotency_key"));
+    when(chatSessionMapper.toMessageDTO(committedReply)).thenReturn(messageDTO);
+
+    MessageDTO result =
+        chatMessagesService.sendMessage(
+            SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, IDEMPOTENCY_KEY);
+
+    assertThat(result).isEqualTo(messageDTO);
+    assertThat(userMessage.getClaimedUntil()).isAfter(LocalDateTime.now());
+    verify(conversationSummarizer, never()).summarizeInBackground(any());
+  }
+
+  @Test
+  void sendMessage_shouldReleaseIdempotencyKeyWhenGenerationFails() {
+    ChatSession session = new ChatSession();
+    ChatMessage userMessage = new ChatMessage();
+
+    when(inFlightRequestRegistry.execute(any(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<MessageDTO>>getArgument(2).get());
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(chatMessageRepository.save(userMessage)).thenReturn(userMessage);
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenThrow(new ServiceUnavailableException("The language model did not respond in time"));
+
+    assertThatThrownBy(
+            () ->
+                chatMessagesService.sendMessage(
+                    SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, IDEMPOTENCY_KEY))
+        .isInstanceOf(ServiceUnavailableException.class);
+    verify(chatMessageRepository).releaseClaim(SESSION_ID, IDEMPOTENCY_KEY);
+  }
+
+  @Test
+  void sendMessage_shouldThrowExceptionWhenSessionNotFound() {
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID)).thenReturn(Optional.empty());
+    assertThatThrownBy(
+            () ->
+                chatMessagesService.sendMessage(
+                    SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, null))
+        .isInstanceOf(BadRequestException.class)
+        .hasMessage("Session not found");
+  }
+
+  @Test
+  void sendMessage_shouldDiscardResponseWhenGenerationIsStopped() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT))
+        .thenReturn(new ChatMessage());
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenAnswer(
+            invocation -> {
+              chatMessagesService.stopGeneration(SESSION_ID, USER_ID, false);
+              assertThat(Thread.currentThread().isInterrupted()).isTrue();
+              return ASSISTANT_RESPONSE;
+            });
+
+    assertThatThrownBy(
+            () ->
+                chatMessagesService.sendMessage(
+                    SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, null))
+        .isInstanceOf(GenerationCancelledException.class);
+
+    assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    verify(chatSessionMapper, never()).toChatMessage(session, "assistant", ASSISTANT_RESPONSE);
+    verify(conversationSummarizer, never()).summarizeInBackground(any());
+  }
+
+  @Test
+  void sendMessage_shouldDiscardResponseWhenThreadIsInterrupted() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT))
+        .thenReturn(new ChatMessage());
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenAnswer(
+            invocation -> {
+              Thread.currentThread().interrupt();
+              throw new IllegalStateException("Interrupted while waiting for the language model");
+            });
+
+    assertThatThrownBy(
+            () ->
+                chatMessagesService.sendMessage(
+                    SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null, null))
+        .isInstanceOf(GenerationCancelledException.class);
+
+    assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    assertThat(
+            meterRegistry
+                .counter(GenerationRegistry.CANCELLED_METRIC, "reason", "disconnected")
+                .count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void stopGeneration_shouldThrowExceptionWhenNothingIsGenerated() {
+    assertThatThrownBy(() -> chatMessagesService.stopGeneration(SESSION_ID, USER_ID, false))
+        .isInstanceOf(NotFoundException.class)
+        .hasMessage("No response is being generated");
+  }
+
+  @Test
+  void streamMessage_shouldEmitTokensAndPersistCompleteResponse() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    session.setUserId(USER_ID);
+
+    ChatMessage userMessage = new ChatMessage();
+    userMessage.setChatSession(session);
+    userMessage.setRole("user");
+    userMessage.setContent(MESSAGE_CONTENT);
 
     ChatMessage assistantMessage = new ChatMessage();
     assistantMessage.setId("assistant-msg-1");
@@ -135,77 +645,497 @@ class ChatMessagesServiceTest {
             .content(ASSISTANT_RESPONSE)
             .build();
 
+    TokenStream tokenStream = mock(TokenStream.class);
+    AtomicReference<BiConsumer<PartialResponse, PartialResponseContext>> onPartialResponse =
+        new AtomicReference<>();
+    AtomicReference<Consumer<ChatResponse>> onCompleteResponse = new AtomicReference<>();
+    StreamingHandle handle = mock(StreamingHandle.class);
+    when(tokenStream.onPartialResponseWithContext(any()))
+        .thenAnswer(
+            invocation -> {
+              onPartialResponse.set(invocation.getArgument(0));
+              return tokenStream;
+            });
+    when(tokenStream.onCompleteResponse(any()))
+        .thenAnswer(
+            invocation -> {
+              onCompleteResponse.set(invocation.getArgument(0));
+              return tokenStream;
+            });
+    when(tokenStream.onError(any())).thenReturn(tokenStream);
+    doAnswer(
+            invocation -> {
+              onPartialResponse
+                  .get()
+                  .accept(new PartialResponse("Hello! "), new PartialResponseContext(handle));
+              onPartialResponse
+                  .get()
+                  .accept(
+                      new PartialResponse("How can I help you?"),
+                      new PartialResponseContext(handle));
+              onCompleteResponse
+                  .get()
+                  .accept(
+                      ChatResponse.builder().aiMessage(AiMessage.from(ASSISTANT_RESPONSE)).build());
+              return null;
+            })
+        .when(tokenStream)
+        .start();
+
     when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
         .thenReturn(Optional.of(session));
     when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
-    when(chatMessageRepository.save(any(ChatMessage.class)))
-        .thenReturn(userMessage)
-        .thenReturn(assistantMessage);
-    when(chatMessageRepository.findLastMessagesBySessionId(eq(SESSION_ID), any(PageRequest.class)))
-        .thenReturn(recentMessages);
-    when(assistant.chat(MESSAGE_CONTENT)).thenReturn(ASSISTANT_RESPONSE);
+    when(chatMessageRepository.save(userMessage)).thenReturn(userMessage);
+    when(modelRouter.chatStream(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenReturn(tokenStream);
     when(chatSessionMapper.toChatMessage(session, "assistant", ASSISTANT_RESPONSE))
         .thenReturn(assistantMessage);
+    when(chatMessageRepository.save(assistantMessage)).thenReturn(assistantMessage);
     when(chatSessionMapper.toMessageDTO(assistantMessage)).thenReturn(messageDTO);
 
-    MessageDTO result = chatMessagesService.sendMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT);
+    StepVerifier.create(
+            chatMessagesService.streamMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, null))
+        .assertNext(event -> assertThat(event.getContent()).isEqualTo("Hello! "))
+        .assertNext(event -> assertThat(event.getContent()).isEqualTo("How can I help you?"))
+        .assertNext(
+            event -> {
+              assertThat(event.getType()).isEqualTo(StreamEventDTO.Type.MESSAGE);
+              assertThat(event.getMessage()).isEqualTo(messageDTO);
+            })
+        .verifyComplete();
 
-    assertThat(result).isNotNull();
-    verify(chatMemory).clear();
-    verify(chatMemory).add(any(UserMessage.class));
-    verify(chatMemory).add(any(AiMessage.class));
+    verify(chatMessageRepository).save(userMessage);
+    verify(chatMessageRepository).save(assistantMessage);
+    verify(handle, never()).cancel();
   }
 
   @Test
-  void sendMessage_shouldThrowExceptionWhenSessionNotFound() {
+  void streamMessage_shouldCancelModelStreamWhenSubscriberCancels() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    StreamingHandle handle = mock(StreamingHandle.class);
+    TokenStream tokenStream =
+        startedTokenStream(List.of(new PartialResponse("Hello! ")), handle, null);
+
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT))
+        .thenReturn(new ChatMessage());
+    when(modelRouter.chatStream(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenReturn(tokenStream);
+
+    StepVerifier.create(
+            chatMessagesService.streamMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, null))
+        .assertNext(event -> assertThat(event.getContent()).isEqualTo("Hello! "))
+        .thenCancel()
+        .verify();
+
+    verify(handle).cancel();
+    assertThat(
+            meterRegistry
+                .counter(GenerationRegistry.CANCELLED_METRIC, "reason", "disconnected")
+                .count())
+        .isEqualTo(1);
+    assertThatThrownBy(() -> chatMessagesService.stopGeneration(SESSION_ID, USER_ID, false))
+        .isInstanceOf(NotFoundException.class);
+  }
+
+  @Test
+  void streamMessage_shouldPersistPartialResponseWhenStopped() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    ChatMessage userMessage = new ChatMessage();
+    userMessage.setId("user-msg-1");
+    ChatMessage partialMessage = new ChatMessage();
+    partialMessage.setId("assistant-msg-1");
+    MessageDTO messageDTO = MessageDTO.builder().id("assistant-msg-1").content("Hello! ").build();
+    StreamingHandle handle = mock(StreamingHandle.class);
+    TokenStream tokenStream =
+        startedTokenStream(
+            List.of(new PartialResponse("Hello! ")),
+            handle,
+            () -> chatMessagesService.stopGeneration(SESSION_ID, USER_ID, true));
+
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(chatMessageRepository.save(userMessage)).thenReturn(userMessage);
+    when(modelRouter.chatStream(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenReturn(tokenStream);
+    when(chatSessionMapper.toChatMessage(session, "assistant", "Hello! "))
+        .thenReturn(partialMessage);
+    when(chatMessageRepository.save(partialMessage)).thenReturn(partialMessage);
+    when(chatSessionMapper.toMessageDTO(partialMessage)).thenReturn(messageDTO);
+    when(chatMemoryProvider.get(SESSION_ID))
+        .thenReturn(MessageWindowChatMemory.withMaxMessages(10));
+
+    StepVerifier.create(
+            chatMessagesService.streamMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, null))
+        .assertNext(event -> assertThat(event.getContent()).isEqualTo("Hello! "))
+        .assertNext(event -> assertThat(event.getMessage()).isEqualTo(messageDTO))
+        .verifyComplete();
+
+    verify(handle).cancel();
+    verify(chatMessageRepository).save(partialMessage);
+  }
+
+  @Test
+  void sendMessage_shouldSeePartialResponseKeptWhenPreviousTurnWasStopped() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    ChatMemory memory = MessageWindowChatMemory.withMaxMessages(10);
+    StreamingHandle handle = mock(StreamingHandle.class);
+    TokenStream tokenStream =
+        startedTokenStream(
+            List.of(new PartialResponse("Hello! ")),
+            handle,
+            () -> chatMessagesService.stopGeneration(SESSION_ID, USER_ID, true));
+    AtomicReference<Object> contextOfNextTurn = new AtomicReference<>();
+
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(eq(session), any(), any()))
+        .thenAnswer(invocation -> new ChatMessage());
+    when(chatMessageRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    when(chatSessionMapper.toMessageDTO(any())).thenReturn(MessageDTO.builder().build());
+    when(chatMemoryProvider.get(SESSION_ID)).thenReturn(memory);
+    // The assistant stores the user's message in the memory before calling the model
+    when(modelRouter.chatStream(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenAnswer(
+            invocation -> {
+              memory.add(UserMessage.from(MESSAGE_CONTENT));
+              return tokenStream;
+            });
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, "Go on"))
+        .thenAnswer(
+            invocation -> {
+              contextOfNextTurn.set(memory.messages());
+              return ASSISTANT_RESPONSE;
+            });
+
+    StepVerifier.create(
+            chatMessagesService.streamMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, null))
+        .expectNextCount(2)
+        .verifyComplete();
+    chatMessagesService.sendMessage(SESSION_ID, USER_ID, "Go on", false, null, null);
+
+    assertThat(contextOfNextTurn.get())
+        .isEqualTo(List.of(UserMessage.from(MESSAGE_CONTENT), AiMessage.from("Hello! ")));
+  }
+
+  @Test
+  void streamMessage_shouldFailWithCancelledErrorWhenStoppedWithoutPersisting() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    StreamingHandle handle = mock(StreamingHandle.class);
+    TokenStream tokenStream =
+        startedTokenStream(
+            List.of(new PartialResponse("Hello! ")),
+            handle,
+            () -> chatMessagesService.stopGeneration(SESSION_ID, USER_ID, false));
+
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT))
+        .thenReturn(new ChatMessage());
+    when(modelRouter.chatStream(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenReturn(tokenStream);
+
+    StepVerifier.create(
+            chatMessagesService.streamMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, null))
+        .assertNext(event -> assertThat(event.getContent()).isEqualTo("Hello! "))
+        .verifyError(GenerationCancelledException.class);
+
+    verify(handle).cancel();
+    verify(chatSessionMapper, never()).toChatMessage(session, "assistant", "Hello! ");
+  }
+
+  @Test
+  void streamMessage_shouldThrowExceptionWhenSessionNotFound() {
     when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID)).thenReturn(Optional.empty());
-    assertThatThrownBy(() -> chatMessagesService.sendMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT))
+    assertThatThrownBy(
+            () -> chatMessagesService.streamMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, null))
         .isInstanceOf(BadRequestException.class)
         .hasMessage("Session not found");
   }
 
   @Test
-  void getSessionHistory_shouldReturnAllMessagesForSession() {
-    ChatMessage message1 = new ChatMessage();
-    message1.setId("msg-1");
-    message1.setRole("user");
-    message1.setContent("Hello");
-    message1.setTimestamp(LocalDateTime.now().minusMinutes(2));
+  void submitMessage_shouldStoreUserMessageAndGenerateResponseInBackground() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    ChatMessage userMessage = new ChatMessage();
+    userMessage.setId("user-msg-1");
+    userMessage.setChatSession(session);
+    ChatMessage assistantMessage = new ChatMessage();
+    MessageDTO messageDTO = MessageDTO.builder().id("assistant-msg-1").build();
+    MessageJobDTO job = MessageJobDTO.builder().id("user-msg-1").build();
+    AtomicReference<Runnable> task = new AtomicReference<>();
+
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(chatMessageRepository.save(userMessage)).thenReturn(userMessage);
+    when(messageJobRegistry.create("user-msg-1", SESSION_ID, USER_ID)).thenReturn(job);
+    doAnswer(
+            invocation -> {
+              task.set(invocation.getArgument(0));
+              return null;
+            })
+        .when(generationExecutor)
+        .execute(any());
+
+    MessageJobDTO result =
+        chatMessagesService.submitMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null);
+
+    assertThat(result).isEqualTo(job);
+    verify(modelRouter, never()).chat(any(), any(), any());
+
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenReturn(ASSISTANT_RESPONSE);
+    when(chatSessionMapper.toChatMessage(session, "assistant", ASSISTANT_RESPONSE))
+        .thenReturn(assistantMessage);
+    when(chatMessageRepository.save(assistantMessage)).thenReturn(assistantMessage);
+    when(chatSessionMapper.toMessageDTO(assistantMessage)).thenReturn(messageDTO);
+
+    task.get().run();
+
+    verify(messageJobRegistry).markRunning("user-msg-1");
+    verify(messageJobRegistry).complete("user-msg-1", messageDTO);
+  }
+
+  @Test
+  void submitMessage_shouldMarkJobFailedWhenGenerationFails() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    ChatMessage userMessage = new ChatMessage();
+    userMessage.setId("user-msg-1");
+    userMessage.setChatSession(session);
 
-    ChatMessage message2 = new ChatMessage();
-    message2.setId("msg-2");
-    message2.setRole("assistant");
-    message2.setContent("Hi there!");
-    message2.setTimestamp(LocalDateTime.now().minusMinutes(1));
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(chatMessageRepository.save(userMessage)).thenReturn(userMessage);
+    doAnswer(
+            invocation -> {
+              invocation.<Runnable>getArgument(0).run();
+              return null;
+            })
+        .when(generationExecutor)
+        .execute(any());
+    when(modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE_CONTENT))
+        .thenThrow(new RuntimeException("boom"));
 
-    List<ChatMessage> messages = List.of(message1, message2);
+    chatMessagesService.submitMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null);
 
-    MessageDTO dto1 = MessageDTO.builder().id("msg-1").role("user").content("Hello").build();
+    verify(messageJobRegistry).fail("user-msg-1", GenericErrorCodes.INTERNAL_SERVER_ERROR);
+  }
 
-    MessageDTO dto2 =
-        MessageDTO.builder().id("msg-2").role("assistant").content("Hi there!").build();
+  @Test
+  void submitMessage_shouldMarkJobCancelledWhenStoppedBeforeRunning() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    ChatMessage userMessage = new ChatMessage();
+    userMessage.setId("user-msg-1");
+    userMessage.setChatSession(session);
+    AtomicReference<Runnable> task = new AtomicReference<>();
 
-    when(chatMessageRepository.findByChatSessionIdOrderByTimestampAsc(SESSION_ID))
-        .thenReturn(messages);
-    when(chatSessionMapper.toMessageDTO(message1)).thenReturn(dto1);
-    when(chatSessionMapper.toMessageDTO(message2)).thenReturn(dto2);
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(chatMessageRepository.save(userMessage)).thenReturn(userMessage);
+    doAnswer(
+            invocation -> {
+              task.set(invocation.getArgument(0));
+              return null;
+            })
+        .when(generationExecutor)
+        .execute(any());
 
-    List<MessageDTO> result = chatMessagesService.getSessionHistory(SESSION_ID, USER_ID);
+    chatMessagesService.submitMessage(SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null);
+    chatMessagesService.stopGeneration(SESSION_ID, USER_ID, false);
+    task.get().run();
 
-    assertThat(result).hasSize(2);
-    assertThat(result.get(0).getId()).isEqualTo("msg-1");
-    assertThat(result.get(1).getId()).isEqualTo("msg-2");
-    verify(chatMessageRepository).findByChatSessionIdOrderByTimestampAsc(SESSION_ID);
+    verify(modelRouter, never()).chat(any(), any(), any());
+    verify(messageJobRegistry).fail("user-msg-1", GenericErrorCodes.GENERATION_CANCELLED);
+    assertThat(Thread.currentThread().isInterrupted()).isFalse();
   }
 
   @Test
-  void getSessionHistory_shouldReturnEmptyListWhenNoMessages() {
-    when(chatMessageRepository.findByChatSessionIdOrderByTimestampAsc(SESSION_ID))
+  void submitMessage_shouldRejectAndRemoveMessageWhenQueueIsFull() {
+    ChatSession session = new ChatSession();
+    ChatMessage userMessage = new ChatMessage();
+    userMessage.setId("user-msg-1");
+    userMessage.setChatSession(session);
+
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatSessionMapper.toChatMessage(session, "user", MESSAGE_CONTENT)).thenReturn(userMessage);
+    when(chatMessageRepository.save(userMessage)).thenReturn(userMessage);
+    doAnswer(
+            invocation -> {
+              invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    doThrow(new TaskRejectedException("Queue full")).when(generationExecutor).execute(any());
+
+    assertThatThrownBy(
+            () ->
+                chatMessagesService.submitMessage(
+                    SESSION_ID, USER_ID, MESSAGE_CONTENT, false, null))
+        .isInstanceOf(ServiceUnavailableException.class)
+        .hasMessage("Generation queue is full");
+    verify(messageJobRegistry).remove("user-msg-1");
+    verify(chatMessageRepository).deleteById("user-msg-1");
+  }
+
+  @Test
+  void getSessionHistory_shouldReturnNewestMessagesOldestFirst() {
+    when(chatSessionRepository.existsByIdAndUserId(SESSION_ID, USER_ID)).thenReturn(true);
+    LocalDateTime now = LocalDateTime.now();
+    ChatMessage message1 = historyMessage("msg-1", now.minusMinutes(3));
+    ChatMessage message2 = historyMessage("msg-2", now.minusMinutes(2));
+    ChatMessage message3 = historyMessage("msg-3", now.minusMinutes(1));
+    when(chatMessageRepository.findByChatSessionIdOrderByTimestampDescIdDesc(
+            SESSION_ID, Limit.of(3)))
+        .thenReturn(List.of(message3, message2, message1));
+    mapHistoryMessages();
+
+    CursorPageDTO<MessageDTO> result =
+        chatMessagesService.getSessionHistory(SESSION_ID, USER_ID, 2, null, null);
+
+    assertThat(result.getItems()).extracting(MessageDTO::getId).containsExactly("msg-2", "msg-3");
+    assertThat(Cursor.decode(result.getBefore()))
+        .isEqualTo(new Cursor(message2.getTimestamp(), "msg-2"));
+    assertThat(result.getAfter()).isNull();
+  }
+
+  @Test
+  void getSessionHistory_shouldReturnOlderMessagesBeforeCursor() {
+    when(chatSessionRepository.existsByIdAndUserId(SESSION_ID, USER_ID)).thenReturn(true);
+    LocalDateTime now = LocalDateTime.now();
+    Cursor cursor = new Cursor(now.minusMinutes(2), "msg-2");
+    ChatMessage message1 = historyMessage("msg-1", now.minusMinutes(3));
+    when(chatMessageRepository.findMessagesBefore(
+            SESSION_ID, cursor.timestamp(), cursor.id(), Limit.of(3)))
+        .thenReturn(List.of(message1));
+    mapHistoryMessages();
+
+    CursorPageDTO<MessageDTO> result =
+        chatMessagesService.getSessionHistory(SESSION_ID, USER_ID, 2, cursor.encode(), null);
+
+    assertThat(result.getItems()).extracting(MessageDTO::getId).containsExactly("msg-1");
+    assertThat(result.getBefore()).isNull();
+    assertThat(Cursor.decode(result.getAfter()))
+        .isEqualTo(new Cursor(message1.getTimestamp(), "msg-1"));
+  }
+
+  @Test
+  void getSessionHistory_shouldReturnNewerMessagesAfterCursor() {
+    when(chatSessionRepository.existsByIdAndUserId(SESSION_ID, USER_ID)).thenReturn(true);
+    LocalDateTime now = LocalDateTime.now();
+    Cursor cursor = new Cursor(now.minusMinutes(3), "msg-1");
+    ChatMessage message2 = historyMessage("msg-2", now.minusMinutes(2));
+    ChatMessage message3 = historyMessage("msg-3", now.minusMinutes(1));
+    ChatMessage message4 = historyMessage("msg-4", now);
+    when(chatMessageRepository.findMessagesAfter(
+            SESSION_ID, cursor.timestamp(), cursor.id(), Limit.of(3)))
+        .thenReturn(List.of(message2, message3, message4));
+    mapHistoryMessages();
+
+    CursorPageDTO<MessageDTO> result =
+        chatMessagesService.getSessionHistory(SESSION_ID, USER_ID, 2, null, cursor.encode());
+
+    assertThat(result.getItems()).extracting(MessageDTO::getId).containsExactly("msg-2", "msg-3");
+    assertThat(Cursor.decode(result.getBefore()))
+        .isEqualTo(new Cursor(message2.getTimestamp(), "msg-2"));
+    assertThat(Cursor.decode(result.getAfter()))
+        .isEqualTo(new Cursor(message3.getTimestamp(), "msg-3"));
+  }
+
+  @Test
+  void getSessionHistory_shouldReturnEmptyPageWhenNoMessages() {
+    when(chatSessionRepository.existsByIdAndUserId(SESSION_ID, USER_ID)).thenReturn(true);
+    when(chatMessageRepository.findByChatSessionIdOrderByTimestampDescIdDesc(
+            SESSION_ID, Limit.of(51)))
         .thenReturn(List.of());
 
-    List<MessageDTO> result = chatMessagesService.getSessionHistory(SESSION_ID, USER_ID);
+    CursorPageDTO<MessageDTO> result =
+        chatMessagesService.getSessionHistory(SESSION_ID, USER_ID, 50, null, null);
+
+    assertThat(result.getItems()).isEmpty();
+    assertThat(result.getBefore()).isNull();
+    assertThat(result.getAfter()).isNull();
+  }
+
+  @Test
+  void getSessionHistory_shouldRejectBothCursors() {
+    String cursor = new Cursor(LocalDateTime.now(), "msg-1").encode();
+
+    assertThatThrownBy(
+            () -> chatMessagesService.getSessionHistory(SESSION_ID, USER_ID, 50, cursor, cursor))
+        .isInstanceOf(BadRequestException.class);
+  }
+
+  @Test
+  void getSessionHistory_shouldRejectSessionOfAnotherUser() {
+    when(chatSessionRepository.existsByIdAndUserId(SESSION_ID, "other-user")).thenReturn(false);
+
+    assertThatThrownBy(
+            () -> chatMessagesService.getSessionHistory(SESSION_ID, "other-user", 50, null, null))
+        .isInstanceOf(BadRequestException.class)
+        .hasMessage("Session not found");
+    verifyNoInteractions(chatMessageRepository);
+  }
+
+  private static ChatMessage historyMessage(String id, LocalDateTime timestamp) {
+    ChatMessage message = new ChatMessage();
+    message.setId(id);
+    message.setRole("user");
+    message.setContent("Hello");
+    message.setTimestamp(timestamp);
+    return message;
+  }
+
+  private void mapHistoryMessages() {
+    when(chatSessionMapper.toMessageDTO(any(ChatMessage.class)))
+        .thenAnswer(
+            invocation ->
+                MessageDTO.builder().id(invocation.<ChatMessage>getArgument(0).getId()).build());
+  }
 
-    assertThat(result).isEmpty();
-    verify(chatMessageRepository).findByChatSessionIdOrderByTimestampAsc(SESSION_ID);
+  /**
+   * Creates a token stream emitting the given partial responses when started. The given action runs
+   * after the partial responses; the stream does not complete.
+   */
+  private TokenStream startedTokenStream(
+      List<PartialResponse> partialResponses, StreamingHandle handle, Runnable afterPartials) {
+    TokenStream tokenStream = mock(TokenStream.class);
+    AtomicReference<BiConsumer<PartialResponse, PartialResponseContext>> onPartialResponse =
+        new AtomicReference<>();
+    when(tokenStream.onPartialResponseWithContext(any()))
+        .thenAnswer(
+            invocation -> {
+              onPartialResponse.set(invocation.getArgument(0));
+              return tokenStream;
+            });
+    when(tokenStream.onCompleteResponse(any())).thenReturn(tokenStream);
+    when(tokenStream.onError(any())).thenReturn(tokenStream);
+    doAnswer(
+            invocation -> {
+              partialResponses.forEach(
+                  partialResponse ->
+                      onPartialResponse
+                          .get()
+                          .accept(partialResponse, new PartialResponseContext(handle)));
+              if (afterPartials != null) {
+                afterPartials.run();
+              }
+              return null;
+            })
+        .when(tokenStream)
+        .start();
+    return tokenStream;
   }
 }
@@ -0,0 +1,88 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ChatResponseCacheTest {
+
+  private static final String QUESTION = "What can I do in Malaga?";
+  private static final String ANSWER = "Visit the Alcazaba.";
+
+  private static final String MODEL = "gpt-5-nano";
+
+  private MeterRegistry meterRegistry;
+
+  private ChatResponseCache chatResponseCache;
+
+  private final AtomicInteger generated = new AtomicInteger();
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    chatResponseCache = new ChatResponseCache(meterRegistry, true, 100, Duration.ofHours(1));
+  }
+
+  @Test
+  void get_shouldServeIdenticalContextFromCacheAndUpdateMemory() {
+    String first = chatResponseCache.get(MODEL, memory("session-1"), QUESTION, this::generate);
+    ChatMemory memory = memory("session-2");
+    String second = chatResponseCache.get(MODEL, memory, QUESTION, this::generate);
+
+    assertThat(first).isEqualTo(ANSWER);
+    assertThat(second).isEqualTo(ANSWER);
+    assertThat(generated).hasValue(1);
+    assertThat(memory.messages())
+        .containsExactly(UserMessage.from(QUESTION), AiMessage.from(ANSWER));
+    assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void get_shouldGenerateWhenContextDiffers() {
+    chatResponseCache.get(MODEL, memory("session-1"), QUESTION, this::generate);
+    ChatMemory memory = memory("session-2");
+    memory.add(UserMessage.from("Hello"));
+    memory.add(AiMessage.from("Hi"));
+    chatResponseCache.get(MODEL, memory, QUESTION, this::generate);
+
+    assertThat(generated).hasValue(2);
+  }
+
+  @Test
+  void get_shouldGenerateWhenModelDiffers() {
+    chatResponseCache.get(MODEL, memory("session-1"), QUESTION, this::generate);
+    chatResponseCache.get("gpt-5", memory("session-2"), QUESTION, this::generate);
+
+    assertThat(generated).hasValue(2);
+  }
+
+  @Test
+  void get_shouldAlwaysGenerateWhenDisabled() {
+    ChatResponseCache disabledCache =
+        new ChatResponseCache(meterRegistry, false, 100, Duration.ofHours(1));
+
+    disabledCache.get(MODEL, memory("session-1"), QUESTION, this::generate);
+    disabledCache.get(MODEL, memory("session-2"), QUESTION, this::generate);
+
+    assertThat(generated).hasValue(2);
+  }
+
+  private String generate() {
+    generated.incrementAndGet();
+    return ANSWER;
+  }
+
+  private ChatMemory memory(String id) {
+    return MessageWindowChatMemory.builder().id(id).maxMessages(10).build();
+  }
+}
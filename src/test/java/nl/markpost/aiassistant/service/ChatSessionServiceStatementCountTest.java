@@ -0,0 +1,94 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jakarta.persistence.EntityManager;
+import nl.markpost.aiassistant.mapper.ChatSessionMapperImpl;
+import nl.markpost.aiassistant.models.ChatSessionDTO;
+import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.entity.ChatMessage;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+/**
+ * Counts the SQL statements of {@link ChatSessionService#getSession}, which must not grow with the
+ * length of the session. Skipped without Docker.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Import({ChatSessionService.class, ChatSessionMapperImpl.class})
+class ChatSessionServiceStatementCountTest {
+
+  private static final String USER_ID = "user-1";
+  private static final String SESSION_ID = "session-1";
+
+  @Container @ServiceConnection
+  static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:17-alpine");
+
+  @MockitoBean private SessionChatMemoryProvider chatMemoryProvider;
+
+  @Autowired private EntityManager entityManager;
+
+  @Autowired private ChatSessionService chatSessionService;
+
+  private Statistics statistics;
+
+  @BeforeEach
+  void insertLongSession() {
+    entityManager
+        .createNativeQuery(
+            "INSERT INTO chat_sessions (id, user_id, title, created_at, updated_at)"
+                + " VALUES (?1, ?2, 'Long chat', now(), now())")
+        .setParameter(1, SESSION_ID)
+        .setParameter(2, USER_ID)
+        .executeUpdate();
+    entityManager
+        .createNativeQuery(
+            """
+            INSERT INTO chat_messages (id, session_id, role, content, timestamp)
+            SELECT 'message-' || lpad(i::text, 4, '0'), ?1, 'user', 'Message ' || i,
+                   TIMESTAMP '2025-01-01 12:00' + i * INTERVAL '1 second'
+            FROM generate_series(1, 1000) AS i
+            """)
+        .setParameter(1, SESSION_ID)
+        .executeUpdate();
+    statistics =
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @Test
+  void getSession_shouldLoadSessionAndNewestMessagesInTwoStatements() {
+    ChatSessionDTO session = chatSessionService.getSession(SESSION_ID, USER_ID, 20);
+
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    assertThat(statistics.getCollectionLoadCount()).isZero();
+    assertThat(statistics.getEntityLoadCount()).isEqualTo(22);
+    assertThat(session.getMessages()).hasSize(20);
+    assertThat(session.getMessages().getFirst().getId()).isEqualTo("message-0981");
+    assertThat(session.getMessages().getLast().getId()).isEqualTo("message-1000");
+    assertThat(session.getMessagesBefore()).isNotNull();
+  }
+
+  @Test
+  void getSession_shouldLoadMessagesReadOnly() {
+    ChatSessionDTO session = chatSessionService.getSession(SESSION_ID, USER_ID, 20);
+
+    MessageDTO newest = session.getMessages().getLast();
+    ChatMessage message = entityManager.getReference(ChatMessage.class, newest.getId());
+    assertThat(entityManager.unwrap(Session.class).isReadOnly(message)).isTrue();
+  }
+}
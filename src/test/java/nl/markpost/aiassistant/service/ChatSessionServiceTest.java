@@ -2,14 +2,21 @@ package nl.markpost.aiassistant.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import nl.markpost.aiassistant.exception.BadRequestException;
 import nl.markpost.aiassistant.mapper.ChatSessionMapper;
 import nl.markpost.aiassistant.models.ChatSessionDTO;
+import nl.markpost.aiassistant.models.ChatSessionOverview;
+import nl.markpost.aiassistant.models.Cursor;
+import nl.markpost.aiassistant.models.CursorPageDTO;
+import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.entity.ChatMessage;
 import nl.markpost.aiassistant.models.entity.ChatSession;
 import nl.markpost.aiassistant.repository.ChatMessageRepository;
 import nl.markpost.aiassistant.repository.ChatSessionRepository;
@@ -18,6 +25,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 @ExtendWith(MockitoExtension.class)
 class ChatSessionServiceTest {
@@ -26,9 +34,7 @@ class ChatSessionServiceTest {
 
   @Mock private ChatMessageRepository chatMessageRepository;
 
-  @Mock private Assistant assistant;
-
-  @Mock private dev.langchain4j.memory.ChatMemory chatMemory;
+  @Mock private SessionChatMemoryProvider chatMemoryProvider;
 
   @Mock private ChatSessionMapper chatSessionMapper;
 
@@ -37,6 +43,7 @@ class ChatSessionServiceTest {
   private static final String USER_ID = "user-123";
   private static final String SESSION_ID = "session-123";
   private static final String TITLE = "Test Chat";
+  private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2025, 1, 1, 12, 0);
 
   @Test
   void createSession_shouldCreateNewSession() {
@@ -101,60 +108,130 @@ class ChatSessionServiceTest {
   }
 
   @Test
-  void getUserSessions_shouldReturnAllUserSessions() {
-    ChatSession session1 = new ChatSession();
-    session1.setId("session-1");
-    session1.setUserId(USER_ID);
-    session1.setTitle("Chat 1");
-
-    ChatSession session2 = new ChatSession();
-    session2.setId("session-2");
-    session2.setUserId(USER_ID);
-    session2.setTitle("Chat 2");
+  void getUserSessions_shouldReturnFirstPageWithCursorToNextPage() {
+    ChatSessionOverview session1 = overview("session-1", UPDATED_AT);
+    ChatSessionOverview session2 = overview("session-2", UPDATED_AT.minusMinutes(1));
+    ChatSessionOverview session3 = overview("session-3", UPDATED_AT.minusMinutes(2));
+    when(chatSessionRepository.findOverviews(USER_ID, Limit.of(3)))
+        .thenReturn(List.of(session1, session2, session3));
+    mapSessions();
+
+    CursorPageDTO<ChatSessionDTO> result =
+        chatSessionService.getUserSessions(USER_ID, 2, null, null);
+
+    assertThat(result.getItems())
+        .extracting(ChatSessionDTO::getId)
+        .containsExactly("session-1", "session-2");
+    assertThat(result.getBefore()).isNull();
+    assertThat(Cursor.decode(result.getAfter()))
+        .isEqualTo(new Cursor(session2.updatedAt(), "session-2"));
+  }
 
-    List<ChatSession> sessions = List.of(session1, session2);
+  @Test
+  void getUserSessions_shouldReturnLastPageAfterCursor() {
+    Cursor cursor = new Cursor(UPDATED_AT, "session-1");
+    ChatSessionOverview session2 = overview("session-2", UPDATED_AT.minusMinutes(1));
+    when(chatSessionRepository.findOverviewsAfter(
+            USER_ID, cursor.timestamp(), cursor.id(), Limit.of(3)))
+        .thenReturn(List.of(session2));
+    mapSessions();
+
+    CursorPageDTO<ChatSessionDTO> result =
+        chatSessionService.getUserSessions(USER_ID, 2, null, cursor.encode());
+
+    assertThat(result.getItems()).extracting(ChatSessionDTO::getId).containsExactly("session-2");
+    assertThat(Cursor.decode(result.getBefore()))
+        .isEqualTo(new Cursor(session2.updatedAt(), "session-2"));
+    assertThat(result.getAfter()).isNull();
+  }
 
-    ChatSessionDTO dto1 = ChatSessionDTO.builder().id("session-1").title("Chat 1").build();
-    ChatSessionDTO dto2 = ChatSessionDTO.builder().id("session-2").title("Chat 2").build();
+  @Test
+  void getUserSessions_shouldReturnPageBeforeCursorMostRecentFirst() {
+    Cursor cursor = new Cursor(UPDATED_AT.minusMinutes(3), "session-4");
+    ChatSessionOverview session3 = overview("session-3", UPDATED_AT.minusMinutes(2));
+    ChatSessionOverview session2 = overview("session-2", UPDATED_AT.minusMinutes(1));
+    ChatSessionOverview session1 = overview("session-1", UPDATED_AT);
+    when(chatSessionRepository.findOverviewsBefore(
+            USER_ID, cursor.timestamp(), cursor.id(), Limit.of(3)))
+        .thenReturn(List.of(session3, session2, session1));
+    mapSessions();
+
+    CursorPageDTO<ChatSessionDTO> result =
+        chatSessionService.getUserSessions(USER_ID, 2, cursor.encode(), null);
+
+    assertThat(result.getItems())
+        .extracting(ChatSessionDTO::getId)
+        .containsExactly("session-2", "session-3");
+    assertThat(Cursor.decode(result.getBefore()))
+        .isEqualTo(new Cursor(session2.updatedAt(), "session-2"));
+    assertThat(Cursor.decode(result.getAfter()))
+        .isEqualTo(new Cursor(session3.updatedAt(), "session-3"));
+  }
 
-    when(chatSessionRepository.findByUserIdOrderByUpdatedAtDesc(USER_ID)).thenReturn(sessions);
-    when(chatSessionMapper.toDTOWithoutMessages(session1)).thenReturn(dto1);
-    when(chatSessionMapper.toDTOWithoutMessages(session2)).thenReturn(dto2);
+  @Test
+  void getUserSessions_shouldRejectBothCursors() {
+    String cursor = new Cursor(UPDATED_AT, "session-1").encode();
 
-    List<ChatSessionDTO> result = chatSessionService.getUserSessions(USER_ID);
+    assertThatThrownBy(() -> chatSessionService.getUserSessions(USER_ID, 2, cursor, cursor))
+        .isInstanceOf(BadRequestException.class);
+  }
 
-    assertThat(result).hasSize(2);
-    assertThat(result.get(0).getId()).isEqualTo("session-1");
-    assertThat(result.get(1).getId()).isEqualTo("session-2");
-    verify(chatSessionRepository).findByUserIdOrderByUpdatedAtDesc(USER_ID);
+  @Test
+  void getUserSessions_shouldRejectInvalidCursor() {
+    assertThatThrownBy(() -> chatSessionService.getUserSessions(USER_ID, 2, null, "not a cursor"))
+        .isInstanceOf(BadRequestException.class)
+        .hasMessage("Invalid cursor");
   }
 
   @Test
-  void getSession_shouldReturnSessionWithMessages() {
-    ChatSession session = new ChatSession();
-    session.setId(SESSION_ID);
-    session.setUserId(USER_ID);
-    session.setTitle(TITLE);
+  void getSession_shouldReturnNewestMessagesOldestFirstWithCursorToOlderMessages() {
+    ChatSession session = session();
+    ChatMessage message1 = message("message-1", UPDATED_AT);
+    ChatMessage message2 = message("message-2", UPDATED_AT.minusMinutes(1));
+    ChatMessage message3 = message("message-3", UPDATED_AT.minusMinutes(2));
+    when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
+        .thenReturn(Optional.of(session));
+    when(chatMessageRepository.findByChatSessionIdOrderByTimestampDescIdDesc(
+            SESSION_ID, Limit.of(3)))
+        .thenReturn(List.of(message1, message2, message3));
+    when(chatSessionMapper.toDTOWithoutMessages(session))
+        .thenReturn(ChatSessionDTO.builder().id(SESSION_ID).title(TITLE).build());
+    mapMessages();
 
-    ChatSessionDTO sessionDTO = ChatSessionDTO.builder().id(SESSION_ID).title(TITLE).build();
+    ChatSessionDTO result = chatSessionService.getSession(SESSION_ID, USER_ID, 2);
+
+    assertThat(result.getId()).isEqualTo(SESSION_ID);
+    assertThat(result.getMessages())
+        .extracting(MessageDTO::getId)
+        .containsExactly("message-2", "message-1");
+    assertThat(Cursor.decode(result.getMessagesBefore()))
+        .isEqualTo(new Cursor(message2.getTimestamp(), "message-2"));
+  }
 
+  @Test
+  void getSession_shouldReturnNoCursorWhenAllMessagesFit() {
+    ChatSession session = session();
+    ChatMessage message1 = message("message-1", UPDATED_AT);
     when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID))
         .thenReturn(Optional.of(session));
-    when(chatSessionMapper.toDTOWithMessages(session)).thenReturn(sessionDTO);
+    when(chatMessageRepository.findByChatSessionIdOrderByTimestampDescIdDesc(
+            SESSION_ID, Limit.of(3)))
+        .thenReturn(List.of(message1));
+    when(chatSessionMapper.toDTOWithoutMessages(session))
+        .thenReturn(ChatSessionDTO.builder().id(SESSION_ID).title(TITLE).build());
+    mapMessages();
 
-    ChatSessionDTO result = chatSessionService.getSession(SESSION_ID, USER_ID);
+    ChatSessionDTO result = chatSessionService.getSession(SESSION_ID, USER_ID, 2);
 
-    assertThat(result).isNotNull();
-    assertThat(result.getId()).isEqualTo(SESSION_ID);
-    verify(chatSessionRepository).findByIdAndUserId(SESSION_ID, USER_ID);
-    verify(chatSessionMapper).toDTOWithMessages(session);
+    assertThat(result.getMessages()).extracting(MessageDTO::getId).containsExactly("message-1");
+    assertThat(result.getMessagesBefore()).isNull();
   }
 
   @Test
   void getSession_shouldThrowExceptionWhenSessionNotFound() {
     when(chatSessionRepository.findByIdAndUserId(SESSION_ID, USER_ID)).thenReturn(Optional.empty());
 
-    assertThatThrownBy(() -> chatSessionService.getSession(SESSION_ID, USER_ID))
+    assertThatThrownBy(() -> chatSessionService.getSession(SESSION_ID, USER_ID, 2))
         .isInstanceOf(BadRequestException.class)
         .hasMessage("Session not found");
   }
@@ -219,6 +296,7 @@ class ChatSessionServiceTest {
     chatSessionService.deleteSession(SESSION_ID, USER_ID);
 
     verify(chatSessionRepository).delete(session);
+    verify(chatMemoryProvider).evict(SESSION_ID);
   }
 
   @Test
@@ -229,4 +307,41 @@ class ChatSessionServiceTest {
         .isInstanceOf(BadRequestException.class)
         .hasMessage("Session not found");
   }
+
+  private static ChatSessionOverview overview(String id, LocalDateTime updatedAt) {
+    return new ChatSessionOverview(id, TITLE, updatedAt, updatedAt, 2, "Hello");
+  }
+
+  private static ChatSession session() {
+    ChatSession session = new ChatSession();
+    session.setId(SESSION_ID);
+    session.setUserId(USER_ID);
+    session.setTitle(TITLE);
+    return session;
+  }
+
+  private static ChatMessage message(String id, LocalDateTime timestamp) {
+    ChatMessage message = new ChatMessage();
+    message.setId(id);
+    message.setRole("user");
+    message.setContent("Hello");
+    message.setTimestamp(timestamp);
+    return message;
+  }
+
+  private void mapMessages() {
+    when(chatSessionMapper.toMessageDTO(any()))
+        .thenAnswer(
+            invocation ->
+                MessageDTO.builder().id(invocation.<ChatMessage>getArgument(0).getId()).build());
+  }
+
+  private void mapSessions() {
+    when(chatSessionMapper.toDTO(any(ChatSessionOverview.class)))
+        .thenAnswer(
+            invocation ->
+                ChatSessionDTO.builder()
+                    .id(invocation.<ChatSessionOverview>getArgument(0).id())
+                    .build());
+  }
 }
@@ -0,0 +1,72 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+import nl.markpost.aiassistant.service.AdaptiveConcurrencyLimiter.Permit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyLimitedChatModelTest {
+
+  @Mock private ChatModel delegate;
+
+  @Mock private AdaptiveConcurrencyLimiter limiter;
+
+  @Mock private Permit permit;
+
+  private ConcurrencyLimitedChatModel chatModel;
+
+  private final ChatRequest request =
+      ChatRequest.builder().messages(UserMessage.from("Hello")).build();
+
+  @BeforeEach
+  void setUp() {
+    chatModel = new ConcurrencyLimitedChatModel(delegate, limiter);
+  }
+
+  @Test
+  void chat_shouldReleasePermitAfterSuccessfulCall() {
+    ChatResponse response = ChatResponse.builder().aiMessage(AiMessage.from("Hi")).build();
+    when(limiter.acquire()).thenReturn(permit);
+    when(delegate.chat(request, ChatRequestOptions.EMPTY)).thenReturn(response);
+
+    assertThat(chatModel.chat(request)).isEqualTo(response);
+    verify(permit).success();
+  }
+
+  @Test
+  void chat_shouldReportFailureToPermit() {
+    RateLimitException error = new RateLimitException("Too many requests");
+    when(limiter.acquire()).thenReturn(permit);
+    when(delegate.chat(request, ChatRequestOptions.EMPTY)).thenThrow(error);
+
+    assertThatThrownBy(() -> chatModel.chat(request)).isEqualTo(error);
+    verify(permit).failure(error);
+  }
+
+  @Test
+  void chat_shouldNotCallDelegateWhenLimitReached() {
+    when(limiter.acquire()).thenThrow(new ServiceUnavailableException("Limit reached"));
+
+    assertThatThrownBy(() -> chatModel.chat(request))
+        .isInstanceOf(ServiceUnavailableException.class);
+    verify(delegate, never()).chat(any(ChatRequest.class), any(ChatRequestOptions.class));
+  }
+}
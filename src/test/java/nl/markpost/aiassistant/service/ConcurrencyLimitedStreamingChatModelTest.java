@@ -0,0 +1,115 @@
+package nl.markpost.aiassistant.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.TimeoutException;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import nl.markpost.aiassistant.service.AdaptiveConcurrencyLimiter.Permit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyLimitedStreamingChatModelTest {
+
+  @Mock private StreamingChatModel delegate;
+
+  @Mock private AdaptiveConcurrencyLimiter limiter;
+
+  @Mock private Permit permit;
+
+  @Mock private StreamingChatResponseHandler handler;
+
+  private ConcurrencyLimitedStreamingChatModel chatModel;
+
+  private final ChatRequest request =
+      ChatRequest.builder().messages(UserMessage.from("Hello")).build();
+
+  @BeforeEach
+  void setUp() {
+    chatModel = new ConcurrencyLimitedStreamingChatModel(delegate, limiter);
+    when(limiter.acquire()).thenReturn(permit);
+  }
+
+  @Test
+  void chat_shouldHoldPermitUntilStreamCompletes() {
+    ChatResponse response = ChatResponse.builder().aiMessage(AiMessage.from("Hi")).build();
+    doAnswer(
+            invocation -> {
+              StreamingChatResponseHandler wrapped = invocation.getArgument(2);
+              wrapped.onPartialResponse("Hi");
+              verify(permit, never()).success();
+              wrapped.onCompleteResponse(response);
+              return null;
+            })
+        .when(delegate)
+        .chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+
+    chatModel.chat(request, handler);
+
+    verify(permit).success();
+    verify(handler).onPartialResponse("Hi");
+    verify(handler).onCompleteResponse(response);
+  }
+
+  @Test
+  void chat_shouldReportStreamErrorToPermit() {
+    TimeoutException error = new TimeoutException("Timed out");
+    doAnswer(
+            invocation -> {
+              invocation.<StreamingChatResponseHandler>getArgument(2).onError(error);
+              return null;
+            })
+        .when(delegate)
+        .chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+
+    chatModel.chat(request, handler);
+
+    verify(permit).failure(error);
+    verify(handler).onError(error);
+  }
+
+  @Test
+  void chat_shouldReleasePermitWhenStreamIsCancelled() {
+    StreamingHandle streamingHandle = mock(StreamingHandle.class);
+    doAnswer(
+            invocation -> {
+              invocation
+                  .<StreamingChatResponseHandler>getArgument(2)
+                  .onPartialResponse(
+                      new PartialResponse("Hi"), new PartialResponseContext(streamingHandle));
+              return null;
+            })
+        .when(delegate)
+        .chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+    doAnswer(
+            invocation -> {
+              invocation.<PartialResponseContext>getArgument(1).streamingHandle().cancel();
+              return null;
+            })
+        .when(handler)
+        .onPartialResponse(any(PartialResponse.class), any());
+
+    chatModel.chat(request, handler);
+
+    verify(permit).cancel();
+    verify(streamingHandle).cancel();
+  }
+}
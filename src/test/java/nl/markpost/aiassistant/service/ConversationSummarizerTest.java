@@ -0,0 +1,189 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import nl.markpost.aiassistant.models.entity.ChatSession;
+import nl.markpost.aiassistant.repository.ChatMessageRepository;
+import nl.markpost.aiassistant.repository.ChatSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationSummarizerTest {
+
+  @Mock private ChatModel chatModel;
+
+  @Mock private ChatSessionRepository chatSessionRepository;
+
+  @Mock private ChatMessageRepository chatMessageRepository;
+
+  @Mock private SessionChatMemoryProvider chatMemoryProvider;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @Mock private TaskExecutor summaryExecutor;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private ConversationSummarizer summarizer;
+
+  private static final String SESSION_ID = "session-123";
+  private static final LocalDateTime SUMMARIZED_UNTIL = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    lenient()
+        .when(transactionTemplate.execute(any()))
+        .thenAnswer(
+            invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    lenient()
+        .doAnswer(
+            invocation -> {
+              invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    summarizer = summarizer(true);
+  }
+
+  @Test
+  void summarize_shouldFoldOlderMessagesIntoExistingSummary() {
+    ChatSession session =
+        ChatSession.builder()
+            .id(SESSION_ID)
+            .summary("The user is planning a trip.")
+            .summarizedUntil(SUMMARIZED_UNTIL)
+            .build();
+    LocalDateTime lastSummarized = SUMMARIZED_UNTIL.plusMinutes(2);
+    when(chatSessionRepository.findById(SESSION_ID)).thenReturn(Optional.of(session));
+    when(chatMessageRepository.countByChatSessionIdAndTimestampAfter(SESSION_ID, SUMMARIZED_UNTIL))
+        .thenReturn(7L);
+    when(chatMessageRepository.findByChatSessionIdAndTimestampAfterOrderByTimestampAsc(
+            SESSION_ID, SUMMARIZED_UNTIL, PageRequest.of(0, 2)))
+        .thenReturn(
+            List.of(
+                message("user", "Where should I go?", SUMMARIZED_UNTIL.plusMinutes(1)),
+                message("assistant", "Lisbon is lovely.", lastSummarized)));
+    when(chatModel.chat(any(ChatMessage[].class)))
+        .thenReturn(ChatResponse.builder().aiMessage(AiMessage.from("New summary")).build());
+
+    summarizer.summarize(SESSION_ID);
+
+    ArgumentCaptor<ChatMessage> prompt = ArgumentCaptor.forClass(ChatMessage.class);
+    verify(chatModel).chat(any(ChatMessage.class), prompt.capture());
+    assertThat(((UserMessage) prompt.getValue()).singleText())
+        .contains("The user is planning a trip.")
+        .contains("user: Where should I go?")
+        .contains("assistant: Lisbon is lovely.");
+    verify(chatSessionRepository).updateSummary(SESSION_ID, "New summary", lastSummarized);
+    verify(chatMemoryProvider).evict(SESSION_ID);
+    assertThat(meterRegistry.get("chat.summaries").tag("outcome", "success").counter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void summarize_shouldSkipSessionsBelowTrigger() {
+    when(chatSessionRepository.findById(SESSION_ID))
+        .thenReturn(Optional.of(ChatSession.builder().id(SESSION_ID).build()));
+    when(chatMessageRepository.countByChatSessionIdAndTimestampAfter(
+            SESSION_ID, ConversationSummarizer.NOT_SUMMARIZED))
+        .thenReturn(5L);
+
+    summarizer.summarize(SESSION_ID);
+
+    verifyNoInteractions(chatModel, chatMemoryProvider);
+    verify(chatSessionRepository, never()).updateSummary(anyString(), anyString(), any());
+  }
+
+  @Test
+  void summarize_shouldCountFailuresWithoutThrowing() {
+    when(chatSessionRepository.findById(SESSION_ID)).thenThrow(new RuntimeException("DB down"));
+
+    summarizer.summarize(SESSION_ID);
+
+    assertThat(meterRegistry.get("chat.summaries").tag("outcome", "failure").counter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void summarizeInBackground_shouldRunOneSummaryPerSessionAtATime() {
+    summarizer.summarizeInBackground(SESSION_ID);
+    summarizer.summarizeInBackground(SESSION_ID);
+
+    verify(summaryExecutor).execute(any());
+  }
+
+  @Test
+  void summarizeInBackground_shouldAllowNewSummaryAfterRejection() {
+    doThrow(new TaskRejectedException("full")).doNothing().when(summaryExecutor).execute(any());
+
+    summarizer.summarizeInBackground(SESSION_ID);
+    summarizer.summarizeInBackground(SESSION_ID);
+
+    verify(summaryExecutor, times(2)).execute(any());
+    assertThat(meterRegistry.get("chat.summaries").tag("outcome", "skipped").counter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void summarizeInBackground_shouldDoNothingWhenDisabled() {
+    summarizer(false).summarizeInBackground(SESSION_ID);
+
+    verifyNoInteractions(summaryExecutor);
+  }
+
+  private ConversationSummarizer summarizer(boolean enabled) {
+    return new ConversationSummarizer(
+        chatModel,
+        chatSessionRepository,
+        chatMessageRepository,
+        chatMemoryProvider,
+        transactionTemplate,
+        summaryExecutor,
+        meterRegistry,
+        enabled,
+        4,
+        5,
+        100);
+  }
+
+  private nl.markpost.aiassistant.models.entity.ChatMessage message(
+      String role, String content, LocalDateTime timestamp) {
+    return nl.markpost.aiassistant.models.entity.ChatMessage.builder()
+        .role(role)
+        .content(content)
+        .timestamp(timestamp)
+        .build();
+  }
+}
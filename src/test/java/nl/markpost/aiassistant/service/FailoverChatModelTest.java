@@ -0,0 +1,156 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import java.util.List;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class FailoverChatModelTest {
+
+  @Mock private ChatModel openAi;
+
+  @Mock private ChatModel local;
+
+  @Mock private ProviderHealth openAiHealth;
+
+  @Mock private ProviderHealth localHealth;
+
+  private FailoverChatModel chatModel;
+
+  private final ChatRequest request =
+      ChatRequest.builder()
+          .messages(UserMessage.from("Hello"))
+          .parameters(ChatRequestParameters.builder().modelName("gpt-5-nano").build())
+          .build();
+  private final ChatResponse response =
+      ChatResponse.builder().aiMessage(AiMessage.from("Hi")).build();
+
+  @BeforeEach
+  void setUp() {
+    lenient()
+        .when(openAi.defaultRequestParameters())
+        .thenReturn(ChatRequestParameters.builder().modelName("gpt-5-nano").build());
+    lenient()
+        .when(local.defaultRequestParameters())
+        .thenReturn(ChatRequestParameters.builder().modelName("llama3.1").build());
+    chatModel =
+        new FailoverChatModel(
+            List.of(
+                new FailoverChatModel.Provider(openAiHealth, openAi),
+                new FailoverChatModel.Provider(localHealth, local)));
+  }
+
+  @Test
+  void chat_shouldUsePrimaryProviderWhileHealthy() {
+    when(openAiHealth.tryAcquire(true)).thenReturn(true);
+    when(openAi.chat(request, ChatRequestOptions.EMPTY)).thenReturn(response);
+
+    assertThat(chatModel.chat(request, ChatRequestOptions.EMPTY)).isEqualTo(response);
+
+    verify(openAiHealth).onSuccess(anyLong());
+    verify(local, never()).chat(any(ChatRequest.class), any(ChatRequestOptions.class));
+    assertThat(chatModel.defaultRequestParameters().modelName()).isEqualTo("gpt-5-nano");
+  }
+
+  @Test
+  void chat_shouldFailOverToNextProviderOnError() {
+    InternalServerException error = new InternalServerException("Server error");
+    when(openAiHealth.tryAcquire(true)).thenReturn(true);
+    when(localHealth.tryAcquire(true)).thenReturn(true);
+    when(openAi.chat(request, ChatRequestOptions.EMPTY)).thenThrow(error);
+    ArgumentCaptor<ChatRequest> localRequest = ArgumentCaptor.forClass(ChatRequest.class);
+    when(local.chat(localRequest.capture(), eq(ChatRequestOptions.EMPTY))).thenReturn(response);
+
+    assertThat(chatModel.chat(request, ChatRequestOptions.EMPTY)).isEqualTo(response);
+
+    verify(openAiHealth).onError(anyLong(), eq(error));
+    verify(openAiHealth).recordFailover(error);
+    verify(localHealth).onSuccess(anyLong());
+    assertThat(localRequest.getValue().modelName()).isEqualTo("llama3.1");
+    assertThat(localRequest.getValue().messages()).isEqualTo(request.messages());
+  }
+
+  @Test
+  void chat_shouldSkipProviderThatIsDown() {
+    when(openAiHealth.tryAcquire(anyBoolean())).thenReturn(false);
+    when(localHealth.tryAcquire(true)).thenReturn(true);
+    when(local.chat(any(ChatRequest.class), eq(ChatRequestOptions.EMPTY))).thenReturn(response);
+
+    assertThat(chatModel.chat(request, ChatRequestOptions.EMPTY)).isEqualTo(response);
+
+    verify(openAi, never()).chat(any(ChatRequest.class), any(ChatRequestOptions.class));
+  }
+
+  @Test
+  void chat_shouldCallRecoveringProviderWhenNoOtherIsLeft() {
+    when(openAiHealth.tryAcquire(true)).thenReturn(false);
+    when(localHealth.tryAcquire(true)).thenReturn(false);
+    when(openAiHealth.tryAcquire(false)).thenReturn(true);
+    when(openAi.chat(request, ChatRequestOptions.EMPTY)).thenReturn(response);
+
+    assertThat(chatModel.chat(request, ChatRequestOptions.EMPTY)).isEqualTo(response);
+  }
+
+  @Test
+  void chat_shouldNotFailOverInvalidRequests() {
+    InvalidRequestException error = new InvalidRequestException("Invalid request");
+    when(openAiHealth.tryAcquire(true)).thenReturn(true);
+    when(openAi.chat(request, ChatRequestOptions.EMPTY)).thenThrow(error);
+
+    assertThatThrownBy(() -> chatModel.chat(request, ChatRequestOptions.EMPTY)).isEqualTo(error);
+
+    verify(local, never()).chat(any(ChatRequest.class), any(ChatRequestOptions.class));
+  }
+
+  @Test
+  void chat_shouldThrowLastFailureWhenEveryProviderFails() {
+    InternalServerException error = new InternalServerException("Server error");
+    when(openAiHealth.tryAcquire(true)).thenReturn(true);
+    when(localHealth.tryAcquire(true)).thenReturn(true);
+    when(openAi.chat(request, ChatRequestOptions.EMPTY)).thenThrow(error);
+    when(local.chat(any(ChatRequest.class), eq(ChatRequestOptions.EMPTY))).thenThrow(error);
+
+    assertThatThrownBy(() -> chatModel.chat(request, ChatRequestOptions.EMPTY)).isEqualTo(error);
+
+    verify(openAiHealth).recordFailover(error);
+    verify(localHealth).recordExhausted(error);
+    verify(localHealth, never()).recordFailover(any());
+  }
+
+  @Test
+  void chat_shouldBeUnavailableWhenEveryProviderIsDown() {
+    when(openAiHealth.tryAcquire(anyBoolean())).thenReturn(false);
+    when(localHealth.tryAcquire(anyBoolean())).thenReturn(false);
+
+    assertThatThrownBy(() -> chatModel.chat(request, ChatRequestOptions.EMPTY))
+        .isInstanceOf(ServiceUnavailableException.class);
+
+    verify(openAiHealth).recordExhausted(any(ServiceUnavailableException.class));
+    verify(openAiHealth, never()).recordFailover(any());
+  }
+}
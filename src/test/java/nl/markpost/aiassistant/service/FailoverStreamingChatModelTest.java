@@ -0,0 +1,142 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import java.util.List;
+import java.util.function.Consumer;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class FailoverStreamingChatModelTest {
+
+  @Mock private StreamingChatModel openAi;
+
+  @Mock private StreamingChatModel local;
+
+  @Mock private ProviderHealth openAiHealth;
+
+  @Mock private ProviderHealth localHealth;
+
+  @Mock private StreamingChatResponseHandler handler;
+
+  private FailoverStreamingChatModel chatModel;
+
+  private final ChatRequest request =
+      ChatRequest.builder().messages(UserMessage.from("Hello")).build();
+  private final ChatResponse response =
+      ChatResponse.builder().aiMessage(AiMessage.from("Hi")).build();
+  private final InternalServerException error = new InternalServerException("Server error");
+
+  @BeforeEach
+  void setUp() {
+    lenient()
+        .when(openAi.defaultRequestParameters())
+        .thenReturn(ChatRequestParameters.builder().modelName("gpt-5-nano").build());
+    lenient()
+        .when(local.defaultRequestParameters())
+        .thenReturn(ChatRequestParameters.builder().modelName("llama3.1").build());
+    chatModel =
+        new FailoverStreamingChatModel(
+            List.of(
+                new FailoverStreamingChatModel.Provider(openAiHealth, openAi),
+                new FailoverStreamingChatModel.Provider(localHealth, local)));
+    when(openAiHealth.tryAcquire(true)).thenReturn(true);
+  }
+
+  @Test
+  void chat_shouldFailOverStreamFailingBeforeFirstToken() {
+    when(localHealth.tryAcquire(true)).thenReturn(true);
+    stream(openAi, handler -> handler.onError(error));
+    stream(
+        local,
+        handler -> {
+          handler.onPartialResponse("Hi");
+          handler.onCompleteResponse(response);
+        });
+
+    chatModel.chat(request, ChatRequestOptions.EMPTY, handler);
+
+    verify(openAiHealth).onError(anyLong(), eq(error));
+    verify(localHealth).onSuccess(anyLong());
+    verify(handler).onPartialResponse("Hi");
+    verify(handler).onCompleteResponse(response);
+    verify(handler, never()).onError(any());
+  }
+
+  @Test
+  void chat_shouldNotFailOverStreamThatHasStarted() {
+    stream(
+        openAi,
+        handler -> {
+          handler.onPartialResponse("Hi");
+          handler.onError(error);
+        });
+
+    chatModel.chat(request, ChatRequestOptions.EMPTY, handler);
+
+    verify(openAiHealth).onSuccess(anyLong());
+    verify(handler).onPartialResponse("Hi");
+    verify(handler).onError(error);
+    verify(local, never()).chat(any(ChatRequest.class), any(ChatRequestOptions.class), any());
+  }
+
+  @Test
+  void chat_shouldReportLastFailureWhenEveryProviderFails() {
+    when(localHealth.tryAcquire(true)).thenReturn(true);
+    stream(openAi, handler -> handler.onError(error));
+    stream(local, handler -> handler.onError(error));
+
+    chatModel.chat(request, ChatRequestOptions.EMPTY, handler);
+
+    verify(handler).onError(error);
+    verify(openAiHealth).recordFailover(error);
+    verify(localHealth).recordExhausted(error);
+  }
+
+  @Test
+  void chat_shouldBeUnavailableWhenEveryProviderIsDown() {
+    when(openAiHealth.tryAcquire(true)).thenReturn(false);
+    when(openAiHealth.tryAcquire(false)).thenReturn(false);
+    when(localHealth.tryAcquire(anyBoolean())).thenReturn(false);
+
+    assertThatThrownBy(() -> chatModel.chat(request, ChatRequestOptions.EMPTY, handler))
+        .isInstanceOf(ServiceUnavailableException.class);
+
+    verify(openAiHealth).recordExhausted(any(ServiceUnavailableException.class));
+    verify(handler, never()).onError(any());
+  }
+
+  private static void stream(
+      StreamingChatModel model, Consumer<StreamingChatResponseHandler> events) {
+    doAnswer(
+            invocation -> {
+              events.accept(invocation.getArgument(2));
+              return null;
+            })
+        .when(model)
+        .chat(any(ChatRequest.class), eq(ChatRequestOptions.EMPTY), any());
+  }
+}
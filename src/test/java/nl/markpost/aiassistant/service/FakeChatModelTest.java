@@ -0,0 +1,89 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.FinishReason;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import nl.markpost.aiassistant.config.FakeModelProperties;
+import org.junit.jupiter.api.Test;
+
+class FakeChatModelTest {
+
+  private final ChatRequest request =
+      ChatRequest.builder().messages(UserMessage.from("Hello there")).build();
+
+  @Test
+  void chat_shouldAnswerDeterministicallyWithConfiguredTokens() {
+    FakeChatModel chatModel = chatModel(properties(Duration.ofMillis(1), 5, 0, 0));
+
+    ChatResponse first = chatModel.chat(request);
+    ChatResponse second = chatModel.chat(request);
+
+    assertThat(first.aiMessage().text()).isEqualTo(second.aiMessage().text());
+    assertThat(first.aiMessage().text().split(" ")).hasSize(5);
+    assertThat(first.tokenUsage().outputTokenCount()).isEqualTo(5);
+    assertThat(first.modelName()).isEqualTo("fake-model");
+    assertThat(first.finishReason()).isEqualTo(FinishReason.STOP);
+    assertThat(chatModel.defaultRequestParameters().modelName()).isEqualTo("fake-model");
+  }
+
+  @Test
+  void chat_shouldTakeAtLeastTheFirstTokenLatency() {
+    FakeChatModel chatModel = chatModel(properties(Duration.ofMillis(50), 1, 0, 0));
+
+    long start = System.nanoTime();
+    chatModel.chat(request);
+
+    assertThat(Duration.ofNanos(System.nanoTime() - start))
+        .isGreaterThanOrEqualTo(Duration.ofMillis(50));
+  }
+
+  @Test
+  void chat_shouldInjectRateLimits() {
+    FakeChatModel chatModel = chatModel(properties(Duration.ofMillis(1), 1, 1.0, 0));
+
+    assertThatThrownBy(() -> chatModel.chat(request)).isInstanceOf(RateLimitException.class);
+  }
+
+  @Test
+  void chat_shouldInjectServerErrors() {
+    FakeChatModel chatModel = chatModel(properties(Duration.ofMillis(1), 1, 0, 1.0));
+
+    assertThatThrownBy(() -> chatModel.chat(request)).isInstanceOf(InternalServerException.class);
+  }
+
+  @Test
+  void firstTokenLatency_shouldFollowConfiguredPercentiles() {
+    FakeLanguageModel languageModel =
+        new FakeLanguageModel(
+            new FakeModelProperties(
+                Duration.ofMillis(100), Duration.ofMillis(1000), 50, 1, 0, 0, 42));
+
+    long[] latencies = new long[10_000];
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = languageModel.firstTokenLatency().toMillis();
+    }
+    Arrays.sort(latencies);
+
+    assertThat(latencies[latencies.length / 2]).isBetween(90L, 110L);
+    assertThat(latencies[(int) (latencies.length * 0.99)]).isBetween(800L, 1250L);
+  }
+
+  private static FakeModelProperties properties(
+      Duration latency, int responseTokens, double rateLimitRate, double errorRate) {
+    return new FakeModelProperties(
+        latency, latency, 0, responseTokens, rateLimitRate, errorRate, 42);
+  }
+
+  private static FakeChatModel chatModel(FakeModelProperties properties) {
+    return new FakeChatModel("fake-model", new FakeLanguageModel(properties), List.of());
+  }
+}
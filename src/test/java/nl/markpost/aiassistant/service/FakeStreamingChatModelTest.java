@@ -0,0 +1,87 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import java.time.Duration;
+import java.util.List;
+import nl.markpost.aiassistant.config.FakeModelProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class FakeStreamingChatModelTest {
+
+  @Mock private StreamingChatResponseHandler handler;
+
+  private final ChatRequest request =
+      ChatRequest.builder().messages(UserMessage.from("Hello there")).build();
+
+  @Test
+  void chat_shouldStreamTokensAndCompleteWithFullResponse() {
+    FakeStreamingChatModel chatModel = chatModel(0);
+
+    chatModel.chat(request, handler);
+
+    ArgumentCaptor<ChatResponse> response = ArgumentCaptor.forClass(ChatResponse.class);
+    verify(handler, timeout(5000)).onCompleteResponse(response.capture());
+    verify(handler, times(4)).onPartialResponse(any(PartialResponse.class), any());
+    assertThat(response.getValue().aiMessage().text().split(" ")).hasSize(4);
+    assertThat(response.getValue().modelName()).isEqualTo("fake-model");
+    assertThat(response.getValue().tokenUsage().outputTokenCount()).isEqualTo(4);
+  }
+
+  @Test
+  void chat_shouldReportInjectedFailuresToHandler() {
+    FakeStreamingChatModel chatModel = chatModel(1.0);
+
+    chatModel.chat(request, handler);
+
+    verify(handler, timeout(5000)).onError(any(RateLimitException.class));
+    verify(handler, never()).onPartialResponse(any(PartialResponse.class), any());
+    verify(handler, never()).onCompleteResponse(any());
+  }
+
+  @Test
+  void chat_shouldStopStreamingWhenCancelled() {
+    FakeStreamingChatModel chatModel = chatModel(0);
+    doAnswer(
+            invocation -> {
+              invocation.<PartialResponseContext>getArgument(1).streamingHandle().cancel();
+              return null;
+            })
+        .when(handler)
+        .onPartialResponse(any(PartialResponse.class), any());
+
+    chatModel.chat(request, handler);
+
+    verify(handler, timeout(5000)).onPartialResponse(any(PartialResponse.class), any());
+    verify(handler, after(200).never()).onCompleteResponse(any());
+    verify(handler, times(1)).onPartialResponse(any(PartialResponse.class), any());
+  }
+
+  private static FakeStreamingChatModel chatModel(double rateLimitRate) {
+    Duration latency = Duration.ofMillis(1);
+    return new FakeStreamingChatModel(
+        "fake-model",
+        new FakeLanguageModel(
+            new FakeModelProperties(latency, latency, 1000, 4, rateLimitRate, 0, 42)),
+        List.of());
+  }
+}
@@ -0,0 +1,94 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import nl.markpost.aiassistant.config.FakeModelProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class FirstTokenTrackingStreamingChatModelTest {
+
+  @Mock private StreamingChatResponseHandler handler;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final ChatRequest request =
+      ChatRequest.builder().messages(UserMessage.from("Hello there")).build();
+
+  @Test
+  void chat_shouldRecordTimeToFirstTokenOfStream() {
+    FirstTokenTrackingStreamingChatModel chatModel =
+        new FirstTokenTrackingStreamingChatModel(fakeModel(Duration.ofMillis(50)));
+
+    chatModel.chat(request, handler);
+
+    verify(handler, timeout(5000)).onCompleteResponse(any());
+    Timer timeToFirstToken =
+        meterRegistry
+            .get(LanguageModelMetrics.TIME_TO_FIRST_TOKEN_METRIC)
+            .tags("model", "fake-model", "endpoint", "streaming")
+            .timer();
+    Timer latency =
+        meterRegistry
+            .get(LanguageModelMetrics.LATENCY_METRIC)
+            .tags("model", "fake-model", "endpoint", "streaming", "outcome", "success")
+            .timer();
+    assertThat(timeToFirstToken.count()).isEqualTo(1);
+    assertThat(timeToFirstToken.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(50);
+    assertThat(timeToFirstToken.totalTime(TimeUnit.NANOSECONDS))
+        .isLessThanOrEqualTo(latency.totalTime(TimeUnit.NANOSECONDS));
+  }
+
+  @Test
+  void chat_shouldKeepListenerAttributesOfCaller() {
+    List<Object> callerAttributes = new ArrayList<>();
+    ChatModelListener listener =
+        new ChatModelListener() {
+          @Override
+          public void onRequest(ChatModelRequestContext requestContext) {
+            callerAttributes.add(requestContext.attributes().get("caller"));
+          }
+        };
+    FirstTokenTrackingStreamingChatModel chatModel =
+        new FirstTokenTrackingStreamingChatModel(
+            fakeModel(Duration.ofMillis(1), List.of(listener)));
+
+    chatModel.chat(
+        request,
+        ChatRequestOptions.builder().addListenerAttribute("caller", "value").build(),
+        handler);
+
+    verify(handler, timeout(5000)).onCompleteResponse(any());
+    assertThat(callerAttributes).containsExactly("value");
+  }
+
+  private FakeStreamingChatModel fakeModel(Duration latency) {
+    return fakeModel(latency, List.of(new LanguageModelMetrics(meterRegistry)));
+  }
+
+  private static FakeStreamingChatModel fakeModel(
+      Duration latency, List<ChatModelListener> listeners) {
+    return new FakeStreamingChatModel(
+        "fake-model",
+        new FakeLanguageModel(new FakeModelProperties(latency, latency, 1000, 4, 0, 0, 42)),
+        listeners);
+  }
+}
@@ -0,0 +1,194 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import nl.markpost.aiassistant.exception.GenerationCancelledException;
+import nl.markpost.aiassistant.service.GenerationRegistry.Generation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class GenerationRegistryTest {
+
+  private static final String SESSION_ID = "session-123";
+  private static final String USER_ID = "user-123";
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final GenerationRegistry registry = new GenerationRegistry(meterRegistry);
+
+  @AfterEach
+  void clearInterrupt() {
+    Thread.interrupted();
+  }
+
+  @Test
+  void cancel_shouldRunHooksInReverseOrderAndRecordReason() {
+    List<String> calls = new ArrayList<>();
+    Generation generation = registry.start(SESSION_ID, USER_ID);
+    generation.onCancel(() -> calls.add("finish"));
+    generation.onCancel(() -> calls.add("stop model"));
+
+    assertThat(registry.cancel(SESSION_ID, USER_ID, true)).isTrue();
+
+    assertThat(calls).containsExactly("stop model", "finish");
+    assertThat(generation.isCancelled()).isTrue();
+    assertThat(generation.isPersistPartial()).isTrue();
+    assertThat(
+            meterRegistry.counter(GenerationRegistry.CANCELLED_METRIC, "reason", "stopped").count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void cancel_shouldOnlyStopGenerationsOfTheSessionAndUser() {
+    Generation generation = registry.start(SESSION_ID, USER_ID);
+    Generation otherUser = registry.start(SESSION_ID, "other-user");
+
+    assertThat(registry.cancel("other-session", USER_ID, false)).isFalse();
+    assertThat(registry.cancel(SESSION_ID, USER_ID, false)).isTrue();
+
+    assertThat(generation.isCancelled()).isTrue();
+    assertThat(otherUser.isCancelled()).isFalse();
+  }
+
+  @Test
+  void cancel_shouldNotFindClosedGeneration() {
+    Generation generation = registry.start(SESSION_ID, USER_ID);
+    generation.close();
+
+    assertThat(registry.cancel(SESSION_ID, USER_ID, false)).isFalse();
+  }
+
+  @Test
+  void cancel_shouldHaveNoEffectOnceCompleted() {
+    List<String> calls = new ArrayList<>();
+    Generation generation = registry.start(SESSION_ID, USER_ID);
+    generation.onCancel(() -> calls.add("stop"));
+
+    assertThat(generation.complete()).isTrue();
+
+    assertThat(registry.cancel(SESSION_ID, USER_ID, false)).isFalse();
+    assertThat(calls).isEmpty();
+  }
+
+  @Test
+  void cancel_shouldRunHooksOutsideLockOfGeneration() throws Exception {
+    Generation generation = registry.start(SESSION_ID, USER_ID);
+    generation.append("Hello");
+    CompletableFuture<String> partialSeenByOtherThread = new CompletableFuture<>();
+    generation.onCancel(
+        () -> {
+          Thread reader =
+              Thread.ofVirtual()
+                  .start(() -> partialSeenByOtherThread.complete(generation.getPartial()));
+          try {
+            reader.join(Duration.ofSeconds(5));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+
+    generation.cancel(GenerationRegistry.REASON_STOPPED, true);
+
+    assertThat(partialSeenByOtherThread.getNow(null)).isEqualTo("Hello");
+  }
+
+  @Test
+  void onCancel_shouldRunHookRightAwayWhenAlreadyCancelled() {
+    List<String> calls = new ArrayList<>();
+    Generation generation = registry.start(SESSION_ID, USER_ID);
+    generation.disconnect();
+
+    generation.onCancel(() -> calls.add("stop"));
+
+    assertThat(calls).containsExactly("stop");
+  }
+
+  @Test
+  void append_shouldCollectPartialResponseUntilCancelled() {
+    Generation generation = registry.start(SESSION_ID, USER_ID);
+
+    assertThat(generation.append("Hello")).isTrue();
+    assertThat(generation.append(" world")).isTrue();
+    generation.cancel(GenerationRegistry.REASON_STOPPED, true);
+
+    assertThat(generation.append("!")).isFalse();
+    assertThat(generation.getPartial()).isEqualTo("Hello world");
+  }
+
+  @Test
+  void run_shouldReturnResultOfWork() {
+    try (Generation generation = registry.start(SESSION_ID, USER_ID)) {
+      assertThat(generation.run(() -> "response")).isEqualTo("response");
+    }
+  }
+
+  @Test
+  void run_shouldInterruptWorkWhenCancelledAndClearInterrupt() {
+    try (Generation generation = registry.start(SESSION_ID, USER_ID)) {
+      assertThatThrownBy(
+              () ->
+                  generation.run(
+                      () -> {
+                        registry.cancel(SESSION_ID, USER_ID, false);
+                        assertThat(Thread.currentThread().isInterrupted()).isTrue();
+                        return "response";
+                      }))
+          .isInstanceOf(GenerationCancelledException.class);
+    }
+
+    assertThat(Thread.currentThread().isInterrupted()).isFalse();
+  }
+
+  @Test
+  void run_shouldNotStartWorkWhenAlreadyCancelled() {
+    List<String> calls = new ArrayList<>();
+    try (Generation generation = registry.start(SESSION_ID, USER_ID)) {
+      registry.cancel(SESSION_ID, USER_ID, false);
+
+      assertThatThrownBy(() -> generation.run(() -> calls.add("work")))
+          .isInstanceOf(GenerationCancelledException.class);
+    }
+
+    assertThat(calls).isEmpty();
+    assertThat(Thread.currentThread().isInterrupted()).isFalse();
+  }
+
+  @Test
+  void run_shouldTreatInterruptedWorkAsDisconnect() {
+    try (Generation generation = registry.start(SESSION_ID, USER_ID)) {
+      assertThatThrownBy(
+              () ->
+                  generation.run(
+                      () -> {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted");
+                      }))
+          .isInstanceOf(GenerationCancelledException.class);
+    }
+
+    assertThat(
+            meterRegistry
+                .counter(GenerationRegistry.CANCELLED_METRIC, "reason", "disconnected")
+                .count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void run_shouldRethrowFailureOfWork() {
+    try (Generation generation = registry.start(SESSION_ID, USER_ID)) {
+      assertThatThrownBy(
+              () ->
+                  generation.run(
+                      () -> {
+                        throw new IllegalStateException("boom");
+                      }))
+          .isInstanceOf(IllegalStateException.class)
+          .hasMessage("boom");
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import nl.markpost.aiassistant.config.HedgingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class HedgingChatModelTest {
+
+  @Mock private ChatModel delegate;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  private final ChatRequest request =
+      ChatRequest.builder().messages(UserMessage.from("Hello")).build();
+  private final ChatResponse slowResponse =
+      ChatResponse.builder().aiMessage(AiMessage.from("Slow")).build();
+  private final ChatResponse fastResponse =
+      ChatResponse.builder().aiMessage(AiMessage.from("Fast")).build();
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void chat_shouldCallDelegateDirectlyUntilLatenciesAreKnown() {
+    HedgingPolicy policy = policy(1.0, 1);
+    when(delegate.chat(request, ChatRequestOptions.EMPTY)).thenReturn(fastResponse);
+
+    ChatResponse response =
+        new HedgingChatModel(delegate, policy, executor).chat(request, ChatRequestOptions.EMPTY);
+
+    assertThat(response).isEqualTo(fastResponse);
+    assertThat(policy.hedgeDelay()).isPresent();
+  }
+
+  @Test
+  void chat_shouldNotHedgeFastCalls() {
+    HedgingChatModel chatModel = new HedgingChatModel(delegate, warmPolicy(1.0), executor);
+    when(delegate.chat(request, ChatRequestOptions.EMPTY)).thenReturn(fastResponse);
+
+    assertThat(chatModel.chat(request, ChatRequestOptions.EMPTY)).isEqualTo(fastResponse);
+
+    verify(delegate, times(1)).chat(request, ChatRequestOptions.EMPTY);
+    assertThat(count("chat.hedge.calls", "outcome", "not_hedged")).isEqualTo(1);
+  }
+
+  @Test
+  void chat_shouldAnswerWithHedgeAndCancelSlowAttempt() {
+    HedgingChatModel chatModel = new HedgingChatModel(delegate, warmPolicy(1.0), executor);
+    CountDownLatch cancelled = new CountDownLatch(1);
+    when(delegate.chat(eq(request), any(ChatRequestOptions.class)))
+        .thenAnswer(
+            invocation -> {
+              try {
+                Thread.sleep(Duration.ofSeconds(10));
+              } catch (InterruptedException e) {
+                cancelled.countDown();
+                throw e;
+              }
+              return slowResponse;
+            })
+        .thenReturn(fastResponse);
+
+    long start = System.nanoTime();
+    ChatResponse response = chatModel.chat(request, ChatRequestOptions.EMPTY);
+
+    assertThat(response).isEqualTo(fastResponse);
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    assertThat(count("chat.hedge.calls", "outcome", "hedged")).isEqualTo(1);
+    assertThat(count("chat.hedge.wins", "winner", "hedge")).isEqualTo(1);
+    assertThat(awaitQuietly(cancelled)).isTrue();
+  }
+
+  @Test
+  void chat_shouldWaitForSlowAttemptWhenBudgetIsExhausted() {
+    HedgingChatModel chatModel = new HedgingChatModel(delegate, warmPolicy(0), executor);
+    when(delegate.chat(request, ChatRequestOptions.EMPTY))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(Duration.ofMillis(100));
+              return slowResponse;
+            });
+
+    assertThat(chatModel.chat(request, ChatRequestOptions.EMPTY)).isEqualTo(slowResponse);
+
+    verify(delegate, times(1)).chat(request, ChatRequestOptions.EMPTY);
+    assertThat(count("chat.hedge.calls", "outcome", "budget_exhausted")).isEqualTo(1);
+  }
+
+  @Test
+  void chat_shouldAnswerWithHedgeWhenSlowAttemptFails() {
+    HedgingChatModel chatModel = new HedgingChatModel(delegate, warmPolicy(1.0), executor);
+    when(delegate.chat(request, ChatRequestOptions.EMPTY))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(Duration.ofMillis(50));
+              throw new InternalServerException("Server error");
+            })
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(Duration.ofMillis(100));
+              return fastResponse;
+            });
+
+    assertThat(chatModel.chat(request, ChatRequestOptions.EMPTY)).isEqualTo(fastResponse);
+  }
+
+  @Test
+  void chat_shouldFailWhenEveryAttemptFails() {
+    HedgingChatModel chatModel = new HedgingChatModel(delegate, warmPolicy(1.0), executor);
+    when(delegate.chat(request, ChatRequestOptions.EMPTY))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(Duration.ofMillis(50));
+              throw new InternalServerException("Server error");
+            });
+
+    assertThatThrownBy(() -> chatModel.chat(request, ChatRequestOptions.EMPTY))
+        .isInstanceOf(InternalServerException.class);
+    verify(delegate, times(2)).chat(request, ChatRequestOptions.EMPTY);
+  }
+
+  /** Creates a policy hedging calls after 20 milliseconds. */
+  private HedgingPolicy warmPolicy(double maxExtraLoad) {
+    HedgingPolicy policy = policy(maxExtraLoad, 1);
+    policy.recordLatency(Duration.ofMillis(20));
+    return policy;
+  }
+
+  private HedgingPolicy policy(double maxExtraLoad, int minSamples) {
+    return new HedgingPolicy(
+        "gpt-5-nano",
+        "blocking",
+        new HedgingProperties(true, 0.95, Duration.ZERO, maxExtraLoad, 100, minSamples),
+        meterRegistry);
+  }
+
+  private double count(String name, String tag, String value) {
+    return meterRegistry.get(name).tag(tag, value).counter().count();
+  }
+
+  private static boolean awaitQuietly(CountDownLatch latch) {
+    try {
+      return latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import nl.markpost.aiassistant.config.HedgingProperties;
+import org.junit.jupiter.api.Test;
+
+class HedgingPolicyTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void hedgeDelay_shouldBeEmptyUntilEnoughLatenciesAreKnown() {
+    HedgingPolicy policy = policy(0.1, Duration.ZERO, 3);
+    policy.recordLatency(Duration.ofMillis(100));
+    policy.recordLatency(Duration.ofMillis(100));
+
+    assertThat(policy.hedgeDelay()).isEmpty();
+
+    policy.recordLatency(Duration.ofMillis(100));
+    assertThat(policy.hedgeDelay()).contains(Duration.ofMillis(100));
+  }
+
+  @Test
+  void hedgeDelay_shouldFollowPercentileOfRecentLatencies() {
+    HedgingPolicy policy = policy(0.1, Duration.ZERO, 1);
+    for (int i = 1; i <= 100; i++) {
+      policy.recordLatency(Duration.ofMillis(i));
+    }
+
+    assertThat(policy.hedgeDelay()).contains(Duration.ofMillis(95));
+
+    // The window holds 100 latencies, so slower calls replace the oldest ones
+    for (int i = 0; i < 100; i++) {
+      policy.recordLatency(Duration.ofSeconds(1));
+    }
+    assertThat(policy.hedgeDelay()).contains(Duration.ofSeconds(1));
+  }
+
+  @Test
+  void hedgeDelay_shouldNotBeShorterThanMinimumDelay() {
+    HedgingPolicy policy = policy(0.1, Duration.ofMillis(250), 1);
+    policy.recordLatency(Duration.ofMillis(10));
+
+    assertThat(policy.hedgeDelay()).contains(Duration.ofMillis(250));
+  }
+
+  @Test
+  void tryAcquireHedge_shouldLimitHedgesToExtraLoad() {
+    HedgingPolicy policy = policy(0.1, Duration.ZERO, 1);
+
+    int hedges = 0;
+    for (int i = 0; i < 100; i++) {
+      policy.hedgeDelay();
+      if (policy.tryAcquireHedge()) {
+        hedges++;
+      }
+    }
+
+    assertThat(hedges).isBetween(9, 10);
+  }
+
+  @Test
+  void recordOutcome_shouldCountHedgesAndWinners() {
+    HedgingPolicy policy = policy(0.1, Duration.ZERO, 1);
+
+    policy.recordOutcome(false, false);
+    policy.recordOutcome(true, false);
+    policy.recordWinner(true);
+    policy.recordOutcome(false, true);
+
+    assertThat(meterRegistry.get("chat.hedge.calls").tag("outcome", "not_hedged").counter().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("chat.hedge.calls").tag("outcome", "hedged").counter().count())
+        .isEqualTo(1);
+    assertThat(
+            meterRegistry
+                .get("chat.hedge.calls")
+                .tag("outcome", "budget_exhausted")
+                .counter()
+                .count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("chat.hedge.wins").tag("winner", "hedge").counter().count())
+        .isEqualTo(1);
+  }
+
+  private HedgingPolicy policy(double maxExtraLoad, Duration minDelay, int minSamples) {
+    return new HedgingPolicy(
+        "gpt-5-nano",
+        "blocking",
+        new HedgingProperties(true, 0.95, minDelay, maxExtraLoad, 100, minSamples),
+        meterRegistry);
+  }
+}
@@ -0,0 +1,145 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import nl.markpost.aiassistant.config.HedgingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class HedgingStreamingChatModelTest {
+
+  @Mock private StreamingChatModel delegate;
+
+  @Mock private StreamingChatResponseHandler handler;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final List<StreamingChatResponseHandler> attempts = new CopyOnWriteArrayList<>();
+
+  private final ChatRequest request =
+      ChatRequest.builder().messages(UserMessage.from("Hello")).build();
+  private final ChatResponse response =
+      ChatResponse.builder().aiMessage(AiMessage.from("Hi")).build();
+
+  private HedgingStreamingChatModel chatModel;
+
+  @BeforeEach
+  void setUp() {
+    HedgingPolicy policy =
+        new HedgingPolicy(
+            "gpt-5-nano",
+            "streaming",
+            new HedgingProperties(true, 0.95, Duration.ZERO, 1.0, 100, 1),
+            meterRegistry);
+    policy.recordLatency(Duration.ofMillis(50));
+    chatModel = new HedgingStreamingChatModel(delegate, policy, executor);
+    doAnswer(
+            invocation -> {
+              attempts.add(invocation.getArgument(2));
+              return null;
+            })
+        .when(delegate)
+        .chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void chat_shouldNotHedgeStreamProducingTokensInTime() {
+    chatModel.chat(request, ChatRequestOptions.EMPTY, handler);
+    attempts.getFirst().onPartialResponse("Hi");
+    attempts.getFirst().onCompleteResponse(response);
+
+    verify(delegate, after(200).times(1)).chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+    verify(handler).onPartialResponse("Hi");
+    verify(handler).onCompleteResponse(response);
+    assertThat(count("chat.hedge.calls", "outcome", "not_hedged")).isEqualTo(1);
+  }
+
+  @Test
+  void chat_shouldForwardHedgeAndCancelSlowStream() {
+    StreamingHandle primaryHandle = mock(StreamingHandle.class);
+    StreamingHandle hedgeHandle = mock(StreamingHandle.class);
+
+    chatModel.chat(request, ChatRequestOptions.EMPTY, handler);
+    verify(delegate, timeout(2000).times(2)).chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+    StreamingChatResponseHandler primary = attempts.get(0);
+    StreamingChatResponseHandler hedge = attempts.get(1);
+    PartialResponseContext hedgeContext = new PartialResponseContext(hedgeHandle);
+    hedge.onPartialResponse(new PartialResponse("Hi"), hedgeContext);
+    primary.onPartialResponse(
+        new PartialResponse("Hello"), new PartialResponseContext(primaryHandle));
+    hedge.onCompleteResponse(response);
+    primary.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("Hello")).build());
+
+    verify(handler).onPartialResponse(new PartialResponse("Hi"), hedgeContext);
+    verify(handler, times(1)).onPartialResponse(any(PartialResponse.class), any());
+    verify(handler, times(1)).onCompleteResponse(any());
+    verify(handler).onCompleteResponse(response);
+    verify(primaryHandle).cancel();
+    verify(hedgeHandle, never()).cancel();
+    assertThat(count("chat.hedge.calls", "outcome", "hedged")).isEqualTo(1);
+    assertThat(count("chat.hedge.wins", "winner", "hedge")).isEqualTo(1);
+  }
+
+  @Test
+  void chat_shouldIgnoreFailureWhileAnotherStreamIsRunning() {
+    chatModel.chat(request, ChatRequestOptions.EMPTY, handler);
+    verify(delegate, timeout(2000).times(2)).chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+    attempts.get(0).onError(new InternalServerException("Server error"));
+    attempts.get(1).onPartialResponse("Hi");
+    attempts.get(1).onCompleteResponse(response);
+
+    verify(handler, never()).onError(any());
+    verify(handler).onCompleteResponse(response);
+  }
+
+  @Test
+  void chat_shouldForwardFailureWhenNoOtherStreamIsLeft() {
+    InternalServerException error = new InternalServerException("Server error");
+
+    chatModel.chat(request, ChatRequestOptions.EMPTY, handler);
+    attempts.getFirst().onError(error);
+
+    verify(handler).onError(error);
+    verify(delegate, after(200).times(1)).chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+  }
+
+  private double count(String name, String tag, String value) {
+    return meterRegistry.get(name).tag(tag, value).counter().count();
+  }
+}
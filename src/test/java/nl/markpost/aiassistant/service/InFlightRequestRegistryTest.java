@@ -0,0 +1,133 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import nl.markpost.aiassistant.exception.BadRequestException;
+import nl.markpost.aiassistant.exception.UnprocessableEntityException;
+import nl.markpost.aiassistant.models.MessageDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class InFlightRequestRegistryTest {
+
+  private static final String KEY = "user-123:session-123:key-123";
+  private static final String HASH = "hash-123";
+
+  private SimpleMeterRegistry meterRegistry;
+  private InFlightRequestRegistry registry;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    registry = new InFlightRequestRegistry(meterRegistry);
+  }
+
+  @Test
+  void execute_shouldCoalesceConcurrentRequestsWithSameKey() throws Exception {
+    MessageDTO response = MessageDTO.builder().id("assistant-msg-1").build();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger executions = new AtomicInteger();
+
+    CompletableFuture<MessageDTO> first =
+        CompletableFuture.supplyAsync(
+            () ->
+                registry.execute(
+                    KEY,
+                    HASH,
+                    () -> {
+                      executions.incrementAndGet();
+                      started.countDown();
+                      await(release);
+                      return response;
+                    }));
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+    CompletableFuture<MessageDTO> duplicate =
+        CompletableFuture.supplyAsync(
+            () ->
+                registry.execute(
+                    KEY,
+                    HASH,
+                    () -> {
+                      executions.incrementAndGet();
+                      return MessageDTO.builder().build();
+                    }));
+    while (meterRegistry.get("chat.idempotency.requests").counter().count() < 1) {
+      Thread.onSpinWait();
+    }
+    release.countDown();
+
+    assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(response);
+    assertThat(duplicate.get(5, TimeUnit.SECONDS)).isSameAs(response);
+    assertThat(executions).hasValue(1);
+  }
+
+  @Test
+  void execute_shouldRunAgainOnceEarlierRequestCompleted() {
+    AtomicInteger executions = new AtomicInteger();
+
+    registry.execute(
+        KEY, HASH, () -> MessageDTO.builder().id("" + executions.incrementAndGet()).build());
+    MessageDTO second =
+        registry.execute(
+            KEY, HASH, () -> MessageDTO.builder().id("" + executions.incrementAndGet()).build());
+
+    assertThat(second.getId()).isEqualTo("2");
+  }
+
+  @Test
+  void execute_shouldPropagateFailureAndReleaseKey() {
+    assertThatThrownBy(
+            () ->
+                registry.execute(
+                    KEY,
+                    HASH,
+                    () -> {
+                      throw new BadRequestException("Session not found");
+                    }))
+        .isInstanceOf(BadRequestException.class);
+
+    MessageDTO response = MessageDTO.builder().id("assistant-msg-1").build();
+    assertThat(registry.execute(KEY, HASH, () -> response)).isSameAs(response);
+  }
+
+  @Test
+  void execute_shouldRejectDifferentRequestWithKeyInFlight() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<MessageDTO> first =
+        CompletableFuture.supplyAsync(
+            () ->
+                registry.execute(
+                    KEY,
+                    HASH,
+                    () -> {
+                      started.countDown();
+                      await(release);
+                      return MessageDTO.builder().build();
+                    }));
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+    assertThatThrownBy(
+            () -> registry.execute(KEY, "other-hash", () -> MessageDTO.builder().build()))
+        .isInstanceOf(UnprocessableEntityException.class);
+
+    release.countDown();
+    first.get(5, TimeUnit.SECONDS);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
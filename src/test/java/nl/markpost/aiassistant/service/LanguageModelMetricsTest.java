@@ -0,0 +1,159 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.ContentFilteredException;
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.exception.TimeoutException;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class LanguageModelMetricsTest {
+
+  private final AtomicLong clock = new AtomicLong(1_000);
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final LanguageModelMetrics metrics =
+      new LanguageModelMetrics(meterRegistry) {
+        @Override
+        long nanoTime() {
+          return clock.get();
+        }
+      };
+
+  private final ChatRequest request =
+      ChatRequest.builder().messages(UserMessage.from("Hello")).modelName("gpt-5-nano").build();
+
+  @Test
+  void onResponse_shouldRecordLatencyAndTokensOfBlockingCall() {
+    Map<Object, Object> attributes = request(new HashMap<>());
+    clock.addAndGet(Duration.ofMillis(300).toNanos());
+
+    respond(attributes, new TokenUsage(12, 5));
+
+    Timer latency =
+        meterRegistry
+            .get(LanguageModelMetrics.LATENCY_METRIC)
+            .tags("model", "gpt-5-nano", "endpoint", "blocking", "outcome", "success")
+            .timer();
+    assertThat(latency.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(300);
+    assertThat(tokens("blocking", "prompt")).isEqualTo(12);
+    assertThat(tokens("blocking", "completion")).isEqualTo(5);
+    assertThat(meterRegistry.find(LanguageModelMetrics.TIME_TO_FIRST_TOKEN_METRIC).timer())
+        .isNull();
+  }
+
+  @Test
+  void onResponse_shouldRecordTimeToFirstTokenAndCachedTokensOfStream() {
+    AtomicLong firstToken = new AtomicLong();
+    Map<Object, Object> attributes = new HashMap<>();
+    attributes.put(LanguageModelMetrics.FIRST_TOKEN_ATTRIBUTE, firstToken);
+    request(attributes);
+    clock.addAndGet(Duration.ofMillis(200).toNanos());
+    firstToken.set(clock.get());
+    clock.addAndGet(Duration.ofMillis(800).toNanos());
+
+    respond(
+        attributes,
+        OpenAiTokenUsage.builder()
+            .inputTokenCount(100)
+            .outputTokenCount(20)
+            .inputTokensDetails(
+                OpenAiTokenUsage.InputTokensDetails.builder().cachedTokens(64).build())
+            .build());
+
+    Timer timeToFirstToken =
+        meterRegistry
+            .get(LanguageModelMetrics.TIME_TO_FIRST_TOKEN_METRIC)
+            .tags("model", "gpt-5-nano", "endpoint", "streaming")
+            .timer();
+    Timer latency =
+        meterRegistry
+            .get(LanguageModelMetrics.LATENCY_METRIC)
+            .tags("endpoint", "streaming", "outcome", "success")
+            .timer();
+    assertThat(timeToFirstToken.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(200);
+    assertThat(latency.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(1000);
+    assertThat(tokens("streaming", "prompt")).isEqualTo(100);
+    assertThat(tokens("streaming", "cached")).isEqualTo(64);
+  }
+
+  @Test
+  void onError_shouldCountErrorsByCause() {
+    Map<Object, Object> attributes = request(new HashMap<>());
+    clock.addAndGet(Duration.ofMillis(50).toNanos());
+
+    metrics.onError(
+        new ChatModelErrorContext(
+            new RateLimitException("Too many requests"),
+            request,
+            ModelProvider.OPEN_AI,
+            attributes));
+
+    assertThat(
+            meterRegistry
+                .get(LanguageModelMetrics.ERRORS_METRIC)
+                .tags("model", "gpt-5-nano", "endpoint", "blocking", "cause", "rate_limit")
+                .counter()
+                .count())
+        .isEqualTo(1);
+    assertThat(
+            meterRegistry
+                .get(LanguageModelMetrics.LATENCY_METRIC)
+                .tags("outcome", "error")
+                .timer()
+                .totalTime(TimeUnit.MILLISECONDS))
+        .isEqualTo(50);
+  }
+
+  @Test
+  void cause_shouldPreferMostSpecificCause() {
+    assertThat(LanguageModelMetrics.cause(new TimeoutException("Timed out"))).isEqualTo("timeout");
+    assertThat(LanguageModelMetrics.cause(new ContentFilteredException("Filtered")))
+        .isEqualTo("content_filtered");
+    assertThat(LanguageModelMetrics.cause(new InvalidRequestException("Invalid")))
+        .isEqualTo("invalid_request");
+    assertThat(LanguageModelMetrics.cause(new IllegalStateException("Interrupted")))
+        .isEqualTo("other");
+  }
+
+  private Map<Object, Object> request(Map<Object, Object> attributes) {
+    metrics.onRequest(new ChatModelRequestContext(request, ModelProvider.OPEN_AI, attributes));
+    return attributes;
+  }
+
+  private void respond(Map<Object, Object> attributes, TokenUsage tokenUsage) {
+    metrics.onResponse(
+        new ChatModelResponseContext(
+            ChatResponse.builder().aiMessage(AiMessage.from("Hi")).tokenUsage(tokenUsage).build(),
+            request,
+            ModelProvider.OPEN_AI,
+            attributes));
+  }
+
+  private double tokens(String endpoint, String type) {
+    return meterRegistry
+        .get(LanguageModelMetrics.TOKENS_METRIC)
+        .tags("model", "gpt-5-nano", "endpoint", endpoint, "type", type)
+        .counter()
+        .count();
+  }
+}
@@ -0,0 +1,83 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import nl.markpost.aiassistant.constant.GenericErrorCodes;
+import nl.markpost.aiassistant.exception.NotFoundException;
+import nl.markpost.aiassistant.models.MessageDTO;
+import nl.markpost.aiassistant.models.MessageJobDTO;
+import nl.markpost.aiassistant.models.MessageJobDTO.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MessageJobRegistryTest {
+
+  private static final String JOB_ID = "msg-1";
+  private static final String SESSION_ID = "session-123";
+  private static final String USER_ID = "user-123";
+
+  private MessageJobRegistry registry;
+
+  @BeforeEach
+  void setUp() {
+    registry = new MessageJobRegistry(new SimpleMeterRegistry(), 100, Duration.ofMinutes(15));
+  }
+
+  @Test
+  void create_shouldRegisterPendingJob() {
+    MessageJobDTO job = registry.create(JOB_ID, SESSION_ID, USER_ID);
+
+    assertThat(job.getStatus()).isEqualTo(Status.PENDING);
+    assertThat(registry.get(JOB_ID, SESSION_ID, USER_ID)).isEqualTo(job);
+  }
+
+  @Test
+  void complete_shouldStoreResponseAndCompleteAwaitingFuture() {
+    registry.create(JOB_ID, SESSION_ID, USER_ID);
+    CompletableFuture<MessageJobDTO> completion = registry.await(JOB_ID, SESSION_ID, USER_ID);
+    MessageDTO message = MessageDTO.builder().id("msg-2").build();
+
+    registry.markRunning(JOB_ID);
+    assertThat(registry.get(JOB_ID, SESSION_ID, USER_ID).getStatus()).isEqualTo(Status.RUNNING);
+    assertThat(completion).isNotDone();
+
+    registry.complete(JOB_ID, message);
+
+    assertThat(completion).isCompleted();
+    assertThat(completion.join().getStatus()).isEqualTo(Status.COMPLETED);
+    assertThat(registry.get(JOB_ID, SESSION_ID, USER_ID).getMessage()).isEqualTo(message);
+  }
+
+  @Test
+  void fail_shouldStoreErrorCode() {
+    registry.create(JOB_ID, SESSION_ID, USER_ID);
+
+    registry.fail(JOB_ID, GenericErrorCodes.SERVICE_UNAVAILABLE);
+
+    MessageJobDTO job = registry.await(JOB_ID, SESSION_ID, USER_ID).join();
+    assertThat(job.getStatus()).isEqualTo(Status.FAILED);
+    assertThat(job.getErrorCode()).isEqualTo(GenericErrorCodes.SERVICE_UNAVAILABLE);
+  }
+
+  @Test
+  void get_shouldNotExposeJobOfOtherUser() {
+    registry.create(JOB_ID, SESSION_ID, USER_ID);
+
+    assertThatThrownBy(() -> registry.get(JOB_ID, SESSION_ID, "other-user"))
+        .isInstanceOf(NotFoundException.class)
+        .hasMessage("Job not found");
+  }
+
+  @Test
+  void get_shouldThrowForRemovedJob() {
+    registry.create(JOB_ID, SESSION_ID, USER_ID);
+    registry.remove(JOB_ID);
+
+    assertThatThrownBy(() -> registry.get(JOB_ID, SESSION_ID, USER_ID))
+        .isInstanceOf(NotFoundException.class);
+  }
+}
@@ -0,0 +1,78 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class ModelLatencyTrackerTest {
+
+  private static final Duration MAX_AGE = Duration.ofSeconds(60);
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private final ModelLatencyTracker tracker =
+      new ModelLatencyTracker() {
+        @Override
+        long nanoTime() {
+          return clock.get();
+        }
+      };
+
+  @Test
+  void onResponse_shouldTrackLatencyPerTokenPerModel() {
+    respond("gpt-5-nano", Duration.ofMillis(100), new TokenUsage(10, 10));
+
+    assertThat(tracker.latencyPerToken("gpt-5-nano", MAX_AGE)).contains(Duration.ofMillis(10));
+    assertThat(tracker.latencyPerToken("gpt-5-mini", MAX_AGE)).isEmpty();
+  }
+
+  @Test
+  void onResponse_shouldAverageRecentLatencies() {
+    respond("gpt-5-nano", Duration.ofMillis(100), new TokenUsage(10, 1));
+    respond("gpt-5-nano", Duration.ofMillis(1200), new TokenUsage(10, 2));
+
+    assertThat(tracker.latencyPerToken("gpt-5-nano", MAX_AGE)).contains(Duration.ofMillis(200));
+  }
+
+  @Test
+  void onResponse_shouldIgnoreResponsesWithoutTokenUsage() {
+    respond("gpt-5-nano", Duration.ofMillis(100), null);
+
+    assertThat(tracker.latencyPerToken("gpt-5-nano", MAX_AGE)).isEmpty();
+  }
+
+  @Test
+  void latencyPerToken_shouldLeaveOutLatencyOlderThanMaxAge() {
+    respond("gpt-5-nano", Duration.ofMillis(100), new TokenUsage(10, 10));
+
+    clock.addAndGet(MAX_AGE.plusNanos(1).toNanos());
+
+    assertThat(tracker.latencyPerToken("gpt-5-nano", MAX_AGE)).isEmpty();
+  }
+
+  private void respond(String modelName, Duration latency, TokenUsage tokenUsage) {
+    ChatRequest request =
+        ChatRequest.builder().messages(UserMessage.from("Hello")).modelName(modelName).build();
+    Map<Object, Object> attributes = new HashMap<>();
+    tracker.onRequest(new ChatModelRequestContext(request, ModelProvider.OPEN_AI, attributes));
+    clock.addAndGet(latency.toNanos());
+    tracker.onResponse(
+        new ChatModelResponseContext(
+            ChatResponse.builder().aiMessage(AiMessage.from("Hi")).tokenUsage(tokenUsage).build(),
+            request,
+            ModelProvider.OPEN_AI,
+            attributes));
+  }
+}
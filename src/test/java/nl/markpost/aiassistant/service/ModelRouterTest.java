@@ -0,0 +1,193 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import nl.markpost.aiassistant.config.RoutingProperties;
+import nl.markpost.aiassistant.models.ModelRoute;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ModelRouterTest {
+
+  @Mock private Assistant fastAssistant;
+
+  @Mock private Assistant capableAssistant;
+
+  @Mock private SessionChatMemoryProvider chatMemoryProvider;
+
+  @Mock private ChatMemory chatMemory;
+
+  @Mock private TokenCountEstimator tokenCountEstimator;
+
+  @Mock private ModelLatencyTracker latencyTracker;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private ModelRouter modelRouter;
+
+  private static final String SESSION_ID = "session-123";
+  private static final String MESSAGE = "Hello";
+  private static final String FAST_MODEL = "gpt-5-nano";
+  private static final String CAPABLE_MODEL = "gpt-5-mini";
+  private static final Duration LATENCY_MAX_AGE = Duration.ofSeconds(60);
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    modelRouter = router(true);
+    lenient().when(chatMemoryProvider.get(SESSION_ID)).thenReturn(chatMemory);
+    lenient().when(chatMemory.messages()).thenReturn(context(2));
+    lenient().when(tokenCountEstimator.estimateTokenCountInMessages(any())).thenReturn(100);
+    lenient().when(tokenCountEstimator.estimateTokenCountInText(MESSAGE)).thenReturn(5);
+  }
+
+  @Test
+  void route_shouldSendSimpleTurnsToFastModel() {
+    assertThat(modelRouter.route(SESSION_ID, MESSAGE, null)).isEqualTo(ModelRoute.FAST);
+    assertReason(ModelRoute.FAST, "default");
+    assertThat(
+            meterRegistry
+                .get("chat.route.prompt.tokens")
+                .tag("route", "fast")
+                .summary()
+                .totalAmount())
+        .isEqualTo(105);
+  }
+
+  @Test
+  void route_shouldFollowClientHint() {
+    when(chatMemory.messages()).thenReturn(context(30));
+
+    assertThat(modelRouter.route(SESSION_ID, MESSAGE, ModelRoute.FAST)).isEqualTo(ModelRoute.FAST);
+    assertReason(ModelRoute.FAST, "hint");
+  }
+
+  @Test
+  void route_shouldSendLongPromptsToCapableModel() {
+    when(tokenCountEstimator.estimateTokenCountInText(MESSAGE)).thenReturn(1000);
+
+    assertThat(modelRouter.route(SESSION_ID, MESSAGE, null)).isEqualTo(ModelRoute.CAPABLE);
+    assertReason(ModelRoute.CAPABLE, "prompt-length");
+  }
+
+  @Test
+  void route_shouldSendDeepConversationsToCapableModel() {
+    when(chatMemory.messages()).thenReturn(context(10));
+
+    assertThat(modelRouter.route(SESSION_ID, MESSAGE, null)).isEqualTo(ModelRoute.CAPABLE);
+    assertReason(ModelRoute.CAPABLE, "depth");
+  }
+
+  @Test
+  void route_shouldMoveSimpleTurnsToCapableModelWhileFastModelIsSlow() {
+    when(latencyTracker.latencyPerToken(FAST_MODEL, LATENCY_MAX_AGE))
+        .thenReturn(Optional.of(Duration.ofMillis(50)));
+    when(latencyTracker.latencyPerToken(CAPABLE_MODEL, LATENCY_MAX_AGE))
+        .thenReturn(Optional.of(Duration.ofMillis(20)));
+
+    assertThat(modelRouter.route(SESSION_ID, MESSAGE, null)).isEqualTo(ModelRoute.CAPABLE);
+    assertReason(ModelRoute.CAPABLE, "latency");
+  }
+
+  @Test
+  void route_shouldKeepFastModelWithoutLatencySamples() {
+    when(latencyTracker.latencyPerToken(anyString(), any())).thenReturn(Optional.empty());
+
+    assertThat(modelRouter.route(SESSION_ID, MESSAGE, null)).isEqualTo(ModelRoute.FAST);
+  }
+
+  @Test
+  void route_shouldAlwaysUseFastModelWhenDisabled() {
+    assertThat(router(false).route(SESSION_ID, MESSAGE, ModelRoute.CAPABLE))
+        .isEqualTo(ModelRoute.FAST);
+    verifyNoInteractions(chatMemoryProvider, tokenCountEstimator);
+  }
+
+  @Test
+  void chat_shouldAnswerWithAssistantOfRouteAndRecordLatency() {
+    when(capableAssistant.chat(SESSION_ID, MESSAGE)).thenReturn("Hi");
+
+    assertThat(modelRouter.chat(ModelRoute.CAPABLE, SESSION_ID, MESSAGE)).isEqualTo("Hi");
+    assertThat(
+            meterRegistry
+                .get("chat.route.latency")
+                .tags("route", "capable", "model", CAPABLE_MODEL, "outcome", "success")
+                .timer()
+                .count())
+        .isEqualTo(1);
+    verifyNoInteractions(fastAssistant);
+  }
+
+  @Test
+  void chat_shouldRecordFailedCalls() {
+    when(fastAssistant.chat(SESSION_ID, MESSAGE)).thenThrow(new RuntimeException("boom"));
+
+    assertThatThrownBy(() -> modelRouter.chat(ModelRoute.FAST, SESSION_ID, MESSAGE))
+        .hasMessage("boom");
+    assertThat(
+            meterRegistry
+                .get("chat.route.latency")
+                .tags("route", "fast", "outcome", "error")
+                .timer()
+                .count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void modelName_shouldReturnModelOfRoute() {
+    assertThat(modelRouter.modelName(ModelRoute.FAST)).isEqualTo(FAST_MODEL);
+    assertThat(modelRouter.modelName(ModelRoute.CAPABLE)).isEqualTo(CAPABLE_MODEL);
+  }
+
+  private ModelRouter router(boolean enabled) {
+    return new ModelRouter(
+        Map.of(
+            ModelRoute.FAST, new ModelRouter.Route(FAST_MODEL, fastAssistant),
+            ModelRoute.CAPABLE, new ModelRouter.Route(CAPABLE_MODEL, capableAssistant)),
+        new RoutingProperties(enabled, 1000, 10, 2.0, LATENCY_MAX_AGE),
+        chatMemoryProvider,
+        tokenCountEstimator,
+        latencyTracker,
+        meterRegistry);
+  }
+
+  private void assertReason(ModelRoute route, String reason) {
+    assertThat(
+            meterRegistry
+                .get("chat.route.requests")
+                .tags("route", route.name().toLowerCase(), "reason", reason)
+                .counter()
+                .count())
+        .isEqualTo(1);
+  }
+
+  private static List<ChatMessage> context(int size) {
+    List<ChatMessage> messages = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      messages.add(i % 2 == 0 ? UserMessage.from("Question") : AiMessage.from("Answer"));
+    }
+    return Collections.unmodifiableList(messages);
+  }
+}
@@ -0,0 +1,52 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class PromptTokensListenerTest {
+
+  @Mock private TokenCountEstimator tokenCountEstimator;
+
+  private SimpleMeterRegistry meterRegistry;
+  private PromptTokensListener listener;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    listener = new PromptTokensListener(tokenCountEstimator, meterRegistry);
+  }
+
+  @Test
+  void onRequest_shouldRecordPromptTokensPerModel() {
+    List<ChatMessage> messages = List.of(UserMessage.from("Hello"));
+    when(tokenCountEstimator.estimateTokenCountInMessages(messages)).thenReturn(42);
+    ChatRequest chatRequest =
+        ChatRequest.builder().messages(messages).modelName("gpt-5-nano").build();
+
+    listener.onRequest(
+        new ChatModelRequestContext(chatRequest, ModelProvider.OPEN_AI, new HashMap<>()));
+
+    DistributionSummary summary =
+        meterRegistry.find("chat.prompt.tokens").tag("model", "gpt-5-nano").summary();
+    assertThat(summary).isNotNull();
+    assertThat(summary.count()).isEqualTo(1);
+    assertThat(summary.totalAmount()).isEqualTo(42);
+  }
+}
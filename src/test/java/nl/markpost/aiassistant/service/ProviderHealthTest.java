@@ -0,0 +1,118 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.langchain4j.exception.InternalServerException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProviderHealthTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private CircuitBreaker circuitBreaker;
+  private long now;
+  private ProviderHealth health;
+
+  @BeforeEach
+  void setUp() {
+    circuitBreaker =
+        CircuitBreaker.of(
+            "provider-local",
+            CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .slowCallDurationThreshold(Duration.ofSeconds(1))
+                .slowCallRateThreshold(50)
+                .build());
+    health =
+        new ProviderHealth("local", circuitBreaker, Duration.ofMinutes(5), meterRegistry) {
+          @Override
+          long nanoTime() {
+            return now;
+          }
+        };
+  }
+
+  @Test
+  void trafficShare_shouldBeFullWhileHealthy() {
+    assertThat(health.trafficShare()).isEqualTo(1);
+    assertThat(health.tryAcquire(true)).isTrue();
+  }
+
+  @Test
+  void trafficShare_shouldBeNoneWhileFailing() {
+    for (int i = 0; i < 4; i++) {
+      health.tryAcquire(true);
+      health.onError(now, new InternalServerException("Server error"));
+    }
+
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(health.trafficShare()).isZero();
+    assertThat(health.tryAcquire(false)).isFalse();
+  }
+
+  @Test
+  void trafficShare_shouldOpenOnLatencyObjectiveBreach() {
+    for (int i = 0; i < 4; i++) {
+      health.tryAcquire(true);
+      long start = now;
+      now += Duration.ofSeconds(2).toNanos();
+      health.onSuccess(start);
+    }
+
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  void trafficShare_shouldGrowGraduallyAfterRecovery() {
+    circuitBreaker.transitionToOpenState();
+    circuitBreaker.transitionToHalfOpenState();
+    circuitBreaker.transitionToClosedState();
+
+    assertThat(health.trafficShare()).isZero();
+    now += Duration.ofMinutes(1).toNanos();
+    assertThat(health.trafficShare()).isEqualTo(0.2);
+    now += Duration.ofMinutes(10).toNanos();
+    assertThat(health.trafficShare()).isEqualTo(1);
+  }
+
+  @Test
+  void recordFailover_shouldCountFailoversByReason() {
+    health.recordFailover(new InternalServerException("Server error"));
+    health.recordFailover(null);
+
+    assertThat(
+            meterRegistry
+                .get("chat.provider.failovers")
+                .tag("provider", "local")
+                .tag("reason", "InternalServerException")
+                .counter()
+                .count())
+        .isEqualTo(1);
+    assertThat(
+            meterRegistry
+                .get("chat.provider.failovers")
+                .tag("reason", "unavailable")
+                .counter()
+                .count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void recordExhausted_shouldCountExhaustedCallsByReason() {
+    health.recordExhausted(new InternalServerException("Server error"));
+
+    assertThat(
+            meterRegistry
+                .get("chat.provider.exhausted")
+                .tag("provider", "local")
+                .tag("reason", "InternalServerException")
+                .counter()
+                .count())
+        .isEqualTo(1);
+  }
+}
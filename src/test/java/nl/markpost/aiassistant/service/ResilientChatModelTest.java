@@ -0,0 +1,178 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.exception.RetriableException;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ResilientChatModelTest {
+
+  @Mock private ChatModel delegate;
+
+  private CircuitBreaker circuitBreaker;
+  private ResilientChatModel chatModel;
+
+  private final ChatRequest request =
+      ChatRequest.builder().messages(UserMessage.from("Hello")).build();
+  private final ChatResponse response =
+      ChatResponse.builder().aiMessage(AiMessage.from("Hi")).build();
+
+  @BeforeEach
+  void setUp() {
+    circuitBreaker =
+        CircuitBreaker.of(
+            "chatModel",
+            CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofSeconds(10))
+                .recordExceptions(RetriableException.class)
+                .build());
+    Retry retry =
+        Retry.of(
+            "chatModel",
+            RetryConfig.custom()
+                .maxAttempts(3)
+                .waitDuration(Duration.ofMillis(1))
+                .retryExceptions(RetriableException.class)
+                .build());
+    chatModel =
+        new ResilientChatModel(
+            delegate, circuitBreaker, retry, Duration.ofSeconds(10), Runnable::run);
+  }
+
+  @Test
+  void chat_shouldRetryTransientFailures() {
+    when(delegate.chat(request, ChatRequestOptions.EMPTY))
+        .thenThrow(new RateLimitException("Too many requests"))
+        .thenReturn(response);
+
+    assertThat(chatModel.chat(request)).isEqualTo(response);
+    verify(delegate, times(2)).chat(request, ChatRequestOptions.EMPTY);
+  }
+
+  @Test
+  void chat_shouldNotRetryInvalidRequests() {
+    InvalidRequestException error = new InvalidRequestException("Bad request");
+    when(delegate.chat(request, ChatRequestOptions.EMPTY)).thenThrow(error);
+
+    assertThatThrownBy(() -> chatModel.chat(request)).isEqualTo(error);
+    verify(delegate, times(1)).chat(request, ChatRequestOptions.EMPTY);
+  }
+
+  @Test
+  void chat_shouldFailWithServiceUnavailableAfterLastAttempt() {
+    when(delegate.chat(request, ChatRequestOptions.EMPTY))
+        .thenThrow(new InternalServerException("Server error"));
+
+    assertThatThrownBy(() -> chatModel.chat(request))
+        .isInstanceOf(ServiceUnavailableException.class)
+        .hasMessage("The language model is unavailable");
+    verify(delegate, times(3)).chat(request, ChatRequestOptions.EMPTY);
+  }
+
+  @Test
+  void chat_shouldFailFastWhileCircuitBreakerIsOpen() {
+    circuitBreaker.transitionToOpenState();
+
+    assertThatThrownBy(() -> chatModel.chat(request))
+        .isInstanceOfSatisfying(
+            ServiceUnavailableException.class,
+            e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(10)));
+    verify(delegate, never()).chat(request, ChatRequestOptions.EMPTY);
+  }
+
+  @Test
+  void chat_shouldOpenCircuitBreakerOnSustainedFailure() {
+    when(delegate.chat(request, ChatRequestOptions.EMPTY))
+        .thenThrow(new InternalServerException("Server error"));
+
+    assertThatThrownBy(() -> chatModel.chat(request))
+        .isInstanceOf(ServiceUnavailableException.class);
+    assertThatThrownBy(() -> chatModel.chat(request))
+        .isInstanceOf(ServiceUnavailableException.class);
+
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  void chat_shouldStopRetryingAfterDeadline() {
+    Retry retry =
+        Retry.of(
+            "chatModel",
+            RetryConfig.custom()
+                .maxAttempts(5)
+                .waitDuration(Duration.ofMillis(50))
+                .retryExceptions(RetriableException.class)
+                .build());
+    chatModel =
+        new ResilientChatModel(
+            delegate, circuitBreaker, retry, Duration.ofMillis(10), Runnable::run);
+    when(delegate.chat(request, ChatRequestOptions.EMPTY))
+        .thenThrow(new RateLimitException("Too many requests"));
+
+    assertThatThrownBy(() -> chatModel.chat(request))
+        .isInstanceOf(ServiceUnavailableException.class)
+        .hasMessage("The language model did not respond in time");
+    verify(delegate, times(1)).chat(request, ChatRequestOptions.EMPTY);
+  }
+
+  @Test
+  void chat_shouldCancelAttemptRunningPastDeadline() throws InterruptedException {
+    Retry retry = Retry.of("chatModel", RetryConfig.custom().maxAttempts(1).build());
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    chatModel =
+        new ResilientChatModel(delegate, circuitBreaker, retry, Duration.ofMillis(50), executor);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    when(delegate.chat(request, ChatRequestOptions.EMPTY))
+        .thenAnswer(
+            invocation -> {
+              try {
+                Thread.sleep(Duration.ofSeconds(10));
+              } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new IllegalStateException(e);
+              }
+              return response;
+            });
+
+    try {
+      assertThatThrownBy(() -> chatModel.chat(request))
+          .isInstanceOf(ServiceUnavailableException.class)
+          .hasMessage("The language model did not respond in time");
+      assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.model.chat.ChatRequestOptions;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import nl.markpost.aiassistant.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ResilientStreamingChatModelTest {
+
+  @Mock private StreamingChatModel delegate;
+
+  @Mock private StreamingChatResponseHandler handler;
+
+  private CircuitBreaker circuitBreaker;
+  private ResilientStreamingChatModel chatModel;
+
+  private final ChatRequest request =
+      ChatRequest.builder().messages(UserMessage.from("Hello")).build();
+
+  @BeforeEach
+  void setUp() {
+    circuitBreaker = CircuitBreaker.ofDefaults("chatModel");
+    chatModel = new ResilientStreamingChatModel(delegate, circuitBreaker);
+  }
+
+  @Test
+  void chat_shouldRecordCompletedStreamAsSuccess() {
+    ChatResponse response = ChatResponse.builder().aiMessage(AiMessage.from("Hi")).build();
+    doAnswer(
+            invocation -> {
+              invocation.<StreamingChatResponseHandler>getArgument(2).onCompleteResponse(response);
+              return null;
+            })
+        .when(delegate)
+        .chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+
+    chatModel.chat(request, handler);
+
+    verify(handler).onCompleteResponse(response);
+    assertThat(circuitBreaker.getMetrics().getNumberOfSuccessfulCalls()).isEqualTo(1);
+  }
+
+  @Test
+  void chat_shouldReportTransientStreamFailureAsServiceUnavailable() {
+    doAnswer(
+            invocation -> {
+              invocation
+                  .<StreamingChatResponseHandler>getArgument(2)
+                  .onError(new InternalServerException("Server error"));
+              return null;
+            })
+        .when(delegate)
+        .chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+
+    chatModel.chat(request, handler);
+
+    verify(handler).onError(argThat(e -> e instanceof ServiceUnavailableException));
+    assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+  }
+
+  @Test
+  void chat_shouldFailFastWhileCircuitBreakerIsOpen() {
+    circuitBreaker.transitionToOpenState();
+
+    assertThatThrownBy(() -> chatModel.chat(request, handler))
+        .isInstanceOf(ServiceUnavailableException.class);
+    verify(delegate, never()).chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+  }
+
+  @Test
+  void chat_shouldReleasePermissionWhenStreamIsCancelled() {
+    circuitBreaker =
+        CircuitBreaker.of(
+            "chatModel",
+            CircuitBreakerConfig.custom().permittedNumberOfCallsInHalfOpenState(1).build());
+    chatModel = new ResilientStreamingChatModel(delegate, circuitBreaker);
+    circuitBreaker.transitionToOpenState();
+    circuitBreaker.transitionToHalfOpenState();
+    StreamingHandle streamingHandle = mock(StreamingHandle.class);
+    doAnswer(
+            invocation -> {
+              StreamingChatResponseHandler streamHandler = invocation.getArgument(2);
+              streamHandler.onPartialResponse(
+                  new PartialResponse("Hi"), new PartialResponseContext(streamingHandle));
+              // The provider may still report the aborted stream as failed
+              streamHandler.onError(new InternalServerException("Stream closed"));
+              return null;
+            })
+        .when(delegate)
+        .chat(eq(request), eq(ChatRequestOptions.EMPTY), any());
+    doAnswer(
+            invocation -> {
+              invocation.<PartialResponseContext>getArgument(1).streamingHandle().cancel();
+              return null;
+            })
+        .when(handler)
+        .onPartialResponse(any(PartialResponse.class), any());
+
+    chatModel.chat(request, handler);
+
+    verify(streamingHandle).cancel();
+    assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isZero();
+    assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+  }
+}
@@ -0,0 +1,137 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SessionChatMemoryProviderTest {
+
+  @Mock private ChatMemoryStore chatMemoryStore;
+
+  private SessionChatMemoryProvider chatMemoryProvider;
+
+  private static final String SESSION_ID = "session-123";
+
+  @BeforeEach
+  void setUp() {
+    chatMemoryProvider =
+        new SessionChatMemoryProvider(chatMemoryStore, new WordCountEstimator(), 4);
+  }
+
+  @Test
+  void get_shouldReturnMemoryOfSessionBackedByStore() {
+    List<ChatMessage> messages = List.of(UserMessage.from("Hello"), AiMessage.from("Hi"));
+    when(chatMemoryStore.getMessages(SESSION_ID)).thenReturn(messages);
+
+    ChatMemory memory = chatMemoryProvider.get(SESSION_ID);
+
+    assertThat(memory.id()).isEqualTo(SESSION_ID);
+    assertThat(memory.messages()).isEqualTo(messages);
+  }
+
+  @Test
+  void get_shouldWriteAddedMessagesThroughToStoreWithinTokenBudget() {
+    when(chatMemoryStore.getMessages(SESSION_ID))
+        .thenReturn(List.of(UserMessage.from("Hello"), AiMessage.from("Hi")));
+
+    chatMemoryProvider.get(SESSION_ID).add(UserMessage.from("How are you?"));
+
+    verify(chatMemoryStore)
+        .updateMessages(
+            eq(SESSION_ID), eq(List.of(AiMessage.from("Hi"), UserMessage.from("How are you?"))));
+  }
+
+  @Test
+  void forBudget_shouldGiveLargerBudgetTheLargerWindow() {
+    chatMemoryProvider =
+        new SessionChatMemoryProvider(chatMemoryStore, new WordCountEstimator(), 10);
+    List<ChatMessage> messages =
+        List.of(
+            UserMessage.from("Tell me a story"),
+            AiMessage.from("Once upon a time"),
+            UserMessage.from("Go on"));
+    when(chatMemoryStore.getMessages(SESSION_ID)).thenReturn(messages);
+
+    ChatMemory fast = chatMemoryProvider.forBudget(4).get(SESSION_ID);
+    ChatMemory capable = chatMemoryProvider.forBudget(10).get(SESSION_ID);
+
+    assertThat(fast.messages()).containsExactly(UserMessage.from("Go on"));
+    assertThat(capable.messages()).isEqualTo(messages);
+  }
+
+  @Test
+  void forBudget_shouldKeepWholeWindowWhenSmallerBudgetAddsMessage() {
+    chatMemoryProvider =
+        new SessionChatMemoryProvider(chatMemoryStore, new WordCountEstimator(), 8);
+    when(chatMemoryStore.getMessages(SESSION_ID))
+        .thenReturn(List.of(UserMessage.from("Tell me a story"), AiMessage.from("Once upon")));
+
+    chatMemoryProvider.forBudget(4).get(SESSION_ID).add(AiMessage.from("a time"));
+
+    verify(chatMemoryStore)
+        .updateMessages(
+            eq(SESSION_ID),
+            eq(
+                List.of(
+                    UserMessage.from("Tell me a story"),
+                    AiMessage.from("Once upon"),
+                    AiMessage.from("a time"))));
+  }
+
+  @Test
+  void get_shouldRejectNullMemoryId() {
+    assertThatThrownBy(() -> chatMemoryProvider.get(null))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Memory ID cannot be null");
+  }
+
+  @Test
+  void evict_shouldDeleteMessagesFromStore() {
+    chatMemoryProvider.evict(SESSION_ID);
+
+    verify(chatMemoryStore).deleteMessages(SESSION_ID);
+  }
+
+  /** Estimates one token per word, so that budgets in tests are easy to reason about. */
+  private static class WordCountEstimator implements TokenCountEstimator {
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+      return text.split("\\s+").length;
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+      return switch (message) {
+        case UserMessage userMessage -> estimateTokenCountInText(userMessage.singleText());
+        case AiMessage aiMessage -> estimateTokenCountInText(aiMessage.text());
+        default -> 0;
+      };
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+      int tokens = 0;
+      for (ChatMessage message : messages) {
+        tokens += estimateTokenCountInMessage(message);
+      }
+      return tokens;
+    }
+  }
+}
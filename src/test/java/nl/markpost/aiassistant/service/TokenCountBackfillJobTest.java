@@ -0,0 +1,80 @@
+package nl.markpost.aiassistant.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.langchain4j.model.TokenCountEstimator;
+import java.util.List;
+import nl.markpost.aiassistant.models.entity.ChatMessage;
+import nl.markpost.aiassistant.repository.ChatMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class TokenCountBackfillJobTest {
+
+  @Mock private ChatMessageRepository chatMessageRepository;
+
+  @Mock private TokenCountEstimator tokenCountEstimator;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  private TokenCountBackfillJob job;
+
+  @BeforeEach
+  void setUp() {
+    when(transactionTemplate.execute(any()))
+        .thenAnswer(
+            invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    job =
+        new TokenCountBackfillJob(
+            chatMessageRepository, tokenCountEstimator, transactionTemplate, 2);
+  }
+
+  @Test
+  void run_shouldStoreTokenCountsInBatchesUntilNoneAreLeft() {
+    ChatMessage first = message("message-1", "Hello there");
+    ChatMessage second = message("message-2", "Hi");
+    ChatMessage third = message("message-3", "How are you?");
+    when(chatMessageRepository.findByTokenCountIsNullAndIdGreaterThanOrderByIdAsc("", Limit.of(2)))
+        .thenReturn(List.of(first, second));
+    when(chatMessageRepository.findByTokenCountIsNullAndIdGreaterThanOrderByIdAsc(
+            "message-2", Limit.of(2)))
+        .thenReturn(List.of(third));
+    when(tokenCountEstimator.estimateTokenCountInText("Hello there")).thenReturn(2);
+    when(tokenCountEstimator.estimateTokenCountInText("Hi")).thenReturn(1);
+    when(tokenCountEstimator.estimateTokenCountInText("How are you?")).thenReturn(4);
+
+    long updated = job.run();
+
+    assertThat(updated).isEqualTo(3);
+    assertThat(first.getTokenCount()).isEqualTo(2);
+    assertThat(second.getTokenCount()).isEqualTo(1);
+    assertThat(third.getTokenCount()).isEqualTo(4);
+    verify(chatMessageRepository).saveAll(List.of(first, second));
+    verify(chatMessageRepository).saveAll(List.of(third));
+    verify(transactionTemplate, times(2)).execute(any());
+  }
+
+  @Test
+  void run_shouldStopWhenNoMessagesNeedBackfilling() {
+    when(chatMessageRepository.findByTokenCountIsNullAndIdGreaterThanOrderByIdAsc("", Limit.of(2)))
+        .thenReturn(List.of());
+
+    assertThat(job.run()).isZero();
+    verify(transactionTemplate, times(1)).execute(any());
+  }
+
+  private ChatMessage message(String id, String content) {
+    return ChatMessage.builder().id(id).role("user").content(content).build();
+  }
+}